@@ -40,6 +40,7 @@
 
 package org.glassfish.grizzly.connectionpool;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import org.glassfish.grizzly.Connection;
 
 /**
@@ -49,18 +50,24 @@ import org.glassfish.grizzly.Connection;
  *
  */
 public final class ConnectionInfo<E> {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<ConnectionInfo> READY_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(ConnectionInfo.class, "ready");
+    
     final Connection connection;
-    final Link<ConnectionInfo<E>> readyStateLink;
     final SingleEndpointPool<E> endpointPool;
     
     long ttlTimeout; // the place holder for TTL time stamp
     
     private final long pooledTimeStamp;
+    
+    // 0 - busy, otherwise the ready stripe index + 1
+    private volatile int ready;
+    private volatile long readyTimeStamp = -1;
 
     ConnectionInfo(final Connection connection, final SingleEndpointPool<E> endpointPool) {
         this.connection = connection;
         this.endpointPool = endpointPool;
-        this.readyStateLink = new Link<ConnectionInfo<E>>(this);
         pooledTimeStamp = System.currentTimeMillis();
     }
 
@@ -70,9 +77,7 @@ public final class ConnectionInfo<E> {
      * if the {@link Connection} is currently busy.
      */
     public boolean isReady() {
-        synchronized(endpointPool.poolSync) {
-            return readyStateLink.isAttached();
-        }
+        return ready != 0;
     }
     
     /**
@@ -81,8 +86,44 @@ public final class ConnectionInfo<E> {
      * the {@link Connection} is currently in busy state.
      */
     public long getReadyTimeStamp() {
-        synchronized(endpointPool.poolSync) {
-            return readyStateLink.getAttachmentTimeStamp();
+        return ready != 0 ? readyTimeStamp : -1;
+    }
+    
+    /**
+     * Switches the {@link Connection} from busy to ready state.
+     * 
+     * @param stripe the index of the ready stripe the {@link Connection}
+     *        is going to be offered to
+     * @return <tt>true</tt> if the state has been changed, or <tt>false</tt>
+     * if the {@link Connection} had been already marked as ready
+     */
+    boolean markReady(final int stripe) {
+        if (ready != 0) {
+            return false;
+        }
+        
+        readyTimeStamp = System.currentTimeMillis();
+        return READY_UPDATER.compareAndSet(this, 0, stripe + 1);
+    }
+    
+    /**
+     * Switches the {@link Connection} from ready to busy state.
+     * Only one of the concurrent callers may succeed, so the winner owns
+     * the {@link Connection}.
+     * 
+     * @return the index of the ready stripe the {@link Connection} had been
+     * offered to, or <tt>-1</tt> if the {@link Connection} has not been claimed
+     */
+    int claim() {
+        for (;;) {
+            final int state = ready;
+            if (state == 0) {
+                return -1;
+            }
+            
+            if (READY_UPDATER.compareAndSet(this, state, 0)) {
+                return state - 1;
+            }
         }
     }
     
@@ -98,7 +139,7 @@ public final class ConnectionInfo<E> {
     public String toString() {
         return "ConnectionInfo{"
                     + "connection=" + connection
-                    + ", readyStateLink=" + readyStateLink
+                    + ", ready=" + isReady()
                     + ", endpointPool=" + endpointPool
                     + ", pooledTimeStamp=" + pooledTimeStamp
                     + "} " + super.toString();
@@ -0,0 +1,593 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.connectionpool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.glassfish.grizzly.CloseListener;
+import org.glassfish.grizzly.CloseReason;
+import org.glassfish.grizzly.Closeable;
+import org.glassfish.grizzly.CompletionHandler;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.GrizzlyFuture;
+import org.glassfish.grizzly.impl.FutureImpl;
+import org.glassfish.grizzly.utils.Futures;
+
+/**
+ * The group of equivalent {@link Endpoint}s (for example replicas of the same
+ * service) served by a {@link MultiEndpointPool}.
+ * 
+ * Unlike {@link MultiEndpointPool}, which returns a {@link Connection} to an
+ * explicitly specified {@link Endpoint}, the <tt>EndpointGroup</tt> chooses the
+ * {@link Endpoint} itself using the {@link EndpointSelector} strategy, so the
+ * load is spread across the group members.
+ * 
+ * The group tracks the number of outstanding (taken, but not released yet)
+ * {@link Connection}s per member and, if the user reports round-trip times
+ * using {@link #recordRoundTrip(org.glassfish.grizzly.Connection, long, java.util.concurrent.TimeUnit)},
+ * the member latency moving average, which the {@link EndpointSelector} might
+ * use to make the decision.
+ * 
+ * The {@link Connection}s taken from the group have to be returned by
+ * {@link #release(org.glassfish.grizzly.Connection)}, otherwise they'll be
+ * counted as outstanding until closed.
+ * 
+ * @param <E> the address type, for example for TCP transport it's {@link java.net.SocketAddress}
+ */
+public class EndpointGroup<E> {
+    /**
+     * Returns the endpoint group {@link Builder}.
+     * 
+     * @param <T> endpoint type
+     * @param pool the {@link MultiEndpointPool} the group {@link Connection}s
+     *        will be taken from
+     * @return {@link Builder} 
+     */
+    public static <T> Builder<T> builder(final MultiEndpointPool<T> pool) {
+        return new Builder<T>(pool);
+    }
+    
+    private final MultiEndpointPool<E> pool;
+    private final EndpointSelector<E> selector;
+    private final long latencyDecayNanos;
+    
+    /**
+     * The immutable snapshot of the group members, which is replaced on each
+     * add/remove, so the {@link EndpointSelector} always sees a stable list
+     */
+    private volatile List<Member<E>> members = Collections.emptyList();
+    private final Object membersSync = new Object();
+    
+    /**
+     * The {@link Map} of the taken {@link Connection}s and members they belong to
+     */
+    private final Map<Connection, Member<E>> outstandingConnections =
+            new ConcurrentHashMap<Connection, Member<E>>();
+    
+    private final CloseListener closeListener = new OutstandingCloseListener();
+    
+    protected EndpointGroup(final MultiEndpointPool<E> pool,
+            final EndpointSelector<E> selector,
+            final long latencyDecayNanos,
+            final List<Endpoint<E>> endpoints) {
+        this.pool = pool;
+        this.selector = selector;
+        this.latencyDecayNanos = latencyDecayNanos;
+        
+        for (Endpoint<E> endpoint : endpoints) {
+            add(endpoint);
+        }
+    }
+
+    /**
+     * @return the {@link MultiEndpointPool} the group {@link Connection}s are
+     * taken from
+     */
+    public MultiEndpointPool<E> getPool() {
+        return pool;
+    }
+
+    /**
+     * @return the {@link EndpointSelector} used to choose the {@link Endpoint}
+     * for the next {@link Connection}
+     */
+    public EndpointSelector<E> getSelector() {
+        return selector;
+    }
+    
+    /**
+     * @return the read-only snapshot of the group members
+     */
+    public List<Member<E>> getMembers() {
+        return members;
+    }
+    
+    /**
+     * @param endpoint {@link Endpoint}
+     * @return the group member representing the {@link Endpoint}, or
+     * <tt>null</tt> if the {@link Endpoint} doesn't belong to the group
+     */
+    public Member<E> getMember(final Endpoint<E> endpoint) {
+        for (Member<E> member : members) {
+            if (member.endpoint.equals(endpoint)) {
+                return member;
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Adds the {@link Endpoint} to the group.
+     * 
+     * @param endpoint {@link Endpoint}
+     * @return <tt>true</tt> if the {@link Endpoint} has been added, or
+     * <tt>false</tt> if it had been already a group member
+     */
+    public boolean add(final Endpoint<E> endpoint) {
+        if (endpoint == null) {
+            throw new IllegalArgumentException("The endpoint can not be null");
+        }
+        
+        synchronized (membersSync) {
+            if (getMember(endpoint) != null) {
+                return false;
+            }
+            
+            final List<Member<E>> newMembers =
+                    new ArrayList<Member<E>>(members.size() + 1);
+            newMembers.addAll(members);
+            newMembers.add(new Member<E>(endpoint, latencyDecayNanos));
+            
+            members = Collections.unmodifiableList(newMembers);
+            return true;
+        }
+    }
+    
+    /**
+     * Removes the {@link Endpoint} from the group, so no new {@link Connection}s
+     * will be taken for it. The outstanding {@link Connection}s could still be
+     * released as usual, but the {@link Endpoint}'s sub-pool is not closed,
+     * use {@link MultiEndpointPool#close(Endpoint)} if needed.
+     * 
+     * @param endpoint {@link Endpoint}
+     * @return <tt>true</tt> if the {@link Endpoint} has been removed, or
+     * <tt>false</tt> if it wasn't a group member
+     */
+    public boolean remove(final Endpoint<E> endpoint) {
+        synchronized (membersSync) {
+            final Member<E> member = getMember(endpoint);
+            if (member == null) {
+                return false;
+            }
+            
+            final List<Member<E>> newMembers =
+                    new ArrayList<Member<E>>(members);
+            newMembers.remove(member);
+            
+            members = Collections.unmodifiableList(newMembers);
+            return true;
+        }
+    }
+    
+    /**
+     * Obtains a {@link Connection} to one of the group {@link Endpoint}s in
+     * non-blocking/asynchronous fashion.
+     * The same rules as for {@link MultiEndpointPool#take(Endpoint)} apply
+     * to the returned {@link GrizzlyFuture}, but the {@link Connection} has to be
+     * returned using {@link #release(org.glassfish.grizzly.Connection)}.
+     * 
+     * @return {@link GrizzlyFuture}
+     */
+    public GrizzlyFuture<Connection> take() {
+        final FutureImpl<Connection> future = Futures.createSafeFuture();
+        take0(future, null);
+        return future;
+    }
+    
+    /**
+     * Obtains a {@link Connection} to one of the group {@link Endpoint}s in
+     * non-blocking/asynchronous fashion.
+     * The passed {@link CompletionHandler} will be notified about the result of the
+     * non-blocking/asynchronous obtain task.
+     * 
+     * @param completionHandler to be notified once {@link Connection} is available or
+     *                          an error occurred
+     */
+    public void take(final CompletionHandler<Connection> completionHandler) {
+        if (completionHandler == null) {
+            throw new IllegalArgumentException("The completionHandler argument can not be null");
+        }
+        
+        take0(null, completionHandler);
+    }
+    
+    /**
+     * Returns the {@link Connection} taken from the group to the pool.
+     * 
+     * @param connection the {@link Connection} to return
+     * @return the {@link MultiEndpointPool#release(org.glassfish.grizzly.Connection)} result
+     */
+    public boolean release(final Connection connection) {
+        final Member<E> member = outstandingConnections.remove(connection);
+        if (member != null) {
+            connection.removeCloseListener(closeListener);
+            member.outstanding.decrementAndGet();
+        }
+        
+        return pool.release(connection);
+    }
+    
+    /**
+     * Reports the round-trip time (for example request-response time)
+     * measured on the {@link Connection} taken from the group.
+     * The measurement updates the member latency moving average.
+     * 
+     * @param connection the {@link Connection} taken from the group
+     * @param roundTrip the round-trip time
+     * @param timeUnit the round-trip time unit
+     */
+    public void recordRoundTrip(final Connection connection,
+            final long roundTrip, final TimeUnit timeUnit) {
+        Member<E> member = outstandingConnections.get(connection);
+        if (member == null) {
+            final ConnectionInfo<E> info = pool.getConnectionInfo(connection);
+            if (info == null
+                    || (member = getMember(info.endpointPool.getEndpoint())) == null) {
+                return;
+            }
+        }
+        
+        member.recordRoundTrip(timeUnit.toNanos(roundTrip));
+    }
+    
+    private void take0(final FutureImpl<Connection> future,
+            final CompletionHandler<Connection> completionHandler) {
+        final Member<E> member;
+        try {
+            member = select();
+        } catch (IOException e) {
+            Futures.notifyFailure(future, completionHandler, e);
+            return;
+        }
+        
+        member.outstanding.incrementAndGet();
+        pool.take(member.endpoint,
+                new TakeCompletionHandler(member, future, completionHandler));
+    }
+    
+    private Member<E> select() throws IOException {
+        // the snapshot doesn't change while the selector works with it
+        final List<Member<E>> currentMembers = members;
+        if (currentMembers.isEmpty()) {
+            throw new IOException("The endpoint group is empty");
+        }
+        
+        final Member<E> member = selector.select(currentMembers);
+        if (member == null) {
+            throw new IOException("No endpoint has been selected");
+        }
+        
+        return member;
+    }
+    
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + 
+                "{" +
+                "selector=" + selector +
+                ", members=" + members +
+                "}";
+    }
+    
+    /**
+     * The group member: the {@link Endpoint} and its load statistics.
+     * 
+     * @param <E> the address type, for example for TCP transport it's {@link java.net.SocketAddress}
+     */
+    public static final class Member<E> {
+        private final Endpoint<E> endpoint;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        
+        private final long decayNanos;
+        
+        private volatile double latencyEwmaNanos;
+        private volatile long lastRoundTripNanos;
+        private volatile boolean isMeasured;
+
+        Member(final Endpoint<E> endpoint, final long decayNanos) {
+            this.endpoint = endpoint;
+            this.decayNanos = decayNanos;
+        }
+
+        /**
+         * @return the member {@link Endpoint}
+         */
+        public Endpoint<E> getEndpoint() {
+            return endpoint;
+        }
+        
+        /**
+         * @return the number of {@link Connection}s taken for the member,
+         * including the ones which are still being obtained, and not
+         * released yet
+         */
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+        
+        /**
+         * @param timeUnit the result time unit
+         * @return the exponentially weighted moving average of the round-trip
+         * times reported for the member, or <tt>0</tt> if nothing has been
+         * reported yet
+         */
+        public double getLatencyEwma(final TimeUnit timeUnit) {
+            return latencyEwmaNanos / timeUnit.toNanos(1);
+        }
+        
+        /**
+         * @return <tt>true</tt> if at least one round-trip time has been
+         * reported for the member, or <tt>false</tt> otherwise
+         */
+        public boolean isMeasured() {
+            return isMeasured;
+        }
+        
+        /**
+         * Returns the latency moving average decayed toward the passed default
+         * latency according to the time passed since the last measurement,
+         * so a stale measurement doesn't count forever.
+         * 
+         * @param defaultLatency the latency of a member without measurements
+         * @param timeUnit the default latency and the result time unit
+         * @return the decayed latency moving average, or the default latency if
+         * nothing has been reported yet
+         */
+        public double getLatencyEwma(final double defaultLatency,
+                final TimeUnit timeUnit) {
+            if (!isMeasured) {
+                return defaultLatency;
+            }
+            
+            // the values might be read in the middle of an update,
+            // which is fine for an estimate
+            final long unitNanos = timeUnit.toNanos(1);
+            final double ewma = latencyEwmaNanos;
+            final long elapsed = Math.max(0, System.nanoTime() - lastRoundTripNanos);
+            final double weight = Math.exp(-(double) elapsed / decayNanos);
+            return (ewma * weight) / unitNanos + defaultLatency * (1 - weight);
+        }
+        
+        /**
+         * Updates the latency moving average. The older the previous measurement,
+         * the less weight the average has. The average catches up with a
+         * round-trip time exceeding it immediately, so a slowing down endpoint
+         * is penalized without delay.
+         */
+        synchronized void recordRoundTrip(final long roundTripNanos) {
+            final long now = System.nanoTime();
+            
+            final double ewma = latencyEwmaNanos;
+            if (!isMeasured || roundTripNanos > ewma) {
+                isMeasured = true;
+                latencyEwmaNanos = roundTripNanos;
+            } else {
+                final long elapsed = Math.max(0, now - lastRoundTripNanos);
+                final double weight = Math.exp(-(double) elapsed / decayNanos);
+                latencyEwmaNanos = ewma * weight + roundTripNanos * (1 - weight);
+            }
+            
+            lastRoundTripNanos = now;
+        }
+
+        @Override
+        public String toString() {
+            return "Member{"
+                    + "endpoint=" + endpoint
+                    + ", outstanding=" + outstanding
+                    + ", latencyEwmaNanos=" + latencyEwmaNanos
+                    + "}";
+        }
+    }
+    
+    /**
+     * Registers the obtained {@link Connection} as outstanding and passes
+     * it to the user.
+     */
+    private final class TakeCompletionHandler
+            implements CompletionHandler<Connection> {
+        private final Member<E> member;
+        private final FutureImpl<Connection> future;
+        private final CompletionHandler<Connection> completionHandler;
+
+        private TakeCompletionHandler(final Member<E> member,
+                final FutureImpl<Connection> future,
+                final CompletionHandler<Connection> completionHandler) {
+            this.member = member;
+            this.future = future;
+            this.completionHandler = completionHandler;
+        }
+        
+        @Override
+        public void completed(final Connection connection) {
+            outstandingConnections.put(connection, member);
+            connection.addCloseListener(closeListener);
+            
+            if (future != null) {
+                future.result(connection);
+                if (future.isCancelled()) {
+                    // the user is not interested in the connection anymore
+                    release(connection);
+                }
+            } else {
+                completionHandler.completed(connection);
+            }
+        }
+
+        @Override
+        public void failed(final Throwable throwable) {
+            member.outstanding.decrementAndGet();
+            Futures.notifyFailure(future, completionHandler, throwable);
+        }
+
+        @Override
+        public void cancelled() {
+            member.outstanding.decrementAndGet();
+            
+            if (future != null) {
+                future.cancel(false);
+            } else {
+                completionHandler.cancelled();
+            }
+        }
+
+        @Override
+        public void updated(final Connection result) {
+        }
+    }
+    
+    /**
+     * The {@link CloseListener}, which stops counting an outstanding
+     * {@link Connection} as soon as it's closed.
+     */
+    private final class OutstandingCloseListener implements CloseListener {
+
+        @Override
+        public void onClosed(final Closeable closeable, final CloseReason reason)
+                throws IOException {
+            final Member<E> member = outstandingConnections.remove(
+                    (Connection) closeable);
+            if (member != null) {
+                member.outstanding.decrementAndGet();
+            }
+        }
+    }
+    
+    /**
+     * The Builder class responsible for constructing {@link EndpointGroup}.
+     * 
+     * @param <E> endpoint address type, for example {@link java.net.SocketAddress} for TCP and UDP transports
+     */
+    public static class Builder<E> {
+        private final MultiEndpointPool<E> pool;
+        /**
+         * the group {@link Endpoint}s
+         */
+        private final List<Endpoint<E>> endpoints = new ArrayList<Endpoint<E>>();
+        /**
+         * the {@link Endpoint} selection strategy
+         */
+        private EndpointSelector<E> selector;
+        /**
+         * the time, during which a latency measurement loses ~63% of its weight
+         */
+        private long latencyDecayMillis = 10000;
+
+        protected Builder(final MultiEndpointPool<E> pool) {
+            this.pool = pool;
+        }
+        
+        /**
+         * Adds the {@link Endpoint} to the group.
+         * 
+         * @param endpoint {@link Endpoint}
+         * @return this {@link Builder}
+         */
+        public Builder<E> endpoint(final Endpoint<E> endpoint) {
+            endpoints.add(endpoint);
+            return this;
+        }
+        
+        /**
+         * Sets the {@link Endpoint} selection strategy.
+         * Default value is {@link LeastOutstandingSelector}.
+         * 
+         * @param selector {@link EndpointSelector}
+         * @return this {@link Builder}
+         */
+        public Builder<E> selector(final EndpointSelector<E> selector) {
+            this.selector = selector;
+            return this;
+        }
+        
+        /**
+         * Sets the latency moving average decay time: the time, during which
+         * a round-trip time measurement loses ~63% of its weight.
+         * Default value is 10 seconds.
+         * 
+         * @param latencyDecayTime the latency decay time
+         * @param timeunit the latency decay time unit
+         * @return this {@link Builder}
+         */
+        public Builder<E> latencyDecayTime(final long latencyDecayTime,
+                final TimeUnit timeunit) {
+            this.latencyDecayMillis = TimeUnit.MILLISECONDS.convert(
+                    latencyDecayTime, timeunit);
+            return this;
+        }
+        
+        /**
+         * Constructs {@link EndpointGroup}.
+         * @return {@link EndpointGroup}
+         */
+        public EndpointGroup<E> build() {
+            if (pool == null) {
+                throw new IllegalStateException("The pool is not set");
+            }
+            
+            if (latencyDecayMillis <= 0) {
+                throw new IllegalStateException("Latency decay time must be a positive value");
+            }
+            
+            return new EndpointGroup<E>(pool,
+                    selector != null ? selector : new LeastOutstandingSelector<E>(),
+                    TimeUnit.MILLISECONDS.toNanos(latencyDecayMillis),
+                    endpoints);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.connectionpool;
+
+import java.util.List;
+
+/**
+ * The strategy, which chooses an {@link Endpoint} of the {@link EndpointGroup}
+ * the next {@link org.glassfish.grizzly.Connection} has to be taken for.
+ * 
+ * The implementation has to be thread-safe, because it is called concurrently
+ * by every thread, which takes a connection from the group.
+ * 
+ * @param <E> the address type, for example for TCP transport it's {@link java.net.SocketAddress}
+ * 
+ * @see LeastOutstandingSelector
+ * @see EwmaLatencySelector
+ */
+public interface EndpointSelector<E> {
+    /**
+     * Selects the group member to take the next connection from.
+     * 
+     * @param members the non-empty, read-only snapshot of the group members,
+     *        which doesn't change while the method is running
+     * @return the selected member, or <tt>null</tt> if none could be selected
+     */
+    EndpointGroup.Member<E> select(List<EndpointGroup.Member<E>> members);
+}
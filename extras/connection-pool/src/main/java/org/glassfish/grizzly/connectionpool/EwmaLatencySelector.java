@@ -0,0 +1,136 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.connectionpool;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latency-aware "power of two choices" {@link EndpointSelector}: picks
+ * two random members and selects the one with the lower
+ * <tt>(latency EWMA + 1ns) * (outstanding connections + 1)</tt> product, so a slow
+ * endpoint gets less traffic even if it isn't saturated yet.
+ * 
+ * The latency is the exponentially weighted moving average of the round-trip
+ * times reported via {@link EndpointGroup#recordRoundTrip(org.glassfish.grizzly.Connection, long, java.util.concurrent.TimeUnit)}.
+ * A member without measurements is assumed to have the default latency,
+ * which is either configured or, by default, the mean latency of the measured
+ * members, so new endpoints are balanced by the number of outstanding
+ * connections against the measured ones. The measurements decay toward the
+ * default latency with time, so a stale measurement doesn't penalize or
+ * favor the member forever.
+ * 
+ * Unlike {@link LeastOutstandingSelector}, the group mean latency costs
+ * O(n) per selection.
+ * 
+ * @param <E> the address type, for example for TCP transport it's {@link java.net.SocketAddress}
+ */
+public class EwmaLatencySelector<E> extends LeastOutstandingSelector<E> {
+    private final long defaultLatencyNanos;
+
+    /**
+     * Creates the selector, which uses the mean latency of the measured
+     * members as the latency of the members without measurements.
+     */
+    public EwmaLatencySelector() {
+        defaultLatencyNanos = -1;
+    }
+    
+    /**
+     * Creates the selector with the given latency of the members without
+     * measurements.
+     * 
+     * @param defaultLatency the default latency
+     * @param timeUnit the default latency time unit
+     */
+    public EwmaLatencySelector(final long defaultLatency,
+            final TimeUnit timeUnit) {
+        if (defaultLatency < 0) {
+            throw new IllegalArgumentException("The default latency can not be negative");
+        }
+        
+        defaultLatencyNanos = timeUnit.toNanos(defaultLatency);
+    }
+
+    @Override
+    protected EndpointGroup.Member<E> choose(
+            final List<EndpointGroup.Member<E>> members,
+            final EndpointGroup.Member<E> m1, final EndpointGroup.Member<E> m2) {
+        final double defaultLatency = getDefaultLatency(members);
+        
+        return cost(m2, defaultLatency) < cost(m1, defaultLatency) ? m2 : m1;
+    }
+    
+    /**
+     * Returns the cost of taking a connection from the member.
+     * 
+     * @param member the group member
+     * @param defaultLatency the latency (in nanoseconds) of a member without
+     *        measurements
+     * @return the cost of taking a connection from the member
+     */
+    protected double cost(final EndpointGroup.Member<E> member,
+            final double defaultLatency) {
+        return (member.getLatencyEwma(defaultLatency, TimeUnit.NANOSECONDS) + 1)
+                * (member.getOutstanding() + 1);
+    }
+    
+    /**
+     * @return the latency (in nanoseconds) of a member without measurements
+     */
+    private double getDefaultLatency(final List<EndpointGroup.Member<E>> members) {
+        if (defaultLatencyNanos >= 0) {
+            return defaultLatencyNanos;
+        }
+        
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i < members.size(); i++) {
+            final EndpointGroup.Member<E> member = members.get(i);
+            if (member.isMeasured()) {
+                sum += member.getLatencyEwma(TimeUnit.NANOSECONDS);
+                count++;
+            }
+        }
+        
+        return count > 0 ? sum / count : 0;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.connectionpool;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The "power of two choices" {@link EndpointSelector}: picks two random
+ * members and selects the one with fewer outstanding connections.
+ * 
+ * Unlike picking the global minimum, the random sampling doesn't make all
+ * the concurrent clients pile up on the same least loaded endpoint, and
+ * the selection costs O(1) no matter how big the group is.
+ * 
+ * @param <E> the address type, for example for TCP transport it's {@link java.net.SocketAddress}
+ */
+public class LeastOutstandingSelector<E> implements EndpointSelector<E> {
+
+    @Override
+    public EndpointGroup.Member<E> select(final List<EndpointGroup.Member<E>> members) {
+        final int size = members.size();
+        if (size == 0) {
+            return null;
+        } else if (size == 1) {
+            return members.get(0);
+        }
+        
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int i = random.nextInt(size);
+        int j = random.nextInt(size - 1);
+        if (j >= i) {
+            j++;
+        }
+        
+        return choose(members, members.get(i), members.get(j));
+    }
+    
+    /**
+     * Chooses one of the two randomly picked members.
+     * 
+     * @param members all the group members
+     * @param m1 the first member
+     * @param m2 the second member
+     * @return the member with the lower cost
+     */
+    protected EndpointGroup.Member<E> choose(
+            final List<EndpointGroup.Member<E>> members,
+            final EndpointGroup.Member<E> m1, final EndpointGroup.Member<E> m2) {
+        return cost(m2) < cost(m1) ? m2 : m1;
+    }
+    
+    /**
+     * Returns the cost of taking a connection from the member, the member with
+     * the lower cost wins.
+     * 
+     * @param member the group member
+     * @return the cost of taking a connection from the member
+     */
+    protected double cost(final EndpointGroup.Member<E> member) {
+        return member.getOutstanding();
+    }
+}
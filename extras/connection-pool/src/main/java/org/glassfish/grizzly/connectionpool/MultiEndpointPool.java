@@ -1154,6 +1154,9 @@ public class MultiEndpointPool<E> {
          * Sets the custom {@link DelayedExecutor} to be used for keep-alive and
          * reconnect mechanisms.
          * If none is set - the {@link SingleEndpointPool} will create its own {@link DelayedExecutor}.
+         * To follow the transport's timing wheel configuration pass the executor
+         * created by {@link org.glassfish.grizzly.nio.NIOTransport#createDelayedExecutor(java.util.concurrent.ExecutorService)}.
+         * A custom executor has to be started and destroyed by the caller.
          * 
          * @param delayedExecutor
          * @return this {@link Builder}
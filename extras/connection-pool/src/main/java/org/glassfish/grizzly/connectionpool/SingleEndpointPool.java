@@ -43,11 +43,13 @@ package org.glassfish.grizzly.connectionpool;
 import java.io.IOException;
 import java.net.ConnectException;
 import java.net.SocketAddress;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.glassfish.grizzly.CloseListener;
@@ -102,6 +104,14 @@ import org.glassfish.grizzly.utils.Futures;
 public class SingleEndpointPool<E> {
     private static final Logger LOGGER = Grizzly.logger(SingleEndpointPool.class);
     
+    /**
+     * The number of ready {@link Connection} stripes: the nearest power of two
+     * greater or equal to the number of CPUs, but no more than 64.
+     */
+    private static final int READY_STRIPES = Math.min(64,
+            Integer.highestOneBit(
+                    Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)));
+    
     /**
      * Returns single endpoint pool {@link Builder}.
      * 
@@ -127,15 +137,28 @@ public class SingleEndpointPool<E> {
             new PoolConnectionCloseListener();
     
     /**
-     * The {@link Chain} of ready connections
+     * The ready connections striped by the thread id, so threads taking and
+     * releasing {@link Connection}s mostly don't compete with each other.
+     * A thread checks its own stripe first and steals from the other stripes
+     * if its own one is empty.
+     * The {@link ConnectionInfo} ready state CAS decides which thread owns
+     * the {@link Connection}, so a stripe might contain stale records, which
+     * are skipped.
+     */
+    @SuppressWarnings("unchecked")
+    private final ConcurrentLinkedDeque<ConnectionInfo<E>>[] readyConnections =
+            new ConcurrentLinkedDeque[READY_STRIPES];
+    
+    /**
+     * The number of ready connections
      */
-    private final Chain<ConnectionInfo<E>> readyConnections = new Chain<ConnectionInfo<E>>();
+    private final AtomicInteger readyConnectionsCount = new AtomicInteger();
     
     /**
      * The {@link Map} contains *all* pooled {@link Connection}s
      */
     private final Map<Connection, ConnectionInfo<E>> connectionsMap =
-            new HashMap<Connection, ConnectionInfo<E>>();
+            new ConcurrentHashMap<Connection, ConnectionInfo<E>>();
     
     /**
      * Sync object
@@ -145,7 +168,7 @@ public class SingleEndpointPool<E> {
     /**
      * close flag
      */
-    private boolean isClosed;
+    private volatile boolean isClosed;
     
     /**
      * The thread-pool used by theownDelayedExecutor
@@ -251,6 +274,18 @@ public class SingleEndpointPool<E> {
      * The waiting list of asynchronous polling clients
      */
     private final Chain<AsyncPoll> asyncWaitingList = new Chain<AsyncPoll>();
+    
+    /**
+     * The {@link #asyncWaitingList} size, which could be checked without
+     * obtaining the pool lock
+     */
+    private volatile int asyncWaitersCount;
+    
+    {
+        for (int i = 0; i < READY_STRIPES; i++) {
+            readyConnections[i] = new ConcurrentLinkedDeque<ConnectionInfo<E>>();
+        }
+    }
 
     /**
      * Constructs SingleEndpointPool instance.
@@ -556,9 +591,7 @@ public class SingleEndpointPool<E> {
      * @return the number of {@link Connection}s ready to be retrieved and used.
      */
     public int getReadyConnectionsCount() {
-        synchronized (poolSync) {
-            return readyConnections.size();
-        }
+        return Math.max(0, readyConnectionsCount.get());
     }
 
     /**
@@ -584,9 +617,7 @@ public class SingleEndpointPool<E> {
      * the {@link Connection} is not registered in the pool
      */
     public boolean isRegistered(final Connection connection) {
-        synchronized (poolSync) {
-            return connectionsMap.containsKey(connection);
-        }
+        return connectionsMap.containsKey(connection);
     }
     
     /**
@@ -600,15 +631,11 @@ public class SingleEndpointPool<E> {
      * returns <tt>false</tt>
      */
     public boolean isBusy(final Connection connection) {
-        synchronized (poolSync) {
-            return isBusy0(connectionsMap.get(connection));
-        }
+        return isBusy0(connectionsMap.get(connection));
     }
 
     boolean isBusy0(final ConnectionInfo<E> connectionRecord) {
-        synchronized (poolSync) {
-            return connectionRecord != null && !connectionRecord.isReady();
-        }
+        return connectionRecord != null && !connectionRecord.isReady();
     }
     
     /**
@@ -622,9 +649,7 @@ public class SingleEndpointPool<E> {
      * this pool
      */
     public ConnectionInfo<E> getConnectionInfo(final Connection connection) {
-        synchronized (poolSync) {
-            return connectionsMap.get(connection);
-        }
+        return connectionsMap.get(connection);
     }
     
     /**
@@ -655,16 +680,23 @@ public class SingleEndpointPool<E> {
      * @return {@link GrizzlyFuture}
      */
     public GrizzlyFuture<Connection> take() {
+        final ConnectionInfo<E> readyInfo = pollReadyFast();
+        if (readyInfo != null) {
+            return Futures.createReadyFuture(readyInfo.connection);
+        }
+        
         int errorCode = 0;
         GrizzlyFuture<Connection> future = null;
         boolean isCreateNewConnection = false;
+        boolean isWaiting = false;
         
         try {
             synchronized (poolSync) {
                 // we need to maintain this weird if's layout to make sure we
                 // create Exceptions or new connections outside of synchronized.
                 if (!isClosed) {
-                    if (readyConnections.isEmpty()) {
+                    final ConnectionInfo<E> info = pollReady();
+                    if (info == null) {
                         if (!failFastWhenMaxSizeReached
                                 || !isMaxCapacityReached()
                                 || pendingConnections >= getWaitingListSize() + 1) {
@@ -692,6 +724,7 @@ public class SingleEndpointPool<E> {
 
                             asyncPoll.future = cancellableFuture;
                             addToAsyncWaitingList(pollLink);
+                            isWaiting = true;
 
                             isCreateNewConnection = checkBeforeOpeningConnection();
                             future = cancellableFuture;
@@ -699,8 +732,7 @@ public class SingleEndpointPool<E> {
                             errorCode = 2;
                         }
                     } else {
-                        future = Futures.createReadyFuture(
-                                readyConnections.pollLast().getValue().connection);
+                        future = Futures.createReadyFuture(info.connection);
                     }
                 } else {
                     errorCode = 1;
@@ -715,6 +747,12 @@ public class SingleEndpointPool<E> {
                         connect();
                     }
                     
+                    if (isWaiting) {
+                        // a Connection might have been released lock-free
+                        // before we were registered as a waiter
+                        handOverReadyConnections();
+                    }
+                    
                     return future;
                 }
                 
@@ -748,6 +786,12 @@ public class SingleEndpointPool<E> {
             throw new IllegalArgumentException("The completionHandler argument can not be null");
         }
         
+        final ConnectionInfo<E> readyInfo = pollReadyFast();
+        if (readyInfo != null) {
+            completionHandler.completed(readyInfo.connection);
+            return;
+        }
+        
         int errorCode = 0;
         Connection connection = null;
         boolean isCreateNewConnection = false;
@@ -757,7 +801,8 @@ public class SingleEndpointPool<E> {
                 // we need to maintain this weird if's layout to make sure we
                 // create Exceptions or new connections outside of synchronized.
                 if (!isClosed) {
-                    if (readyConnections.isEmpty()) {
+                    final ConnectionInfo<E> info = pollReady();
+                    if (info == null) {
                         if (!failFastWhenMaxSizeReached
                                 || !isMaxCapacityReached()
                                 || pendingConnections >= getWaitingListSize() + 1) {
@@ -773,7 +818,7 @@ public class SingleEndpointPool<E> {
                             errorCode = 2;
                         }
                     } else {
-                        connection = readyConnections.pollLast().getValue().connection;
+                        connection = info.connection;
                     }
                 } else {
                     errorCode = 1;
@@ -784,8 +829,14 @@ public class SingleEndpointPool<E> {
                 case 0: {
                     if (connection != null) {
                         completionHandler.completed(connection);
-                    } else if (isCreateNewConnection) {
-                        connect();
+                    } else {
+                        if (isCreateNewConnection) {
+                            connect();
+                        }
+                        
+                        // a Connection might have been released lock-free
+                        // before we were registered as a waiter
+                        handOverReadyConnections();
                     }
                     
                     break;
@@ -812,15 +863,12 @@ public class SingleEndpointPool<E> {
      * @throws java.io.IOException if the pool is closed
      */
     public Connection poll() throws IOException {
-        synchronized (poolSync) {
-            if (isClosed) {
-                throw new IOException("The pool is closed");
-            }
-
-            return !readyConnections.isEmpty()
-                    ? readyConnections.pollLast().getValue().connection
-                    : null;
+        if (isClosed) {
+            throw new IOException("The pool is closed");
         }
+
+        final ConnectionInfo<E> info = pollReady();
+        return info != null ? info.connection : null;
     }
     
     /**
@@ -841,15 +889,13 @@ public class SingleEndpointPool<E> {
      *  and <code>false</code> will be returned.
      */
     public boolean release(final Connection connection) {
-        synchronized (poolSync) {
-            final ConnectionInfo<E> info = connectionsMap.get(connection);
-            if (info == null) {
-                connection.closeSilently();
-                return false;
-            } 
-            
-            return release0(info);
+        final ConnectionInfo<E> info = connectionsMap.get(connection);
+        if (info == null) {
+            connection.closeSilently();
+            return false;
         }
+
+        return release0(info);
     }
 
     /**
@@ -857,6 +903,38 @@ public class SingleEndpointPool<E> {
      * on connection {@link Link}.
      */
     boolean release0(final ConnectionInfo<E> info) {
+        if (info.isReady()) {
+            return false;
+        }
+        
+        if (keepAliveTimeoutMillis != 0 && asyncWaitersCount == 0 && !isClosed) {
+            // nobody is waiting - return the connection to the ready stripe
+            // without obtaining the pool lock
+            if (!offerReady(info)) {
+                return false;
+            }
+
+            // the connection might have been closed or detached after it
+            // was looked up, make sure it doesn't stay in the ready stripe
+            if (connectionsMap.get(info.connection) != info
+                    || !info.connection.isOpen()) {
+                removeReady(info);
+                return false;
+            }
+
+            // recheck the state, which might have been changed while
+            // the connection was being returned
+            if (asyncWaitersCount != 0) {
+                handOverReadyConnections();
+            }
+            
+            if (isClosed) {
+                closeReadyConnections();
+            }
+            
+            return true;
+        }
+        
         final boolean isKeepAlive;
         AsyncPoll asyncPoller = null;
         
@@ -865,15 +943,17 @@ public class SingleEndpointPool<E> {
                 return false;
             }
 
-            // close pooled connection, if keepAliveTimeoutMillis == 0
-            if (keepAliveTimeoutMillis == 0 && poolSize > corePoolSize) {
+            if (isClosed) {
+                isKeepAlive = false;
+            } else if (keepAliveTimeoutMillis == 0 && poolSize > corePoolSize) {
+                // close pooled connection, if keepAliveTimeoutMillis == 0
                 detach(info.connection); // detach in sync block and close outside sync
                 isKeepAlive = false;
             } else {
                 isKeepAlive = true;
                 asyncPoller = getAsyncPoller();
                 if (asyncPoller == null) {
-                    readyConnections.offerLast(info.readyStateLink);
+                    offerReady(info);
                 }
             }
         }
@@ -975,11 +1055,7 @@ public class SingleEndpointPool<E> {
                     ownDelayedExecutorThreadPool.shutdownNow();
                 }
                 
-                final int size = readyConnections.size();
-                for (int i = 0; i < size; i++) {
-                    final Connection c = readyConnections.pollLast().getValue().connection;
-                    c.closeSilently();
-                }
+                closeReadyConnections();
                 
                 final int asyncWaitingListSize = asyncWaitingList.size();
                 IOException exception = null;
@@ -1095,22 +1171,33 @@ public class SingleEndpointPool<E> {
                 return true;
             }
 
-            if (!readyConnections.isEmpty() && poolSize > corePoolSize) {
+            if (readyConnectionsCount.get() > 0 && poolSize > corePoolSize) {
                 final long now = System.currentTimeMillis();
 
                 try {
-                    do {
-                        final Link<ConnectionInfo<E>> link = readyConnections.getFirstLink();
-                        
-                        if ((now - link.getAttachmentTimeStamp()) >= keepAliveTimeoutMillis) {
-                            final Connection c = link.getValue().connection;
-                            detach(c);
-                            c.closeSilently();
-                        } else { // the rest of links are ok
-                            break;
+                    for (int i = 0; i < READY_STRIPES && poolSize > corePoolSize; i++) {
+                        // each stripe is ordered from the oldest to the newest
+                        for (ConnectionInfo<E> info : readyConnections[i]) {
+                            final long readyTimeStamp = info.getReadyTimeStamp();
+                            if (readyTimeStamp == -1) { // stale record
+                                continue;
+                            }
+                            
+                            if ((now - readyTimeStamp) < keepAliveTimeoutMillis) {
+                                break; // the rest of the stripe is ok
+                            }
+                            
+                            if (removeReady(info)) {
+                                final Connection c = info.connection;
+                                detach(c);
+                                c.closeSilently();
+                                
+                                if (poolSize <= corePoolSize) {
+                                    break;
+                                }
+                            }
                         }
-                        
-                    } while (!readyConnections.isEmpty() && poolSize > corePoolSize);
+                    }
                 } catch (Exception ignore) {
                 }
             }
@@ -1190,14 +1277,123 @@ public class SingleEndpointPool<E> {
             connectionTTLQueue.remove(info);
         }
         
-        readyConnections.remove(info.readyStateLink);
+        removeReady(info);
         poolSize--;
 
         onCloseConnection(info);
     }
 
+    /**
+     * Returns the {@link Connection} to the current thread's ready stripe.
+     * 
+     * @return <tt>false</tt> if the {@link Connection} had been already ready
+     */
+    private boolean offerReady(final ConnectionInfo<E> info) {
+        final int stripe = readyStripe();
+        if (!info.markReady(stripe)) {
+            return false;
+        }
+        
+        readyConnections[stripe].offerLast(info);
+        readyConnectionsCount.incrementAndGet();
+        return true;
+    }
+    
+    /**
+     * Retrieves and claims a ready {@link Connection} starting from the
+     * current thread's stripe and stealing from the other stripes if needed.
+     * 
+     * @return the claimed {@link ConnectionInfo}, or <tt>null</tt> if there
+     * are no ready {@link Connection}s
+     */
+    private ConnectionInfo<E> pollReady() {
+        final int start = readyStripe();
+        for (int i = 0; i < READY_STRIPES; i++) {
+            final ConcurrentLinkedDeque<ConnectionInfo<E>> stripe =
+                    readyConnections[(start + i) & (READY_STRIPES - 1)];
+            
+            ConnectionInfo<E> info;
+            while ((info = stripe.pollLast()) != null) {
+                if (info.claim() != -1) {
+                    readyConnectionsCount.decrementAndGet();
+                    return info;
+                }
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Lock-free {@link #pollReady()} attempt, which doesn't take ready
+     * {@link Connection}s away from the async waiters.
+     */
+    private ConnectionInfo<E> pollReadyFast() {
+        return !isClosed && asyncWaitersCount == 0
+                && readyConnectionsCount.get() > 0
+                ? pollReady()
+                : null;
+    }
+    
+    /**
+     * Claims the ready {@link Connection} and removes it from its stripe.
+     * 
+     * @return <tt>true</tt> if the {@link Connection} was ready and has been
+     * claimed by the caller, or <tt>false</tt> otherwise
+     */
+    private boolean removeReady(final ConnectionInfo<E> info) {
+        final int stripe = info.claim();
+        if (stripe == -1) {
+            return false;
+        }
+        
+        readyConnections[stripe].removeFirstOccurrence(info);
+        readyConnectionsCount.decrementAndGet();
+        return true;
+    }
+    
+    /**
+     * Passes ready {@link Connection}s to the async waiters.
+     * Closes the gap between a lock-free {@link Connection} release and a
+     * waiter registration.
+     */
+    private void handOverReadyConnections() {
+        while (readyConnectionsCount.get() > 0) {
+            final ConnectionInfo<E> info;
+            final AsyncPoll asyncPoller;
+            
+            synchronized (poolSync) {
+                if (asyncWaitingList.isEmpty()) {
+                    return;
+                }
+                
+                info = pollReady();
+                if (info == null) {
+                    return;
+                }
+                
+                asyncPoller = obtainFromAsyncWaitingList();
+            }
+            
+            Futures.notifyResult(asyncPoller.future,
+                    asyncPoller.completionHandler, info.connection);
+        }
+    }
+    
+    private void closeReadyConnections() {
+        ConnectionInfo<E> info;
+        while ((info = pollReady()) != null) {
+            info.connection.closeSilently();
+        }
+    }
+    
+    private static int readyStripe() {
+        return (int) Thread.currentThread().getId() & (READY_STRIPES - 1);
+    }
+    
     private void addToAsyncWaitingList(final Link<AsyncPoll> pollLink) {
         asyncWaitingList.offerLast(pollLink);
+        asyncWaitersCount = asyncWaitingList.size();
 
         if (asyncPollTimeoutMillis >= 0) {
             asyncPollTimeoutQueue.add(pollLink,
@@ -1207,6 +1403,7 @@ public class SingleEndpointPool<E> {
 
     private AsyncPoll obtainFromAsyncWaitingList() {
         final Link<AsyncPoll> link = asyncWaitingList.pollFirst();
+        asyncWaitersCount = asyncWaitingList.size();
         
         if (asyncPollTimeoutMillis >= 0) {
             asyncPollTimeoutQueue.remove(link);
@@ -1217,6 +1414,7 @@ public class SingleEndpointPool<E> {
     
     private boolean removeFromAsyncWaitingList(final Link<AsyncPoll> pollLink) {
         final boolean result = asyncWaitingList.remove(pollLink);
+        asyncWaitersCount = asyncWaitingList.size();
         
         if (result && asyncPollTimeoutMillis >= 0) {
             asyncPollTimeoutQueue.remove(pollLink);
@@ -1265,7 +1463,7 @@ public class SingleEndpointPool<E> {
                        final ConnectionInfo<E> info = attach0(connection);
                        asyncPoller = getAsyncPoller();
                        if (asyncPoller == null) {
-                           readyConnections.offerLast(info.readyStateLink);
+                           offerReady(info);
                        }
                    }
                 }
@@ -1499,6 +1697,7 @@ public class SingleEndpointPool<E> {
                 final SingleEndpointPool<?> pool = asyncPollLink.getValue().pool;
                 synchronized (pool.poolSync) {
                     removed = pool.asyncWaitingList.remove(asyncPollLink);
+                    pool.asyncWaitersCount = pool.asyncWaitingList.size();
                 }
                 
                 if (removed) {
@@ -1567,7 +1766,8 @@ public class SingleEndpointPool<E> {
             }
             
             synchronized(ci.endpointPool.poolSync) {
-                if (ci.isReady()) {
+                // claim the ready connection, so it can't be taken concurrently
+                if (ci.endpointPool.removeReady(ci)) {
                     ci.connection.close();
                 } else {
                     ci.endpointPool.detach(ci.connection);
@@ -1799,6 +1999,9 @@ public class SingleEndpointPool<E> {
          * Sets the custom {@link DelayedExecutor} to be used for keep-alive and
          * reconnect mechanisms.
          * If none is set - the {@link SingleEndpointPool} will create its own {@link DelayedExecutor}.
+         * To follow the transport's timing wheel configuration pass the executor
+         * created by {@link org.glassfish.grizzly.nio.NIOTransport#createDelayedExecutor(java.util.concurrent.ExecutorService)}.
+         * A custom executor has to be started and destroyed by the caller.
          * 
          * @param delayedExecutor
          * @return this {@link Builder}
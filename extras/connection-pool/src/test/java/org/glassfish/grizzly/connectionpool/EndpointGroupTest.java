@@ -0,0 +1,247 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.connectionpool;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * The {@link EndpointGroup} tests.
+ */
+public class EndpointGroupTest {
+    private static final int PORT = 18340;
+    
+    private TCPNIOTransport transport;
+    private MultiEndpointPool<SocketAddress> pool;
+    private Endpoint<SocketAddress> endpoint1;
+    private Endpoint<SocketAddress> endpoint2;
+    
+    @Before
+    public void init() throws IOException {
+        transport = TCPNIOTransportBuilder.newInstance().build();
+        transport.setFilterChain(FilterChainBuilder.newInstance()
+                .add(new TransportFilter()).build());
+        
+        transport.bind(PORT);
+        transport.bind(PORT + 1);
+        transport.start();
+        
+        pool = MultiEndpointPool.builder(SocketAddress.class)
+                .maxConnectionsPerEndpoint(4)
+                .maxConnectionsTotal(8)
+                .build();
+        
+        endpoint1 = Endpoint.Factory.<SocketAddress>create(
+                new InetSocketAddress("localhost", PORT), transport);
+        endpoint2 = Endpoint.Factory.<SocketAddress>create(
+                new InetSocketAddress("localhost", PORT + 1), transport);
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        if (pool != null) {
+            pool.close();
+        }
+        
+        if (transport != null) {
+            transport.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLeastOutstanding() throws Exception {
+        final EndpointGroup<SocketAddress> group = EndpointGroup.builder(pool)
+                .endpoint(endpoint1)
+                .endpoint(endpoint2)
+                .build();
+        
+        final EndpointGroup.Member<SocketAddress> member1 = group.getMember(endpoint1);
+        final EndpointGroup.Member<SocketAddress> member2 = group.getMember(endpoint2);
+        
+        final Connection[] connections = new Connection[4];
+        for (int i = 0; i < connections.length; i++) {
+            connections[i] = group.take().get(10, TimeUnit.SECONDS);
+            assertNotNull(connections[i]);
+        }
+        
+        // two choices out of two members always pick the least loaded one
+        assertEquals(2, member1.getOutstanding());
+        assertEquals(2, member2.getOutstanding());
+        
+        for (Connection c : connections) {
+            assertTrue(group.release(c));
+        }
+        
+        assertEquals(0, member1.getOutstanding());
+        assertEquals(0, member2.getOutstanding());
+        
+        // a connection closed by the user is not outstanding anymore
+        final Connection c = group.take().get(10, TimeUnit.SECONDS);
+        c.close().get(10, TimeUnit.SECONDS);
+        assertEquals(0, member1.getOutstanding() + member2.getOutstanding());
+    }
+    
+    @Test
+    public void testEwmaLatency() throws Exception {
+        final EndpointGroup<SocketAddress> group = EndpointGroup.builder(pool)
+                .endpoint(endpoint1)
+                .endpoint(endpoint2)
+                .selector(new EwmaLatencySelector<SocketAddress>())
+                .build();
+        
+        final Connection c1 = pool.take(endpoint1).get(10, TimeUnit.SECONDS);
+        final Connection c2 = pool.take(endpoint2).get(10, TimeUnit.SECONDS);
+        group.recordRoundTrip(c1, 100, TimeUnit.MILLISECONDS);
+        group.recordRoundTrip(c2, 1, TimeUnit.MILLISECONDS);
+        pool.release(c1);
+        pool.release(c2);
+        
+        assertEquals(100, group.getMember(endpoint1).getLatencyEwma(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(1, group.getMember(endpoint2).getLatencyEwma(TimeUnit.MILLISECONDS), 0.001);
+        
+        // the fast endpoint is preferred until its load outweighs the latency difference
+        for (int i = 0; i < 3; i++) {
+            final Connection c = group.take().get(10, TimeUnit.SECONDS);
+            assertEquals(endpoint2, pool.getConnectionInfo(c).endpointPool.getEndpoint());
+            group.recordRoundTrip(c, 1, TimeUnit.MILLISECONDS);
+            group.release(c);
+        }
+        
+        // a slower round trip is reflected immediately
+        final Connection c = group.take().get(10, TimeUnit.SECONDS);
+        group.recordRoundTrip(c, 500, TimeUnit.MILLISECONDS);
+        group.release(c);
+        assertEquals(500, group.getMember(endpoint2).getLatencyEwma(TimeUnit.MILLISECONDS), 0.001);
+        
+        final Connection c3 = group.take().get(10, TimeUnit.SECONDS);
+        assertEquals(endpoint1, pool.getConnectionInfo(c3).endpointPool.getEndpoint());
+        group.release(c3);
+    }
+    
+    @Test
+    public void testEwmaLatencyUnmeasuredMember() throws Exception {
+        final EndpointGroup<SocketAddress> group = EndpointGroup.builder(pool)
+                .endpoint(endpoint1)
+                .endpoint(endpoint2)
+                .selector(new EwmaLatencySelector<SocketAddress>())
+                .build();
+        
+        final Connection c = pool.take(endpoint1).get(10, TimeUnit.SECONDS);
+        group.recordRoundTrip(c, 1, TimeUnit.MILLISECONDS);
+        pool.release(c);
+        
+        final EndpointGroup.Member<SocketAddress> member1 = group.getMember(endpoint1);
+        final EndpointGroup.Member<SocketAddress> member2 = group.getMember(endpoint2);
+        assertTrue(member1.isMeasured());
+        assertFalse(member2.isMeasured());
+        
+        // the unmeasured member gets the group mean latency,
+        // so it doesn't take all the load
+        final Connection[] connections = new Connection[4];
+        for (int i = 0; i < connections.length; i++) {
+            connections[i] = group.take().get(10, TimeUnit.SECONDS);
+        }
+        
+        assertEquals(2, member1.getOutstanding());
+        assertEquals(2, member2.getOutstanding());
+        
+        for (Connection connection : connections) {
+            group.release(connection);
+        }
+    }
+    
+    @Test
+    public void testEwmaLatencyDecay() throws Exception {
+        final EndpointGroup<SocketAddress> group = EndpointGroup.builder(pool)
+                .endpoint(endpoint1)
+                .latencyDecayTime(1, TimeUnit.MILLISECONDS)
+                .build();
+        final EndpointGroup.Member<SocketAddress> member = group.getMember(endpoint1);
+        
+        assertEquals(5, member.getLatencyEwma(5, TimeUnit.MILLISECONDS), 0.001);
+        
+        final Connection c = pool.take(endpoint1).get(10, TimeUnit.SECONDS);
+        group.recordRoundTrip(c, 100, TimeUnit.MILLISECONDS);
+        pool.release(c);
+        
+        // the stale measurement decays toward the default latency
+        Thread.sleep(100);
+        assertEquals(100, member.getLatencyEwma(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(5, member.getLatencyEwma(5, TimeUnit.MILLISECONDS), 0.01);
+    }
+    
+    @Test
+    public void testEmptyGroup() throws Exception {
+        final EndpointGroup<SocketAddress> group = EndpointGroup.builder(pool)
+                .endpoint(endpoint1)
+                .build();
+        
+        assertFalse(group.add(endpoint1));
+        
+        // the members snapshot is not affected by the membership changes
+        final List<EndpointGroup.Member<SocketAddress>> members = group.getMembers();
+        assertTrue(group.remove(endpoint1));
+        assertEquals(1, members.size());
+        assertTrue(group.getMembers().isEmpty());
+        assertNull(new LeastOutstandingSelector<SocketAddress>().select(
+                group.getMembers()));
+        
+        try {
+            group.take().get(10, TimeUnit.SECONDS);
+            fail("IOException is expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+}
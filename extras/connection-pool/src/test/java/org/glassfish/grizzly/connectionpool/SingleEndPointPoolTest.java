@@ -62,8 +62,10 @@ import org.glassfish.grizzly.filterchain.FilterChainBuilder;
 import org.glassfish.grizzly.filterchain.FilterChainContext;
 import org.glassfish.grizzly.filterchain.NextAction;
 import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.impl.FutureImpl;
 import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
 import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.glassfish.grizzly.utils.Futures;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -563,4 +565,120 @@ public class SingleEndPointPoolTest {
             transport.shutdownNow();
         }
     }    
+
+    @Test
+    public void testConcurrentTakeRelease() throws Exception {
+        final int maxPoolSize = 4;
+        final int threadsCount = 16;
+        final int iterations = 500;
+        
+        final SingleEndpointPool<SocketAddress> pool = SingleEndpointPool
+                .builder(SocketAddress.class)
+                .maxPoolSize(maxPoolSize)
+                .connectorHandler(transport)
+                .endpointAddress(new InetSocketAddress("localhost", PORT))
+                .build();
+        
+        final Set<Connection> busyConnections =
+                Collections.newSetFromMap(new ConcurrentHashMap<>());
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(threadsCount);
+        
+        try {
+            for (int i = 0; i < threadsCount; i++) {
+                final boolean isAsync = (i % 2) == 0;
+                new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int j = 0; j < iterations; j++) {
+                                final Connection c;
+                                if (isAsync) {
+                                    final FutureImpl<Connection> future =
+                                            Futures.createSafeFuture();
+                                    pool.take(Futures.toCompletionHandler(future));
+                                    c = future.get(10, TimeUnit.SECONDS);
+                                } else {
+                                    c = pool.take().get(10, TimeUnit.SECONDS);
+                                }
+                                
+                                assertTrue("Connection is used concurrently",
+                                        busyConnections.add(c));
+                                assertTrue(pool.size() <= maxPoolSize);
+                                assertTrue(busyConnections.remove(c));
+                                
+                                assertTrue(pool.release(c));
+                            }
+                        } catch (Throwable t) {
+                            error.compareAndSet(null, t);
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                }.start();
+            }
+            
+            assertTrue(latch.await(60, TimeUnit.SECONDS));
+            if (error.get() != null) {
+                throw new AssertionError(error.get());
+            }
+            
+            assertTrue(pool.size() <= maxPoolSize);
+            assertEquals(pool.getOpenConnectionsCount(),
+                    pool.getReadyConnectionsCount());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testReleaseOfClosedConnection() throws Exception {
+        final SingleEndpointPool<SocketAddress> pool = SingleEndpointPool
+                .builder(SocketAddress.class)
+                .connectorHandler(transport)
+                .endpointAddress(new InetSocketAddress("localhost", PORT))
+                .build();
+
+        try {
+            final Connection c1 = pool.take().get(10, TimeUnit.SECONDS);
+            // the connection is looked up by release() and then closed
+            // before it's returned to the ready stripe
+            final ConnectionInfo<SocketAddress> info = pool.getConnectionInfo(c1);
+            c1.close().get(10, TimeUnit.SECONDS);
+            assertFalse(pool.isRegistered(c1));
+
+            assertFalse(pool.release0(info));
+            assertEquals(0, pool.getReadyConnectionsCount());
+            assertEquals(0, pool.size());
+
+            final Connection c2 = pool.take().get(10, TimeUnit.SECONDS);
+            assertNotSame(c1, c2);
+            assertTrue(c2.isOpen());
+            assertTrue(pool.release(c2));
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testReleaseOfDetachedConnection() throws Exception {
+        final SingleEndpointPool<SocketAddress> pool = SingleEndpointPool
+                .builder(SocketAddress.class)
+                .connectorHandler(transport)
+                .endpointAddress(new InetSocketAddress("localhost", PORT))
+                .build();
+
+        try {
+            final Connection c1 = pool.take().get(10, TimeUnit.SECONDS);
+            final ConnectionInfo<SocketAddress> info = pool.getConnectionInfo(c1);
+            assertTrue(pool.detach(c1));
+
+            assertFalse(pool.release0(info));
+            assertEquals(0, pool.getReadyConnectionsCount());
+            assertTrue(c1.isOpen());
+            c1.closeSilently();
+        } finally {
+            pool.close();
+        }
+    }
 }
@@ -174,6 +174,38 @@ public final class ThreadCache {
         }
     }
 
+    /**
+     * Attaches the {@link ObjectCache} to the current {@link Thread}, which
+     * is not a {@link DefaultWorkerThread}.
+     * This way short-living threads, like virtual threads, which execute
+     * a single task each, may share the cached objects with the threads,
+     * which executed the previous tasks, instead of populating their own
+     * caches, which are never reused.
+     *
+     * @param objectCache the {@link ObjectCache} to attach
+     * @return the {@link ObjectCache}, which was attached before, or
+     * <tt>null</tt>
+     */
+    public static ObjectCache attachObjectCache(final ObjectCache objectCache) {
+        assert !(Thread.currentThread() instanceof DefaultWorkerThread);
+        
+        final ObjectCache prevCache = genericCacheAttr.get();
+        genericCacheAttr.set(objectCache);
+        return prevCache;
+    }
+
+    /**
+     * Detaches the {@link ObjectCache} from the current {@link Thread}.
+     *
+     * @return the detached {@link ObjectCache}, or <tt>null</tt>
+     * @see #attachObjectCache(org.glassfish.grizzly.ThreadCache.ObjectCache)
+     */
+    public static ObjectCache detachObjectCache() {
+        final ObjectCache objectCache = genericCacheAttr.get();
+        genericCacheAttr.remove();
+        return objectCache;
+    }
+    
     public static final class ObjectCache {
         private ObjectCacheElement[] objectCacheElements;
 
@@ -0,0 +1,875 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.memory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.monitoring.DefaultMonitoringConfig;
+import org.glassfish.grizzly.monitoring.MonitoringConfig;
+import org.glassfish.grizzly.monitoring.MonitoringUtils;
+
+/**
+ * A {@link MemoryManager} implementation, which allocates direct {@link Buffer}s
+ * from large off-heap arenas.
+ *
+ * Each arena is a single direct {@link ByteBuffer}, which is lazily carved
+ * into fixed size slabs. A slab is bound to a size class on demand and is split
+ * into buffers of the size class's size. Size classes are powers of two between
+ * the min and the max buffer size, so a buffer wastes less than half of its
+ * capacity and, unlike {@link PooledMemoryManager}, mixed-size allocations
+ * are served without preallocating pools per size.
+ *
+ * Released buffers are kept in a small per-thread cache first, and moved to
+ * the size class's shared free list in batches, so the common allocate/release
+ * cycle on the same thread doesn't require any synchronization.
+ * The caches of terminated threads are returned to the shared free lists,
+ * virtual threads don't have a cache.
+ *
+ * The total amount of memory reserved for arenas and for the buffers larger
+ * than the max buffer size is limited by the max memory parameter.
+ * Once the limit is reached, new slabs can't be created and the memory
+ * manager falls back to heap {@link Buffer}s.
+ *
+ * If no explicit configuration is provided, the following defaults will be used:
+ * <ul>
+ *     <li>Max memory: 10% of the max heap size ({@link #DEFAULT_MAX_MEMORY_PERCENTAGE})</li>
+ *     <li>Arena size: 4 MiB ({@link #DEFAULT_ARENA_SIZE})</li>
+ *     <li>Min buffer size: 64 bytes ({@link #DEFAULT_MIN_BUFFER_SIZE})</li>
+ *     <li>Max buffer size, which is also the slab size: 64 KiB ({@link #DEFAULT_MAX_BUFFER_SIZE})</li>
+ *     <li>Per-thread cache size: 64 KiB per size class ({@link #DEFAULT_THREAD_CACHE_SIZE})</li>
+ * </ul>
+ *
+ * Slabs, once bound to a size class, are never returned to the arena, so the
+ * memory manager suits workloads with a stable allocation size distribution.
+ *
+ * @since 2.4.1
+ */
+public class ArenaMemoryManager implements MemoryManager<Buffer>, WrapperAware {
+
+    public static final float DEFAULT_MAX_MEMORY_PERCENTAGE = 0.1f;
+    public static final int DEFAULT_ARENA_SIZE = 4 * 1024 * 1024;
+    public static final int DEFAULT_MIN_BUFFER_SIZE = 64;
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 64 * 1024;
+    public static final int DEFAULT_THREAD_CACHE_SIZE = 64 * 1024;
+
+    // the max number of buffers per size class in the per-thread cache
+    private static final int MAX_THREAD_CACHE_ELEMENTS = 64;
+
+    /**
+     * Basic monitoring support.  Concrete implementations of this class need
+     * only to implement the {@link #createJmxManagementObject()}  method
+     * to plug into the Grizzly 2.0 JMX framework.
+     */
+    protected final DefaultMonitoringConfig<MemoryProbe> monitoringConfig =
+            new DefaultMonitoringConfig<MemoryProbe>(MemoryProbe.class) {
+
+                @Override
+                public Object createManagementObject() {
+                    return createJmxManagementObject();
+                }
+
+            };
+
+    private final long maxMemory;
+    private final int arenaSize;
+    private final int minBufferSize;
+    private final int maxBufferSize;
+    private final int log2MinBufferSize;
+
+    private final SizeClass[] sizeClasses;
+
+    // the memory reserved by arenas and large buffers
+    private final AtomicLong reservedMemory = new AtomicLong();
+
+    // the arena slabs are being carved from
+    private ByteBuffer currentArena;
+    private int arenasCount;
+
+    private final ThreadCacheRegistry<LocalCache> localCache;
+
+    // the leak detector, null if disabled
+    private volatile BufferLeakDetector leakDetector =
+            BufferLeakDetector.getDefault();
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * Creates a new <code>ArenaMemoryManager</code> using the default
+     * configuration.
+     */
+    public ArenaMemoryManager() {
+        this((long) (Runtime.getRuntime().maxMemory() * DEFAULT_MAX_MEMORY_PERCENTAGE),
+                DEFAULT_ARENA_SIZE,
+                DEFAULT_MIN_BUFFER_SIZE,
+                DEFAULT_MAX_BUFFER_SIZE,
+                DEFAULT_THREAD_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a new <code>ArenaMemoryManager</code> using the specified parameters for configuration.
+     *
+     * @param maxMemory the max amount of direct memory (in bytes) this memory manager may reserve
+     */
+    public ArenaMemoryManager(final long maxMemory) {
+        this(maxMemory,
+                DEFAULT_ARENA_SIZE,
+                DEFAULT_MIN_BUFFER_SIZE,
+                DEFAULT_MAX_BUFFER_SIZE,
+                DEFAULT_THREAD_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a new <code>ArenaMemoryManager</code> using the specified parameters for configuration.
+     *
+     * @param maxMemory the max amount of direct memory (in bytes) this memory manager may reserve
+     * @param arenaSize the size of a single arena, must be a multiple of the max buffer size
+     * @param minBufferSize the size of the smallest size class, must be a power of two
+     * @param maxBufferSize the size of the largest size class and the slab size, must be a power of two
+     * @param threadCacheSize the amount of memory (in bytes) per size class
+     *          a thread may keep cached, <tt>0</tt> disables the per-thread cache
+     */
+    public ArenaMemoryManager(final long maxMemory,
+            final int arenaSize,
+            final int minBufferSize,
+            final int maxBufferSize,
+            final int threadCacheSize) {
+        if (minBufferSize <= 0 || maxBufferSize < minBufferSize) {
+            throw new IllegalArgumentException("minBufferSize must be greater than zero and less or equal to maxBufferSize");
+        }
+        if (!isPowerOfTwo(minBufferSize) || !isPowerOfTwo(maxBufferSize)) {
+            throw new IllegalArgumentException("minBufferSize and maxBufferSize must be a power of two");
+        }
+        if (arenaSize < maxBufferSize || arenaSize % maxBufferSize != 0) {
+            throw new IllegalArgumentException("arenaSize must be a multiple of maxBufferSize");
+        }
+        if (maxMemory < arenaSize) {
+            throw new IllegalArgumentException("maxMemory must be greater or equal to arenaSize");
+        }
+        if (threadCacheSize < 0) {
+            throw new IllegalArgumentException("threadCacheSize must be greater or equal to zero");
+        }
+
+        this.maxMemory = maxMemory;
+        this.arenaSize = arenaSize;
+        this.minBufferSize = minBufferSize;
+        this.maxBufferSize = maxBufferSize;
+        this.log2MinBufferSize = Integer.numberOfTrailingZeros(minBufferSize);
+
+        final int sizeClassesCount = Integer.numberOfTrailingZeros(maxBufferSize)
+                - log2MinBufferSize + 1;
+        sizeClasses = new SizeClass[sizeClassesCount];
+        for (int i = 0, size = minBufferSize; i < sizeClassesCount; i++, size <<= 1) {
+            final int localCacheSize = threadCacheSize == 0 ? 0 :
+                    Math.min(MAX_THREAD_CACHE_ELEMENTS,
+                            Math.max(1, threadCacheSize / size));
+            sizeClasses[i] = new SizeClass(this, i, size, localCacheSize);
+        }
+
+        localCache = threadCacheSize == 0 ? null : new ThreadCacheRegistry<LocalCache>() {
+            @Override
+            protected LocalCache createCache() {
+                return new LocalCache(sizeClasses);
+            }
+
+            @Override
+            protected void flush(final LocalCache cache) {
+                cache.flush();
+            }
+        };
+    }
+
+
+    // ---------------------------------------------- Methods from MemoryManager
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Buffer allocate(final int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Requested allocation size must be greater than or equal to zero.");
+        }
+        return allocateAtLeast(size).limit(size);
+    }
+
+    /**
+     * Allocates a buffer of at least the size requested.
+     * <p/>
+     * Keep in mind that the capacity of the buffer may be greater than the
+     * allocation request (up to the size class's size).
+     *
+     * @param size the min {@link Buffer} size to be allocated.
+     * @return a buffer with a capacity of at least the specified <tt>size</tt>.
+     */
+    @Override
+    public Buffer allocateAtLeast(final int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Requested allocation size must be greater than or equal to zero.");
+        }
+
+        if (size == 0) {
+            return Buffers.EMPTY_BUFFER;
+        }
+
+        if (size > maxBufferSize) {
+            return allocateLarge(size);
+        }
+
+        final SizeClass sizeClass = sizeClasses[sizeClassIndex(size)];
+        final LocalCache cache = localCache != null ? localCache.get() : null;
+        ArenaBuffer buffer;
+        if (cache != null) {
+            final ArenaBuffer cachedBuffer = cache.poll(sizeClass);
+            if (cachedBuffer != null) {
+                ProbeNotifier.notifyBufferAllocatedFromThreadCache(
+                        monitoringConfig, sizeClass.bufferSize);
+                return cachedBuffer.prepare();
+            }
+
+            localCache.flushTerminated();
+            buffer = cache.refill(sizeClass);
+            if (buffer == null && localCache.flushTerminatedNow()) {
+                // the terminated threads' caches might have had free buffers
+                buffer = cache.refill(sizeClass);
+            }
+        } else {
+            buffer = sizeClass.poll();
+        }
+
+        if (buffer != null) {
+            ProbeNotifier.notifyBufferAllocatedFromPool(monitoringConfig,
+                    sizeClass.bufferSize);
+            return buffer.prepare();
+        }
+
+        // max memory is reached
+        return allocateHeap(sizeClass.bufferSize);
+    }
+
+    /**
+     * Reallocates an existing buffer to at least the specified size.
+     * If the new size fits the old {@link Buffer}'s capacity - the
+     * {@link Buffer} is resized in place, otherwise the content is copied to
+     * a new {@link Buffer} of the matching size class.
+     *
+     * @param oldBuffer old {@link Buffer} to be reallocated.
+     * @param newSize   new {@link Buffer} required size.
+     *
+     * @return potentially a new buffer of at least the specified size.
+     */
+    @Override
+    public Buffer reallocate(final Buffer oldBuffer, final int newSize) {
+        if (newSize == 0) {
+            oldBuffer.tryDispose();
+            return Buffers.EMPTY_BUFFER;
+        }
+
+        final int curBufSize = oldBuffer.capacity();
+        if (curBufSize >= newSize) {
+            final int pos = Math.min(oldBuffer.position(), newSize);
+            Buffers.setPositionLimit(oldBuffer, pos, newSize);
+            return oldBuffer;
+        }
+
+        final int pos = oldBuffer.position();
+        Buffers.setPositionLimit(oldBuffer, 0, curBufSize);
+
+        final Buffer newBuffer = allocateAtLeast(newSize);
+        newBuffer.put(oldBuffer);
+        Buffers.setPositionLimit(newBuffer, pos, newSize);
+
+        oldBuffer.tryDispose();
+
+        return newBuffer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void release(final Buffer buffer) {
+        buffer.tryDispose();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean willAllocateDirect(final int size) {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MonitoringConfig<MemoryProbe> getMonitoringConfig() {
+        return monitoringConfig;
+    }
+
+
+    // ----------------------------------------------- Methods from WrapperAware
+
+
+    @Override
+    public Buffer wrap(final byte[] data) {
+        return wrap(ByteBuffer.wrap(data));
+    }
+
+    @Override
+    public Buffer wrap(byte[] data, int offset, int length) {
+        return wrap(ByteBuffer.wrap(data, offset, length));
+    }
+
+    @Override
+    public Buffer wrap(final String s) {
+        return wrap(s.getBytes(Charset.defaultCharset()));
+    }
+
+    @Override
+    public Buffer wrap(final String s, final Charset charset) {
+        return wrap(s.getBytes(charset));
+    }
+
+    @Override
+    public Buffer wrap(final ByteBuffer byteBuffer) {
+        return new ByteBufferWrapper(byteBuffer);
+    }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+
+    /**
+     * @return the max amount of direct memory (in bytes) this memory manager
+     *          may reserve
+     */
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * @return the amount of direct memory (in bytes) currently reserved by
+     *          arenas and buffers larger than the max buffer size
+     */
+    public long getReservedMemory() {
+        return reservedMemory.get();
+    }
+
+    /**
+     * @return the number of allocated arenas
+     */
+    public synchronized int getArenasCount() {
+        return arenasCount;
+    }
+
+    public int getArenaSize() {
+        return arenaSize;
+    }
+
+    public int getMinBufferSize() {
+        return minBufferSize;
+    }
+
+    public int getMaxBufferSize() {
+        return maxBufferSize;
+    }
+
+    /**
+     * @return the {@link BufferLeakDetector} used to track the allocated
+     *          buffers, or <tt>null</tt> if the leak detection is disabled
+     */
+    public BufferLeakDetector getLeakDetector() {
+        return leakDetector;
+    }
+
+    /**
+     * Sets the {@link BufferLeakDetector} to be used to track the allocated
+     * buffers, <tt>null</tt> disables the leak detection.
+     * By default {@link BufferLeakDetector#getDefault()} is used.
+     *
+     * @param leakDetector the {@link BufferLeakDetector}
+     */
+    public void setLeakDetector(final BufferLeakDetector leakDetector) {
+        this.leakDetector = leakDetector;
+    }
+
+
+    // ------------------------------------------------------- Protected Methods
+
+
+    protected Object createJmxManagementObject() {
+        return MonitoringUtils.loadJmxObject(
+                "org.glassfish.grizzly.memory.jmx.ArenaMemoryManager", this,
+                ArenaMemoryManager.class);
+    }
+
+    SizeClass[] getSizeClasses() {
+        return Arrays.copyOf(sizeClasses, sizeClasses.length);
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private int sizeClassIndex(final int size) {
+        return size <= minBufferSize
+                ? 0
+                : 32 - Integer.numberOfLeadingZeros(size - 1) - log2MinBufferSize;
+    }
+
+    /**
+     * Carves a new slab out of the current arena, allocating a new arena
+     * if needed.
+     *
+     * @return the slab or <tt>null</tt>, if max memory is reached
+     */
+    private synchronized ByteBuffer allocateSlab() {
+        if (currentArena == null || !currentArena.hasRemaining()) {
+            if (!reserve(arenaSize)) {
+                return null;
+            }
+
+            currentArena = ByteBuffer.allocateDirect(arenaSize);
+            arenasCount++;
+            ProbeNotifier.notifyBufferAllocated(monitoringConfig, arenaSize);
+        }
+
+        final int slabStart = currentArena.position();
+        currentArena.limit(slabStart + maxBufferSize);
+        final ByteBuffer slab = currentArena.slice();
+        Buffers.setPositionLimit(currentArena, slabStart + maxBufferSize,
+                currentArena.capacity());
+
+        return slab;
+    }
+
+    private Buffer allocateLarge(final int size) {
+        if (!reserve(size)) {
+            return allocateHeap(size);
+        }
+
+        ProbeNotifier.notifyBufferAllocated(monitoringConfig, size);
+        return new ArenaBuffer(ByteBuffer.allocateDirect(size), this, null)
+                .prepare();
+    }
+
+    private Buffer allocateHeap(final int size) {
+        ProbeNotifier.notifyPoolDepleted(monitoringConfig);
+        ProbeNotifier.notifyBufferAllocated(monitoringConfig, size);
+
+        final Buffer buffer = new ByteBufferWrapper(ByteBuffer.allocate(size));
+        buffer.allowBufferDispose(true);
+        return buffer;
+    }
+
+    private boolean reserve(final int size) {
+        for (;;) {
+            final long reserved = reservedMemory.get();
+            if (reserved + size > maxMemory) {
+                return false;
+            }
+
+            if (reservedMemory.compareAndSet(reserved, reserved + size)) {
+                return true;
+            }
+        }
+    }
+
+    private void returnBuffer(final ArenaBuffer buffer) {
+        final SizeClass sizeClass = buffer.sizeClass;
+        if (sizeClass == null) {
+            // large buffer
+            reservedMemory.addAndGet(-buffer.visible.capacity());
+            return;
+        }
+
+        final LocalCache cache = localCache != null ? localCache.get() : null;
+        if (cache != null) {
+            cache.offer(sizeClass, buffer);
+            ProbeNotifier.notifyBufferReleasedToThreadCache(monitoringConfig,
+                    sizeClass.bufferSize);
+        } else {
+            sizeClass.offer(buffer);
+            ProbeNotifier.notifyBufferReleasedToPool(monitoringConfig,
+                    sizeClass.bufferSize);
+        }
+    }
+
+    private static boolean isPowerOfTwo(final int valueToCheck) {
+        return ((valueToCheck & (valueToCheck - 1)) == 0);
+    }
+
+
+    // ---------------------------------------------------------- Nested Classes
+
+
+    /**
+     * The shared free list of the buffers of the same size.
+     */
+    static final class SizeClass {
+        private final ArenaMemoryManager owner;
+        private final int index;
+        private final int bufferSize;
+        private final int localCacheSize;
+
+        private ArenaBuffer[] freeBuffers = new ArenaBuffer[16];
+        private int freeBuffersCount;
+        private int slabsCount;
+
+        SizeClass(final ArenaMemoryManager owner, final int index,
+                final int bufferSize, final int localCacheSize) {
+            this.owner = owner;
+            this.index = index;
+            this.bufferSize = bufferSize;
+            this.localCacheSize = localCacheSize;
+        }
+
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        public synchronized int getFreeBuffersCount() {
+            return freeBuffersCount;
+        }
+
+        public synchronized int getSlabsCount() {
+            return slabsCount;
+        }
+
+        synchronized ArenaBuffer poll() {
+            if (freeBuffersCount == 0 && !addSlab()) {
+                return null;
+            }
+
+            final ArenaBuffer buffer = freeBuffers[--freeBuffersCount];
+            freeBuffers[freeBuffersCount] = null;
+            return buffer;
+        }
+
+        synchronized void offer(final ArenaBuffer buffer) {
+            ensureCapacity(1);
+            freeBuffers[freeBuffersCount++] = buffer;
+        }
+
+        /**
+         * Moves up to <tt>max</tt> free buffers to the <tt>dst</tt> array.
+         *
+         * @return the number of moved buffers
+         */
+        synchronized int pollBatch(final ArenaBuffer[] dst, final int max) {
+            if (freeBuffersCount == 0 && !addSlab()) {
+                return 0;
+            }
+
+            final int count = Math.min(max, freeBuffersCount);
+            freeBuffersCount -= count;
+            System.arraycopy(freeBuffers, freeBuffersCount, dst, 0, count);
+            Arrays.fill(freeBuffers, freeBuffersCount, freeBuffersCount + count, null);
+            return count;
+        }
+
+        /**
+         * Moves <tt>count</tt> buffers from the <tt>src</tt> array, starting
+         * at the <tt>offset</tt>, to the free list.
+         */
+        synchronized void offerBatch(final ArenaBuffer[] src, final int offset,
+                final int count) {
+            ensureCapacity(count);
+            System.arraycopy(src, offset, freeBuffers, freeBuffersCount, count);
+            freeBuffersCount += count;
+        }
+
+        private boolean addSlab() {
+            final ByteBuffer slab = owner.allocateSlab();
+            if (slab == null) {
+                return false;
+            }
+
+            final int count = slab.capacity() / bufferSize;
+            ensureCapacity(count);
+            for (int i = 0; i < count; i++) {
+                Buffers.setPositionLimit(slab, i * bufferSize, (i + 1) * bufferSize);
+                freeBuffers[freeBuffersCount++] =
+                        new ArenaBuffer(slab.slice(), owner, this);
+            }
+
+            slabsCount++;
+            return true;
+        }
+
+        private void ensureCapacity(final int count) {
+            if (freeBuffersCount + count > freeBuffers.length) {
+                freeBuffers = Arrays.copyOf(freeBuffers, Math.max(
+                        freeBuffers.length << 1, freeBuffersCount + count));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "SizeClass[" + Integer.toHexString(hashCode()) + "] {" +
+                    "buffer size=" + bufferSize +
+                    ", slabs count=" + getSlabsCount() +
+                    ", free buffers count=" + getFreeBuffersCount() +
+                    '}';
+        }
+    }
+
+    /**
+     * Per-thread cache of the free buffers. Buffers are moved from and to the
+     * shared {@link SizeClass} free lists in batches of half of the cache size.
+     */
+    private static final class LocalCache {
+        private final SizeClass[] sizeClasses;
+        private final ArenaBuffer[][] buffers;
+        private final int[] counts;
+
+        LocalCache(final SizeClass[] sizeClasses) {
+            this.sizeClasses = sizeClasses;
+            buffers = new ArenaBuffer[sizeClasses.length][];
+            counts = new int[sizeClasses.length];
+            for (int i = 0; i < sizeClasses.length; i++) {
+                buffers[i] = new ArenaBuffer[sizeClasses[i].localCacheSize];
+            }
+        }
+
+        ArenaBuffer poll(final SizeClass sizeClass) {
+            final int idx = sizeClass.index;
+            int count = counts[idx];
+            if (count == 0) {
+                return null;
+            }
+
+            final ArenaBuffer[] cache = buffers[idx];
+            final ArenaBuffer buffer = cache[--count];
+            cache[count] = null;
+            counts[idx] = count;
+            return buffer;
+        }
+
+        /**
+         * Refills the empty cache from the shared free list.
+         *
+         * @return one of the buffers taken from the shared free list, or
+         *          <tt>null</tt> if max memory is reached
+         */
+        ArenaBuffer refill(final SizeClass sizeClass) {
+            final int idx = sizeClass.index;
+            final ArenaBuffer[] cache = buffers[idx];
+            final int count = sizeClass.pollBatch(cache,
+                    Math.max(1, cache.length >> 1));
+            if (count == 0) {
+                return null;
+            }
+
+            counts[idx] = count;
+            return poll(sizeClass);
+        }
+
+        void offer(final SizeClass sizeClass, final ArenaBuffer buffer) {
+            final int idx = sizeClass.index;
+            final ArenaBuffer[] cache = buffers[idx];
+            int count = counts[idx];
+            if (count == cache.length) {
+                // flush the older half of the cache
+                final int flushCount = Math.max(1, count >> 1);
+                sizeClass.offerBatch(cache, 0, flushCount);
+                System.arraycopy(cache, flushCount, cache, 0, count - flushCount);
+                count -= flushCount;
+                Arrays.fill(cache, count, cache.length, null);
+            }
+
+            cache[count++] = buffer;
+            counts[idx] = count;
+        }
+
+        /**
+         * Returns all the cached buffers to the shared free lists.
+         */
+        void flush() {
+            for (int i = 0; i < sizeClasses.length; i++) {
+                final int count = counts[i];
+                if (count > 0) {
+                    sizeClasses[i].offerBatch(buffers[i], 0, count);
+                    Arrays.fill(buffers[i], 0, count, null);
+                    counts[i] = 0;
+                }
+            }
+        }
+    }
+
+    private static final class ArenaBuffer extends ByteBufferWrapper {
+
+        // The memory manager this Buffer instance will be returned to.
+        private final ArenaMemoryManager mm;
+
+        // The size class this Buffer belongs to, or null for large buffers
+        // and 'child' buffers.
+        private final SizeClass sizeClass;
+
+        // When this Buffer instance resides in the pool, this flag will
+        // be true.
+        boolean free;
+
+        // represents the number of 'child' buffers that have been created using
+        // this as the foundation.  This source buffer can't be returned
+        // to the pool unless this value is zero.
+        private final AtomicInteger shareCount;
+
+        // represents the original buffer from the pool.
+        private final ArenaBuffer source;
+
+        // Used for the special case of the split() method.  This maintains
+        // the original ByteBuffer, which must ultimately be returned.
+        private final ByteBuffer origVisible;
+
+        // tracks the buffer, if it was sampled by the leak detector
+        private BufferLeakDetector.LeakTracker leakTracker;
+
+        private ArenaBuffer(final ByteBuffer underlyingByteBuffer,
+                final ArenaMemoryManager mm, final SizeClass sizeClass) {
+            this(underlyingByteBuffer, mm, sizeClass, null, new AtomicInteger());
+        }
+
+        private ArenaBuffer(final ByteBuffer underlyingByteBuffer,
+                final ArenaMemoryManager mm,
+                final SizeClass sizeClass,
+                final ArenaBuffer source,
+                final AtomicInteger shareCount) {
+            super(underlyingByteBuffer);
+
+            this.mm = mm;
+            this.sizeClass = sizeClass;
+            this.shareCount = shareCount;
+            this.source = source != null ? source : this;
+
+            this.origVisible = this.source.visible;
+        }
+
+        ArenaBuffer prepare() {
+            allowBufferDispose = true;
+            free = false;
+
+            final BufferLeakDetector detector = mm.leakDetector;
+            if (detector != null) {
+                leakTracker = detector.track(this, visible.capacity(),
+                        mm.monitoringConfig);
+            }
+
+            return this;
+        }
+
+        @Override
+        public void dispose() {
+            if (free) {
+                return;
+            }
+            free = true;
+
+            dispose0();
+        }
+
+        private void dispose0() {
+            // check shared counter optimistically
+            boolean isNotShared = shareCount.get() == 0;
+            if (!isNotShared) {
+                // try pessimistic check using CAS loop
+                isNotShared = (shareCount.getAndDecrement() == 0);
+                if (isNotShared) {
+                    // if the former check is true - the shared counter is negative,
+                    // so we have to reset it
+                    shareCount.set(0);
+                }
+            }
+
+            if (isNotShared) {
+                // we can now safely return source back to the memory manager
+                source.returnToPool();
+            }
+        }
+
+        @Override
+        protected ByteBufferWrapper wrapByteBuffer(final ByteBuffer buffer) {
+            final ArenaBuffer b = new ArenaBuffer(buffer, mm,
+                    null, // child buffers are never returned to the pool
+                    source, // pass the 'parent' buffer along
+                    shareCount); // pass the shareCount
+            b.allowBufferDispose(true);
+            shareCount.incrementAndGet();
+
+            return b;
+        }
+
+        /**
+         * Override the default implementation to check the <tt>free</tt> status
+         * of this buffer (i.e., once released, operations on the buffer will no
+         * longer succeed).
+         */
+        @Override
+        protected void checkDispose() {
+            if (free) {
+                throw new IllegalStateException(
+                        "ArenaBuffer has already been disposed",
+                        disposeStackTrace);
+            }
+        }
+
+        private void returnToPool() {
+            // should be called on "source" only
+            if (leakTracker != null) {
+                leakTracker.close();
+                leakTracker = null;
+            }
+
+            visible = origVisible;
+            visible.clear();
+            mark = -1;
+            mm.returnBuffer(this);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.memory;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.monitoring.DefaultMonitoringConfig;
+
+/**
+ * Sampling detector of the pooled {@link org.glassfish.grizzly.Buffer}s,
+ * which were never disposed.
+ * 
+ * For a configured fraction of the allocated buffers the detector records the
+ * allocation stack trace and tracks the buffer using a {@link PhantomReference}.
+ * If the buffer gets garbage collected before it's returned to the pool,
+ * the leak is logged and reported to the {@link MemoryManager}'s
+ * {@link MemoryProbe}s (see {@link MemoryProbe#onBufferLeakEvent(int, Throwable)}).
+ * The garbage collected trackers are checked on every allocation made by
+ * a memory manager using the detector, or explicitly using {@link #reportLeaks()}.
+ * 
+ * The detector is supported by {@link PooledMemoryManager} and
+ * {@link ArenaMemoryManager}. By default it's disabled, the default detector
+ * could be enabled using the {@value #SAMPLING_RATE_PROPERTY} system property,
+ * for example <tt>-Dorg.glassfish.grizzly.memory.BufferLeakDetector.sampling-rate=0.01</tt>
+ * will track 1% of the allocated buffers.
+ * 
+ * @since 2.4.1
+ */
+public class BufferLeakDetector {
+    private static final Logger LOGGER = Grizzly.logger(BufferLeakDetector.class);
+
+    public static final String SAMPLING_RATE_PROPERTY =
+            BufferLeakDetector.class.getName() + ".sampling-rate";
+    
+    private static final String MEMORY_PACKAGE = "org.glassfish.grizzly.memory.";
+    
+    private static final BufferLeakDetector DEFAULT_DETECTOR = createDefault();
+    
+    private final float samplingRate;
+    
+    // track every N-th buffer on average
+    private final int samplingInterval;
+    
+    private final ReferenceQueue<Object> referenceQueue = new ReferenceQueue<Object>();
+    
+    // keeps the trackers reachable until the buffer is either disposed or collected
+    private final Set<LeakTracker> trackers = Collections.newSetFromMap(
+            new ConcurrentHashMap<LeakTracker, Boolean>());
+    
+    private final AtomicLong leaksCount = new AtomicLong();
+
+    /**
+     * @param samplingRate the fraction of the allocated buffers to be tracked,
+     *          must be greater than zero and less or equal to 1
+     */
+    public BufferLeakDetector(final float samplingRate) {
+        if (samplingRate <= 0.0f || samplingRate > 1.0f) {
+            throw new IllegalArgumentException("samplingRate must be greater than zero and less or equal to 1");
+        }
+        
+        this.samplingRate = samplingRate;
+        this.samplingInterval = Math.max(1, Math.round(1 / samplingRate));
+    }
+
+    /**
+     * @return the default detector configured by the
+     *          {@value #SAMPLING_RATE_PROPERTY} system property, or
+     *          <tt>null</tt> if the leak detection is disabled
+     */
+    public static BufferLeakDetector getDefault() {
+        return DEFAULT_DETECTOR;
+    }
+    
+    /**
+     * @return the fraction of the allocated buffers being tracked
+     */
+    public float getSamplingRate() {
+        return samplingRate;
+    }
+
+    /**
+     * @return the total number of the detected leaks
+     */
+    public long getLeaksCount() {
+        return leaksCount.get();
+    }
+    
+    /**
+     * @return the number of the allocated buffers being currently tracked
+     */
+    public int getTrackedBuffersCount() {
+        return trackers.size();
+    }
+    
+    /**
+     * Checks the garbage collected buffers, which haven't been disposed,
+     * and reports them as leaks.
+     * 
+     * @return the number of the detected leaks
+     */
+    public int reportLeaks() {
+        int count = 0;
+        LeakTracker tracker;
+        while ((tracker = (LeakTracker) referenceQueue.poll()) != null) {
+            if (trackers.remove(tracker)) {
+                count++;
+                leaksCount.incrementAndGet();
+                
+                if (LOGGER.isLoggable(Level.WARNING)) {
+                    LOGGER.log(Level.WARNING,
+                            "Buffer of size {0} was garbage collected without being disposed. Leak site: {1}",
+                            new Object[] {tracker.size,
+                                getAllocationSite(tracker.allocationTrace)});
+                    LOGGER.log(Level.FINE, "Leaked buffer allocation trace",
+                            tracker.allocationTrace);
+                }
+                
+                ProbeNotifier.notifyBufferLeak(tracker.monitoringConfig,
+                        tracker.size, tracker.allocationTrace);
+            }
+        }
+        
+        return count;
+    }
+
+    /**
+     * Returns the allocation site of the leaked buffer - the first stack trace
+     * element, which doesn't belong to the {@link MemoryManager} code.
+     * 
+     * @param allocationTrace the leaked buffer allocation trace
+     * @return the allocation site
+     */
+    public static String getAllocationSite(final Throwable allocationTrace) {
+        final StackTraceElement[] elements = allocationTrace.getStackTrace();
+        for (StackTraceElement element : elements) {
+            if (!isMemoryManagerFrame(element.getClassName())) {
+                return element.toString();
+            }
+        }
+        
+        return elements.length > 0 ? elements[elements.length - 1].toString() : "unknown";
+    }
+    
+    /**
+     * Starts tracking the allocated buffer, if it's sampled.
+     * 
+     * @param buffer the allocated buffer
+     * @param size the buffer size
+     * @param monitoringConfig the {@link MemoryProbe}s to be notified about the leak
+     * @return the {@link LeakTracker}, which has to be closed, once the buffer
+     *          is disposed, or <tt>null</tt> if the buffer isn't tracked
+     */
+    LeakTracker track(final Object buffer, final int size,
+            final DefaultMonitoringConfig<MemoryProbe> monitoringConfig) {
+        reportLeaks();
+        
+        if (samplingInterval > 1 &&
+                ThreadLocalRandom.current().nextInt(samplingInterval) != 0) {
+            return null;
+        }
+        
+        final LeakTracker tracker = new LeakTracker(buffer, size,
+                monitoringConfig, new Throwable("Buffer allocation trace"));
+        trackers.add(tracker);
+        
+        return tracker;
+    }
+    
+    private static boolean isMemoryManagerFrame(final String className) {
+        if (!className.startsWith(MEMORY_PACKAGE)) {
+            return false;
+        }
+        
+        final int nestedIdx = className.indexOf('$');
+        final String topLevelName = className.substring(MEMORY_PACKAGE.length(),
+                nestedIdx != -1 ? nestedIdx : className.length());
+        
+        return topLevelName.endsWith("MemoryManager")
+                || topLevelName.equals("BufferLeakDetector")
+                || topLevelName.equals("Buffers");
+    }
+    
+    private static BufferLeakDetector createDefault() {
+        final String samplingRate = System.getProperty(SAMPLING_RATE_PROPERTY);
+        if (samplingRate == null) {
+            return null;
+        }
+        
+        try {
+            final float rate = Float.parseFloat(samplingRate);
+            return rate > 0 ? new BufferLeakDetector(Math.min(rate, 1.0f)) : null;
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Invalid " + SAMPLING_RATE_PROPERTY
+                    + " value: " + samplingRate, e);
+            return null;
+        }
+    }
+    
+    /**
+     * Tracks a single allocated buffer.
+     */
+    final class LeakTracker extends PhantomReference<Object> {
+        private final int size;
+        private final DefaultMonitoringConfig<MemoryProbe> monitoringConfig;
+        private final Throwable allocationTrace;
+
+        private LeakTracker(final Object buffer, final int size,
+                final DefaultMonitoringConfig<MemoryProbe> monitoringConfig,
+                final Throwable allocationTrace) {
+            super(buffer, referenceQueue);
+            this.size = size;
+            this.monitoringConfig = monitoringConfig;
+            this.allocationTrace = allocationTrace;
+        }
+        
+        /**
+         * Stops tracking the buffer, must be called once the buffer is disposed.
+         */
+        void close() {
+            if (trackers.remove(this)) {
+                clear();
+            }
+        }
+    }
+}
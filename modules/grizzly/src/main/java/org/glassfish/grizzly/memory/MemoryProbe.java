@@ -80,6 +80,43 @@ public interface MemoryProbe {
      */
     public void onPoolRestoredToFullEvent();
 
+    /**
+     * Called by {@link MemoryManager}, when buffer gets allocated from the
+     * current thread's cache of the recently released buffers, without
+     * accessing the shared pool.
+     * Note: These events are currently only implemented for PooledMemoryManager
+     * and ArenaMemoryManager probes.
+     *
+     * @param size buffer size
+     *
+     * @since 2.4.1
+     */
+    public void onBufferAllocateFromThreadCacheEvent(int size);
+
+    /**
+     * Called by {@link MemoryManager}, when buffer gets released into the
+     * current thread's cache.
+     * Note: These events are currently only implemented for PooledMemoryManager
+     * and ArenaMemoryManager probes.
+     *
+     * @param size buffer size
+     *
+     * @since 2.4.1
+     */
+    public void onBufferReleaseToThreadCacheEvent(int size);
+
+    /**
+     * Called by {@link MemoryManager}, when a pooled buffer, tracked by
+     * {@link BufferLeakDetector}, was garbage collected without being disposed.
+     *
+     * @param size buffer size
+     * @param allocationTrace the buffer allocation stack trace
+     *
+     * @see BufferLeakDetector#getAllocationSite(Throwable)
+     * @since 2.4.1
+     */
+    public void onBufferLeakEvent(int size, Throwable allocationTrace);
+
 
     // ---------------------------------------------------------- Nested Classes
 
@@ -124,5 +161,23 @@ public interface MemoryProbe {
          */
         public void onPoolRestoredToFullEvent() {}
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onBufferAllocateFromThreadCacheEvent(int size) {}
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onBufferReleaseToThreadCacheEvent(int size) {}
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onBufferLeakEvent(int size, Throwable allocationTrace) {}
+
     } // END Adapter
 }
@@ -67,6 +67,7 @@ import org.glassfish.grizzly.monitoring.MonitoringUtils;
  *     <li>The percentage of the heap that this manager will use when populating the pools</li>
  *     <li>The percentage of buffers to be pre-allocated during MemoryManager initialization</li>
  *     <li>The flag indicating whether direct or heap based {@link Buffer}s will be allocated</li>
+ *     <li>The max number of recently released buffers per pool, which a thread may keep in its local cache</li>
  * </ul>
  *
  * If no explicit configuration is provided, the following defaults will be used:
@@ -78,11 +79,20 @@ import org.glassfish.grizzly.monitoring.MonitoringUtils;
  *     <li>Percentage of heap: 3% ({@link #DEFAULT_HEAP_USAGE_PERCENTAGE})</li>
  *     <li>Percentage of buffers to be pre-allocated: 100% ({@link #DEFAULT_PREALLOCATED_BUFFERS_PERCENTAGE})</li>
  *     <li>Heap based {@link Buffer}s will be allocated</li>
+ *     <li>Thread local cache size: 0 ({@link #DEFAULT_THREAD_CACHE_SIZE}), the cache is disabled</li>
  * </ul>
  *
  * The main advantage of this manager over {@link org.glassfish.grizzly.memory.HeapMemoryManager} or
- * {@link org.glassfish.grizzly.memory.ByteBufferManager} is that this implementation doesn't use ThreadLocal pools
- * and as such, doesn't suffer from the memory fragmentation/reallocation cycle that can impact the ThreadLocal versions.
+ * {@link org.glassfish.grizzly.memory.ByteBufferManager} is that the buffers are owned by the shared pools rather
+ * than by ThreadLocal pools, and as such, this implementation doesn't suffer from the memory
+ * fragmentation/reallocation cycle that can impact the ThreadLocal versions.
+ *
+ * Optionally, each thread may keep a small stack of recently released buffers
+ * per pool, so the allocate/release cycle of the same buffer size on the same
+ * thread doesn't touch the shared pool slices. Once a thread's cache is full,
+ * the older half of it is returned to the buffers' pool slices. The caches of
+ * terminated threads are returned to the pool slices as well, virtual threads
+ * don't have a cache.
  *
  * @since 2.3.11
  */
@@ -94,6 +104,8 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
     
     public static final float DEFAULT_HEAP_USAGE_PERCENTAGE = 0.03f;
     public static final float DEFAULT_PREALLOCATED_BUFFERS_PERCENTAGE = 1.0f;
+    public static final int DEFAULT_THREAD_CACHE_SIZE = Integer.getInteger(
+            PooledMemoryManager.class.getName() + ".thread-cache-size", 0);
     
     private static final boolean FORCE_BYTE_BUFFER_BASED_BUFFERS =
             Boolean.getBoolean(PooledMemoryManager.class + ".force-byte-buffer-based-buffers");
@@ -121,6 +133,9 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
     // the max buffer size pooled by this memory manager
     private final int maxPooledBufferSize;
 
+    // the max number of buffers per pool in a thread local cache
+    private final int threadCacheSize;
+
 
     // ------------------------------------------------------------ Constructors
 
@@ -161,7 +176,7 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
                 DEFAULT_PREALLOCATED_BUFFERS_PERCENTAGE,
                 isDirect);
     }
-    
+
     /**
      * Creates a new <code>PooledMemoryManager</code> using the specified parameters for configuration.
      *
@@ -181,6 +196,35 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
             final float percentOfHeap,
             final float percentPreallocated,
             final boolean isDirect) {
+        this(baseBufferSize, numberOfPools, growthFactor, numberOfPoolSlices,
+                percentOfHeap, percentPreallocated, isDirect,
+                DEFAULT_THREAD_CACHE_SIZE);
+    }
+    
+    /**
+     * Creates a new <code>PooledMemoryManager</code> using the specified parameters for configuration.
+     *
+     * @param baseBufferSize the base size of the buffer for the 1st pool, every next pool n will have buffer size equal to bufferSize(n-1) * 2^growthFactor
+     * @param numberOfPools the number of pools, responsible for allocation of buffers of a pool-specific size
+     * @param growthFactor the buffer size growth factor, that defines 2^x multiplier, used to calculate buffer size for next allocated pool
+     * @param numberOfPoolSlices the number of pool slices that every pool will stripe allocation requests across
+     * @param percentOfHeap percentage of the heap that will be used when populating the pools
+     * @param percentPreallocated percentage of buffers to be pre-allocated during MemoryManager initialization
+     * @param isDirect flag, indicating whether direct or heap based {@link Buffer}s will be allocated
+     * @param threadCacheSize the max number of released buffers per pool a thread may keep in its local cache,
+     *                        <tt>0</tt> disables the thread local cache
+     *
+     * @since 2.4.1
+     */
+    public PooledMemoryManager(
+            final int baseBufferSize,
+            final int numberOfPools,
+            final int growthFactor,
+            final int numberOfPoolSlices,
+            final float percentOfHeap,
+            final float percentPreallocated,
+            final boolean isDirect,
+            final int threadCacheSize) {
         if (baseBufferSize <= 0) {
             throw new IllegalArgumentException("baseBufferSize must be greater than zero");
         }
@@ -209,6 +253,10 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
             throw new IllegalArgumentException("percentPreallocated must be greater or equal to zero and less or equal to 1");
         }
 
+        if (threadCacheSize < 0) {
+            throw new IllegalArgumentException("threadCacheSize must be greater or equal to zero");
+        }
+
         final long heapSize = Runtime.getRuntime().maxMemory();
         final long memoryPerSubPool = (long) (heapSize * percentOfHeap / numberOfPools);
 
@@ -216,9 +264,10 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         for (int i = 0, bufferSize = baseBufferSize; i < numberOfPools; i++, bufferSize <<= growthFactor) {
             pools[i] = new Pool(bufferSize, memoryPerSubPool,
                     numberOfPoolSlices, percentPreallocated, isDirect,
-                    monitoringConfig);
+                    threadCacheSize, monitoringConfig);
         }
         maxPooledBufferSize = pools[numberOfPools - 1].bufferSize;
+        this.threadCacheSize = threadCacheSize;
     }
 
     
@@ -363,6 +412,43 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
     }
 
 
+    /**
+     * @return the max number of released buffers per pool a thread may keep
+     *          in its local cache, <tt>0</tt> means the thread local cache is disabled
+     *
+     * @since 2.4.1
+     */
+    public int getThreadCacheSize() {
+        return threadCacheSize;
+    }
+
+
+    /**
+     * @return the {@link BufferLeakDetector} used to track the allocated
+     *          buffers, or <tt>null</tt> if the leak detection is disabled
+     *
+     * @since 2.4.1
+     */
+    public BufferLeakDetector getLeakDetector() {
+        return pools[0].leakDetector;
+    }
+
+    /**
+     * Sets the {@link BufferLeakDetector} to be used to track the allocated
+     * buffers, <tt>null</tt> disables the leak detection.
+     * By default {@link BufferLeakDetector#getDefault()} is used.
+     *
+     * @param leakDetector the {@link BufferLeakDetector}
+     *
+     * @since 2.4.1
+     */
+    public void setLeakDetector(final BufferLeakDetector leakDetector) {
+        for (Pool pool : pools) {
+            pool.leakDetector = leakDetector;
+        }
+    }
+
+
     // ----------------------------------------------- Methods from WrapperAware
 
 
@@ -487,11 +573,34 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         private final PoolSlice[] slices;
         private final int bufferSize;
 
+        // thread local caches of the released buffers, null if disabled
+        private final ThreadCacheRegistry<Magazine> threadCache;
+
+        // MemoryProbe configuration.
+        private final DefaultMonitoringConfig<MemoryProbe> monitoringConfig;
+
+        // the leak detector, null if disabled
+        private volatile BufferLeakDetector leakDetector =
+                BufferLeakDetector.getDefault();
+
         public Pool(final int bufferSize, final long memoryPerSubPool,
                 final int numberOfPoolSlices, final float percentPreallocated,
-                final boolean isDirect,
+                final boolean isDirect, final int threadCacheSize,
                 final DefaultMonitoringConfig<MemoryProbe> monitoringConfig) {
             this.bufferSize = bufferSize;
+            this.monitoringConfig = monitoringConfig;
+            this.threadCache = threadCacheSize == 0 ? null :
+                    new ThreadCacheRegistry<Magazine>() {
+                        @Override
+                        protected Magazine createCache() {
+                            return new Magazine(threadCacheSize);
+                        }
+
+                        @Override
+                        protected void flush(final Magazine magazine) {
+                            magazine.flush();
+                        }
+                    };
             slices = new PoolSlice[numberOfPoolSlices];
             final long memoryPerSlice = memoryPerSubPool / numberOfPoolSlices;
             
@@ -523,10 +632,34 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         }
         
         public Buffer allocate() {
-            final PoolSlice slice = getSlice();
-            PoolBuffer b = slice.poll();
+            PoolBuffer b = null;
+            final Magazine magazine = threadCache != null ? threadCache.get() : null;
+            if (magazine != null) {
+                b = magazine.poll();
+                if (b != null) {
+                    ProbeNotifier.notifyBufferAllocatedFromThreadCache(
+                            monitoringConfig, bufferSize);
+                } else {
+                    threadCache.flushTerminated();
+                }
+            }
+
             if (b == null) {
-                b = slice.allocate();
+                final PoolSlice slice = getSlice();
+                b = slice.poll();
+                if (b == null && magazine != null
+                        && threadCache.flushTerminatedNow()) {
+                    // the terminated threads' caches might have had free buffers
+                    b = slice.poll();
+                }
+                if (b == null) {
+                    b = slice.allocate();
+                }
+            }
+
+            final BufferLeakDetector detector = leakDetector;
+            if (detector != null) {
+                b.leakTracker(detector.track(b, bufferSize, monitoringConfig));
             }
             
             return b.prepare();
@@ -552,12 +685,80 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
             return sb.toString();
         }
         
+        /**
+         * Returns the released {@link PoolBuffer} to the current thread's
+         * cache, or, if the cache is disabled, to the buffer's pool slice.
+         */
+        void release(final PoolBuffer b) {
+            b.leakTracker(null);
+
+            final Magazine magazine = threadCache != null ? threadCache.get() : null;
+            if (magazine != null) {
+                magazine.offer(b);
+                ProbeNotifier.notifyBufferReleasedToThreadCache(
+                        monitoringConfig, bufferSize);
+                return;
+            }
+
+            b.owner().offer(b);
+        }
+
         @SuppressWarnings("unchecked")
         private PoolSlice getSlice() {
             return slices[ThreadLocalRandom.current().nextInt(slices.length)];
         }
     }
 
+    /**
+     * The stack of the recently released buffers of the same {@link Pool}
+     * kept by a thread.
+     */
+    private static final class Magazine {
+        private final PoolBuffer[] buffers;
+        private int count;
+
+        Magazine(final int size) {
+            buffers = new PoolBuffer[size];
+        }
+
+        PoolBuffer poll() {
+            if (count == 0) {
+                return null;
+            }
+
+            final PoolBuffer b = buffers[--count];
+            buffers[count] = null;
+            return b;
+        }
+
+        void offer(final PoolBuffer b) {
+            if (count == buffers.length) {
+                // the cache is full - return the older half to the pool slices
+                final int spillCount = Math.max(1, count >> 1);
+                for (int i = 0; i < spillCount; i++) {
+                    buffers[i].owner().offer(buffers[i]);
+                }
+
+                System.arraycopy(buffers, spillCount, buffers, 0, count - spillCount);
+                count -= spillCount;
+                Arrays.fill(buffers, count, buffers.length, null);
+            }
+
+            buffers[count++] = b;
+        }
+
+        /**
+         * Returns all the cached buffers to their pool slices.
+         */
+        void flush() {
+            for (int i = 0; i < count; i++) {
+                buffers[i].owner().offer(buffers[i]);
+                buffers[i] = null;
+            }
+            count = 0;
+        }
+    }
+
     /*
      *   This array backed by this pool can only support
      *   2^30-1 elements instead of the usual 2^32-1.
@@ -914,6 +1115,11 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         PoolBuffer free(boolean free);
 
         PoolSlice owner();
+
+        /**
+         * Sets the buffer's leak tracker, closing the previous one, if any.
+         */
+        void leakTracker(BufferLeakDetector.LeakTracker leakTracker);
     }
     
     private static final class PoolHeapBuffer extends HeapBuffer
@@ -935,6 +1141,9 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         // non-null in any 'child' buffers created from the original.
         protected final PoolHeapBuffer source;
 
+        // tracks the buffer, if it was sampled by the leak detector
+        private BufferLeakDetector.LeakTracker leakTracker;
+
         
         // ------------------------------------------------------------ Constructors
 
@@ -1008,6 +1217,15 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
             this.free = free;
             return this;
         }
+
+        @Override
+        public void leakTracker(final BufferLeakDetector.LeakTracker leakTracker) {
+            if (this.leakTracker != null) {
+                this.leakTracker.close();
+            }
+
+            this.leakTracker = leakTracker;
+        }
         
         // ------------------------------------------ Methods from HeapBuffer
 
@@ -1087,7 +1305,7 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
             // clear
             clear();
             
-            owner.offer(this);
+            owner.owner.release(this);
         }
         
         // ----------------------------------------------------- Protected Methods
@@ -1159,6 +1377,9 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         // Used for the special case of the split() method.  This maintains
         // the original wrapper from the pool which must ultimately be returned.
         private final ByteBuffer origVisible;
+
+        // tracks the buffer, if it was sampled by the leak detector
+        private BufferLeakDetector.LeakTracker leakTracker;
         
         
         // ------------------------------------------------------------ Constructors
@@ -1234,6 +1455,15 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
             this.free = free;
             return this;
         }
+
+        @Override
+        public void leakTracker(final BufferLeakDetector.LeakTracker leakTracker) {
+            if (this.leakTracker != null) {
+                this.leakTracker.close();
+            }
+
+            this.leakTracker = leakTracker;
+        }
         
         // ------------------------------------------ Methods from ByteBufferWrapper
         
@@ -1303,7 +1533,7 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
             // should be called on "source" only
             visible = origVisible;
             visible.clear();
-            owner.offer(this);
+            owner.owner.release(this);
         }
     } // END PoolBuffer    
 }
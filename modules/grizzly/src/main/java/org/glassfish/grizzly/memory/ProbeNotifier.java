@@ -84,6 +84,58 @@ final class ProbeNotifier {
         }
     }
 
+    /**
+     * Notify registered {@link MemoryProbe}s about the "allocated from thread cache" event.
+     *
+     * @param size buffer size
+     */
+    static void notifyBufferAllocatedFromThreadCache(
+            final DefaultMonitoringConfig<MemoryProbe> config,
+            final int size) {
+
+        final MemoryProbe[] probes = config.getProbesUnsafe();
+        if (probes != null) {
+            for (MemoryProbe probe : probes) {
+                probe.onBufferAllocateFromThreadCacheEvent(size);
+            }
+        }
+    }
+
+    /**
+     * Notify registered {@link MemoryProbe}s about the "release to thread cache" event.
+     *
+     * @param size buffer size
+     */
+    static void notifyBufferReleasedToThreadCache(
+            final DefaultMonitoringConfig<MemoryProbe> config,
+            final int size) {
+
+        final MemoryProbe[] probes = config.getProbesUnsafe();
+        if (probes != null) {
+            for (MemoryProbe probe : probes) {
+                probe.onBufferReleaseToThreadCacheEvent(size);
+            }
+        }
+    }
+
+    /**
+     * Notify registered {@link MemoryProbe}s about the "buffer leak" event.
+     *
+     * @param size buffer size
+     * @param allocationTrace the leaked buffer allocation trace
+     */
+    static void notifyBufferLeak(
+            final DefaultMonitoringConfig<MemoryProbe> config,
+            final int size, final Throwable allocationTrace) {
+
+        final MemoryProbe[] probes = config.getProbesUnsafe();
+        if (probes != null) {
+            for (MemoryProbe probe : probes) {
+                probe.onBufferLeakEvent(size, allocationTrace);
+            }
+        }
+    }
+
     /**
      * Notify registered {@link MemoryProbe}s about the "release to pool" event.
      *
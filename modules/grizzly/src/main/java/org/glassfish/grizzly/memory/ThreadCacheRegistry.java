@@ -0,0 +1,184 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.memory;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.glassfish.grizzly.threadpool.VirtualThreadExecutor;
+
+/**
+ * The registry of the per-thread caches of free buffers.
+ *
+ * A thread may terminate while its cache still holds buffers: a worker
+ * thread retired by a shrinking thread pool, for example. The registry
+ * keeps a weak reference to the thread of every cache, so once the thread
+ * terminates its cache is flushed back to the shared pool, either after
+ * the thread is garbage collected ({@link #flushTerminated()}), or when
+ * the pool runs out of buffers ({@link #flushTerminatedNow()}).
+ *
+ * Virtual threads don't get a cache: they are short-lived and numerous,
+ * so their caches would mostly hold buffers nobody can reuse.
+ *
+ * @param <C> the cache type
+ */
+abstract class ThreadCacheRegistry<C> {
+    // the min interval between the walks over all the registered caches
+    private static final long SCAN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ThreadLocal<Registration<C>> localRegistration =
+            new ThreadLocal<Registration<C>>() {
+                @Override
+                protected Registration<C> initialValue() {
+                    return register(Thread.currentThread());
+                }
+            };
+
+    // the caches of the live threads, also keeps the registrations reachable
+    private final Set<Registration<C>> registrations =
+            ConcurrentHashMap.newKeySet();
+
+    // the registrations of the garbage collected threads
+    private final ReferenceQueue<Thread> collectedThreads =
+            new ReferenceQueue<Thread>();
+
+    private volatile long lastScanNanos = System.nanoTime() - SCAN_INTERVAL_NANOS;
+
+    /**
+     * Creates a new cache for the current thread.
+     */
+    protected abstract C createCache();
+
+    /**
+     * Returns all the buffers cached by the terminated thread to the
+     * shared pool.
+     */
+    protected abstract void flush(C cache);
+
+    /**
+     * @return the current thread's cache, or <tt>null</tt> if the current
+     *         thread doesn't cache buffers
+     */
+    final C get() {
+        final Registration<C> registration = localRegistration.get();
+        return registration != null ? registration.cache : null;
+    }
+
+    /**
+     * Flushes the caches of the terminated threads, which have been garbage
+     * collected. The method is cheap if there are none.
+     *
+     * @return <tt>true</tt> if any cache has been flushed
+     */
+    @SuppressWarnings("unchecked")
+    final boolean flushTerminated() {
+        boolean isFlushed = false;
+        Registration<C> registration;
+        while ((registration = (Registration<C>) collectedThreads.poll()) != null) {
+            isFlushed |= flush(registration);
+        }
+
+        return isFlushed;
+    }
+
+    /**
+     * Flushes the caches of all the terminated threads, even if they haven't
+     * been garbage collected yet. The method walks all the registered caches,
+     * so it's expected to be called only if the shared pool is exhausted, and
+     * the walk is done at most once per {@link #SCAN_INTERVAL_NANOS}.
+     *
+     * @return <tt>true</tt> if any cache has been flushed
+     */
+    final boolean flushTerminatedNow() {
+        boolean isFlushed = flushTerminated();
+
+        final long now = System.nanoTime();
+        final long lastScan = lastScanNanos;
+        if (now - lastScan < SCAN_INTERVAL_NANOS) {
+            return isFlushed;
+        }
+        lastScanNanos = now;
+
+        for (Iterator<Registration<C>> it = registrations.iterator(); it.hasNext();) {
+            final Registration<C> registration = it.next();
+            final Thread thread = registration.get();
+            if (thread == null || !thread.isAlive()) {
+                isFlushed |= flush(registration);
+            }
+        }
+
+        return isFlushed;
+    }
+
+    private Registration<C> register(final Thread thread) {
+        if (VirtualThreadExecutor.isVirtual(thread)) {
+            return null;
+        }
+
+        final Registration<C> registration = new Registration<C>(
+                thread, createCache(), collectedThreads);
+        registrations.add(registration);
+        return registration;
+    }
+
+    private boolean flush(final Registration<C> registration) {
+        // the registration removal makes sure the cache is flushed only once
+        if (!registrations.remove(registration)) {
+            return false;
+        }
+
+        flush(registration.cache);
+        return true;
+    }
+
+    private static final class Registration<C> extends WeakReference<Thread> {
+        private final C cache;
+
+        private Registration(final Thread thread, final C cache,
+                final ReferenceQueue<Thread> queue) {
+            super(thread, queue);
+            this.cache = cache;
+        }
+    }
+}
@@ -296,10 +296,25 @@ public class DefaultSelectorHandler implements SelectorHandler {
     private boolean processPendingTaskQueue(final SelectorRunner selectorRunner,
             final Queue<SelectorHandlerTask> selectorHandlerTasks)
             throws IOException {
+        final SelectorRunnerProbe[] probes =
+                selectorRunner.getTransport().selectorRunnerMonitoringConfig
+                        .getProbesUnsafe();
+        
         SelectorHandlerTask selectorHandlerTask;
         while((selectorHandlerTask = selectorHandlerTasks.poll()) != null) {
-            if (!selectorHandlerTask.run(selectorRunner)) {
-                return false;
+            if (probes == null) {
+                if (!selectorHandlerTask.run(selectorRunner)) {
+                    return false;
+                }
+            } else {
+                final long startNanos = System.nanoTime();
+                final boolean isDone = selectorHandlerTask.run(selectorRunner);
+                SelectorRunner.notifyTaskExecute(probes, selectorRunner,
+                        System.nanoTime() - startNanos);
+                
+                if (!isDone) {
+                    return false;
+                }
             }
         }
         
@@ -0,0 +1,253 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.nio;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.glassfish.grizzly.CompletionHandler;
+import org.glassfish.grizzly.Connection;
+
+/**
+ * {@link NIOChannelDistributor} implementation, which assigns a channel to the
+ * least loaded {@link SelectorRunner}.
+ * 
+ * Unlike {@link RoundRobinConnectionDistributor}, it takes into account that
+ * long-living connections may be distributed unevenly among
+ * {@link SelectorRunner}s, and that some {@link SelectorRunner}s are busier
+ * than others. The {@link SelectorRunner} load is measured either by the
+ * number of the registered channels (including the channels, which are being
+ * registered), or by the recent average loop time (see
+ * {@link SelectorRunner#getAverageLoopTime(java.util.concurrent.TimeUnit)}),
+ * the other metric is used to break ties.
+ */
+public final class LeastLoadedConnectionDistributor
+        extends AbstractNIOConnectionDistributor {
+    
+    /**
+     * The {@link SelectorRunner} load metric.
+     */
+    public enum LoadMetric {
+        /**
+         * The number of channels registered on the {@link SelectorRunner}.
+         */
+        REGISTERED_KEYS,
+        /**
+         * The recent average time of the {@link SelectorRunner} loop.
+         */
+        LOOP_TIME
+    }
+    
+    private final boolean useDedicatedAcceptor;
+    private final LoadMetric loadMetric;
+    
+    // the number of channels, which are being registered
+    private final ConcurrentMap<SelectorRunner, AtomicInteger> pendingRegistrations =
+            new ConcurrentHashMap<SelectorRunner, AtomicInteger>();
+    
+    public LeastLoadedConnectionDistributor(final NIOTransport transport) {
+        this(transport, false, LoadMetric.REGISTERED_KEYS);
+    }
+
+    /**
+     * Constructs LeastLoadedConnectionDistributor with the given configuration.
+     * 
+     * @param transport
+     * @param useDedicatedAcceptor depending on this flag server {@link Connection}s,
+     *          responsible for accepting client connections, will or will not
+     *          use dedicated {@link SelectorRunner}
+     * @param loadMetric the {@link SelectorRunner} load metric
+     */
+    public LeastLoadedConnectionDistributor(final NIOTransport transport,
+            final boolean useDedicatedAcceptor, final LoadMetric loadMetric) {
+        super(transport);
+        if (loadMetric == null) {
+            throw new IllegalArgumentException("loadMetric can't be null");
+        }
+        
+        this.useDedicatedAcceptor = useDedicatedAcceptor;
+        this.loadMetric = loadMetric;
+    }
+
+    /**
+     * @return the {@link SelectorRunner} load metric
+     */
+    public LoadMetric getLoadMetric() {
+        return loadMetric;
+    }
+    
+    @Override
+    public void registerChannel(final SelectableChannel channel,
+            final int interestOps, final Object attachment) throws IOException {
+        transport.getSelectorHandler().registerChannel(next(),
+                channel, interestOps, attachment);
+    }
+
+    @Override
+    public void registerChannelAsync(
+            final SelectableChannel channel, final int interestOps,
+            final Object attachment,
+            final CompletionHandler<RegisterChannelResult> completionHandler) {
+        final SelectorRunner runner = next();
+        final AtomicInteger pendingCounter = pendingCounter(runner);
+        pendingCounter.incrementAndGet();
+        
+        transport.getSelectorHandler().registerChannelAsync(
+                runner, channel, interestOps, attachment,
+                new PendingRegistrationHandler(pendingCounter, completionHandler));
+    }
+
+    @Override
+    public void registerServiceChannelAsync(
+            final SelectableChannel channel, final int interestOps,
+            final Object attachment,
+            final CompletionHandler<RegisterChannelResult> completionHandler) {
+        final SelectorRunner runner = useDedicatedAcceptor ?
+                getTransportSelectorRunners()[0] :
+                next();
+        
+        transport.getSelectorHandler().registerChannelAsync(
+                runner, channel, interestOps, attachment, completionHandler);
+    }
+    
+    private SelectorRunner next() {
+        final SelectorRunner[] runners = getTransportSelectorRunners();
+        if (runners.length == 1) {
+            return runners[0];
+        }
+        
+        final int from = useDedicatedAcceptor ? 1 : 0;
+        
+        SelectorRunner best = null;
+        long bestLoad = 0;
+        long bestTieBreaker = 0;
+        
+        for (int i = from; i < runners.length; i++) {
+            final SelectorRunner runner = runners[i];
+            final long keys = keysCount(runner);
+            final long loopTime = runner.getAverageLoopTime(TimeUnit.NANOSECONDS);
+            
+            final long load;
+            final long tieBreaker;
+            if (loadMetric == LoadMetric.REGISTERED_KEYS) {
+                load = keys;
+                tieBreaker = loopTime;
+            } else {
+                load = loopTime;
+                tieBreaker = keys;
+            }
+            
+            if (best == null || load < bestLoad ||
+                    (load == bestLoad && tieBreaker < bestTieBreaker)) {
+                best = runner;
+                bestLoad = load;
+                bestTieBreaker = tieBreaker;
+            }
+        }
+        
+        return best;
+    }
+    
+    private long keysCount(final SelectorRunner runner) {
+        final AtomicInteger pendingCounter = pendingRegistrations.get(runner);
+        return runner.getRegisteredKeysCount() +
+                (pendingCounter != null ? pendingCounter.get() : 0);
+    }
+
+    private AtomicInteger pendingCounter(final SelectorRunner runner) {
+        AtomicInteger counter = pendingRegistrations.get(runner);
+        if (counter == null) {
+            final AtomicInteger newCounter = new AtomicInteger();
+            counter = pendingRegistrations.putIfAbsent(runner, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        
+        return counter;
+    }
+    
+    private static final class PendingRegistrationHandler
+            implements CompletionHandler<RegisterChannelResult> {
+        private final AtomicInteger pendingCounter;
+        private final CompletionHandler<RegisterChannelResult> completionHandler;
+
+        private PendingRegistrationHandler(final AtomicInteger pendingCounter,
+                final CompletionHandler<RegisterChannelResult> completionHandler) {
+            this.pendingCounter = pendingCounter;
+            this.completionHandler = completionHandler;
+        }
+
+        @Override
+        public void cancelled() {
+            pendingCounter.decrementAndGet();
+            if (completionHandler != null) {
+                completionHandler.cancelled();
+            }
+        }
+
+        @Override
+        public void failed(final Throwable throwable) {
+            pendingCounter.decrementAndGet();
+            if (completionHandler != null) {
+                completionHandler.failed(throwable);
+            }
+        }
+
+        @Override
+        public void completed(final RegisterChannelResult result) {
+            pendingCounter.decrementAndGet();
+            if (completionHandler != null) {
+                completionHandler.completed(result);
+            }
+        }
+
+        @Override
+        public void updated(final RegisterChannelResult result) {
+            if (completionHandler != null) {
+                completionHandler.updated(result);
+            }
+        }
+    }
+}
@@ -74,6 +74,8 @@ import org.glassfish.grizzly.asyncqueue.AsyncQueueWriter;
 import org.glassfish.grizzly.filterchain.FilterChainEnabledTransport;
 import org.glassfish.grizzly.impl.FutureImpl;
 import org.glassfish.grizzly.localization.LogMessages;
+import org.glassfish.grizzly.monitoring.DefaultMonitoringConfig;
+import org.glassfish.grizzly.monitoring.MonitoringConfig;
 import org.glassfish.grizzly.nio.tmpselectors.TemporarySelectorIO;
 import org.glassfish.grizzly.nio.tmpselectors.TemporarySelectorPool;
 import org.glassfish.grizzly.strategies.SameThreadIOStrategy;
@@ -81,7 +83,9 @@ import org.glassfish.grizzly.strategies.WorkerThreadIOStrategy;
 import org.glassfish.grizzly.threadpool.AbstractThreadPool;
 import org.glassfish.grizzly.threadpool.GrizzlyExecutorService;
 import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+import org.glassfish.grizzly.utils.DelayedExecutor;
 import org.glassfish.grizzly.utils.Futures;
+import org.glassfish.grizzly.utils.TimingWheelDelayedExecutor;
 
 /**
  *
@@ -99,6 +103,7 @@ public abstract class NIOTransport extends AbstractTransport
             SocketConnectorHandler.DEFAULT_CONNECTION_TIMEOUT;
     public static final int DEFAULT_SELECTOR_RUNNER_COUNT = -1;
     public static final boolean DEFAULT_OPTIMIZED_FOR_MULTIPLEXING = false;
+    public static final long DEFAULT_TIMING_WHEEL_TICK_MILLIS = -1;
 
     private static final Logger LOGGER = Grizzly.logger(NIOTransport.class);
 
@@ -121,6 +126,11 @@ public abstract class NIOTransport extends AbstractTransport
      * Default channel connection timeout
      */
     int connectionTimeout = DEFAULT_CONNECTION_TIMEOUT;
+    /**
+     * The tick duration (in milliseconds) of the {@link TimingWheelDelayedExecutor}
+     * created by {@link #createDelayedExecutor(java.util.concurrent.ExecutorService)}
+     */
+    long timingWheelTickMillis = DEFAULT_TIMING_WHEEL_TICK_MILLIS;
     
     protected ChannelConfigurator channelConfigurator;
 
@@ -138,6 +148,12 @@ public abstract class NIOTransport extends AbstractTransport
 
     protected Set<GracefulShutdownListener> shutdownListeners;
     
+    /**
+     * SelectorRunner probes
+     */
+    protected final DefaultMonitoringConfig<SelectorRunnerProbe> selectorRunnerMonitoringConfig =
+            new DefaultMonitoringConfig<SelectorRunnerProbe>(SelectorRunnerProbe.class);
+    
     /**
      * Transport default buffer size for read operations
      */
@@ -348,6 +364,52 @@ public abstract class NIOTransport extends AbstractTransport
         getAsyncQueueWriter().setAllowDirectWrite(!isOptimizedForMultiplexing);
     }
 
+    /**
+     * @return the tick duration (in milliseconds) of the
+     * {@link TimingWheelDelayedExecutor} created by
+     * {@link #createDelayedExecutor(java.util.concurrent.ExecutorService)},
+     * or a non-positive value, if the scanning {@link DelayedExecutor}
+     * is created
+     * @since 3.0
+     */
+    public long getTimingWheelTickMillis() {
+        return timingWheelTickMillis;
+    }
+
+    /**
+     * Selects the {@link DelayedExecutor} implementation created by
+     * {@link #createDelayedExecutor(java.util.concurrent.ExecutorService)}.
+     * If the value is positive - the {@link TimingWheelDelayedExecutor} with
+     * the given tick duration is created, otherwise the scanning
+     * {@link DelayedExecutor} is used.
+     * 
+     * @param timingWheelTickMillis the timing wheel tick duration in milliseconds
+     * @since 3.0
+     */
+    public void setTimingWheelTickMillis(final long timingWheelTickMillis) {
+        this.timingWheelTickMillis = timingWheelTickMillis;
+        notifyProbesConfigChanged(this);
+    }
+
+    /**
+     * Creates the {@link DelayedExecutor} to serve the timeouts of this
+     * transport's connections, for example the ones of the
+     * {@link org.glassfish.grizzly.utils.IdleTimeoutFilter} or of a connection
+     * pool. The executor kind is chosen by {@link #getTimingWheelTickMillis()}.
+     * The returned executor is not started.
+     * 
+     * @param threadPool the thread pool to run the executor's timer thread on
+     * @return the not started {@link DelayedExecutor}
+     * @since 3.0
+     */
+    public DelayedExecutor createDelayedExecutor(final ExecutorService threadPool) {
+        final long tickMillis = timingWheelTickMillis;
+        return tickMillis > 0
+                ? new TimingWheelDelayedExecutor(threadPool,
+                        tickMillis, TimeUnit.MILLISECONDS)
+                : new DelayedExecutor(threadPool);
+    }
+
     /**
      * @see AsyncQueueWriter#getMaxPendingBytesPerConnection()
      * 
@@ -477,8 +539,15 @@ public abstract class NIOTransport extends AbstractTransport
                                 getThreadPoolMonitoringConfig().getProbes());
                     }
                     workerPoolConfig.setMemoryManager(memoryManager);
+                    
+                    ThreadPoolConfig config = workerPoolConfig;
+                    if (config.getPartitionsCount() ==
+                            ThreadPoolConfig.PARTITION_PER_SELECTOR_RUNNER) {
+                        config = config.copy().setPartitionsCount(selectorRunnersCnt);
+                    }
+                    
                     setWorkerThreadPool0(GrizzlyExecutorService.createInstance(
-                            workerPoolConfig));
+                            config));
                 }
             }
 
@@ -706,6 +775,15 @@ public abstract class NIOTransport extends AbstractTransport
         selectorRunners = null;
     }
 
+    /**
+     * Get the monitoring configuration for the transport's {@link SelectorRunner}s.
+     *
+     * @return the {@link SelectorRunner} monitoring configuration
+     */
+    public MonitoringConfig<SelectorRunnerProbe> getSelectorRunnerMonitoringConfig() {
+        return selectorRunnerMonitoringConfig;
+    }
+
     public NIOChannelDistributor getNIOChannelDistributor() {
         return nioChannelDistributor;
     }
@@ -78,6 +78,7 @@ public abstract class NIOTransportBuilder<T extends NIOTransportBuilder> {
     protected IOStrategy ioStrategy = WorkerThreadIOStrategy.getInstance();
     protected int selectorRunnerCount = NIOTransport.DEFAULT_SELECTOR_RUNNER_COUNT;
     protected NIOChannelDistributor nioChannelDistributor;
+    protected LeastLoadedConnectionDistributor.LoadMetric distributionLoadMetric;
     protected String name;
     protected FilterChain filterChain;
     protected int readBufferSize = Transport.DEFAULT_READ_BUFFER_SIZE;
@@ -87,6 +88,7 @@ public abstract class NIOTransportBuilder<T extends NIOTransportBuilder> {
     protected boolean reuseAddress = NIOTransport.DEFAULT_REUSE_ADDRESS;
     protected int maxPendingBytesPerConnection = AsyncQueueWriter.AUTO_SIZE;
     protected boolean optimizedForMultiplexing = NIOTransport.DEFAULT_OPTIMIZED_FOR_MULTIPLEXING;
+    protected long timingWheelTickMillis = NIOTransport.DEFAULT_TIMING_WHEEL_TICK_MILLIS;
 
     protected long blockingReadTimeout = TimeUnit.MILLISECONDS.convert(Transport.DEFAULT_READ_TIMEOUT, TimeUnit.SECONDS);
     protected long blockingWriteTimeout = TimeUnit.MILLISECONDS.convert(Transport.DEFAULT_WRITE_TIMEOUT, TimeUnit.SECONDS);
@@ -194,6 +196,22 @@ public abstract class NIOTransportBuilder<T extends NIOTransportBuilder> {
         return getThis();
     }
 
+    /**
+     * Makes the created {@link NIOTransport} use
+     * {@link LeastLoadedConnectionDistributor} with the given load metric,
+     * unless the {@link NIOChannelDistributor} is set explicitly
+     * using {@link #nioChannelDistributor(NIOChannelDistributor)}.
+     *
+     * @param loadMetric the {@link SelectorRunner} load metric,
+     *          or <tt>null</tt> to use the default {@link NIOChannelDistributor}
+     *
+     * @return this <code>NIOTransportBuilder</code>
+     */
+    public T leastLoadedDistribution(LeastLoadedConnectionDistributor.LoadMetric loadMetric) {
+        this.distributionLoadMetric = loadMetric;
+        return getThis();
+    }
+
     /**
      * Set the {@link SelectorProvider} to be used by the created {@link NIOTransport}.
      *
@@ -256,6 +274,16 @@ public abstract class NIOTransportBuilder<T extends NIOTransportBuilder> {
         return getThis();
     }
 
+    /**
+     * @see NIOTransport#setTimingWheelTickMillis(long)
+     *
+     * @return this <code>NIOTransportBuilder</code>
+     */
+    public T timingWheelTickMillis(final long timingWheelTickMillis) {
+        this.timingWheelTickMillis = timingWheelTickMillis;
+        return getThis();
+    }
+
     /**
      * @return this <code>NIOTransportBuilder</code>
      * @see NIOTransport#setClientSocketSoTimeout(int)
@@ -335,7 +363,12 @@ public abstract class NIOTransportBuilder<T extends NIOTransportBuilder> {
         transport.setMemoryManager(memoryManager);
         transport.setAttributeBuilder(attributeBuilder);
         transport.setSelectorRunnersCount(selectorRunnerCount);
-        transport.setNIOChannelDistributor(nioChannelDistributor);
+        if (nioChannelDistributor == null && distributionLoadMetric != null) {
+            transport.setNIOChannelDistributor(new LeastLoadedConnectionDistributor(
+                    transport, false, distributionLoadMetric));
+        } else {
+            transport.setNIOChannelDistributor(nioChannelDistributor);
+        }
         transport.setFilterChain(filterChain != null ? filterChain : new DefaultFilterChain());
         transport.setClientSocketSoTimeout(clientSocketSoTimeout);
         transport.setConnectionTimeout(connectionTimeout);
@@ -345,6 +378,7 @@ public abstract class NIOTransportBuilder<T extends NIOTransportBuilder> {
         transport.setWriteBufferSize(writeBufferSize);
         transport.setReuseAddress(reuseAddress);
         transport.setOptimizedForMultiplexing(optimizedForMultiplexing);
+        transport.setTimingWheelTickMillis(timingWheelTickMillis);
         transport.getAsyncQueueWriter()
                     .setMaxPendingBytesPerConnection(maxPendingBytesPerConnection);
         return transport;
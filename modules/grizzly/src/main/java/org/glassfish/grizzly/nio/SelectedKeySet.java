@@ -0,0 +1,153 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.nio;
+
+import java.nio.channels.SelectionKey;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Array-backed {@link java.nio.channels.Selector} selected-key set, which
+ * replaces the JDK's <tt>HashSet</tt> so that the selector thread neither
+ * hashes the ready {@link SelectionKey}s nor allocates an {@link Iterator} on
+ * each select loop. The {@link SelectorRunner} iterates the keys by index.
+ * 
+ * {@link #contains(java.lang.Object)} always returns <tt>false</tt>, which is
+ * valid only if the set is cleared after each select loop and the
+ * {@link java.nio.channels.Selector} reports each channel at most once per
+ * select() call, so the set has to be used with the epoll selector only
+ * (see {@link Selectors#setSelectedKeySet}). Other selectors, like kqueue,
+ * might report the same channel twice and merge its ready operations
+ * using {@link #contains(java.lang.Object)}.
+ */
+final class SelectedKeySet extends AbstractSet<SelectionKey> {
+    private SelectionKey[] keys = new SelectionKey[1024];
+    private int size;
+
+    @Override
+    public boolean add(final SelectionKey key) {
+        if (key == null) {
+            return false;
+        }
+        
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size << 1);
+        }
+        
+        keys[size++] = key;
+        return true;
+    }
+
+    /**
+     * Removes the key, for example when it's cancelled.
+     * The selector removes keys within select() call only, when the set is
+     * normally empty, so the linear scan is cheap.
+     */
+    @Override
+    public boolean remove(final Object o) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (keys[i] == o) {
+                System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+                keys[--size] = null;
+                return true;
+            }
+        }
+        
+        return false;
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * @param index the key index
+     * @return the selected {@link SelectionKey} at the given index
+     */
+    SelectionKey get(final int index) {
+        return keys[index];
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, 0, size, null);
+        size = 0;
+    }
+
+    @Override
+    public Iterator<SelectionKey> iterator() {
+        return new Iterator<SelectionKey>() {
+            private int idx;
+
+            @Override
+            public boolean hasNext() {
+                return idx < size;
+            }
+
+            @Override
+            public SelectionKey next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                
+                return keys[idx++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
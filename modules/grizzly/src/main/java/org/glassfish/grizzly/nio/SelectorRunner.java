@@ -79,10 +79,18 @@ public final class SelectorRunner implements Runnable {
     
     private final static String THREAD_MARKER = " SelectorRunner";
     
+    /**
+     * If <tt>true</tt> - the {@link Selector}'s selected-key set is replaced
+     * with {@link SelectedKeySet}, which is iterated by index without
+     * extra allocations.
+     */
+    static final boolean IS_OPTIMIZE_SELECTED_KEYS =
+            Boolean.getBoolean(SelectorRunner.class.getName() + ".optimize-selected-keys");
+    
     private final NIOTransport transport;
     private final AtomicReference<State> stateHolder;
     
-    private final Queue<SelectorHandlerTask> pendingTasks;
+    private final PendingTaskQueue pendingTasks;
     
     private Queue<SelectorHandlerTask> currentPostponedTasks;
     private final Queue<SelectorHandlerTask> evenPostponedTasks;
@@ -96,8 +104,17 @@ public final class SelectorRunner implements Runnable {
     private boolean isPostponed;
 
     private int lastSelectedKeysCount;
+    
+    // the time the previous select() call returned
+    private long selectEndNanos;
+    // exponentially weighted average time of the loop iteration,
+    // excluding the time spent in the select() call
+    private volatile long avgLoopTimeNanos;
     private Set<SelectionKey> readyKeySet;
     private Iterator<SelectionKey> iterator;
+    // not null, if the selected-key set optimization is enabled and applied
+    private SelectedKeySet selectedKeySet;
+    private int readyKeyIndex;
     private SelectionKey key = null;
     private int keyReadyOps;
 
@@ -117,8 +134,12 @@ public final class SelectorRunner implements Runnable {
         this.transport = transport;
         this.selector = selector;
         stateHolder = new AtomicReference<State>(State.STOPPED);
+        
+        if (IS_OPTIMIZE_SELECTED_KEYS) {
+            optimizeSelectedKeys(selector);
+        }
 
-        pendingTasks = new ConcurrentLinkedQueue<SelectorHandlerTask>();
+        pendingTasks = new PendingTaskQueue();
         evenPostponedTasks = new ArrayDeque<SelectorHandlerTask>();
         oddPostponedTasks = new ArrayDeque<SelectorHandlerTask>();
         currentPostponedTasks = evenPostponedTasks;
@@ -162,9 +183,23 @@ public final class SelectorRunner implements Runnable {
      *                 {@link SelectorRunner}.
      */
     void setSelector(final Selector selector) {
+        if (selectedKeySet != null) {
+            optimizeSelectedKeys(selector);
+        }
+        
         this.selector = selector;
         dumbVolatile++;
     }
+    
+    private void optimizeSelectedKeys(final Selector selector) {
+        final SelectedKeySet keySet = selectedKeySet != null
+                ? selectedKeySet
+                : new SelectedKeySet();
+        
+        selectedKeySet = Selectors.setSelectedKeySet(selector, keySet)
+                ? keySet
+                : null;
+    }
 
     private void setRunnerThread(final Thread runnerThread) {
         this.selectorRunnerThread = runnerThread;
@@ -335,27 +370,56 @@ public final class SelectorRunner implements Runnable {
 
             lastSelectedKeysCount = 0;
 
+            final SelectorRunnerProbe[] probes =
+                    transport.selectorRunnerMonitoringConfig.getProbesUnsafe();
+            
+            if (probes != null) {
+                notifyTaskQueues(probes, this,
+                        hasPendingTasks ? pendingTasks.count() : 0,
+                        currentPostponedTasks.size());
+            }
+            
             if (!selectorHandler.preSelect(this)) {
                 return false;
             }
 
+            final long selectStartNanos = System.nanoTime();
+            updateLoopTime(selectStartNanos, probes);
             readyKeySet = selectorHandler.select(this);
             selectorWakeupFlag.set(false);
+            selectEndNanos = System.nanoTime();
 
             if (stateHolder.get() == State.STOPPING) return true;
             
             lastSelectedKeysCount = readyKeySet.size();
             
+            if (probes != null) {
+                notifySelect(probes, this, lastSelectedKeysCount,
+                        selectEndNanos - selectStartNanos);
+            }
+            
             if (lastSelectedKeysCount != 0) {
-                iterator = readyKeySet.iterator();
+                if (readyKeySet == selectedKeySet) {
+                    readyKeyIndex = 0;
+                } else {
+                    iterator = readyKeySet.iterator();
+                }
+                
                 if (!iterateKeys()) return false;
                 readyKeySet.clear();
+                
+                if (probes != null) {
+                    notifyKeysProcessed(probes, this, lastSelectedKeysCount,
+                            System.nanoTime() - selectEndNanos);
+                }
             }
 
             readyKeySet = null;
             iterator = null;
             selectorHandler.postSelect(this);
         } catch (ClosedSelectorException e) {
+            resetReadyKeys();
+            
             if (isRunning()) {
                 if (selectorHandler.onSelectorClosed(this)) {
                     return true;
@@ -366,10 +430,12 @@ public final class SelectorRunner implements Runnable {
                     "Selector was unexpectedly closed", e,
                     Level.SEVERE, Level.FINE);
         } catch (Exception e) {
+            resetReadyKeys();
             dropConnectionDueToException(key,
                     "doSelect exception", e,
                     Level.SEVERE, Level.FINE);
         } catch (Throwable t) {
+            resetReadyKeys();
             LOGGER.log(Level.SEVERE,"doSelect exception", t);
             transport.notifyTransportError(t);
         }
@@ -377,12 +443,106 @@ public final class SelectorRunner implements Runnable {
         return true;
     }
 
+    /**
+     * Drops the ready keys left after a failed select loop, so they're not
+     * processed again together with the next select() result.
+     * The keys, which are still ready, will be reported by the next select().
+     */
+    private void resetReadyKeys() {
+        final Set<SelectionKey> keySet = readyKeySet;
+        readyKeySet = null;
+        iterator = null;
+        
+        if (keySet != null) {
+            try {
+                keySet.clear();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    /**
+     * Updates the average loop time with the time passed since the previous
+     * select() call returned, so the value doesn't include the time spent
+     * waiting for events.
+     */
+    private void updateLoopTime(final long nowNanos,
+            final SelectorRunnerProbe[] probes) {
+        if (selectEndNanos != 0) {
+            final long loopTimeNanos = Math.max(0, nowNanos - selectEndNanos);
+            final long avg = avgLoopTimeNanos;
+            avgLoopTimeNanos = avg + ((loopTimeNanos - avg) >> 3);
+            
+            if (probes != null) {
+                notifyLoop(probes, this, loopTimeNanos);
+            }
+        }
+    }
+    
+    /**
+     * Notify registered {@link SelectorRunnerProbe}s about the select event.
+     */
+    static void notifySelect(final SelectorRunnerProbe[] probes,
+            final SelectorRunner selectorRunner, final int selectedKeysCount,
+            final long selectNanos) {
+        for (SelectorRunnerProbe probe : probes) {
+            probe.onSelectEvent(selectorRunner, selectedKeysCount, selectNanos);
+        }
+    }
+
+    /**
+     * Notify registered {@link SelectorRunnerProbe}s about the keys processed event.
+     */
+    static void notifyKeysProcessed(final SelectorRunnerProbe[] probes,
+            final SelectorRunner selectorRunner, final int keysCount,
+            final long processingNanos) {
+        for (SelectorRunnerProbe probe : probes) {
+            probe.onKeysProcessedEvent(selectorRunner, keysCount, processingNanos);
+        }
+    }
+
+    /**
+     * Notify registered {@link SelectorRunnerProbe}s about the task execute event.
+     */
+    static void notifyTaskExecute(final SelectorRunnerProbe[] probes,
+            final SelectorRunner selectorRunner, final long executionNanos) {
+        for (SelectorRunnerProbe probe : probes) {
+            probe.onTaskExecuteEvent(selectorRunner, executionNanos);
+        }
+    }
+
+    /**
+     * Notify registered {@link SelectorRunnerProbe}s about the task queues event.
+     */
+    static void notifyTaskQueues(final SelectorRunnerProbe[] probes,
+            final SelectorRunner selectorRunner, final int pendingTasksCount,
+            final int postponedTasksCount) {
+        for (SelectorRunnerProbe probe : probes) {
+            probe.onTaskQueuesEvent(selectorRunner, pendingTasksCount,
+                    postponedTasksCount);
+        }
+    }
+
+    /**
+     * Notify registered {@link SelectorRunnerProbe}s about the loop event.
+     */
+    static void notifyLoop(final SelectorRunnerProbe[] probes,
+            final SelectorRunner selectorRunner, final long loopNanos) {
+        for (SelectorRunnerProbe probe : probes) {
+            probe.onLoopEvent(selectorRunner, loopNanos);
+        }
+    }
+
     private boolean iterateKeys() {
+        // the optimized key set is iterated by index
+        final SelectedKeySet keySet = readyKeySet == selectedKeySet
+                ? selectedKeySet
+                : null;
         final Iterator<SelectionKey> it = iterator;
 
-        while (it.hasNext()) {
+        while (keySet != null ? readyKeyIndex < keySet.size() : it.hasNext()) {
             try {
-                key = it.next();
+                key = keySet != null ? keySet.get(readyKeyIndex++) : it.next();
                 keyReadyOps = key.readyOps();
                 if (!iterateKeyEvents()) {
                     return false;
@@ -440,6 +600,13 @@ public final class SelectorRunner implements Runnable {
         return pendingTasks;
     }
 
+    /**
+     * @return the approximate number of the pending tasks
+     */
+    int getPendingTasksCount() {
+        return pendingTasks.count();
+    }
+
     public Queue<SelectorHandlerTask> getPostponedTasks() {
         return currentPostponedTasks;
     }
@@ -511,6 +678,40 @@ public final class SelectorRunner implements Runnable {
         return lastSelectedKeysCount;
     }
 
+    /**
+     * Returns the recent average time the {@link SelectorRunner} spent in a
+     * loop iteration processing the selected keys and tasks, not counting
+     * the time it waited for events in {@link Selector#select()}.
+     * The average is exponentially weighted, so it reflects the recent load.
+     *
+     * @param timeUnit the {@link TimeUnit}
+     * @return the recent average loop time
+     */
+    public long getAverageLoopTime(final TimeUnit timeUnit) {
+        return timeUnit.convert(avgLoopTimeNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Number of {@link SelectableChannel}s registered on the {@link Selector}.
+     * The value is approximate, because a canceled {@link SelectionKey} is
+     * not removed from the {@link Selector} until the next select.
+     *
+     * @return number of {@link SelectableChannel}s registered on the
+     * {@link Selector}
+     */
+    public int getRegisteredKeysCount() {
+        final Selector localSelector = selector;
+        if (localSelector == null) {
+            return 0;
+        }
+        
+        try {
+            return localSelector.keys().size();
+        } catch (ClosedSelectorException e) {
+            return 0;
+        }
+    }
+
     protected final void switchToNewSelector() throws IOException {
         final Selector oldSelector = selector;
         final Selector newSelector = Selectors.newSelector(transport.getSelectorProvider());
@@ -628,4 +829,56 @@ public final class SelectorRunner implements Runnable {
                     name.substring(0, name.length() - THREAD_MARKER.length()));
         }
     }
+
+    /**
+     * The pending task queue, which counts its tasks, because
+     * {@link ConcurrentLinkedQueue#size()} traverses the entire queue,
+     * which is too expensive to be called on each select loop.
+     * The tasks are added by {@link #offer(java.lang.Object)} and
+     * removed by {@link #poll()} or {@link #remove(java.lang.Object)} only.
+     */
+    private static final class PendingTaskQueue
+            extends ConcurrentLinkedQueue<SelectorHandlerTask> {
+        private static final long serialVersionUID = 1L;
+        
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public boolean offer(final SelectorHandlerTask task) {
+            final boolean isAdded = super.offer(task);
+            if (isAdded) {
+                count.incrementAndGet();
+            }
+            
+            return isAdded;
+        }
+
+        @Override
+        public SelectorHandlerTask poll() {
+            final SelectorHandlerTask task = super.poll();
+            if (task != null) {
+                count.decrementAndGet();
+            }
+            
+            return task;
+        }
+
+        @Override
+        public boolean remove(final Object task) {
+            final boolean isRemoved = super.remove(task);
+            if (isRemoved) {
+                count.decrementAndGet();
+            }
+            
+            return isRemoved;
+        }
+        
+        /**
+         * @return the approximate number of tasks in the queue
+         */
+        int count() {
+            // the counter might be updated a bit later than the queue itself
+            return Math.max(0, count.get());
+        }
+    }
 }
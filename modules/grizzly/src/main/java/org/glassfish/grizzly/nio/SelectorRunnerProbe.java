@@ -0,0 +1,157 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.nio;
+
+/**
+ * Monitoring probe providing callbacks that may be invoked by
+ * {@link SelectorRunner}s of a {@link NIOTransport}.
+ * 
+ * The callbacks are invoked from the {@link SelectorRunner} thread, so they
+ * have to be fast and must not block. When no probe is registered, the
+ * {@link SelectorRunner} doesn't collect the times at all.
+ *
+ * @see NIOTransport#getSelectorRunnerMonitoringConfig()
+ */
+public interface SelectorRunnerProbe {
+
+    /**
+     * Method will be called, when the {@link SelectorRunner} returns from
+     * the select operation.
+     *
+     * @param selectorRunner {@link SelectorRunner}, the event belongs to.
+     * @param selectedKeysCount the number of selected keys (events per wakeup).
+     * @param selectNanos the time spent in the select operation, in nanoseconds.
+     */
+    void onSelectEvent(SelectorRunner selectorRunner, int selectedKeysCount,
+            long selectNanos);
+
+    /**
+     * Method will be called, when the {@link SelectorRunner} has processed
+     * the selected keys.
+     *
+     * @param selectorRunner {@link SelectorRunner}, the event belongs to.
+     * @param keysCount the number of processed keys.
+     * @param processingNanos the time spent processing the keys, in nanoseconds.
+     */
+    void onKeysProcessedEvent(SelectorRunner selectorRunner, int keysCount,
+            long processingNanos);
+
+    /**
+     * Method will be called, when the {@link SelectorRunner} has executed
+     * a {@link SelectorHandlerTask}.
+     *
+     * @param selectorRunner {@link SelectorRunner}, the event belongs to.
+     * @param executionNanos the task execution time, in nanoseconds.
+     */
+    void onTaskExecuteEvent(SelectorRunner selectorRunner, long executionNanos);
+
+    /**
+     * Method will be called, before the {@link SelectorRunner} starts
+     * processing its task queues.
+     *
+     * @param selectorRunner {@link SelectorRunner}, the event belongs to.
+     * @param pendingTasksCount the number of the pending tasks, queued by
+     *          other threads.
+     * @param postponedTasksCount the number of the postponed tasks, queued
+     *          by the {@link SelectorRunner} thread.
+     */
+    void onTaskQueuesEvent(SelectorRunner selectorRunner, int pendingTasksCount,
+            int postponedTasksCount);
+
+    /**
+     * Method will be called, when the {@link SelectorRunner} completes a loop
+     * iteration, before the next select operation.
+     *
+     * @param selectorRunner {@link SelectorRunner}, the event belongs to.
+     * @param loopNanos the time spent in the loop iteration, not counting
+     *          the select operation, in nanoseconds.
+     */
+    void onLoopEvent(SelectorRunner selectorRunner, long loopNanos);
+
+
+    // ---------------------------------------------------------- Nested Classes
+
+    /**
+     * {@link SelectorRunnerProbe} adapter that provides no-op implementations
+     * for all interface methods allowing easy extension by the developer.
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    public class Adapter implements SelectorRunnerProbe {
+
+
+        // ------------------------------------ Methods from SelectorRunnerProbe
+
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onSelectEvent(SelectorRunner selectorRunner,
+                int selectedKeysCount, long selectNanos) {}
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onKeysProcessedEvent(SelectorRunner selectorRunner,
+                int keysCount, long processingNanos) {}
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onTaskExecuteEvent(SelectorRunner selectorRunner,
+                long executionNanos) {}
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onTaskQueuesEvent(SelectorRunner selectorRunner,
+                int pendingTasksCount, int postponedTasksCount) {}
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onLoopEvent(SelectorRunner selectorRunner, long loopNanos) {}
+    }
+}
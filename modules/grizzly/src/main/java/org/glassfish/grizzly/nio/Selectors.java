@@ -41,14 +41,26 @@
 package org.glassfish.grizzly.nio;
 
 import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.spi.SelectorProvider;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Grizzly;
 
 /**
  * Utility class for {@link Selector} related operations.
  *
  */
 public final class Selectors {
+    private static final Logger LOGGER = Grizzly.logger(Selectors.class);
+    
+    private static final String EPOLL_SELECTOR_CLASS_NAME =
+            "sun.nio.ch.EPollSelectorImpl";
+    
+    private static volatile boolean isSelectedKeySetUnsupported;
 
     /**
      * Creates new {@link Selector} using passed {@link SelectorProvider}.
@@ -74,4 +86,61 @@ public final class Selectors {
             throw new IOException("Can not open Selector due to NPE");
         }
     }
+    
+    /**
+     * Replaces the {@link Selector}'s internal selected-key set with the
+     * passed {@link SelectedKeySet}, so {@link Selector#selectedKeys()}
+     * returns the passed set.
+     * The replacement uses reflection and might be blocked (for example by
+     * the module system, if <tt>sun.nio.ch</tt> package is not open), in which
+     * case the {@link Selector} is left intact.
+     * The set is installed into the epoll {@link Selector} only, because
+     * other selectors (for example kqueue) might report the same channel
+     * several times within one select() call and rely on
+     * {@link Set#contains(java.lang.Object)} to merge its ready operations.
+     * 
+     * @return <tt>true</tt> if the selected-key set has been replaced,
+     *         or <tt>false</tt> otherwise
+     */
+    @SuppressWarnings("unchecked")
+    static boolean setSelectedKeySet(final Selector selector,
+            final SelectedKeySet selectedKeySet) {
+        if (isSelectedKeySetUnsupported) {
+            return false;
+        }
+        
+        try {
+            final Class<?> selectorImplClass = Class.forName("sun.nio.ch.SelectorImpl",
+                    false, Selectors.class.getClassLoader());
+            if (!selectorImplClass.isInstance(selector)
+                    || !EPOLL_SELECTOR_CLASS_NAME.equals(
+                            selector.getClass().getName())) {
+                return false;
+            }
+            
+            final Field selectedKeysField =
+                    selectorImplClass.getDeclaredField("selectedKeys");
+            final Field publicSelectedKeysField =
+                    selectorImplClass.getDeclaredField("publicSelectedKeys");
+            
+            selectedKeysField.setAccessible(true);
+            publicSelectedKeysField.setAccessible(true);
+            
+            if (!((Set<SelectionKey>) selectedKeysField.get(selector)).isEmpty()) {
+                return false;
+            }
+            
+            selectedKeysField.set(selector, selectedKeySet);
+            publicSelectedKeysField.set(selector, selectedKeySet);
+            
+            return true;
+        } catch (Exception e) {
+            // InaccessibleObjectException is a RuntimeException
+            isSelectedKeySetUnsupported = true;
+            LOGGER.log(Level.FINE,
+                    "Can not replace the Selector's selected-key set, falling back to the default one",
+                    e);
+            return false;
+        }
+    }
 }
@@ -0,0 +1,271 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.nio.transport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adaptive receive buffer sizer for {@link TCPNIOTransport}.
+ * 
+ * Instead of reading each time into a buffer of the
+ * {@link TCPNIOConnection#getReadBufferSize()} size, the sizer tracks the
+ * recent read sizes of each {@link TCPNIOConnection} and picks the next
+ * read buffer size from an exponential size table: the size grows quickly,
+ * when a read fills the whole buffer, and shrinks slowly, when two
+ * subsequent reads use less than the previous, smaller, size from the table.
+ * So small request/response exchanges read into small buffers, and bulk
+ * transfers are read using large buffers.
+ * 
+ * The read buffer size never exceeds the connection's read buffer size
+ * (and {@link TCPNIOTransport#MAX_RECEIVE_BUFFER_SIZE}).
+ * 
+ * The sizer also collects transport-wide statistics: number of reads,
+ * number of read bytes, number of allocated but unused (wasted) bytes and
+ * number of reads, which filled the entire buffer, so probably required
+ * extra read event(s) to read the rest of the available data.
+ * 
+ * @see TCPNIOTransport#setReceiveBufferSizer(org.glassfish.grizzly.nio.transport.AdaptiveReceiveBufferSizer)
+ */
+public class AdaptiveReceiveBufferSizer {
+    public static final int DEFAULT_MINIMUM = 64;
+    public static final int DEFAULT_INITIAL = 2048;
+    public static final int DEFAULT_MAXIMUM = 65536;
+    
+    private static final int INDEX_INCREMENT = 4;
+    private static final int INDEX_DECREMENT = 1;
+    
+    private final int[] sizeTable;
+    private final int initialIndex;
+    
+    private final LongAdder readsCount = new LongAdder();
+    private final LongAdder readBytes = new LongAdder();
+    private final LongAdder wastedBytes = new LongAdder();
+    private final LongAdder fullReadsCount = new LongAdder();
+
+    /**
+     * Creates the sizer with the default minimum (64), initial (2048) and
+     * maximum (65536) read buffer sizes.
+     */
+    public AdaptiveReceiveBufferSizer() {
+        this(DEFAULT_MINIMUM, DEFAULT_INITIAL, DEFAULT_MAXIMUM);
+    }
+    
+    /**
+     * Creates the sizer.
+     * 
+     * @param minimum the minimum read buffer size
+     * @param initial the read buffer size used for the first read
+     * @param maximum the maximum read buffer size
+     */
+    public AdaptiveReceiveBufferSizer(final int minimum, final int initial,
+            final int maximum) {
+        if (minimum <= 0) {
+            throw new IllegalArgumentException("minimum must be positive: " + minimum);
+        }
+        if (initial < minimum) {
+            throw new IllegalArgumentException("initial must not be less than minimum: " + initial);
+        }
+        if (maximum < initial) {
+            throw new IllegalArgumentException("maximum must not be less than initial: " + maximum);
+        }
+        
+        // grow by 16 bytes up to 512, then double
+        final List<Integer> sizes = new ArrayList<Integer>();
+        int size = minimum;
+        while (size < maximum) {
+            sizes.add(size);
+            size = size < 512 ? size + 16 : size << 1;
+        }
+        sizes.add(maximum);
+        
+        sizeTable = new int[sizes.size()];
+        int idx = -1;
+        for (int i = 0; i < sizeTable.length; i++) {
+            sizeTable[i] = sizes.get(i);
+            if (idx == -1 && sizeTable[i] >= initial) {
+                idx = i;
+            }
+        }
+        
+        initialIndex = idx;
+    }
+
+    /**
+     * @return the minimum read buffer size
+     */
+    public int getMinimum() {
+        return sizeTable[0];
+    }
+
+    /**
+     * @return the read buffer size used for the first read
+     */
+    public int getInitial() {
+        return sizeTable[initialIndex];
+    }
+
+    /**
+     * @return the maximum read buffer size
+     */
+    public int getMaximum() {
+        return sizeTable[sizeTable.length - 1];
+    }
+    
+    /**
+     * @return the number of reads, which returned data
+     */
+    public long getReadsCount() {
+        return readsCount.sum();
+    }
+
+    /**
+     * @return the number of read bytes
+     */
+    public long getReadBytes() {
+        return readBytes.sum();
+    }
+
+    /**
+     * @return the number of read buffer bytes, which were allocated, but
+     * left unused. The reads into heap buffers go through a temporary
+     * direct buffer and are copied into a buffer of the exact size,
+     * so they don't waste any bytes
+     */
+    public long getWastedBytes() {
+        return wastedBytes.sum();
+    }
+
+    /**
+     * @return the number of reads, which filled the entire read buffer, so
+     * the rest of the available data had to be read on the next read event
+     */
+    public long getFullReadsCount() {
+        return fullReadsCount.sum();
+    }
+    
+    /**
+     * Resets the collected statistics.
+     */
+    public void resetStatistics() {
+        readsCount.reset();
+        readBytes.reset();
+        wastedBytes.reset();
+        fullReadsCount.reset();
+    }
+    
+    /**
+     * Returns the size of the buffer the next read on the
+     * {@link TCPNIOConnection} has to use.
+     * 
+     * @param connection {@link TCPNIOConnection}
+     * @param limit the maximum size
+     * @return the read buffer size
+     */
+    int nextReadSize(final TCPNIOConnection connection, final int limit) {
+        int idx = connection.receiveSizeIndex;
+        if (idx < 0) {
+            idx = connection.receiveSizeIndex = initialIndex;
+        }
+        
+        return Math.min(sizeTable[idx], limit);
+    }
+    
+    /**
+     * Updates the {@link TCPNIOConnection} read size statistics.
+     * 
+     * @param connection {@link TCPNIOConnection}
+     * @param size the read buffer size
+     * @param read the number of read bytes
+     */
+    void onRead(final TCPNIOConnection connection, final int size,
+            final int read) {
+        onRead(connection, size, size, read);
+    }
+    
+    /**
+     * Updates the {@link TCPNIOConnection} read size statistics.
+     * 
+     * @param connection {@link TCPNIOConnection}
+     * @param size the read buffer size
+     * @param allocated the number of bytes allocated to keep the read data
+     * @param read the number of read bytes
+     */
+    void onRead(final TCPNIOConnection connection, final int size,
+            final int allocated, final int read) {
+        readsCount.increment();
+        readBytes.add(read);
+        wastedBytes.add(allocated - read);
+        
+        final int idx = connection.receiveSizeIndex;
+        
+        if (read >= size) {
+            fullReadsCount.increment();
+            
+            connection.receiveSizeIndex = Math.min(idx + INDEX_INCREMENT,
+                    sizeTable.length - 1);
+            connection.isReceiveSizeDecreasePending = false;
+        } else if (read <= sizeTable[Math.max(0, idx - INDEX_DECREMENT)]) {
+            if (connection.isReceiveSizeDecreasePending) {
+                connection.receiveSizeIndex = Math.max(idx - INDEX_DECREMENT, 0);
+                connection.isReceiveSizeDecreasePending = false;
+            } else {
+                connection.isReceiveSizeDecreasePending = true;
+            }
+        } else {
+            connection.isReceiveSizeDecreasePending = false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveReceiveBufferSizer{"
+                + "minimum=" + getMinimum()
+                + ", initial=" + getInitial()
+                + ", maximum=" + getMaximum()
+                + ", reads=" + getReadsCount()
+                + ", readBytes=" + getReadBytes()
+                + ", wastedBytes=" + getWastedBytes()
+                + ", fullReads=" + getFullReadsCount()
+                + "}";
+    }
+}
@@ -70,6 +70,10 @@ public class TCPNIOConnection extends NIOConnection {
 
     private int readBufferSize = -1;
     private int writeBufferSize = -1;
+    
+    // AdaptiveReceiveBufferSizer state
+    int receiveSizeIndex = -1;
+    boolean isReceiveSizeDecreasePending;
 
     private AtomicReference<ConnectResultHandler> connectHandlerRef;
 
@@ -44,6 +44,8 @@ import java.io.IOException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -59,6 +61,7 @@ import org.glassfish.grizzly.impl.FutureImpl;
 import org.glassfish.grizzly.impl.SafeFutureImpl;
 import org.glassfish.grizzly.localization.LogMessages;
 import org.glassfish.grizzly.nio.RegisterChannelResult;
+import org.glassfish.grizzly.nio.SelectorRunner;
 import org.glassfish.grizzly.utils.CompletionHandlerAdapter;
 import org.glassfish.grizzly.utils.Exceptions;
 import org.glassfish.grizzly.utils.Holder;
@@ -78,6 +81,18 @@ public class TCPNIOServerConnection extends TCPNIOConnection {
     private final RegisterAcceptedChannelCompletionHandler defaultCompletionHandler;
     private volatile int maxAcceptRetries = 5;
     
+    /**
+     * The SO_REUSEPORT acceptor index, or <tt>-1</tt> if the server connection
+     * is the single acceptor for its address
+     */
+    int acceptorIndex = -1;
+    /**
+     * The other SO_REUSEPORT acceptors of the group represented by this
+     * server connection
+     */
+    private final Queue<TCPNIOServerConnection> reusePortAcceptors =
+            new ConcurrentLinkedQueue<TCPNIOServerConnection>();
+    
 
     public TCPNIOServerConnection(TCPNIOTransport transport,
             ServerSocketChannel serverSocketChannel) {
@@ -92,11 +107,20 @@ public class TCPNIOServerConnection extends TCPNIOConnection {
 
         final FutureImpl<RegisterChannelResult> future =
                 SafeFutureImpl.create();
-        
-        transport.getNIOChannelDistributor().registerServiceChannelAsync(
-                channel, SelectionKey.OP_ACCEPT, this,
+        final CompletionHandler<RegisterChannelResult> completionHandler =
                 new CompletionHandlerAdapter<RegisterChannelResult, RegisterChannelResult>(
-                future, registerCompletionHandler));
+                future, registerCompletionHandler);
+        
+        if (acceptorIndex >= 0) {
+            // SO_REUSEPORT acceptor is pinned to its own SelectorRunner
+            final SelectorRunner selectorRunner =
+                    ((TCPNIOTransport) transport).getAcceptorSelectorRunner(acceptorIndex);
+            transport.getSelectorHandler().registerChannelAsync(selectorRunner,
+                    channel, SelectionKey.OP_ACCEPT, this, completionHandler);
+        } else {
+            transport.getNIOChannelDistributor().registerServiceChannelAsync(
+                    channel, SelectionKey.OP_ACCEPT, this, completionHandler);
+        }
         try {
             future.get(10, TimeUnit.SECONDS);
         } catch (ExecutionException e) {
@@ -171,11 +195,30 @@ public class TCPNIOServerConnection extends TCPNIOConnection {
         this.maxAcceptRetries = maxAcceptRetries;
     }
     
+    /**
+     * @return <tt>true</tt> if the server connection is one of the SO_REUSEPORT
+     * acceptors, bound to the same address
+     * 
+     * @see TCPNIOTransport#setReusePortAcceptors(boolean)
+     */
+    public boolean isReusePortAcceptor() {
+        return acceptorIndex >= 0;
+    }
+    
+    void addReusePortAcceptor(final TCPNIOServerConnection serverConnection) {
+        reusePortAcceptors.add(serverConnection);
+    }
+    
     @Override
     protected void preClose() {
         if (acceptListener != null) {
             acceptListener.failure(new IOException("Connection is closed"));
         }
+        
+        TCPNIOServerConnection acceptor;
+        while ((acceptor = reusePortAcceptors.poll()) != null) {
+            acceptor.closeSilently();
+        }
 
         try {
             ((TCPNIOTransport) transport).unbind(this);
@@ -236,9 +279,17 @@ public class TCPNIOServerConnection extends TCPNIOConnection {
 
         final TCPNIOTransport tcpNIOTransport = (TCPNIOTransport) transport;
 
-        tcpNIOTransport.getNIOChannelDistributor().registerChannelAsync(
-                acceptedConnection.getChannel(), initialSelectionKeyInterest,
-                acceptedConnection, completionHandler);
+        if (acceptorIndex >= 0) {
+            // the connection is served by the SelectorRunner, which accepted it
+            tcpNIOTransport.getSelectorHandler().registerChannelAsync(
+                    getSelectorRunner(), acceptedConnection.getChannel(),
+                    initialSelectionKeyInterest, acceptedConnection,
+                    completionHandler);
+        } else {
+            tcpNIOTransport.getNIOChannelDistributor().registerChannelAsync(
+                    acceptedConnection.getChannel(), initialSelectionKeyInterest,
+                    acceptedConnection, completionHandler);
+        }
     }
     
     @Override
@@ -46,6 +46,8 @@ import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
 import java.nio.channels.Channel;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
@@ -115,6 +117,13 @@ public class TCPNIOTransport extends NIOTransport {
     public static final int DEFAULT_SERVER_CONNECTION_BACKLOG = 4096;
 
     private static final String DEFAULT_TRANSPORT_NAME = "TCPNIOTransport";
+    
+    /**
+     * SO_REUSEPORT {@link SocketOption}, available since JDK 9,
+     * or <tt>null</tt> if not supported
+     */
+    private static final SocketOption<Boolean> SO_REUSEPORT = lookupReusePortOption();
+    
     /**
      * The Server connections.
      */
@@ -139,6 +148,18 @@ public class TCPNIOTransport extends NIOTransport {
      * The socket keepAlive mode.
      */
     boolean isKeepAlive = DEFAULT_KEEP_ALIVE;
+    
+    /**
+     * If <tt>true</tt> - bind one SO_REUSEPORT server socket per
+     * {@link SelectorRunner}.
+     */
+    boolean isReusePortAcceptors;
+    
+    /**
+     * The adaptive read buffer sizer, or <tt>null</tt> if each read uses
+     * the connection's read buffer size
+     */
+    AdaptiveReceiveBufferSizer receiveBufferSizer;
 
     private final Filter defaultTransportFilter;
     final RegisterChannelCompletionHandler selectorRegistrationHandler;
@@ -243,6 +264,62 @@ public class TCPNIOTransport extends NIOTransport {
     public TCPNIOServerConnection bind(final SocketAddress socketAddress,
             final int backlog)
             throws IOException {
+        if (isReusePortAcceptors && getSelectorRunnersCount() > 1) {
+            if (isReusePortSupported()) {
+                return bindReusePort(socketAddress, backlog);
+            }
+            
+            LOGGER.log(Level.FINE,
+                    "SO_REUSEPORT is not supported, binding single acceptor to {0}",
+                    socketAddress);
+        }
+        
+        return bind0(socketAddress, backlog, -1);
+    }
+    
+    /**
+     * Binds one SO_REUSEPORT server socket per {@link SelectorRunner}, so the
+     * kernel balances incoming connections between the acceptors.
+     * Each acceptor is served by its own {@link SelectorRunner}, which also
+     * serves the connections it accepts.
+     * The returned {@link TCPNIOServerConnection} represents the whole group:
+     * closing it closes all the group server sockets.
+     */
+    private TCPNIOServerConnection bindReusePort(final SocketAddress socketAddress,
+            final int backlog) throws IOException {
+        
+        final int acceptorsCount = getSelectorRunnersCount();
+        
+        final Lock lock = state.getStateLocker().writeLock();
+        lock.lock();
+        try {
+            final TCPNIOServerConnection serverConnection =
+                    bind0(socketAddress, backlog, 0);
+            
+            try {
+                // the actual address, in case an ephemeral port was requested
+                final SocketAddress boundAddress =
+                        ((ServerSocketChannel) serverConnection.getChannel())
+                        .socket().getLocalSocketAddress();
+                
+                for (int i = 1; i < acceptorsCount; i++) {
+                    serverConnection.addReusePortAcceptor(
+                            bind0(boundAddress, backlog, i));
+                }
+            } catch (IOException e) {
+                serverConnection.closeSilently();
+                throw e;
+            }
+            
+            return serverConnection;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private TCPNIOServerConnection bind0(final SocketAddress socketAddress,
+            final int backlog, final int acceptorIndex)
+            throws IOException {
         
         TCPNIOServerConnection serverConnection = null;
         final ServerSocketChannel serverSocketChannel =
@@ -253,12 +330,17 @@ public class TCPNIOTransport extends NIOTransport {
         try {
             getChannelConfigurator().preConfigure(this, serverSocketChannel);
             
+            if (acceptorIndex >= 0) {
+                serverSocketChannel.setOption(SO_REUSEPORT, true);
+            }
+            
             final ServerSocket serverSocket = serverSocketChannel.socket();
             serverSocket.bind(socketAddress, backlog);
             
             getChannelConfigurator().postConfigure(this, serverSocketChannel);
 
             serverConnection = obtainServerNIOConnection(serverSocketChannel);
+            serverConnection.acceptorIndex = acceptorIndex;
             serverConnections.add(serverConnection);
             serverConnection.resetProperties();
 
@@ -587,6 +669,82 @@ public class TCPNIOTransport extends NIOTransport {
         this.serverConnectionBackLog = serverConnectionBackLog;
     }
 
+    /**
+     * @return <tt>true</tt>, if {@link #bind(java.net.SocketAddress, int)}
+     * opens one SO_REUSEPORT server socket per {@link SelectorRunner},
+     * or <tt>false</tt> if single server socket is bound and accepted
+     * connections are distributed by the {@link org.glassfish.grizzly.nio.NIOChannelDistributor}.
+     */
+    public boolean isReusePortAcceptors() {
+        return isReusePortAcceptors;
+    }
+
+    /**
+     * Sets the bind mode. If <tt>true</tt> and SO_REUSEPORT is supported
+     * (see {@link #isReusePortSupported()}), each subsequent bind opens one
+     * SO_REUSEPORT server socket per {@link SelectorRunner}, so the kernel
+     * load-balances incoming connections between the selector threads
+     * and each {@link SelectorRunner} accepts and serves its own connections.
+     * Otherwise a single server socket is bound.
+     * 
+     * @param isReusePortAcceptors <tt>true</tt> to bind one server socket
+     *        per {@link SelectorRunner}
+     */
+    public void setReusePortAcceptors(final boolean isReusePortAcceptors) {
+        this.isReusePortAcceptors = isReusePortAcceptors;
+        notifyProbesConfigChanged(this);
+    }
+    
+    /**
+     * @return the {@link AdaptiveReceiveBufferSizer}, or <tt>null</tt> if
+     * each read uses a buffer of the connection's read buffer size
+     */
+    public AdaptiveReceiveBufferSizer getReceiveBufferSizer() {
+        return receiveBufferSizer;
+    }
+
+    /**
+     * Sets the {@link AdaptiveReceiveBufferSizer}, which chooses the read
+     * buffer size per connection based on the recent read sizes.
+     * If <tt>null</tt> (default) - each read uses a buffer of the
+     * connection's read buffer size.
+     * 
+     * @param receiveBufferSizer {@link AdaptiveReceiveBufferSizer}
+     */
+    public void setReceiveBufferSizer(
+            final AdaptiveReceiveBufferSizer receiveBufferSizer) {
+        this.receiveBufferSizer = receiveBufferSizer;
+        notifyProbesConfigChanged(this);
+    }
+    
+    /**
+     * @return <tt>true</tt> if the JDK supports SO_REUSEPORT option and
+     * the OS balances connections between the server sockets bound to the
+     * same port (Linux), or <tt>false</tt> otherwise
+     */
+    public static boolean isReusePortSupported() {
+        return SO_REUSEPORT != null
+                && "linux".equalsIgnoreCase(System.getProperty("os.name"));
+    }
+    
+    /**
+     * Returns the {@link SelectorRunner} the SO_REUSEPORT acceptor is bound to.
+     */
+    SelectorRunner getAcceptorSelectorRunner(final int acceptorIndex) {
+        final SelectorRunner[] runners = getSelectorRunners();
+        return runners[acceptorIndex % runners.length];
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> lookupReusePortOption() {
+        try {
+            return (SocketOption<Boolean>) StandardSocketOptions.class
+                    .getField("SO_REUSEPORT").get(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     @Override
     public Filter getTransportFilter() {
         return defaultTransportFilter;
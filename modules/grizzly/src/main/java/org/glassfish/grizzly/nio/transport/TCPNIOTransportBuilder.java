@@ -55,6 +55,8 @@ public class TCPNIOTransportBuilder extends NIOTransportBuilder<TCPNIOTransportB
     protected int serverConnectionBackLog = TCPNIOTransport.DEFAULT_SERVER_CONNECTION_BACKLOG;
     protected int serverSocketSoTimeout = TCPNIOTransport.DEFAULT_SERVER_SOCKET_SO_TIMEOUT;
     protected boolean tcpNoDelay = TCPNIOTransport.DEFAULT_TCP_NO_DELAY;
+    protected boolean reusePortAcceptors;
+    protected AdaptiveReceiveBufferSizer receiveBufferSizer;
 
     // ------------------------------------------------------------ Constructors
 
@@ -119,6 +121,26 @@ public class TCPNIOTransportBuilder extends NIOTransportBuilder<TCPNIOTransportB
         return getThis();
     }
 
+    /**
+     * @see TCPNIOTransport#setReusePortAcceptors(boolean)
+     *
+     * @return this <code>TCPNIOTransportBuilder</code>
+     */
+    public TCPNIOTransportBuilder reusePortAcceptors(boolean reusePortAcceptors) {
+        this.reusePortAcceptors = reusePortAcceptors;
+        return getThis();
+    }
+
+    /**
+     * @see TCPNIOTransport#setReceiveBufferSizer(AdaptiveReceiveBufferSizer)
+     *
+     * @return this <code>TCPNIOTransportBuilder</code>
+     */
+    public TCPNIOTransportBuilder receiveBufferSizer(AdaptiveReceiveBufferSizer receiveBufferSizer) {
+        this.receiveBufferSizer = receiveBufferSizer;
+        return getThis();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -130,6 +152,8 @@ public class TCPNIOTransportBuilder extends NIOTransportBuilder<TCPNIOTransportB
         transport.setServerConnectionBackLog(serverConnectionBackLog);
         transport.setTcpNoDelay(tcpNoDelay);
         transport.setServerSocketSoTimeout(serverSocketSoTimeout);
+        transport.setReusePortAcceptors(reusePortAcceptors);
+        transport.setReceiveBufferSizer(receiveBufferSizer);
         return transport;
     }
 
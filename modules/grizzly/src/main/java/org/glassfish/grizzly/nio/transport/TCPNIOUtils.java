@@ -219,14 +219,23 @@ public class TCPNIOUtils {
         
         final MemoryManager memoryManager = connection.getMemoryManager();
         
+        final AdaptiveReceiveBufferSizer receiveBufferSizer =
+                ((TCPNIOTransport) connection.getTransport()).receiveBufferSizer;
+        
         int read;
+        int receiveBufferSize = 0;
+        int allocatedSize = 0;
         Throwable error = null;
         Buffer buffer = null;
         
         try {
-            final int receiveBufferSize =
+            receiveBufferSize =
                     Math.min(TCPNIOTransport.MAX_RECEIVE_BUFFER_SIZE,
                             connection.getReadBufferSize());
+            if (receiveBufferSizer != null) {
+                receiveBufferSize = receiveBufferSizer.nextReadSize(
+                        connection, receiveBufferSize);
+            }
         
             if (!memoryManager.willAllocateDirect(receiveBufferSize)) {
                 final DirectByteBufferRecord ioRecord = 
@@ -238,6 +247,8 @@ public class TCPNIOUtils {
                     read = readSimpleByteBuffer(connection, directByteBuffer);
                     if (read > 0) {
                         directByteBuffer.flip();
+                        // the heap buffer has the exact size, nothing is wasted
+                        allocatedSize = read;
                         buffer = memoryManager.allocate(read);
                         buffer.put(directByteBuffer);
                     }
@@ -246,6 +257,8 @@ public class TCPNIOUtils {
                 }
             } else {
                 buffer = memoryManager.allocateAtLeast(receiveBufferSize);
+                // the buffer might be larger than requested
+                receiveBufferSize = allocatedSize = buffer.remaining();
                 read = readBuffer(connection, buffer);
             }
         } catch (Throwable e) {
@@ -254,6 +267,11 @@ public class TCPNIOUtils {
         }
         
         if (read > 0) {
+            if (receiveBufferSizer != null) {
+                receiveBufferSizer.onRead(connection, receiveBufferSize,
+                        allocatedSize, read);
+            }
+            
             buffer.position(read);
             buffer.allowBufferDispose(true);
         } else {
@@ -0,0 +1,179 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.strategies;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.EventLifeCycleListener;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.IOEvent;
+import org.glassfish.grizzly.Processor;
+import org.glassfish.grizzly.Transport;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+import org.glassfish.grizzly.threadpool.VirtualThreadExecutor;
+
+/**
+ * {@link org.glassfish.grizzly.IOStrategy}, which executes {@link Processor}s
+ * in a new virtual thread per event, so blocking {@link Processor}s don't
+ * limit the concurrency by the worker thread pool size.
+ * 
+ * If the JDK doesn't support virtual threads, the strategy works
+ * like {@link WorkerThreadIOStrategy}.
+ *
+ * @see VirtualThreadExecutor
+ */
+public final class VirtualThreadIOStrategy extends AbstractIOStrategy {
+
+    private final static EnumSet<IOEvent> VIRTUAL_THREAD_EVENT_SET =
+            EnumSet.<IOEvent>of(IOEvent.READ, IOEvent.WRITE, IOEvent.CLOSED);
+    
+    private static final VirtualThreadIOStrategy INSTANCE = new VirtualThreadIOStrategy();
+
+    private static final Logger logger = Grizzly.logger(VirtualThreadIOStrategy.class);
+
+    private final Executor virtualThreadExecutor =
+            VirtualThreadExecutor.getInstance();
+
+    // ------------------------------------------------------------ Constructors
+
+
+    private VirtualThreadIOStrategy() { }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+
+    public static VirtualThreadIOStrategy getInstance() {
+        return INSTANCE;
+    }
+
+    // ------------------------------------------------- Methods from IOStrategy
+
+
+    @Override
+    public Executor getThreadPoolFor(final Connection connection,
+            final IOEvent ioEvent) {
+        if (!VIRTUAL_THREAD_EVENT_SET.contains(ioEvent)) {
+            return null;
+        }
+        
+        return virtualThreadExecutor != null ?
+                virtualThreadExecutor :
+                getWorkerThreadPool(connection);
+    }
+    
+    @Override
+    public boolean executeIOEvent(final Connection connection,
+            final IOEvent ioEvent,
+            final EventLifeCycleListener lifeCycleListener) {
+        return executeIOEvent(connection, ioEvent, lifeCycleListener,
+                getThreadPoolFor(connection, ioEvent));
+    }
+
+    @Override
+    public boolean executeIOEvent(final Connection connection,
+            final IOEvent ioEvent,
+            final DecisionListener listener) throws IOException {
+        
+        final Executor executor = getThreadPoolFor(connection, ioEvent);
+        
+        EventLifeCycleListener lifeCycleListener = null;
+        
+        if (listener != null) {
+            lifeCycleListener = executor != null ?
+                    listener.goAsync(connection, ioEvent) :
+                    listener.goSync(connection, ioEvent);
+        }
+    
+        return executeIOEvent(connection, ioEvent, lifeCycleListener, executor);
+    }
+
+    // ----------------------------- Methods from WorkerThreadPoolConfigProducer
+
+
+    @Override
+    public ThreadPoolConfig createDefaultWorkerPoolConfig(final Transport transport) {
+        // no worker thread pool is needed, if virtual threads are supported
+        return virtualThreadExecutor != null ?
+                null :
+                super.createDefaultWorkerPoolConfig(transport);
+    }
+    
+    // --------------------------------------------------------- Private Methods
+    
+    private boolean executeIOEvent(final Connection connection,
+            final IOEvent ioEvent,
+            final EventLifeCycleListener lifeCycleListener,
+            final Executor executor) {
+        
+        if (executor != null) {
+            executor.execute(new VirtualThreadRunnable(connection, ioEvent,
+                    lifeCycleListener));
+        } else {
+            fireEvent(connection, ioEvent, lifeCycleListener, logger);
+        }
+        
+        return true;
+    }
+    
+    private static final class VirtualThreadRunnable implements Runnable {
+        final Connection connection;
+        final IOEvent event;
+        final EventLifeCycleListener lifeCycleListener;
+        
+        private VirtualThreadRunnable(final Connection connection,
+                final IOEvent event,
+                final EventLifeCycleListener lifeCycleListener) {
+            this.connection = connection;
+            this.event = event;
+            this.lifeCycleListener = lifeCycleListener;
+        }
+
+        @Override
+        public void run() {
+            fireEvent(connection, event, lifeCycleListener, logger);
+        }        
+    }
+
+}
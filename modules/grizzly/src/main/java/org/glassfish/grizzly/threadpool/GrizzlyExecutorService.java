@@ -97,9 +97,13 @@ public class GrizzlyExecutorService extends AbstractExecutorService
         if ((queue == null || queue instanceof BlockingQueue) &&
                 (cfg.getCorePoolSize() < 0 || cfg.getCorePoolSize() == cfg.getMaxPoolSize())) {
 
-            this.pool = cfg.getQueueLimit() < 0
-                ? new FixedThreadPool(cfg)
-                : new QueueLimitedThreadPool(cfg);
+            if (cfg.getQueueLimit() >= 0) {
+                this.pool = new QueueLimitedThreadPool(cfg);
+            } else if (queue == null && cfg.getPartitionsCount() > 1) {
+                this.pool = new PartitionedThreadPool(cfg);
+            } else {
+                this.pool = new FixedThreadPool(cfg);
+            }
         } else {
             this.pool = new SyncThreadPool(cfg);
         }
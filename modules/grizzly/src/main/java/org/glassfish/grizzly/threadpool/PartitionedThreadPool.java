@@ -0,0 +1,356 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.threadpool;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed thread pool, which splits its threads into partitions (groups),
+ * each with its own task queue.
+ * 
+ * A task submitted by a service thread (like a
+ * {@link org.glassfish.grizzly.nio.SelectorRunner} thread) is queued to the
+ * partition, which is assigned to this service thread, and a task submitted
+ * by a pool thread is queued to the thread's own partition, so the state of
+ * connections, served by a selector thread, is processed by a small set of
+ * threads and stays cache-friendly.
+ * 
+ * The partitions are balanced only when they're idle: if the target
+ * partition has no idle threads, but another partition has - the task goes
+ * to the idle partition, and a pool thread, whose own queue is empty,
+ * steals tasks from the other partitions' queues before waiting.
+ * 
+ * @see ThreadPoolConfig#setPartitionsCount(int)
+ */
+public class PartitionedThreadPool extends AbstractThreadPool {
+
+    private final Partition[] partitions;
+    private final Queue<Runnable> partitionsQueue = new PartitionsQueue();
+    
+    // the partition assigned to the current service or pool thread
+    private final ThreadLocal<Partition> homePartition =
+            new ThreadLocal<Partition>();
+    
+    private final AtomicInteger serviceThreadsCounter = new AtomicInteger();
+    private final AtomicInteger tasksCounter = new AtomicInteger();
+
+    public PartitionedThreadPool(final ThreadPoolConfig config) {
+        super(config);
+        
+        if (config.getQueue() != null) {
+            throw new IllegalArgumentException(
+                    "Partitioned thread pool doesn't support custom queue");
+        }
+        
+        final int poolSize = config.getMaxPoolSize();
+        final int partitionsCount = Math.max(1,
+                Math.min(config.getPartitionsCount(), poolSize));
+        
+        partitions = new Partition[partitionsCount];
+        for (int i = 0; i < partitionsCount; i++) {
+            partitions[i] = new Partition(i);
+        }
+        
+        synchronized (stateLock) {
+            for (int i = 0; i < poolSize; i++) {
+                final Partition partition = partitions[i % partitionsCount];
+                partition.threadsCount++;
+                startWorker(new PartitionWorker(partition));
+            }
+        }
+
+        ProbeNotifier.notifyThreadPoolStarted(this);
+        super.onMaxNumberOfThreadsReached();
+    }
+
+    /**
+     * @return the number of the thread pool partitions
+     */
+    public int getPartitionsCount() {
+        return partitions.length;
+    }
+    
+    /**
+     * Returns the view of all the partitions' task queues.
+     */
+    @Override
+    public Queue<Runnable> getQueue() {
+        return partitionsQueue;
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        if (command == null) {
+            throw new NullPointerException("command can't be null");
+        }
+        
+        if (running) {
+            final Partition partition = selectPartition();
+            
+            if (partition.queue.offer(command)) {
+                // doublecheck the pool is still running
+                if (!running && partition.queue.remove(command)) {
+                    throw new RejectedExecutionException("ThreadPool is not running");
+                }
+
+                onTaskQueued(command);
+                
+                if (partition.idleCount.get() == 0) {
+                    rebalance(partition, command);
+                }
+                
+                return;
+            }
+            
+            onTaskQueueOverflow();
+            return;
+        }
+        
+        throw new RejectedExecutionException("ThreadPool is not running");
+    }
+
+    /**
+     * Poisons each partition according to its threads count, the generic
+     * round-robin distribution might leave some partition threads alive.
+     */
+    @Override
+    protected void poisonAll() {
+        for (Partition partition : partitions) {
+            int size = partition.threadsCount * 4 / 3 + 1;
+            while (size-- > 0) {
+                partition.queue.offer(poison);
+            }
+        }
+    }
+
+    private Partition selectPartition() {
+        Partition partition = homePartition.get();
+        
+        if (partition == null) {
+            if (Threads.isService()) {
+                partition = partitions[
+                        serviceThreadsCounter.getAndIncrement() % partitions.length];
+                homePartition.set(partition);
+            } else {
+                partition = partitions[
+                        (tasksCounter.getAndIncrement() & Integer.MAX_VALUE)
+                                % partitions.length];
+            }
+        }
+        
+        if (partition.idleCount.get() > 0) {
+            return partition;
+        }
+        
+        // the partition is busy, check if any other partition is idle
+        for (int i = 1; i < partitions.length; i++) {
+            final Partition p = partitions[(partition.index + i) % partitions.length];
+            if (p.idleCount.get() > 0) {
+                return p;
+            }
+        }
+        
+        return partition;
+    }
+    
+    /**
+     * Moves the task queued to the busy partition to an idle one, if
+     * another partition's thread became idle after the partition has been
+     * selected, but missed the task when tried to steal.
+     */
+    private void rebalance(final Partition partition, final Runnable command) {
+        for (int i = 1; i < partitions.length; i++) {
+            final Partition p = partitions[(partition.index + i) % partitions.length];
+            if (p.idleCount.get() > 0) {
+                if (partition.queue.remove(command)) {
+                    p.queue.offer(command);
+                }
+                
+                return;
+            }
+        }
+    }
+    
+    private Runnable steal(final Partition partition) {
+        for (int i = 1; i < partitions.length; i++) {
+            final BlockingQueue<Runnable> q =
+                    partitions[(partition.index + i) % partitions.length].queue;
+            final Runnable r = q.poll();
+            if (r == poison) {
+                // the poison belongs to the other partition's threads
+                q.offer(r);
+            } else if (r != null) {
+                return r;
+            }
+        }
+        
+        return null;
+    }
+    
+    private static final class Partition {
+        private final int index;
+        private final BlockingQueue<Runnable> queue =
+                new LinkedTransferQueue<Runnable>();
+        private final AtomicInteger idleCount = new AtomicInteger();
+        private int threadsCount;
+
+        private Partition(final int index) {
+            this.index = index;
+        }
+    }
+    
+    private final class PartitionWorker extends Worker {
+        private final Partition partition;
+
+        private PartitionWorker(final Partition partition) {
+            this.partition = partition;
+        }
+
+        @Override
+        protected void doWork() {
+            homePartition.set(partition);
+            super.doWork();
+        }
+        
+        @Override
+        protected Runnable getTask() throws InterruptedException {
+            Runnable r = partition.queue.poll();
+            if (r != null) {
+                return r;
+            }
+            
+            r = steal(partition);
+            if (r != null) {
+                return r;
+            }
+            
+            partition.idleCount.incrementAndGet();
+            try {
+                // recheck the other partitions, once this one is seen idle
+                r = steal(partition);
+                if (r != null) {
+                    return r;
+                }
+                
+                return partition.queue.take();
+            } finally {
+                partition.idleCount.decrementAndGet();
+            }
+        }
+    }
+    
+    /**
+     * The {@link Queue} view of all the partitions' queues.
+     * New elements are added to the partitions in round-robin fashion.
+     */
+    private final class PartitionsQueue extends AbstractQueue<Runnable> {
+        private final AtomicInteger offerCounter = new AtomicInteger();
+        
+        @Override
+        public Iterator<Runnable> iterator() {
+            final List<Runnable> snapshot = new ArrayList<Runnable>();
+            for (Partition partition : partitions) {
+                snapshot.addAll(partition.queue);
+            }
+            
+            return snapshot.iterator();
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (Partition partition : partitions) {
+                size += partition.queue.size();
+            }
+            
+            return size;
+        }
+
+        @Override
+        public boolean offer(final Runnable r) {
+            return partitions[(offerCounter.getAndIncrement() & Integer.MAX_VALUE)
+                    % partitions.length].queue.offer(r);
+        }
+
+        @Override
+        public Runnable poll() {
+            for (Partition partition : partitions) {
+                final Runnable r = partition.queue.poll();
+                if (r != null) {
+                    return r;
+                }
+            }
+            
+            return null;
+        }
+
+        @Override
+        public Runnable peek() {
+            for (Partition partition : partitions) {
+                final Runnable r = partition.queue.peek();
+                if (r != null) {
+                    return r;
+                }
+            }
+            
+            return null;
+        }
+
+        @Override
+        public boolean remove(final Object o) {
+            for (Partition partition : partitions) {
+                if (partition.queue.remove(o)) {
+                    return true;
+                }
+            }
+            
+            return false;
+        }
+    }
+}
@@ -65,6 +65,13 @@ import org.glassfish.grizzly.utils.DelayedExecutor;
  *
  */
 public final class ThreadPoolConfig {
+    /**
+     * The {@link #setPartitionsCount(int)} value, which makes the transport
+     * create one worker thread pool partition per
+     * {@link org.glassfish.grizzly.nio.SelectorRunner}.
+     */
+    public static final int PARTITION_PER_SELECTOR_RUNNER = 0;
+    
     private static final ThreadPoolConfig DEFAULT = new ThreadPoolConfig(
             "Grizzly", AbstractThreadPool.DEFAULT_MIN_THREAD_COUNT,
             AbstractThreadPool.DEFAULT_MAX_THREAD_COUNT,
@@ -97,6 +104,7 @@ public final class ThreadPoolConfig {
     protected DelayedExecutor transactionMonitor;
     protected long transactionTimeoutMillis;
     protected ClassLoader initialClassLoader;
+    protected int partitionsCount = -1;
 
     /**
      * Thread pool probes
@@ -155,6 +163,7 @@ public final class ThreadPoolConfig {
         this.keepAliveTimeMillis   = cfg.keepAliveTimeMillis;
         this.mm              = cfg.mm;
         this.initialClassLoader = cfg.initialClassLoader;
+        this.partitionsCount = cfg.partitionsCount;
         
         this.threadPoolMonitoringConfig =
                 new DefaultMonitoringConfig<ThreadPoolProbe>(ThreadPoolProbe.class);
@@ -420,6 +429,44 @@ public final class ThreadPoolConfig {
         return this;
     }
 
+    /**
+     * @return the number of the thread pool partitions, or a value less than
+     * <tt>0</tt> if the thread pool is not partitioned
+     * 
+     * @see #setPartitionsCount(int)
+     */
+    public int getPartitionsCount() {
+        return partitionsCount;
+    }
+
+    /**
+     * Sets the number of the thread pool partitions.
+     * 
+     * If the number of partitions is greater than <tt>1</tt>, a fixed size
+     * thread pool with unlimited queue will be created as
+     * {@link PartitionedThreadPool}: the threads are split into groups, each
+     * group has its own task queue, and a task submitted by the same
+     * service thread (like a {@link org.glassfish.grizzly.nio.SelectorRunner}
+     * thread) always goes to the same group, unless the group is busy and
+     * another group has idle threads. Idle threads steal tasks from the
+     * other groups' queues.
+     * This way the connection state, processed by a selector thread,
+     * stays on a smaller set of CPU cores.
+     * 
+     * The {@link #PARTITION_PER_SELECTOR_RUNNER} value makes the transport
+     * create one partition per {@link org.glassfish.grizzly.nio.SelectorRunner}.
+     * 
+     * @param partitionsCount the number of the thread pool partitions,
+     *      the value less than <tt>0</tt> means no partitioning (default)
+     * @return the {@link ThreadPoolConfig}
+     * 
+     * @see PartitionedThreadPool
+     */
+    public ThreadPoolConfig setPartitionsCount(final int partitionsCount) {
+        this.partitionsCount = partitionsCount;
+        return this;
+    }
+
     @Override
     public String toString() {
         return ThreadPoolConfig.class.getSimpleName() + " :\r\n"
@@ -434,6 +481,7 @@ public final class ThreadPoolConfig {
                 + "  transactionTimeoutMillis: " + transactionTimeoutMillis + "\r\n"
                 + "  priority: " + priority + "\r\n"
                 + "  isDaemon: " + isDaemon + "\r\n"
-                + "  initialClassLoader: " + initialClassLoader;
+                + "  initialClassLoader: " + initialClassLoader + "\r\n"
+                + "  partitionsCount: " + partitionsCount;
     }
 }
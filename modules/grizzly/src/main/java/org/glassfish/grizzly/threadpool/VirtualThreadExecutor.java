@@ -0,0 +1,240 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.threadpool;
+
+import java.lang.reflect.Method;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.ThreadCache;
+import org.glassfish.grizzly.ThreadCache.ObjectCache;
+
+/**
+ * {@link Executor}, which executes each task in a new virtual thread.
+ * 
+ * Virtual threads are detected at runtime, so the class may be loaded on
+ * JDKs, which don't support them; in this case {@link #isSupported()}
+ * returns <tt>false</tt> and no instance can be created.
+ * 
+ * Unlike {@link DefaultWorkerThread}s, virtual threads are not reused, so
+ * the {@link ThreadCache} of a virtual thread would be thrown away together
+ * with the thread. To keep the cached objects (and the thread-local direct
+ * buffer used for reading) reusable, the executor attaches a pooled
+ * {@link ObjectCache} to the virtual thread for the time of the task
+ * execution, and returns it to the pool once the task is completed.
+ */
+public class VirtualThreadExecutor implements Executor {
+    private static final Logger LOGGER = Grizzly.logger(VirtualThreadExecutor.class);
+
+    private static final Method IS_VIRTUAL_METHOD;
+    private static final Method OF_VIRTUAL_METHOD;
+    private static final Method BUILDER_NAME_METHOD;
+    private static final Method BUILDER_FACTORY_METHOD;
+    
+    private static final boolean IS_SUPPORTED;
+    
+    private static final int MAX_POOLED_CACHES =
+            Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+    
+    private static final Queue<ObjectCache> CACHE_POOL =
+            new ConcurrentLinkedQueue<ObjectCache>();
+    private static final AtomicInteger CACHE_POOL_SIZE = new AtomicInteger();
+    
+    static {
+        Method isVirtualMethod = null;
+        Method ofVirtualMethod = null;
+        Method builderNameMethod = null;
+        Method builderFactoryMethod = null;
+        boolean isSupported = false;
+        
+        try {
+            isVirtualMethod = Thread.class.getMethod("isVirtual");
+            ofVirtualMethod = Thread.class.getMethod("ofVirtual");
+            
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builderNameMethod = builderClass.getMethod("name", String.class, long.class);
+            builderFactoryMethod = builderClass.getMethod("factory");
+            
+            // on some JDKs virtual threads are a preview feature and
+            // Thread.ofVirtual() throws UnsupportedOperationException
+            ofVirtualMethod.invoke(null);
+            isSupported = true;
+        } catch (Throwable t) {
+            LOGGER.log(Level.FINE, "Virtual threads are not supported", t);
+        }
+        
+        IS_VIRTUAL_METHOD = isVirtualMethod;
+        OF_VIRTUAL_METHOD = ofVirtualMethod;
+        BUILDER_NAME_METHOD = builderNameMethod;
+        BUILDER_FACTORY_METHOD = builderFactoryMethod;
+        IS_SUPPORTED = isSupported;
+    }
+    
+    private static volatile VirtualThreadExecutor defaultInstance;
+    
+    private final ThreadFactory threadFactory;
+    
+    /**
+     * @return <tt>true</tt> if the JDK supports virtual threads, or
+     * <tt>false</tt> otherwise
+     */
+    public static boolean isSupported() {
+        return IS_SUPPORTED;
+    }
+    
+    /**
+     * @param thread {@link Thread}
+     * @return <tt>true</tt> if the {@link Thread} is a virtual thread, or
+     * <tt>false</tt> otherwise
+     */
+    public static boolean isVirtual(final Thread thread) {
+        if (!IS_SUPPORTED) {
+            return false;
+        }
+        
+        try {
+            return (Boolean) IS_VIRTUAL_METHOD.invoke(thread);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the shared {@link VirtualThreadExecutor}, which names its
+     * threads "Grizzly-virtual-N", or <tt>null</tt>, if the JDK doesn't
+     * support virtual threads
+     */
+    public static VirtualThreadExecutor getInstance() {
+        if (!IS_SUPPORTED) {
+            return null;
+        }
+        
+        VirtualThreadExecutor instance = defaultInstance;
+        if (instance == null) {
+            synchronized (VirtualThreadExecutor.class) {
+                instance = defaultInstance;
+                if (instance == null) {
+                    instance = defaultInstance =
+                            new VirtualThreadExecutor("Grizzly-virtual-");
+                }
+            }
+        }
+        
+        return instance;
+    }
+    
+    /**
+     * Creates the {@link VirtualThreadExecutor}.
+     * 
+     * @param namePrefix the virtual thread name prefix, the thread number
+     *                   will be appended to it
+     * @throws UnsupportedOperationException if the JDK doesn't support
+     *         virtual threads
+     */
+    public VirtualThreadExecutor(final String namePrefix) {
+        if (!IS_SUPPORTED) {
+            throw new UnsupportedOperationException(
+                    "Virtual threads are not supported");
+        }
+        
+        try {
+            final Object builder = OF_VIRTUAL_METHOD.invoke(null);
+            BUILDER_NAME_METHOD.invoke(builder, namePrefix, 0L);
+            threadFactory = (ThreadFactory) BUILDER_FACTORY_METHOD.invoke(builder);
+        } catch (Exception e) {
+            throw new UnsupportedOperationException(
+                    "Virtual threads are not supported", e);
+        }
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        if (command == null) {
+            throw new NullPointerException("command can't be null");
+        }
+        
+        threadFactory.newThread(new CacheAwareRunnable(command)).start();
+    }
+
+    private static ObjectCache obtainCache() {
+        final ObjectCache cache = CACHE_POOL.poll();
+        if (cache != null) {
+            CACHE_POOL_SIZE.decrementAndGet();
+            return cache;
+        }
+        
+        return new ObjectCache();
+    }
+    
+    private static void recycleCache(final ObjectCache cache) {
+        if (CACHE_POOL_SIZE.incrementAndGet() <= MAX_POOLED_CACHES) {
+            CACHE_POOL.offer(cache);
+        } else {
+            CACHE_POOL_SIZE.decrementAndGet();
+        }
+    }
+    
+    private static final class CacheAwareRunnable implements Runnable {
+        private final Runnable task;
+
+        private CacheAwareRunnable(final Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            ThreadCache.attachObjectCache(obtainCache());
+            try {
+                task.run();
+            } finally {
+                final ObjectCache cache = ThreadCache.detachObjectCache();
+                if (cache != null) {
+                    recycleCache(cache);
+                }
+            }
+        }
+    }
+}
@@ -115,55 +115,54 @@ public class DelayedExecutor {
     public <E> DelayQueue<E> createDelayQueue(final Worker<E> worker,
             final Resolver<E> resolver) {
         
-        final DelayQueue<E> queue = new DelayQueue<>(worker, resolver);
+        final DelayQueue<E> queue = newDelayQueue(worker, resolver);
 
         queues.add(queue);
 
         return queue;
     }
 
-    private static boolean wasModified(final long l1, final long l2) {
+    /**
+     * @return the interval (in milliseconds) between two consecutive
+     *          {@link DelayQueue} checks.
+     */
+    public long getCheckIntervalMillis() {
+        return checkIntervalMillis;
+    }
+
+    /**
+     * Creates a {@link DelayQueue} instance, which will be served by this
+     * <tt>DelayedExecutor</tt>.
+     * 
+     * @param <E> the element type
+     * @param worker {@link Worker} to be called once element's timeout expires
+     * @param resolver {@link Resolver} to get/set element's timeout
+     * @return {@link DelayQueue}
+     */
+    protected <E> DelayQueue<E> newDelayQueue(final Worker<E> worker,
+            final Resolver<E> resolver) {
+        return new DelayQueue<>(worker, resolver);
+    }
+
+    static boolean wasModified(final long l1, final long l2) {
         return l1 != l2;
-        }
+    }
+
+    static long toTimeoutMillis(final long delay, final TimeUnit timeUnit) {
+        final long delayWithSysTime =
+                System.currentTimeMillis() + TimeUnit.MILLISECONDS.convert(delay, timeUnit);
+        return (delayWithSysTime < 0) ? Long.MAX_VALUE : delayWithSysTime;
+    }
 
     private class DelayedRunnable implements Runnable {
 
-        @SuppressWarnings("unchecked")
         @Override
         public void run() {
             while(isStarted) {
                 final long currentTimeMillis = System.currentTimeMillis();
                 
                 for (final DelayQueue delayQueue : queues) {
-                    if (delayQueue.queue.isEmpty()) continue;
-                    
-                    final Resolver resolver = delayQueue.resolver;
-
-                    for (Iterator it = delayQueue.queue.keySet().iterator(); it.hasNext(); ) {
-                        final Object element = it.next();
-                        final long timeoutMillis = resolver.getTimeoutMillis(element);
-                        
-                        if (timeoutMillis == UNSET_TIMEOUT) {
-                            it.remove();
-                            if (wasModified(timeoutMillis,
-                                    resolver.getTimeoutMillis(element))) {                                
-                                delayQueue.queue.put(element, delayQueue);
-                            }
-                        } else if (currentTimeMillis - timeoutMillis >= 0) {
-                            it.remove();
-                            if (wasModified(timeoutMillis,
-                                    resolver.getTimeoutMillis(element))) {
-                                delayQueue.queue.put(element, delayQueue);
-                            } else {
-                                try {
-                                    if (!delayQueue.worker.doWork(element)) {
-                                        delayQueue.queue.put(element, delayQueue);
-                                    }
-                                } catch (Exception ignored) {
-                                }
-                            }
-                        }
-                    }
+                    delayQueue.checkExpired(currentTimeMillis);
                 }
 
                 synchronized(sync) {
@@ -191,9 +190,7 @@ public class DelayedExecutor {
 
         public void add(final E elem, final long delay, final TimeUnit timeUnit) {
             if (delay >= 0) {
-                final long delayWithSysTime =
-                        System.currentTimeMillis() + TimeUnit.MILLISECONDS.convert(delay, timeUnit);
-                resolver.setTimeoutMillis(elem, ((delayWithSysTime < 0) ? Long.MAX_VALUE : delayWithSysTime));
+                resolver.setTimeoutMillis(elem, toTimeoutMillis(delay, timeUnit));
                 queue.put(elem, this);
             }
         }
@@ -202,9 +199,61 @@ public class DelayedExecutor {
             resolver.removeTimeout(elem);
         }
 
+        /**
+         * Notifies the queue, that the element's timeout, returned by the
+         * {@link Resolver}, has been changed directly (not via
+         * {@link #add(java.lang.Object, long, java.util.concurrent.TimeUnit)})
+         * and might be earlier than the one the element was registered with.
+         * 
+         * The default implementation checks all the registered elements
+         * every {@link DelayedExecutor#getCheckIntervalMillis()}, so the notification is
+         * not required, but other implementations (like
+         * {@link TimingWheelDelayedExecutor}) rely on it.
+         * 
+         * @param elem the element, which timeout has been changed
+         */
+        public void reschedule(final E elem) {
+        }
+
         public void destroy() {
             queues.remove(this);
         }
+
+        /**
+         * Checks the registered elements and executes {@link Worker} for the
+         * ones, whose timeout has expired.
+         * 
+         * @param currentTimeMillis the current time in milliseconds
+         */
+        protected void checkExpired(final long currentTimeMillis) {
+            if (queue.isEmpty()) return;
+
+            for (Iterator<E> it = queue.keySet().iterator(); it.hasNext(); ) {
+                final E element = it.next();
+                final long timeoutMillis = resolver.getTimeoutMillis(element);
+
+                if (timeoutMillis == UNSET_TIMEOUT) {
+                    it.remove();
+                    if (wasModified(timeoutMillis,
+                            resolver.getTimeoutMillis(element))) {
+                        queue.put(element, this);
+                    }
+                } else if (currentTimeMillis - timeoutMillis >= 0) {
+                    it.remove();
+                    if (wasModified(timeoutMillis,
+                            resolver.getTimeoutMillis(element))) {
+                        queue.put(element, this);
+                    } else {
+                        try {
+                            if (!worker.doWork(element)) {
+                                queue.put(element, this);
+                            }
+                        } catch (Exception ignored) {
+                        }
+                    }
+                }
+            }
+        }
     }
 
     public interface Worker<E> {
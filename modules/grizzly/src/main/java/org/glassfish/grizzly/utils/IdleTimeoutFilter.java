@@ -54,6 +54,7 @@ import org.glassfish.grizzly.attributes.Attribute;
 import org.glassfish.grizzly.filterchain.BaseFilter;
 import org.glassfish.grizzly.filterchain.FilterChainContext;
 import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.nio.NIOTransport;
 
 /**
  * The Filter is responsible for tracking {@link Connection} activity and closing
@@ -195,7 +196,31 @@ public class IdleTimeoutFilter extends BaseFilter {
     public static DelayedExecutor createDefaultIdleDelayedExecutor(final long checkInterval,
                                                                    final TimeUnit checkIntervalUnit) {
 
-        final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        final ExecutorService executor = createIdleCheckExecutor();
+        return new DelayedExecutor(executor,
+                                   ((checkInterval > 0)
+                                       ? checkInterval
+                                       : 1000L),
+                                   ((checkIntervalUnit != null)
+                                       ? checkIntervalUnit
+                                       : TimeUnit.MILLISECONDS));
+
+    }
+
+    /**
+     * Creates the {@link DelayedExecutor} for the idle checks of the given
+     * transport's connections. The timing wheel or the scanning executor
+     * is chosen by {@link NIOTransport#getTimingWheelTickMillis()}.
+     */
+    @SuppressWarnings({"UnusedDeclaration"})
+    public static DelayedExecutor createDefaultIdleDelayedExecutor(final NIOTransport transport) {
+
+        return transport.createDelayedExecutor(createIdleCheckExecutor());
+
+    }
+
+    private static ExecutorService createIdleCheckExecutor() {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
 
             @Override
             public Thread newThread(Runnable r) {
@@ -205,14 +230,6 @@ public class IdleTimeoutFilter extends BaseFilter {
                 return newThread;
             }
         });
-        return new DelayedExecutor(executor,
-                                   ((checkInterval > 0)
-                                       ? checkInterval
-                                       : 1000L),
-                                   ((checkIntervalUnit != null)
-                                       ? checkIntervalUnit
-                                       : TimeUnit.MILLISECONDS));
-
     }
 
 
@@ -293,7 +310,9 @@ public class IdleTimeoutFilter extends BaseFilter {
                                 System.currentTimeMillis() + timeout;
                 }
                 
-                idleRecord.timeoutMillis.compareAndSet(FOREVER_SPECIAL, timeoutToSet);
+                if (idleRecord.timeoutMillis.compareAndSet(FOREVER_SPECIAL, timeoutToSet)) {
+                    queue.reschedule(connection);
+                }
             }
         }
     } // END ContextCompletionListener
@@ -0,0 +1,381 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.utils;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link DelayedExecutor} implementation, based on hierarchical hashed
+ * timing wheels.
+ * 
+ * Unlike {@link DelayedExecutor}, which checks every registered element
+ * each check interval, this implementation keeps the elements in time slots
+ * and checks only the elements, whose timeout is about to expire, so adding,
+ * removing and rescheduling an element costs O(1), and the tick cost doesn't
+ * depend on the number of registered elements.
+ * 
+ * Element's timeout is taken into account when the element is
+ * {@link DelayQueue#add(java.lang.Object, long, java.util.concurrent.TimeUnit) added},
+ * {@link DelayQueue#remove(java.lang.Object) removed} or
+ * {@link DelayQueue#reschedule(java.lang.Object) rescheduled}. If the element's
+ * timeout, returned by the {@link Resolver}, gets later - the element will be
+ * rescheduled lazily, once its original timeout expires. But if the
+ * timeout is changed directly and becomes earlier - the
+ * {@link DelayQueue#reschedule(java.lang.Object)} has to be called, otherwise
+ * the element will be checked only when its original timeout expires.
+ * 
+ * @since 3.0
+ */
+public class TimingWheelDelayedExecutor extends DelayedExecutor {
+    public static final long DEFAULT_TICK_MILLIS = 100;
+    
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int WHEEL_LEVELS = 5;
+    
+    // the max number of ticks the wheels are able to represent,
+    // the elements with later timeouts will be rechecked once it's passed
+    private static final long MAX_DELAY_TICKS =
+            (1L << (WHEEL_BITS * WHEEL_LEVELS)) - 1;
+    
+    public TimingWheelDelayedExecutor(final ExecutorService threadPool) {
+        this(threadPool, DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param threadPool the thread pool to run the timer thread on
+     * @param tickDuration the duration of one wheel tick, the timeouts will
+     *          be processed with this granularity
+     * @param timeunit the tick duration {@link TimeUnit}
+     */
+    public TimingWheelDelayedExecutor(final ExecutorService threadPool,
+            final long tickDuration, final TimeUnit timeunit) {
+        super(threadPool, tickDuration, timeunit);
+        
+        if (getCheckIntervalMillis() <= 0) {
+            throw new IllegalArgumentException("tick duration has to be at least 1 millisecond");
+        }
+    }
+
+    @Override
+    protected <E> DelayQueue<E> newDelayQueue(final Worker<E> worker,
+            final Resolver<E> resolver) {
+        return new WheelDelayQueue<>(worker, resolver);
+    }
+
+    private final class WheelDelayQueue<E> extends DelayQueue<E> {
+        private final ConcurrentMap<E, Entry<E>> entries =
+                new ConcurrentHashMap<>();
+        
+        // the entries, which have to be (re)scheduled by the timer thread
+        private final Queue<Entry<E>> pendingEntries =
+                new ConcurrentLinkedQueue<>();
+        
+        private final Object wheelSync = new Object();
+        
+        // the fields below are accessed by the timer thread only
+        private final Entry<E>[][] wheels;
+        private final long tickMillis;
+        private final long startMillis;
+        private long currentTick;
+        
+        @SuppressWarnings("unchecked")
+        WheelDelayQueue(final Worker<E> worker, final Resolver<E> resolver) {
+            super(worker, resolver);
+            wheels = new Entry[WHEEL_LEVELS][WHEEL_SIZE];
+            tickMillis = getCheckIntervalMillis();
+            startMillis = System.currentTimeMillis();
+        }
+
+        @Override
+        public void add(final E elem, final long delay, final TimeUnit timeUnit) {
+            if (delay >= 0) {
+                resolver.setTimeoutMillis(elem, toTimeoutMillis(delay, timeUnit));
+                
+                Entry<E> entry = entries.get(elem);
+                if (entry == null) {
+                    final Entry<E> newEntry = new Entry<>(elem);
+                    entry = entries.putIfAbsent(elem, newEntry);
+                    if (entry == null) {
+                        entry = newEntry;
+                    }
+                }
+                
+                makePending(entry);
+            }
+        }
+
+        @Override
+        public void remove(final E elem) {
+            super.remove(elem);
+            reschedule(elem);
+        }
+
+        @Override
+        public void reschedule(final E elem) {
+            final Entry<E> entry = entries.get(elem);
+            if (entry != null &&
+                    resolver.getTimeoutMillis(elem) < entry.scheduledMillis) {
+                makePending(entry);
+            }
+        }
+
+        @Override
+        public void destroy() {
+            super.destroy();
+            entries.clear();
+            pendingEntries.clear();
+        }
+
+        @Override
+        protected void checkExpired(final long currentTimeMillis) {
+            synchronized (wheelSync) {
+                processPending(currentTimeMillis);
+
+                final long targetTick =
+                        (currentTimeMillis - startMillis) / tickMillis;
+                
+                if (entries.isEmpty()) {
+                    currentTick = Math.max(currentTick, targetTick);
+                    return;
+                }
+                
+                while (currentTick < targetTick) {
+                    currentTick++;
+                    cascade();
+                    
+                    final int slot = (int) currentTick & WHEEL_MASK;
+                    Entry<E> entry = wheels[0][slot];
+                    wheels[0][slot] = null;
+                    
+                    while (entry != null) {
+                        final Entry<E> next = entry.next;
+                        entry.detach();
+                        if (isRegistered(entry)) {
+                            process(entry, currentTimeMillis);
+                        }
+                        
+                        entry = next;
+                    }
+                }
+            }
+        }
+        
+        private void processPending(final long currentTimeMillis) {
+            Entry<E> entry;
+            while ((entry = pendingEntries.poll()) != null) {
+                // reset the flag before checking the timeout, so concurrent
+                // reschedule() will be able to make the entry pending again
+                entry.isPending.set(false);
+                if (isRegistered(entry)) {
+                    process(entry, currentTimeMillis);
+                }
+            }
+        }
+
+        /**
+         * Moves the entries from the higher level wheel slots, which
+         * time has come, to the lower level wheels.
+         */
+        private void cascade() {
+            int level = 0;
+            while (level < WHEEL_LEVELS - 1 &&
+                    (currentTick & ((1L << (WHEEL_BITS * (level + 1))) - 1)) == 0) {
+                level++;
+            }
+            
+            for (; level > 0; level--) {
+                final int slot = (int) (currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK;
+                Entry<E> entry = wheels[level][slot];
+                wheels[level][slot] = null;
+                
+                while (entry != null) {
+                    final Entry<E> next = entry.next;
+                    entry.detach();
+                    place(entry, entry.scheduledMillis);
+                    entry = next;
+                }
+            }
+        }
+        
+        private void process(final Entry<E> entry, final long currentTimeMillis) {
+            final E element = entry.element;
+            final long timeoutMillis = resolver.getTimeoutMillis(element);
+
+            if (timeoutMillis == UNSET_TIMEOUT) {
+                unregister(entry);
+                if (wasModified(timeoutMillis,
+                        resolver.getTimeoutMillis(element))) {
+                    register(element);
+                }
+            } else if (currentTimeMillis - timeoutMillis >= 0) {
+                unregister(entry);
+                if (wasModified(timeoutMillis,
+                        resolver.getTimeoutMillis(element))) {
+                    register(element);
+                } else {
+                    try {
+                        if (!worker.doWork(element)) {
+                            register(element);
+                        }
+                    } catch (Exception ignored) {
+                    }
+                }
+            } else {
+                unlink(entry);
+                place(entry, timeoutMillis);
+            }
+        }
+
+        private void register(final E element) {
+            final Entry<E> newEntry = new Entry<>(element);
+            final Entry<E> entry = entries.putIfAbsent(element, newEntry);
+            if (entry == null) {
+                place(newEntry, resolver.getTimeoutMillis(element));
+            } else {
+                makePending(entry);
+            }
+        }
+        
+        private void unregister(final Entry<E> entry) {
+            unlink(entry);
+            entries.remove(entry.element, entry);
+        }
+        
+        private boolean isRegistered(final Entry<E> entry) {
+            return entries.get(entry.element) == entry;
+        }
+        
+        private void makePending(final Entry<E> entry) {
+            if (entry.isPending.compareAndSet(false, true)) {
+                pendingEntries.offer(entry);
+            }
+        }
+        
+        /**
+         * Links the entry to the wheel slot, which corresponds to the
+         * passed timeout. The expired entries are linked to the next tick slot.
+         */
+        private void place(final Entry<E> entry, final long timeoutMillis) {
+            final long delayTicks = Math.min(Math.max(
+                    toTick(timeoutMillis) - currentTick, 1), MAX_DELAY_TICKS);
+            final long tick = currentTick + delayTicks;
+            
+            final int level = (63 - Long.numberOfLeadingZeros(delayTicks)) / WHEEL_BITS;
+            final int slot = (int) (tick >>> (WHEEL_BITS * level)) & WHEEL_MASK;
+            
+            final Entry<E> head = wheels[level][slot];
+            entry.next = head;
+            if (head != null) {
+                head.prev = entry;
+            }
+            wheels[level][slot] = entry;
+            entry.level = level;
+            entry.slot = slot;
+            
+            entry.scheduledMillis = timeoutMillis;
+            
+            // double check the timeout hasn't been decreased concurrently,
+            // while the entry was being scheduled
+            if (resolver.getTimeoutMillis(entry.element) < timeoutMillis) {
+                makePending(entry);
+            }
+        }
+        
+        private void unlink(final Entry<E> entry) {
+            if (entry.level == -1) {
+                return;
+            }
+            
+            if (entry.prev != null) {
+                entry.prev.next = entry.next;
+            } else {
+                wheels[entry.level][entry.slot] = entry.next;
+            }
+            
+            if (entry.next != null) {
+                entry.next.prev = entry.prev;
+            }
+            
+            entry.detach();
+        }
+        
+        private long toTick(final long timeoutMillis) {
+            final long delayMillis = timeoutMillis - startMillis;
+            if (delayMillis <= 0) {
+                return 0;
+            }
+            
+            // round up, so the entry is never checked before its timeout
+            return delayMillis / tickMillis + (delayMillis % tickMillis != 0 ? 1 : 0);
+        }
+    }
+    
+    private static final class Entry<E> {
+        private final E element;
+        private final AtomicBoolean isPending = new AtomicBoolean();
+        
+        // the timeout the entry is scheduled with
+        private volatile long scheduledMillis = Long.MAX_VALUE;
+        
+        // the fields below are accessed by the timer thread only
+        private Entry<E> prev;
+        private Entry<E> next;
+        private int level = -1;
+        private int slot;
+
+        private Entry(final E element) {
+            this.element = element;
+        }
+        
+        private void detach() {
+            prev = next = null;
+            level = -1;
+        }
+    }
+}
@@ -53,6 +53,7 @@ import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
 import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
 import org.glassfish.grizzly.utils.DelayedExecutor;
 import org.glassfish.grizzly.utils.IdleTimeoutFilter;
+import org.glassfish.grizzly.utils.TimingWheelDelayedExecutor;
 
 /**
  * Test {@link IdleTimeoutFilter}
@@ -227,4 +228,65 @@ public class IdleConnectionFilterTest extends GrizzlyTestCase {
             transport.shutdownNow();
         }
     }
+
+    public void testTimingWheelIdleTimeout() throws Exception {
+        Connection connection = null;
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .timingWheelTickMillis(50)
+                .build();
+        assertEquals(50, transport.getTimingWheelTickMillis());
+        
+        final DelayedExecutor timeoutExecutor =
+                IdleTimeoutFilter.createDefaultIdleDelayedExecutor(transport);
+        assertTrue(timeoutExecutor instanceof TimingWheelDelayedExecutor);
+        timeoutExecutor.start();
+        IdleTimeoutFilter idleTimeoutFilter =
+                new IdleTimeoutFilter(timeoutExecutor, 1, TimeUnit.SECONDS);
+
+        FilterChainBuilder filterChainBuilder = FilterChainBuilder.newInstance();
+        filterChainBuilder.add(new TransportFilter());
+        filterChainBuilder.add(idleTimeoutFilter);
+        filterChainBuilder.add(new BaseFilter() {
+                private volatile Connection acceptedConnection;
+                @Override
+                public NextAction handleAccept(FilterChainContext ctx)
+                        throws IOException {
+                    acceptedConnection = ctx.getConnection();
+                    return ctx.getInvokeAction();
+                }
+
+                @Override
+                public NextAction handleClose(FilterChainContext ctx)
+                        throws IOException {
+                    if (ctx.getConnection().equals(acceptedConnection)) {
+                        latch.countDown();
+                    }
+
+                    return ctx.getInvokeAction();
+                }
+
+            });
+
+        transport.setFilterChain(filterChainBuilder.build());
+        
+        try {
+            transport.bind(PORT);
+            transport.start();
+
+            Future<Connection> future = transport.connect("localhost", PORT);
+            connection = future.get(10, TimeUnit.SECONDS);
+            assertTrue(connection != null);
+
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } finally {
+            if (connection != null) {
+                connection.closeSilently();
+            }
+            timeoutExecutor.stop();
+            timeoutExecutor.destroy();
+            transport.shutdownNow();
+        }
+    }
 }
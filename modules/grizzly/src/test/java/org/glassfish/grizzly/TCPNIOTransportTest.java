@@ -46,7 +46,10 @@ import java.net.InetSocketAddress;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
@@ -221,6 +224,70 @@ public class TCPNIOTransportTest {
         }
     }
 
+    @Test
+    public void testReusePortAcceptors() throws Exception {
+        final int selectorRunnersCount = 4;
+        final int connectionsCount = 32;
+        
+        final Set<SelectorRunner> servingRunners = Collections.newSetFromMap(
+                new ConcurrentHashMap<SelectorRunner, Boolean>());
+        final CountDownLatch acceptLatch = new CountDownLatch(connectionsCount);
+        
+        TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .reusePortAcceptors(true)
+                .selectorRunnersCount(selectorRunnersCount)
+                .build();
+        transport.setFilterChain(FilterChainBuilder.newInstance()
+                .add(new TransportFilter())
+                .add(new BaseFilter() {
+                    @Override
+                    public NextAction handleAccept(final FilterChainContext ctx)
+                            throws IOException {
+                        servingRunners.add(((NIOConnection) ctx.getConnection())
+                                .getSelectorRunner());
+                        acceptLatch.countDown();
+                        return ctx.getStopAction();
+                    }
+                }).build());
+        
+        final Connection[] connections = new Connection[connectionsCount];
+        try {
+            final TCPNIOServerConnection serverConnection = transport.bind(PORT);
+            transport.start();
+            
+            assertEquals(TCPNIOTransport.isReusePortSupported(),
+                    serverConnection.isReusePortAcceptor());
+            
+            for (int i = 0; i < connectionsCount; i++) {
+                connections[i] = transport.connect("localhost", PORT)
+                        .get(10, TimeUnit.SECONDS);
+            }
+            
+            assertTrue(acceptLatch.await(10, TimeUnit.SECONDS));
+            // either the kernel or the distributor spreads the connections
+            assertTrue(servingRunners.size() > 1);
+            
+            // unbinding the server connection unbinds all the acceptors
+            transport.unbind(serverConnection);
+            
+            final Future<Connection> future = transport.connect("localhost", PORT);
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                fail("Server connection should be closed!");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        } finally {
+            for (Connection connection : connections) {
+                if (connection != null) {
+                    connection.closeSilently();
+                }
+            }
+            
+            transport.shutdownNow();
+        }
+    }
+
     @Test
     public void testClose() throws Exception {
         final BlockingQueue<Connection> acceptedQueue = new LinkedTransferQueue<>();
@@ -49,8 +49,17 @@ import org.junit.Test;
 import java.lang.reflect.Field;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.assertFalse;
+import org.glassfish.grizzly.threadpool.GrizzlyExecutorService;
+import org.glassfish.grizzly.threadpool.PartitionedThreadPool;
+import org.glassfish.grizzly.threadpool.Threads;
 import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
 import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
 import org.glassfish.grizzly.strategies.SameThreadIOStrategy;
@@ -121,4 +130,152 @@ public class ThreadPoolsTest {
             tcpTransport.shutdownNow();
         }
     }    
+
+    @Test
+    public void testPartitionedThreadPool() throws Exception {
+        final ThreadPoolConfig config = ThreadPoolConfig.newConfig()
+                .setCorePoolSize(5)
+                .setMaxPoolSize(5)
+                .setPartitionsCount(3);
+        
+        final PartitionedThreadPool pool = new PartitionedThreadPool(config);
+        try {
+            assertEquals(3, pool.getPartitionsCount());
+            assertEquals(5, pool.getSize());
+            
+            final int tasksCount = 1000;
+            final CountDownLatch latch = new CountDownLatch(tasksCount);
+            for (int i = 0; i < tasksCount; i++) {
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        latch.countDown();
+                    }
+                });
+            }
+            
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdown();
+        }
+        
+        // every partition's threads have to be poisoned
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPartitionedThreadPoolWorkStealing() throws Exception {
+        final ThreadPoolConfig config = ThreadPoolConfig.newConfig()
+                .setCorePoolSize(2)
+                .setMaxPoolSize(2)
+                .setPartitionsCount(2);
+        
+        final PartitionedThreadPool pool = new PartitionedThreadPool(config);
+        final CountDownLatch blockLatch1 = new CountDownLatch(1);
+        final CountDownLatch blockLatch2 = new CountDownLatch(1);
+        final CountDownLatch startedLatch1 = new CountDownLatch(1);
+        final CountDownLatch startedLatch2 = new CountDownLatch(1);
+        final int tasksCount = 10;
+        final CountDownLatch tasksLatch = new CountDownLatch(tasksCount);
+        final AtomicInteger failures = new AtomicInteger();
+        
+        try {
+            // submit from a service thread, which is bound to one partition
+            final Thread serviceThread = new Thread() {
+                @Override
+                public void run() {
+                    Threads.setService(true);
+                    try {
+                        // occupies one partition
+                        pool.execute(new BlockingTask(blockLatch1, startedLatch1));
+                        if (!startedLatch1.await(10, TimeUnit.SECONDS)) {
+                            failures.incrementAndGet();
+                            return;
+                        }
+                        
+                        // the task goes to (or is stolen by) the idle partition
+                        pool.execute(new BlockingTask(blockLatch2, startedLatch2));
+                        if (!startedLatch2.await(10, TimeUnit.SECONDS)) {
+                            failures.incrementAndGet();
+                            return;
+                        }
+                        
+                        // both partitions are busy, the tasks are queued
+                        for (int i = 0; i < tasksCount; i++) {
+                            pool.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    tasksLatch.countDown();
+                                }
+                            });
+                        }
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            };
+            serviceThread.start();
+            serviceThread.join(10000);
+            assertEquals(0, failures.get());
+            assertFalse(tasksLatch.await(100, TimeUnit.MILLISECONDS));
+            
+            // release one partition's thread, it has to run all the tasks,
+            // stealing them from the other partition's queue if needed
+            blockLatch2.countDown();
+            assertTrue(tasksLatch.await(10, TimeUnit.SECONDS));
+        } finally {
+            blockLatch1.countDown();
+            blockLatch2.countDown();
+            pool.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testPartitionPerSelectorRunner() throws Exception {
+        final int selectorRunnersCount = 2;
+        final ThreadPoolConfig workerPoolCfg = ThreadPoolConfig.newConfig()
+                .setCorePoolSize(4)
+                .setMaxPoolSize(4)
+                .setPartitionsCount(ThreadPoolConfig.PARTITION_PER_SELECTOR_RUNNER);
+        
+        final TCPNIOTransport tcpTransport = TCPNIOTransportBuilder.newInstance()
+                .ioStrategy(WorkerThreadIOStrategy.getInstance())
+                .selectorRunnersCount(selectorRunnersCount)
+                .workerThreadPoolConfig(workerPoolCfg)
+                .build();
+        try {
+            tcpTransport.start();
+            
+            final ExecutorService workerPool = tcpTransport.getWorkerThreadPool();
+            assertTrue(workerPool instanceof GrizzlyExecutorService);
+            final Field poolField = GrizzlyExecutorService.class.getDeclaredField("pool");
+            poolField.setAccessible(true);
+            final Object pool = poolField.get(workerPool);
+            assertTrue(pool instanceof PartitionedThreadPool);
+            assertEquals(selectorRunnersCount,
+                    ((PartitionedThreadPool) pool).getPartitionsCount());
+        } finally {
+            tcpTransport.shutdownNow();
+        }
+    }
+    
+    private static final class BlockingTask implements Runnable {
+        private final CountDownLatch blockLatch;
+        private final CountDownLatch startedLatch;
+
+        private BlockingTask(final CountDownLatch blockLatch,
+                final CountDownLatch startedLatch) {
+            this.blockLatch = blockLatch;
+            this.startedLatch = startedLatch;
+        }
+
+        @Override
+        public void run() {
+            startedLatch.countDown();
+            try {
+                blockLatch.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+        }
+    }
 }
@@ -0,0 +1,145 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.glassfish.grizzly.strategies.VirtualThreadIOStrategy;
+import org.glassfish.grizzly.threadpool.VirtualThreadExecutor;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * {@link VirtualThreadExecutor} tests.
+ */
+public class VirtualThreadExecutorTest {
+    
+    @Test
+    public void testFallback() {
+        assumeTrue(!VirtualThreadExecutor.isSupported());
+        
+        assertNull(VirtualThreadExecutor.getInstance());
+        assertFalse(VirtualThreadExecutor.isVirtual(Thread.currentThread()));
+        
+        // the strategy has to fall back to the worker thread pool
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .ioStrategy(VirtualThreadIOStrategy.getInstance())
+                .build();
+        assertNotNull(transport.getWorkerThreadPoolConfig());
+    }
+    
+    @Test
+    public void testExecute() throws Exception {
+        assumeTrue(VirtualThreadExecutor.isSupported());
+        
+        final VirtualThreadExecutor executor = VirtualThreadExecutor.getInstance();
+        assertNotNull(executor);
+        assertSame(executor, VirtualThreadExecutor.getInstance());
+        assertFalse(VirtualThreadExecutor.isVirtual(Thread.currentThread()));
+        
+        final AtomicReference<Thread> threadRef = new AtomicReference<Thread>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                threadRef.set(Thread.currentThread());
+                latch.countDown();
+            }
+        });
+        
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertTrue(VirtualThreadExecutor.isVirtual(threadRef.get()));
+        assertTrue(threadRef.get().getName().startsWith("Grizzly-virtual-"));
+        
+        // no worker thread pool is needed
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .ioStrategy(VirtualThreadIOStrategy.getInstance())
+                .build();
+        assertNull(transport.getWorkerThreadPoolConfig());
+    }
+
+    @Test
+    public void testThreadCacheReuse() throws Exception {
+        assumeTrue(VirtualThreadExecutor.isSupported());
+        
+        final ThreadCache.CachedTypeIndex<Object> CACHE_IDX =
+            ThreadCache.obtainIndex("testVirtualThreadCacheReuse", Object.class, 1);
+        final VirtualThreadExecutor executor = new VirtualThreadExecutor("test-");
+        
+        final Object cached = new Object();
+        final CountDownLatch putLatch = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ThreadCache.putToCache(CACHE_IDX, cached);
+                putLatch.countDown();
+            }
+        });
+        assertTrue(putLatch.await(10, TimeUnit.SECONDS));
+        
+        // the next virtual thread reuses the object cached by the previous one
+        boolean isReused = false;
+        for (int i = 0; i < 100 && !isReused; i++) {
+            final AtomicReference<Object> takenRef = new AtomicReference<Object>();
+            final CountDownLatch takeLatch = new CountDownLatch(1);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final Object o = ThreadCache.takeFromCache(CACHE_IDX);
+                    takenRef.set(o);
+                    if (o != null) {
+                        ThreadCache.putToCache(CACHE_IDX, o);
+                    }
+                    takeLatch.countDown();
+                }
+            });
+            assertTrue(takeLatch.await(10, TimeUnit.SECONDS));
+            
+            isReused = takenRef.get() == cached;
+        }
+        
+        assertTrue(isReused);
+    }
+}
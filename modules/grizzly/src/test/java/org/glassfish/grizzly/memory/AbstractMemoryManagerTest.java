@@ -59,6 +59,7 @@ public class AbstractMemoryManagerTest {
                 {0},
                 {1},
                 {2},
+                {3},
         });
     }
 
@@ -73,6 +74,9 @@ public class AbstractMemoryManagerTest {
             case 2:
                 mm = createPooledMemoryManager();
                 break;
+            case 3:
+                mm = createArenaMemoryManager();
+                break;
             default:
                 throw new IllegalStateException("Unknown memory manager type");
         }
@@ -82,6 +86,10 @@ public class AbstractMemoryManagerTest {
         return new PooledMemoryManager();
     }
 
+    protected ArenaMemoryManager createArenaMemoryManager() {
+        return new ArenaMemoryManager();
+    }
+
     protected ByteBufferManager createByteBufferManager() {
         return new ByteBufferManager();
     }
@@ -0,0 +1,351 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.memory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.glassfish.grizzly.Buffer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * The {@link ArenaMemoryManager} tests.
+ */
+public class ArenaMemoryManagerTest {
+    private static final int ARENA_SIZE = 256 * 1024;
+    private static final int MAX_BUFFER_SIZE = 64 * 1024;
+
+    @Test
+    public void testSizeClasses() {
+        final ArenaMemoryManager mm = new ArenaMemoryManager();
+        
+        final ArenaMemoryManager.SizeClass[] sizeClasses = mm.getSizeClasses();
+        assertEquals(11, sizeClasses.length);
+        assertEquals(ArenaMemoryManager.DEFAULT_MIN_BUFFER_SIZE,
+                sizeClasses[0].getBufferSize());
+        assertEquals(ArenaMemoryManager.DEFAULT_MAX_BUFFER_SIZE,
+                sizeClasses[sizeClasses.length - 1].getBufferSize());
+        
+        assertAllocation(mm, 1, 64);
+        assertAllocation(mm, 64, 64);
+        assertAllocation(mm, 65, 128);
+        assertAllocation(mm, 1000, 1024);
+        assertAllocation(mm, 4097, 8192);
+        assertAllocation(mm, 65536, 65536);
+        assertAllocation(mm, 65537, 65537);
+        
+        assertEquals(1, mm.getArenasCount());
+        assertSame(Buffers.EMPTY_BUFFER, mm.allocate(0));
+    }
+
+    @Test
+    public void testReuse() {
+        final ArenaMemoryManager mm = new ArenaMemoryManager();
+        final AtomicInteger threadCacheHits = new AtomicInteger();
+        mm.getMonitoringConfig().addProbes(new MemoryProbe.Adapter() {
+            @Override
+            public void onBufferAllocateFromThreadCacheEvent(int size) {
+                threadCacheHits.incrementAndGet();
+            }
+        });
+        
+        final Buffer b1 = mm.allocate(1000);
+        b1.put((byte) 1);
+        b1.tryDispose();
+        
+        final Buffer b2 = mm.allocate(900);
+        assertSame(b1, b2);
+        assertEquals(0, b2.position());
+        assertEquals(900, b2.limit());
+        assertEquals(1024, b2.capacity());
+        assertEquals(1, threadCacheHits.get());
+        b2.tryDispose();
+        
+        try {
+            b1.put((byte) 1);
+            fail("The buffer has been disposed");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testSharedBufferRelease() {
+        final ArenaMemoryManager mm = new ArenaMemoryManager(ARENA_SIZE,
+                ARENA_SIZE, 64, MAX_BUFFER_SIZE, 0);
+        final ArenaMemoryManager.SizeClass sizeClass = mm.getSizeClasses()[4];
+        assertEquals(1024, sizeClass.getBufferSize());
+        
+        final Buffer b = mm.allocate(1024);
+        final int freeCount = sizeClass.getFreeBuffersCount();
+        
+        final Buffer slice = b.slice(10, 20);
+        final Buffer split = b.split(512);
+        b.tryDispose();
+        assertEquals(freeCount, sizeClass.getFreeBuffersCount());
+        slice.tryDispose();
+        assertEquals(freeCount, sizeClass.getFreeBuffersCount());
+        split.tryDispose();
+        assertEquals(freeCount + 1, sizeClass.getFreeBuffersCount());
+        
+        // the full capacity has to be restored after split()
+        final Buffer b2 = mm.allocateAtLeast(1024);
+        assertSame(b, b2);
+        assertEquals(1024, b2.capacity());
+        b2.tryDispose();
+    }
+
+    @Test
+    public void testTerminatedThreadCacheIsReclaimed() throws Exception {
+        final int buffersCount = ARENA_SIZE / MAX_BUFFER_SIZE;
+        final ArenaMemoryManager mm = new ArenaMemoryManager(ARENA_SIZE,
+                ARENA_SIZE, 64, MAX_BUFFER_SIZE, buffersCount * MAX_BUFFER_SIZE);
+
+        // the thread takes all the memory and keeps it in its cache
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                final List<Buffer> buffers = new ArrayList<Buffer>();
+                for (int i = 0; i < buffersCount; i++) {
+                    buffers.add(mm.allocate(MAX_BUFFER_SIZE));
+                }
+                for (Buffer buffer : buffers) {
+                    buffer.tryDispose();
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+
+        final ArenaMemoryManager.SizeClass sizeClass =
+                mm.getSizeClasses()[mm.getSizeClasses().length - 1];
+        assertEquals(0, sizeClass.getFreeBuffersCount());
+
+        // the terminated thread's buffers are reused
+        final Buffer b = mm.allocate(MAX_BUFFER_SIZE);
+        assertTrue(b.isDirect());
+        assertEquals(ARENA_SIZE, mm.getReservedMemory());
+        b.tryDispose();
+    }
+
+    @Test
+    public void testReallocate() {
+        final ArenaMemoryManager mm = new ArenaMemoryManager();
+        
+        final Buffer b = mm.allocate(100);
+        for (int i = 0; i < 100; i++) {
+            b.put((byte) i);
+        }
+        
+        // fits the size class - in place
+        Buffer b2 = mm.reallocate(b, 120);
+        assertSame(b, b2);
+        assertEquals(100, b2.position());
+        assertEquals(120, b2.limit());
+        
+        b2 = mm.reallocate(b, 50);
+        assertSame(b, b2);
+        assertEquals(50, b2.position());
+        assertEquals(50, b2.limit());
+        
+        b2.limit(128);
+        b2.position(100);
+        
+        // doesn't fit - copy
+        final Buffer b3 = mm.reallocate(b2, 1000);
+        assertNotSame(b2, b3);
+        assertEquals(1024, b3.capacity());
+        assertEquals(100, b3.position());
+        assertEquals(1000, b3.limit());
+        for (int i = 0; i < 100; i++) {
+            assertEquals((byte) i, b3.get(i));
+        }
+        
+        assertSame(Buffers.EMPTY_BUFFER, mm.reallocate(b3, 0));
+    }
+
+    @Test
+    public void testMaxMemory() {
+        final ArenaMemoryManager mm = new ArenaMemoryManager(ARENA_SIZE,
+                ARENA_SIZE, 64, MAX_BUFFER_SIZE, 0);
+        
+        final List<Buffer> buffers = new ArrayList<Buffer>();
+        for (int i = 0; i < ARENA_SIZE / MAX_BUFFER_SIZE; i++) {
+            final Buffer b = mm.allocate(MAX_BUFFER_SIZE);
+            assertTrue(b.isDirect());
+            buffers.add(b);
+        }
+        
+        assertEquals(1, mm.getArenasCount());
+        assertEquals(ARENA_SIZE, mm.getReservedMemory());
+        
+        // no memory left for new slabs and large buffers - fall back to heap
+        final Buffer heapBuffer = mm.allocate(100);
+        assertFalse(heapBuffer.isDirect());
+        assertEquals(100, heapBuffer.limit());
+        
+        final Buffer largeHeapBuffer = mm.allocate(MAX_BUFFER_SIZE + 1);
+        assertFalse(largeHeapBuffer.isDirect());
+        
+        // released buffers are reused
+        buffers.remove(0).tryDispose();
+        final Buffer b = mm.allocate(MAX_BUFFER_SIZE);
+        assertTrue(b.isDirect());
+        
+        heapBuffer.tryDispose();
+        largeHeapBuffer.tryDispose();
+        b.tryDispose();
+        for (Buffer buffer : buffers) {
+            buffer.tryDispose();
+        }
+        
+        assertEquals(1, mm.getArenasCount());
+    }
+
+    @Test
+    public void testLargeBuffers() {
+        final ArenaMemoryManager mm = new ArenaMemoryManager(ARENA_SIZE * 2,
+                ARENA_SIZE, 64, MAX_BUFFER_SIZE, 0);
+        
+        final Buffer large = mm.allocate(ARENA_SIZE);
+        assertTrue(large.isDirect());
+        assertEquals(ARENA_SIZE, mm.getReservedMemory());
+        
+        // the split part must not be released separately
+        final Buffer split = large.split(100);
+        split.tryDispose();
+        assertEquals(ARENA_SIZE, mm.getReservedMemory());
+        
+        large.tryDispose();
+        assertEquals(0, mm.getReservedMemory());
+        assertEquals(0, mm.getArenasCount());
+    }
+
+    @Test
+    public void testConcurrentAllocation() throws Exception {
+        final ArenaMemoryManager mm = new ArenaMemoryManager(16 * ARENA_SIZE,
+                ARENA_SIZE, 64, MAX_BUFFER_SIZE, 4096);
+        
+        final int threadsCount = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(threadsCount);
+        final List<Buffer> exchange = Collections.synchronizedList(
+                new ArrayList<Buffer>());
+        
+        try {
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int t = 0; t < threadsCount; t++) {
+                final byte pattern = (byte) t;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        final Random random = new Random(pattern);
+                        final List<Buffer> buffers = new ArrayList<Buffer>();
+                        for (int i = 0; i < 5000; i++) {
+                            final Buffer b = mm.allocate(1 + random.nextInt(8192));
+                            while (b.hasRemaining()) {
+                                b.put(pattern);
+                            }
+                            buffers.add(b);
+                            
+                            if (buffers.size() > 16) {
+                                final Buffer old = buffers.remove(
+                                        random.nextInt(buffers.size()));
+                                checkPattern(old, pattern);
+                                
+                                if (random.nextBoolean()) {
+                                    old.tryDispose();
+                                } else {
+                                    // release by another thread
+                                    exchange.add(old);
+                                }
+                            }
+                            
+                            if (!exchange.isEmpty()) {
+                                try {
+                                    exchange.remove(0).tryDispose();
+                                } catch (IndexOutOfBoundsException ignored) {
+                                }
+                            }
+                        }
+                        
+                        for (Buffer b : buffers) {
+                            checkPattern(b, pattern);
+                            b.tryDispose();
+                        }
+                        
+                        return null;
+                    }
+                }));
+            }
+            
+            for (Future<Void> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    private static void assertAllocation(final ArenaMemoryManager mm,
+            final int size, final int expectedCapacity) {
+        final Buffer b = mm.allocate(size);
+        assertTrue(b.isDirect());
+        assertEquals(size, b.limit());
+        assertEquals(expectedCapacity, b.capacity());
+        b.tryDispose();
+    }
+    
+    private static void checkPattern(final Buffer b, final byte pattern) {
+        for (int i = 0; i < b.limit(); i++) {
+            if (b.get(i) != pattern) {
+                fail("Buffer content was corrupted at " + i);
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.memory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.glassfish.grizzly.Buffer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * The {@link BufferLeakDetector} tests.
+ */
+public class BufferLeakDetectorTest {
+
+    @Test
+    public void testPooledMemoryManagerLeak() throws Exception {
+        final PooledMemoryManager mm = new PooledMemoryManager();
+        final BufferLeakDetector detector = new BufferLeakDetector(1.0f);
+        mm.setLeakDetector(detector);
+        assertSame(detector, mm.getLeakDetector());
+        
+        checkLeak(mm, detector);
+    }
+
+    @Test
+    public void testArenaMemoryManagerLeak() throws Exception {
+        final ArenaMemoryManager mm = new ArenaMemoryManager();
+        final BufferLeakDetector detector = new BufferLeakDetector(1.0f);
+        mm.setLeakDetector(detector);
+        assertSame(detector, mm.getLeakDetector());
+        
+        checkLeak(mm, detector);
+    }
+
+    @Test
+    public void testDisposedBuffersNotReported() throws Exception {
+        final PooledMemoryManager mm = new PooledMemoryManager();
+        final BufferLeakDetector detector = new BufferLeakDetector(1.0f);
+        mm.setLeakDetector(detector);
+        
+        final Buffer b = mm.allocate(100);
+        final Buffer slice = b.slice(10, 20);
+        assertEquals(1, detector.getTrackedBuffersCount());
+        
+        b.tryDispose();
+        assertEquals(1, detector.getTrackedBuffersCount());
+        slice.tryDispose();
+        assertEquals(0, detector.getTrackedBuffersCount());
+        
+        // the buffer is reused and tracked again
+        final Buffer b2 = mm.allocate(100);
+        assertEquals(1, detector.getTrackedBuffersCount());
+        b2.tryDispose();
+        assertEquals(0, detector.getTrackedBuffersCount());
+        
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(20);
+            assertEquals(0, detector.reportLeaks());
+        }
+        assertEquals(0, detector.getLeaksCount());
+    }
+
+    @Test
+    public void testSampling() {
+        final PooledMemoryManager mm = new PooledMemoryManager();
+        final BufferLeakDetector detector = new BufferLeakDetector(0.1f);
+        mm.setLeakDetector(detector);
+        
+        final Buffer[] buffers = new Buffer[1000];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = mm.allocate(100);
+        }
+        
+        final int tracked = detector.getTrackedBuffersCount();
+        assertTrue(String.valueOf(tracked), tracked > 0 && tracked < 300);
+        
+        for (Buffer buffer : buffers) {
+            buffer.tryDispose();
+        }
+        assertEquals(0, detector.getTrackedBuffersCount());
+        
+        mm.setLeakDetector(null);
+        mm.allocate(100).tryDispose();
+        assertEquals(0, detector.getTrackedBuffersCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSamplingRate() {
+        new BufferLeakDetector(0);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static void checkLeak(final MemoryManager mm,
+            final BufferLeakDetector detector) throws Exception {
+        final AtomicInteger leakedSize = new AtomicInteger();
+        final AtomicReference<Throwable> leakTrace = new AtomicReference<Throwable>();
+        mm.getMonitoringConfig().addProbes(new MemoryProbe.Adapter() {
+            @Override
+            public void onBufferLeakEvent(int size, Throwable allocationTrace) {
+                leakedSize.set(size);
+                leakTrace.set(allocationTrace);
+            }
+        });
+        
+        leakBuffer(mm);
+        assertEquals(1, detector.getTrackedBuffersCount());
+        
+        for (int i = 0; i < 100 && detector.getLeaksCount() == 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+            detector.reportLeaks();
+        }
+        
+        assertEquals(1, detector.getLeaksCount());
+        assertEquals(0, detector.getTrackedBuffersCount());
+        assertTrue(leakedSize.get() >= 1000);
+        assertNotNull(leakTrace.get());
+        
+        final String site = BufferLeakDetector.getAllocationSite(leakTrace.get());
+        assertTrue(site, site.startsWith(
+                BufferLeakDetectorTest.class.getName() + ".leakBuffer("));
+    }
+    
+    private static void leakBuffer(final MemoryManager mm) {
+        final Buffer b = mm.allocate(1000);
+        b.put((byte) 1);
+    }
+}
@@ -44,7 +44,9 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -304,6 +306,188 @@ public class PooledMemoryManagerTest {
         assertEquals(1, probe.poolRestoredToFull.get());
     }
 
+    @Test
+    public void testThreadCacheAllocationAndDispose() throws Exception {
+
+        PooledMemoryManager mm =
+                new PooledMemoryManager(DEFAULT_BASE_BUFFER_SIZE,
+                                        1,
+                                        0,
+                                        1,
+                                        DEFAULT_HEAP_USAGE_PERCENTAGE,
+                                        DEFAULT_PREALLOCATED_BUFFERS_PERCENTAGE,
+                                        isDirect,
+                                        4);
+        assertEquals(4, mm.getThreadCacheSize());
+
+        final TestProbe probe = new TestProbe();
+        mm.getMonitoringConfig().addProbes(probe);
+        final PooledMemoryManager.Pool pool = mm.getPools()[0];
+        final int initialCount = pool.elementsCount();
+
+        // the first allocation goes to the pool slice
+        Buffer b = mm.allocate(4096);
+        assertEquals(1, probe.bufferAllocatedFromPool.get());
+        assertEquals(initialCount - 1, pool.elementsCount());
+
+        // the buffer is kept in the thread cache
+        b.tryDispose();
+        assertEquals(1, probe.bufferReleasedToThreadCache.get());
+        assertEquals(0, probe.bufferReleasedToPool.get());
+        assertEquals(initialCount - 1, pool.elementsCount());
+
+        // and reused by the same thread
+        final Buffer b2 = mm.allocate(4096);
+        assertSame(b, b2);
+        assertEquals(4096, b2.remaining());
+        assertEquals(1, probe.bufferAllocatedFromThreadCache.get());
+        assertEquals(1, probe.bufferAllocatedFromPool.get());
+        b2.tryDispose();
+
+        // the cache is bounded, the extra buffers spill over to the pool slice
+        final Buffer[] buffers = new Buffer[6];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = mm.allocate(4096);
+        }
+        assertEquals(initialCount - 6, pool.elementsCount());
+
+        for (Buffer buffer : buffers) {
+            buffer.tryDispose();
+        }
+        assertEquals(initialCount - 4, pool.elementsCount());
+        assertEquals(2, probe.bufferReleasedToPool.get());
+    }
+
+    @Test
+    public void testTerminatedThreadCacheIsReclaimed() throws Exception {
+
+        final PooledMemoryManager mm =
+                new PooledMemoryManager(DEFAULT_BASE_BUFFER_SIZE,
+                                        1,
+                                        0,
+                                        1,
+                                        0.001f,
+                                        DEFAULT_PREALLOCATED_BUFFERS_PERCENTAGE,
+                                        isDirect,
+                                        4);
+        final TestProbe probe = new TestProbe();
+        mm.getMonitoringConfig().addProbes(probe);
+        final PooledMemoryManager.Pool pool = mm.getPools()[0];
+        final int initialCount = pool.elementsCount();
+
+        // the thread keeps the released buffers in its cache and terminates
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                final Buffer[] buffers = new Buffer[4];
+                for (int i = 0; i < buffers.length; i++) {
+                    buffers[i] = mm.allocate(4096);
+                }
+                for (Buffer buffer : buffers) {
+                    buffer.tryDispose();
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        assertEquals(initialCount - 4, pool.elementsCount());
+
+        // all the pooled buffers, including the terminated thread's ones,
+        // are available to the other threads
+        final List<Buffer> buffers = new ArrayList<Buffer>(initialCount);
+        for (int i = 0; i < initialCount; i++) {
+            buffers.add(mm.allocate(4096));
+        }
+        assertEquals(0, probe.bufferAllocated.get());
+        assertEquals(0, pool.elementsCount());
+
+        for (Buffer buffer : buffers) {
+            buffer.tryDispose();
+        }
+    }
+
+    @Test
+    public void testThreadCacheCrossThreadDispose() throws Exception {
+
+        final PooledMemoryManager mm =
+                new PooledMemoryManager(DEFAULT_BASE_BUFFER_SIZE,
+                                        1,
+                                        0,
+                                        1,
+                                        DEFAULT_HEAP_USAGE_PERCENTAGE,
+                                        DEFAULT_PREALLOCATED_BUFFERS_PERCENTAGE,
+                                        isDirect,
+                                        4);
+        final TestProbe probe = new TestProbe();
+        mm.getMonitoringConfig().addProbes(probe);
+
+        final Buffer b = mm.allocate(1000);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // the buffer is released to the other thread's cache
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    b.tryDispose();
+                }
+            }).get(10, TimeUnit.SECONDS);
+
+            assertNotSame(b, mm.allocate(1000));
+            assertEquals(0, probe.bufferAllocatedFromThreadCache.get());
+
+            final Buffer b2 = executor.submit(new Callable<Buffer>() {
+                @Override
+                public Buffer call() {
+                    return mm.allocate(1000);
+                }
+            }).get(10, TimeUnit.SECONDS);
+            assertSame(b, b2);
+            assertEquals(1, probe.bufferAllocatedFromThreadCache.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLeakedBufferReported() throws Exception {
+
+        PooledMemoryManager mm =
+                new PooledMemoryManager(DEFAULT_BASE_BUFFER_SIZE,
+                                        1,
+                                        0,
+                                        1,
+                                        DEFAULT_HEAP_USAGE_PERCENTAGE,
+                                        DEFAULT_PREALLOCATED_BUFFERS_PERCENTAGE,
+                                        isDirect);
+        final BufferLeakDetector detector = new BufferLeakDetector(1.0f);
+        mm.setLeakDetector(detector);
+
+        final TestProbe probe = new TestProbe();
+        mm.getMonitoringConfig().addProbes(probe);
+
+        // the disposed buffer is not reported
+        mm.allocate(4096).tryDispose();
+        assertEquals(1, probe.bufferReleasedToPool.get());
+
+        leakBuffer(mm);
+        for (int i = 0; i < 100 && probe.bufferLeaked.get() == 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+            detector.reportLeaks();
+        }
+
+        // the leaked buffer is reported once and never returns to the pool
+        assertEquals(1, probe.bufferLeaked.get());
+        assertEquals(1, probe.bufferReleasedToPool.get());
+        assertEquals(2, probe.bufferAllocatedFromPool.get());
+        assertEquals(0, detector.getTrackedBuffersCount());
+    }
+
+    private static void leakBuffer(final MemoryManager mm) {
+        final Buffer b = mm.allocate(4096);
+        b.put((byte) 1);
+    }
+
     @Test
     public void testSimpleCompositeAllocationAndDispose() throws Exception {
 
@@ -923,6 +1107,9 @@ public class PooledMemoryManagerTest {
         AtomicInteger bufferReleasedToPool = new AtomicInteger();
         AtomicInteger poolDepleted = new AtomicInteger();
         AtomicInteger poolRestoredToFull = new AtomicInteger();
+        AtomicInteger bufferAllocatedFromThreadCache = new AtomicInteger();
+        AtomicInteger bufferReleasedToThreadCache = new AtomicInteger();
+        AtomicInteger bufferLeaked = new AtomicInteger();
 
         @Override
         public void onBufferAllocateEvent(int size) {
@@ -948,5 +1135,20 @@ public class PooledMemoryManagerTest {
         public void onPoolRestoredToFullEvent() {
             poolRestoredToFull.incrementAndGet();
         }
+
+        @Override
+        public void onBufferAllocateFromThreadCacheEvent(int size) {
+            bufferAllocatedFromThreadCache.incrementAndGet();
+        }
+
+        @Override
+        public void onBufferReleaseToThreadCacheEvent(int size) {
+            bufferReleasedToThreadCache.incrementAndGet();
+        }
+
+        @Override
+        public void onBufferLeakEvent(int size, Throwable allocationTrace) {
+            bufferLeaked.incrementAndGet();
+        }
     }
 }
@@ -439,5 +439,20 @@ public class ThreadLocalMemoryManagerTest extends AbstractThreadLocalMemoryManag
         public void onPoolRestoredToFullEvent() {
             LOGGER.log(Level.INFO, "onPoolRestoredToFullEvent");
         }
+
+        @Override
+        public void onBufferAllocateFromThreadCacheEvent(int size) {
+            LOGGER.log(Level.INFO, "onBufferAllocateFromThreadCacheEvent: {0}", size);
+        }
+
+        @Override
+        public void onBufferReleaseToThreadCacheEvent(int size) {
+            LOGGER.log(Level.INFO, "onBufferReleaseToThreadCacheEvent: {0}", size);
+        }
+
+        @Override
+        public void onBufferLeakEvent(int size, Throwable allocationTrace) {
+            LOGGER.log(Level.INFO, "onBufferLeakEvent: {0}", size);
+        }
     }
 }
@@ -0,0 +1,206 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.nio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * The {@link LeastLoadedConnectionDistributor} tests.
+ */
+public class LeastLoadedConnectionDistributorTest {
+    private static final int PORT = 18360;
+
+    @Test
+    public void testSkewedConnections() throws Exception {
+        final BlockingQueue<Connection> acceptedConnections =
+                new LinkedBlockingQueue<Connection>();
+        
+        final TCPNIOTransport server = TCPNIOTransportBuilder.newInstance()
+                .selectorRunnersCount(2)
+                .leastLoadedDistribution(
+                        LeastLoadedConnectionDistributor.LoadMetric.REGISTERED_KEYS)
+                .build();
+        server.setFilterChain(FilterChainBuilder.newInstance()
+                .add(new TransportFilter())
+                .add(new BaseFilter() {
+                    @Override
+                    public NextAction handleAccept(final FilterChainContext ctx)
+                            throws IOException {
+                        acceptedConnections.add(ctx.getConnection());
+                        return ctx.getStopAction();
+                    }
+                }).build());
+        
+        final TCPNIOTransport client = TCPNIOTransportBuilder.newInstance().build();
+        final List<Connection> clientConnections = new ArrayList<Connection>();
+        
+        try {
+            assertTrue(server.getNIOChannelDistributor()
+                    instanceof LeastLoadedConnectionDistributor);
+            
+            server.bind(PORT);
+            server.start();
+            client.start();
+            
+            final List<Connection> serverConnections = new ArrayList<Connection>();
+            for (int i = 0; i < 8; i++) {
+                serverConnections.add(connect(client, clientConnections,
+                        acceptedConnections));
+            }
+            
+            final SelectorRunner skewedRunner =
+                    ((NIOConnection) serverConnections.get(0)).getSelectorRunner();
+            
+            // the connections are spread evenly
+            int skewedRunnerCount = 0;
+            for (Connection c : serverConnections) {
+                if (((NIOConnection) c).getSelectorRunner() == skewedRunner) {
+                    skewedRunnerCount++;
+                }
+            }
+            assertTrue(skewedRunnerCount >= 3 && skewedRunnerCount <= 5);
+            
+            // make the runner load skewed
+            final int keysBeforeClose = skewedRunner.getRegisteredKeysCount();
+            for (Connection c : serverConnections) {
+                if (((NIOConnection) c).getSelectorRunner() == skewedRunner) {
+                    c.closeSilently();
+                }
+            }
+            
+            for (int i = 0; i < 100 && skewedRunner.getRegisteredKeysCount()
+                    > keysBeforeClose - skewedRunnerCount; i++) {
+                Thread.sleep(20);
+            }
+            assertEquals(keysBeforeClose - skewedRunnerCount,
+                    skewedRunner.getRegisteredKeysCount());
+            
+            // the new connections have to go to the less loaded runner
+            int newSkewedRunnerCount = 0;
+            for (int i = 0; i < skewedRunnerCount; i++) {
+                final Connection c = connect(client, clientConnections,
+                        acceptedConnections);
+                if (((NIOConnection) c).getSelectorRunner() == skewedRunner) {
+                    newSkewedRunnerCount++;
+                }
+            }
+            
+            assertTrue(newSkewedRunnerCount >= skewedRunnerCount - 1);
+        } finally {
+            for (Connection c : clientConnections) {
+                c.closeSilently();
+            }
+            
+            client.shutdownNow();
+            server.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLoopTimeGauge() throws Exception {
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .selectorRunnersCount(1)
+                .build();
+        
+        try {
+            transport.start();
+            
+            final SelectorRunner runner = transport.getSelectorRunners()[0];
+            
+            // wake the runner up until the loop time is measured: the tasks
+            // might be executed before the first select() call returns, when
+            // there's no loop iteration to measure yet
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (runner.getAverageLoopTime(TimeUnit.NANOSECONDS) == 0
+                    && System.currentTimeMillis() < deadline) {
+                final CountDownLatch latch = new CountDownLatch(1);
+                transport.getSelectorHandler().execute(runner,
+                        new SelectorHandler.Task() {
+                            @Override
+                            public boolean run() throws Exception {
+                                Thread.sleep(2);
+                                latch.countDown();
+                                return true;
+                            }
+                        }, null);
+                assertTrue(latch.await(10, TimeUnit.SECONDS));
+                
+                // let the runner reach the select() call
+                Thread.sleep(10);
+            }
+            
+            assertTrue(runner.getAverageLoopTime(TimeUnit.NANOSECONDS) > 0);
+            assertEquals(0, runner.getRegisteredKeysCount());
+        } finally {
+            transport.shutdownNow();
+        }
+    }
+    
+    private static Connection connect(final TCPNIOTransport client,
+            final List<Connection> clientConnections,
+            final BlockingQueue<Connection> acceptedConnections) throws Exception {
+        clientConnections.add(client.connect(
+                new InetSocketAddress("localhost", PORT)).get(10, TimeUnit.SECONDS));
+        
+        final Connection serverConnection =
+                acceptedConnections.poll(10, TimeUnit.SECONDS);
+        assertNotNull(serverConnection);
+        
+        return serverConnection;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.nio;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.Iterator;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * The {@link SelectedKeySet} tests.
+ */
+public class SelectedKeySetTest {
+
+    @Test
+    public void testAddIterateClear() throws Exception {
+        final Selector selector = Selectors.newSelector(SelectorProvider.provider());
+        final Pipe pipe = Pipe.open();
+        
+        try {
+            pipe.source().configureBlocking(false);
+            final SelectionKey key = pipe.source().register(selector, SelectionKey.OP_READ);
+            
+            final SelectedKeySet keySet = new SelectedKeySet();
+            assertTrue(keySet.isEmpty());
+            
+            // exceed the initial capacity
+            for (int i = 0; i < 2000; i++) {
+                assertTrue(keySet.add(key));
+            }
+            
+            assertEquals(2000, keySet.size());
+            assertSame(key, keySet.get(1999));
+            
+            int count = 0;
+            for (Iterator<SelectionKey> it = keySet.iterator(); it.hasNext(); ) {
+                assertSame(key, it.next());
+                count++;
+            }
+            assertEquals(2000, count);
+            
+            keySet.clear();
+            assertTrue(keySet.isEmpty());
+            assertNull(keySet.get(0));
+        } finally {
+            pipe.sink().close();
+            pipe.source().close();
+            selector.close();
+        }
+    }
+    
+    @Test
+    public void testRemove() throws Exception {
+        final Selector selector = Selectors.newSelector(SelectorProvider.provider());
+        final Pipe pipe1 = Pipe.open();
+        final Pipe pipe2 = Pipe.open();
+        
+        try {
+            pipe1.source().configureBlocking(false);
+            pipe2.source().configureBlocking(false);
+            final SelectionKey key1 = pipe1.source().register(selector, SelectionKey.OP_READ);
+            final SelectionKey key2 = pipe2.source().register(selector, SelectionKey.OP_READ);
+            
+            final SelectedKeySet keySet = new SelectedKeySet();
+            keySet.add(key1);
+            keySet.add(key2);
+            
+            assertTrue(keySet.remove(key1));
+            assertFalse(keySet.remove(key1));
+            assertEquals(1, keySet.size());
+            assertSame(key2, keySet.get(0));
+            assertNull(keySet.get(1));
+        } finally {
+            pipe1.sink().close();
+            pipe1.source().close();
+            pipe2.sink().close();
+            pipe2.source().close();
+            selector.close();
+        }
+    }
+    
+    @Test
+    public void testSelectorUsesSelectedKeySet() throws Exception {
+        final Selector selector = Selectors.newSelector(SelectorProvider.provider());
+        final Pipe pipe = Pipe.open();
+        
+        try {
+            final SelectedKeySet keySet = new SelectedKeySet();
+            if (!Selectors.setSelectedKeySet(selector, keySet)) {
+                // reflective access is not permitted or the Selector is not
+                // epoll-based, the Selector must be intact
+                assertNotSame(keySet, selector.selectedKeys());
+                return;
+            }
+            
+            assertSame(keySet, selector.selectedKeys());
+            
+            pipe.source().configureBlocking(false);
+            final SelectionKey key = pipe.source().register(selector, SelectionKey.OP_READ);
+            pipe.sink().write(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+            
+            assertEquals(1, selector.select(10000));
+            assertEquals(1, keySet.size());
+            assertSame(key, keySet.get(0));
+            assertTrue(key.isReadable());
+            
+            keySet.clear();
+            pipe.source().read(ByteBuffer.allocate(3));
+            
+            assertEquals(0, selector.selectNow());
+            assertTrue(keySet.isEmpty());
+        } finally {
+            pipe.sink().close();
+            pipe.source().close();
+            selector.close();
+        }
+    }
+}
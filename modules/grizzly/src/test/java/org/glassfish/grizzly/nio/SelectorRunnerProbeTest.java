@@ -0,0 +1,271 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.nio;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * The {@link SelectorRunnerProbe} tests.
+ */
+public class SelectorRunnerProbeTest {
+    private static final int PORT = 18370;
+
+    @Test
+    public void testTaskEvents() throws Exception {
+        final CountingProbe probe = new CountingProbe();
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .selectorRunnersCount(1)
+                .build();
+        transport.getSelectorRunnerMonitoringConfig().addProbes(probe);
+        
+        try {
+            transport.start();
+            
+            final SelectorRunner runner = transport.getSelectorRunners()[0];
+            
+            for (int i = 0; i < 5; i++) {
+                final CountDownLatch latch = new CountDownLatch(1);
+                transport.getSelectorHandler().execute(runner,
+                        new SelectorHandler.Task() {
+                            @Override
+                            public boolean run() throws Exception {
+                                Thread.sleep(2);
+                                latch.countDown();
+                                return true;
+                            }
+                        }, null);
+                assertTrue(latch.await(10, TimeUnit.SECONDS));
+            }
+            
+            // the tasks might be drained in one pass, because each task is
+            // queued as soon as the previous one is completed, so only the
+            // task events are counted per task. The selector is woken up
+            // at least once, so the select and the loop events follow.
+            waitFor(probe.taskEvents, 5);
+            waitFor(probe.loopEvents, 1);
+            
+            assertSame(runner, probe.lastRunner);
+            assertTrue(probe.taskEvents.get() >= 5);
+            assertTrue(probe.maxTaskNanos.get() >= TimeUnit.MILLISECONDS.toNanos(2));
+            assertTrue(probe.selectEvents.get() >= 1);
+            assertTrue(probe.loopEvents.get() >= 1);
+            assertTrue(probe.queuesEvents.get() >= 1);
+        } finally {
+            transport.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPendingTasksCount() throws Exception {
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .build();
+        // the runner is not started, so the tasks are not drained
+        final SelectorRunner runner = SelectorRunner.create(transport);
+        
+        try {
+            final SelectorHandlerTask[] tasks = new SelectorHandlerTask[3];
+            for (int i = 0; i < tasks.length; i++) {
+                tasks[i] = new SelectorHandlerTask() {
+                    @Override
+                    public boolean run(final SelectorRunner selectorRunner) {
+                        return true;
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                };
+                runner.addPendingTask(tasks[i]);
+            }
+            
+            assertEquals(3, runner.getPendingTasksCount());
+            
+            assertSame(tasks[0], runner.getPendingTasks().poll());
+            assertEquals(2, runner.getPendingTasksCount());
+            
+            assertTrue(runner.getPendingTasks().remove(tasks[2]));
+            assertFalse(runner.getPendingTasks().remove(tasks[2]));
+            assertEquals(1, runner.getPendingTasksCount());
+            
+            assertSame(tasks[1], runner.getPendingTasks().poll());
+            assertNull(runner.getPendingTasks().poll());
+            assertEquals(0, runner.getPendingTasksCount());
+        } finally {
+            runner.getSelector().close();
+        }
+    }
+
+    @Test
+    public void testSelectedKeysEvents() throws Exception {
+        final CountingProbe probe = new CountingProbe();
+        final TCPNIOTransport server = TCPNIOTransportBuilder.newInstance()
+                .selectorRunnersCount(1)
+                .build();
+        server.getSelectorRunnerMonitoringConfig().addProbes(probe);
+        
+        final TCPNIOTransport client = TCPNIOTransportBuilder.newInstance().build();
+        Connection connection = null;
+        
+        try {
+            server.bind(PORT);
+            server.start();
+            client.start();
+            
+            connection = client.connect(new InetSocketAddress("localhost", PORT))
+                    .get(10, TimeUnit.SECONDS);
+            
+            waitFor(probe.selectedKeys, 1);
+            waitFor(probe.keysProcessedEvents, 1);
+            
+            assertTrue(probe.selectedKeys.get() >= 1);
+            assertTrue(probe.keysProcessedEvents.get() >= 1);
+        } finally {
+            if (connection != null) {
+                connection.closeSilently();
+            }
+            
+            client.shutdownNow();
+            server.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testProbeRemoval() throws Exception {
+        final CountingProbe probe = new CountingProbe();
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .selectorRunnersCount(1)
+                .build();
+        transport.getSelectorRunnerMonitoringConfig().addProbes(probe);
+        transport.getSelectorRunnerMonitoringConfig().removeProbes(probe);
+        
+        try {
+            transport.start();
+            
+            final CountDownLatch latch = new CountDownLatch(1);
+            transport.getSelectorHandler().execute(
+                    transport.getSelectorRunners()[0],
+                    new SelectorHandler.Task() {
+                        @Override
+                        public boolean run() throws Exception {
+                            latch.countDown();
+                            return true;
+                        }
+                    }, null);
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            
+            assertEquals(0, probe.selectEvents.get());
+            assertEquals(0, probe.taskEvents.get());
+            assertEquals(0, probe.loopEvents.get());
+        } finally {
+            transport.shutdownNow();
+        }
+    }
+    
+    private static void waitFor(final AtomicLong counter, final long value)
+            throws InterruptedException {
+        for (int i = 0; i < 500 && counter.get() < value; i++) {
+            Thread.sleep(10);
+        }
+    }
+    
+    private static void waitFor(final AtomicInteger counter, final int value)
+            throws InterruptedException {
+        for (int i = 0; i < 500 && counter.get() < value; i++) {
+            Thread.sleep(10);
+        }
+    }
+    
+    private static class CountingProbe extends SelectorRunnerProbe.Adapter {
+        private volatile SelectorRunner lastRunner;
+        
+        private final AtomicInteger selectEvents = new AtomicInteger();
+        private final AtomicLong selectedKeys = new AtomicLong();
+        private final AtomicInteger keysProcessedEvents = new AtomicInteger();
+        private final AtomicInteger taskEvents = new AtomicInteger();
+        private final AtomicLong maxTaskNanos = new AtomicLong();
+        private final AtomicInteger queuesEvents = new AtomicInteger();
+        private final AtomicInteger loopEvents = new AtomicInteger();
+
+        @Override
+        public void onSelectEvent(final SelectorRunner selectorRunner,
+                final int selectedKeysCount, final long selectNanos) {
+            lastRunner = selectorRunner;
+            selectEvents.incrementAndGet();
+            selectedKeys.addAndGet(selectedKeysCount);
+        }
+
+        @Override
+        public void onKeysProcessedEvent(final SelectorRunner selectorRunner,
+                final int keysCount, final long processingNanos) {
+            keysProcessedEvents.incrementAndGet();
+        }
+
+        @Override
+        public void onTaskExecuteEvent(final SelectorRunner selectorRunner,
+                final long executionNanos) {
+            taskEvents.incrementAndGet();
+            if (executionNanos > maxTaskNanos.get()) {
+                maxTaskNanos.set(executionNanos);
+            }
+        }
+
+        @Override
+        public void onTaskQueuesEvent(final SelectorRunner selectorRunner,
+                final int pendingTasksCount, final int postponedTasksCount) {
+            queuesEvents.incrementAndGet();
+        }
+
+        @Override
+        public void onLoopEvent(final SelectorRunner selectorRunner,
+                final long loopNanos) {
+            loopEvents.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.nio.transport;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.memory.Buffers;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * The {@link AdaptiveReceiveBufferSizer} tests.
+ */
+public class AdaptiveReceiveBufferSizerTest {
+    private static final int PORT = 18350;
+
+    @Test
+    public void testGrowAndShrink() {
+        final AdaptiveReceiveBufferSizer sizer =
+                new AdaptiveReceiveBufferSizer(64, 1024, 65536);
+        final TCPNIOConnection connection = new TCPNIOConnection(
+                TCPNIOTransportBuilder.newInstance().build(), null);
+        
+        assertEquals(64, sizer.getMinimum());
+        assertEquals(1024, sizer.getInitial());
+        assertEquals(65536, sizer.getMaximum());
+        
+        long allocated = 0;
+        int size = sizer.nextReadSize(connection, Integer.MAX_VALUE);
+        assertEquals(1024, size);
+        
+        // full reads grow the buffer up to the maximum
+        for (int i = 0; i < 20; i++) {
+            final int prevSize = size;
+            sizer.onRead(connection, size, size);
+            allocated += size;
+            size = sizer.nextReadSize(connection, Integer.MAX_VALUE);
+            assertTrue(size >= prevSize);
+        }
+        assertEquals(65536, size);
+        
+        // the limit is respected
+        assertEquals(8192, sizer.nextReadSize(connection, 8192));
+        
+        // a single small read doesn't shrink the buffer
+        sizer.onRead(connection, size, 10);
+        allocated += size;
+        assertEquals(65536, sizer.nextReadSize(connection, Integer.MAX_VALUE));
+        
+        // small reads shrink the buffer down to the minimum
+        for (int i = 0; i < 200; i++) {
+            final int prevSize = size;
+            sizer.onRead(connection, size, 10);
+            allocated += size;
+            size = sizer.nextReadSize(connection, Integer.MAX_VALUE);
+            assertTrue(size <= prevSize);
+        }
+        assertEquals(64, size);
+        
+        assertEquals(221, sizer.getReadsCount());
+        assertEquals(20, sizer.getFullReadsCount());
+        assertEquals(allocated, sizer.getReadBytes() + sizer.getWastedBytes());
+        
+        sizer.resetStatistics();
+        assertEquals(0, sizer.getReadsCount());
+        assertEquals(0, sizer.getWastedBytes());
+        
+        // the data copied into the exactly sized buffer doesn't waste bytes
+        sizer.onRead(connection, size, 10, 10);
+        assertEquals(0, sizer.getWastedBytes());
+        assertEquals(0, sizer.getFullReadsCount());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalSizes() {
+        new AdaptiveReceiveBufferSizer(1024, 64, 65536);
+    }
+    
+    @Test
+    public void testTransport() throws Exception {
+        final AdaptiveReceiveBufferSizer sizer = new AdaptiveReceiveBufferSizer();
+        final int messageSize = 100000;
+        final AtomicInteger received = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(1);
+        
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .receiveBufferSizer(sizer)
+                .build();
+        transport.setFilterChain(FilterChainBuilder.newInstance()
+                .add(new TransportFilter())
+                .add(new BaseFilter() {
+                    @Override
+                    public NextAction handleRead(final FilterChainContext ctx) {
+                        final Buffer buffer = ctx.getMessage();
+                        if (received.addAndGet(buffer.remaining()) >= messageSize) {
+                            latch.countDown();
+                        }
+                        buffer.tryDispose();
+                        return ctx.getStopAction();
+                    }
+                }).build());
+        
+        try {
+            assertSame(sizer, transport.getReceiveBufferSizer());
+            
+            transport.bind(PORT);
+            transport.start();
+            
+            final Connection connection = transport.connect(
+                    new InetSocketAddress("localhost", PORT)).get(10, TimeUnit.SECONDS);
+            try {
+                connection.write(Buffers.wrap(transport.getMemoryManager(),
+                        new byte[messageSize]));
+                assertTrue(latch.await(10, TimeUnit.SECONDS));
+            } finally {
+                connection.closeSilently();
+            }
+            
+            assertEquals(messageSize, sizer.getReadBytes());
+            assertTrue(sizer.getReadsCount() > 0);
+            assertTrue(sizer.getWastedBytes() >= 0);
+        } finally {
+            transport.shutdownNow();
+        }
+    }
+}
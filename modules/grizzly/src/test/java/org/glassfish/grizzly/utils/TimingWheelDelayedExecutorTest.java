@@ -0,0 +1,218 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link TimingWheelDelayedExecutor}.
+ */
+public class TimingWheelDelayedExecutorTest {
+    private static final long TICK_MILLIS = 10;
+    
+    private ExecutorService threadPool;
+    private DelayedExecutor delayedExecutor;
+
+    @Before
+    public void before() {
+        threadPool = Executors.newSingleThreadExecutor();
+        delayedExecutor = new TimingWheelDelayedExecutor(threadPool,
+                TICK_MILLIS, TimeUnit.MILLISECONDS);
+        delayedExecutor.start();
+    }
+    
+    @After
+    public void after() {
+        delayedExecutor.destroy();
+        threadPool.shutdownNow();
+    }
+    
+    @Test
+    public void testExpiration() throws Exception {
+        final RecordingWorker worker = new RecordingWorker(3);
+        final DelayedExecutor.DelayQueue<Element> queue =
+                delayedExecutor.createDelayQueue(worker, new ElementResolver());
+
+        final long startMillis = System.currentTimeMillis();
+        final Element e1 = new Element();
+        final Element e2 = new Element();
+        final Element e3 = new Element();
+        queue.add(e1, 50, TimeUnit.MILLISECONDS);
+        queue.add(e2, 200, TimeUnit.MILLISECONDS);
+        // exceeds the first level wheel, so it has to be cascaded
+        queue.add(e3, 1500, TimeUnit.MILLISECONDS);
+
+        assertTrue(worker.latch.await(10, TimeUnit.SECONDS));
+        assertTrue(worker.fired.get(e1) - startMillis >= 50);
+        assertTrue(worker.fired.get(e2) - startMillis >= 200);
+        assertTrue(worker.fired.get(e3) - startMillis >= 1500);
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        final RecordingWorker worker = new RecordingWorker(1);
+        final DelayedExecutor.DelayQueue<Element> queue =
+                delayedExecutor.createDelayQueue(worker, new ElementResolver());
+
+        final Element removed = new Element();
+        final Element expired = new Element();
+        queue.add(removed, 50, TimeUnit.MILLISECONDS);
+        queue.add(expired, 100, TimeUnit.MILLISECONDS);
+        queue.remove(removed);
+
+        assertTrue(worker.latch.await(10, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertFalse(worker.fired.containsKey(removed));
+        assertTrue(worker.fired.containsKey(expired));
+    }
+    
+    @Test
+    public void testReschedule() throws Exception {
+        final RecordingWorker worker = new RecordingWorker(1);
+        final DelayedExecutor.DelayQueue<Element> queue =
+                delayedExecutor.createDelayQueue(worker, new ElementResolver());
+
+        final Element element = new Element();
+        queue.add(element, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        
+        // make the timeout earlier, bypassing the queue
+        final long startMillis = System.currentTimeMillis();
+        element.timeoutMillis = startMillis + 100;
+        queue.reschedule(element);
+        
+        assertTrue(worker.latch.await(10, TimeUnit.SECONDS));
+        assertTrue(worker.fired.get(element) - startMillis >= 100);
+    }
+    
+    @Test
+    public void testPostpone() throws Exception {
+        final RecordingWorker worker = new RecordingWorker(1);
+        final DelayedExecutor.DelayQueue<Element> queue =
+                delayedExecutor.createDelayQueue(worker, new ElementResolver());
+
+        final Element element = new Element();
+        final long startMillis = System.currentTimeMillis();
+        queue.add(element, 50, TimeUnit.MILLISECONDS);
+        
+        // make the timeout later, bypassing the queue
+        element.timeoutMillis = startMillis + 300;
+        
+        assertTrue(worker.latch.await(10, TimeUnit.SECONDS));
+        assertTrue(worker.fired.get(element) - startMillis >= 300);
+    }
+    
+    @Test
+    public void testManyElements() throws Exception {
+        final int count = 10000;
+        final RecordingWorker worker = new RecordingWorker(count);
+        final DelayedExecutor.DelayQueue<Element> queue =
+                delayedExecutor.createDelayQueue(worker, new ElementResolver());
+
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < count; i++) {
+            final Element element = new Element();
+            queue.add(element, random.nextInt(1000), TimeUnit.MILLISECONDS);
+            element.expectedMillis = element.timeoutMillis;
+        }
+        
+        assertTrue(worker.latch.await(10, TimeUnit.SECONDS));
+        assertEquals(count, worker.fired.size());
+        for (Element element : worker.fired.keySet()) {
+            assertTrue(worker.fired.get(element) >= element.expectedMillis);
+        }
+    }
+    
+    private static final class Element {
+        private volatile long timeoutMillis = DelayedExecutor.UNSET_TIMEOUT;
+        private long expectedMillis;
+    }
+    
+    private static final class ElementResolver
+            implements DelayedExecutor.Resolver<Element> {
+
+        @Override
+        public boolean removeTimeout(final Element element) {
+            element.timeoutMillis = DelayedExecutor.UNSET_TIMEOUT;
+            return true;
+        }
+
+        @Override
+        public long getTimeoutMillis(final Element element) {
+            return element.timeoutMillis;
+        }
+
+        @Override
+        public void setTimeoutMillis(final Element element,
+                final long timeoutMillis) {
+            element.timeoutMillis = timeoutMillis;
+        }
+    }
+    
+    private static final class RecordingWorker
+            implements DelayedExecutor.Worker<Element> {
+        private final ConcurrentMap<Element, Long> fired =
+                new ConcurrentHashMap<>();
+        private final CountDownLatch latch;
+
+        private RecordingWorker(final int expectedCount) {
+            latch = new CountDownLatch(expectedCount);
+        }
+        
+        @Override
+        public boolean doWork(final Element element) {
+            if (fired.putIfAbsent(element, System.currentTimeMillis()) == null) {
+                latch.countDown();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.http.HttpResponsePacket;
+import org.glassfish.grizzly.http.server.util.SimpleDateFormats;
+import org.glassfish.grizzly.http.util.FastHttpDateFormat;
+import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.HeaderValue;
+import org.glassfish.grizzly.http.util.HttpStatus;
+import org.glassfish.grizzly.utils.Charsets;
+
+/**
+ * The byte ranges requested by the <tt>Range</tt> header of a static resource
+ * GET request (RFC 7233).
+ * 
+ * The ranges are validated against the resource length, sorted and coalesced,
+ * so the response never repeats the same bytes. If more than one range
+ * remains, the response is served as <tt>multipart/byteranges</tt>.
+ */
+final class ByteRanges {
+    private static final String BYTES_UNIT = "bytes=";
+    private static final String MULTIPART_BYTERANGES =
+            "multipart/byteranges; boundary=";
+    
+    /**
+     * The max number of range specs we're ready to serve, if a request
+     * asks for more - the <tt>Range</tt> header is ignored and
+     * the entire resource is sent.
+     */
+    static final int MAX_RANGES = 16;
+    
+    private static final Comparator<Range> START_COMPARATOR =
+            new Comparator<Range>() {
+        @Override
+        public int compare(final Range r1, final Range r2) {
+            return r1.start < r2.start ? -1 : (r1.start == r2.start ? 0 : 1);
+        }
+    };
+    
+    private final List<Range> ranges;
+    private final long length;
+    
+    // multipart/byteranges state, initialized by preparePartialResponse()
+    private String boundary;
+    private String partContentType;
+    
+    private ByteRanges(final List<Range> ranges, final long length) {
+        this.ranges = ranges;
+        this.length = length;
+    }
+
+    /**
+     * Parses the <tt>Range</tt> header of the request, taking the
+     * <tt>If-Range</tt> precondition into account.
+     * 
+     * @param request the {@link HttpRequestPacket}
+     * @param length the length of the requested resource
+     * @param etag the resource entity tag, or <tt>null</tt> if unknown
+     * @param lastModified the resource modification time, or <tt>-1</tt>
+     *        if unknown
+     * @return the {@link ByteRanges} to be served, or <tt>null</tt> if
+     *         the entire resource has to be sent
+     */
+    static ByteRanges parse(final HttpRequestPacket request,
+            final long length, final String etag, final long lastModified) {
+        final String rangeHeader = request.getHeader(Header.Range);
+        if (rangeHeader == null
+                || !isIfRangeSatisfied(request.getHeader(Header.IfRange),
+                        etag, lastModified)) {
+            return null;
+        }
+        
+        return parse(rangeHeader, length);
+    }
+    
+    /**
+     * Parses the <tt>Range</tt> header value.
+     * 
+     * @return the {@link ByteRanges} to be served, or <tt>null</tt> if
+     *         the value is malformed and has to be ignored
+     */
+    static ByteRanges parse(final String rangeHeader, final long length) {
+        final String value = rangeHeader.trim();
+        if (!value.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return null;
+        }
+        
+        final String[] specs = value.substring(BYTES_UNIT.length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        
+        final List<Range> satisfiable = new ArrayList<Range>(specs.length);
+        boolean hasSpecs = false;
+        
+        for (String spec : specs) {
+            spec = spec.trim();
+            if (spec.isEmpty()) {
+                continue;
+            }
+            
+            final int dash = spec.indexOf('-');
+            if (dash == -1) {
+                return null;
+            }
+            
+            hasSpecs = true;
+            final long first = parseLong(spec, 0, dash);
+            final long last = parseLong(spec, dash + 1, spec.length());
+            if (first == -2 || last == -2) {
+                return null;
+            }
+            
+            if (first == -1) {
+                // suffix-byte-range-spec: the last N bytes
+                if (last == -1) {
+                    return null;
+                }
+                
+                if (last > 0 && length > 0) {
+                    satisfiable.add(new Range(Math.max(0, length - last),
+                            length - 1));
+                }
+            } else if (last != -1 && last < first) {
+                return null;
+            } else if (first < length) {
+                satisfiable.add(new Range(first,
+                        last == -1 ? length - 1 : Math.min(last, length - 1)));
+            }
+        }
+        
+        if (!hasSpecs) {
+            return null;
+        }
+        
+        return new ByteRanges(coalesce(satisfiable), length);
+    }
+
+    /**
+     * Checks the <tt>If-Range</tt> precondition: the ranges are served only
+     * if the validator matches the current resource representation.
+     * Weak entity tags never match.
+     */
+    static boolean isIfRangeSatisfied(final String ifRange,
+            final String etag, final long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        
+        final String validator = ifRange.trim();
+        if (validator.startsWith("W/")) {
+            return false;
+        }
+        
+        if (validator.startsWith("\"")) {
+            return validator.equals(etag);
+        }
+        
+        if (lastModified < 0) {
+            return false;
+        }
+
+        final SimpleDateFormats formats = SimpleDateFormats.create();
+        try {
+            final long date = FastHttpDateFormat.parseDate(validator,
+                    formats.getFormats());
+            
+            // HTTP dates have a one second resolution
+            return date != -1 && date / 1000 == lastModified / 1000;
+        } finally {
+            formats.recycle();
+        }
+    }
+    
+    /**
+     * @return <tt>true</tt> if at least one range is satisfiable, otherwise
+     *         the request has to be rejected with 416
+     */
+    boolean isSatisfiable() {
+        return !ranges.isEmpty();
+    }
+
+    boolean isMultipart() {
+        return ranges.size() > 1;
+    }
+    
+    int size() {
+        return ranges.size();
+    }
+    
+    Range get(final int idx) {
+        return ranges.get(idx);
+    }
+    
+    /**
+     * Prepares a <tt>416 Range Not Satisfiable</tt> response.
+     */
+    void prepareNotSatisfiableResponse(final HttpResponsePacket response) {
+        response.setStatus(HttpStatus.REQUEST_RANGE_NOT_SATISFIABLE_416);
+        response.setHeader(Header.ContentRange, "bytes */" + length);
+        response.setContentLengthLong(0);
+    }
+    
+    /**
+     * Prepares a <tt>206 Partial Content</tt> response. The response content
+     * type (if any) has to be set before this method is called, because in
+     * the multipart case it becomes the content type of every part.
+     */
+    void preparePartialResponse(final HttpResponsePacket response) {
+        response.setStatus(HttpStatus.PARTIAL_CONTENT_206);
+        // the ranges refer to the identity representation
+        response.setHeader(Header.ContentEncoding, HeaderValue.IDENTITY);
+        
+        if (!isMultipart()) {
+            final Range range = ranges.get(0);
+            response.setHeader(Header.ContentRange, range.toContentRange(length));
+            response.setContentLengthLong(range.length());
+            return;
+        }
+        
+        partContentType = response.getContentType();
+        boundary = Long.toHexString(ThreadLocalRandom.current().nextLong())
+                + Long.toHexString(System.nanoTime());
+        
+        long contentLength = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            contentLength += getPartHeader(i).length + ranges.get(i).length();
+        }
+        contentLength += getTrailer().length;
+        
+        response.setContentType(MULTIPART_BYTERANGES + boundary);
+        response.setContentLengthLong(contentLength);
+    }
+    
+    /**
+     * @return the delimiter and headers, which precede the <tt>idx</tt>-th
+     *         part of a <tt>multipart/byteranges</tt> payload
+     */
+    byte[] getPartHeader(final int idx) {
+        final StringBuilder sb = new StringBuilder(128);
+        sb.append("\r\n--").append(boundary).append("\r\n");
+        if (partContentType != null) {
+            sb.append(Header.ContentType).append(": ")
+                    .append(partContentType).append("\r\n");
+        }
+        sb.append(Header.ContentRange).append(": ")
+                .append(ranges.get(idx).toContentRange(length))
+                .append("\r\n\r\n");
+        
+        return sb.toString().getBytes(Charsets.ASCII_CHARSET);
+    }
+    
+    /**
+     * @return the close delimiter of a <tt>multipart/byteranges</tt> payload
+     */
+    byte[] getTrailer() {
+        return ("\r\n--" + boundary + "--\r\n").getBytes(Charsets.ASCII_CHARSET);
+    }
+    
+    /**
+     * Sorts the ranges and merges the ones, which overlap or are adjacent.
+     */
+    private static List<Range> coalesce(final List<Range> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        
+        Collections.sort(ranges, START_COMPARATOR);
+        
+        final List<Range> result = new ArrayList<Range>(ranges.size());
+        Range current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            final Range next = ranges.get(i);
+            if (next.start <= current.end + 1) {
+                if (next.end > current.end) {
+                    current = new Range(current.start, next.end);
+                }
+            } else {
+                result.add(current);
+                current = next;
+            }
+        }
+        result.add(current);
+        
+        return result;
+    }
+    
+    /**
+     * @return the non-negative number, <tt>-1</tt> if the substring is empty,
+     *         <tt>-2</tt> if it's not a number, or {@link Long#MAX_VALUE}
+     *         if the number is too big
+     */
+    private static long parseLong(final String s, int start, int end) {
+        while (start < end && s.charAt(start) == ' ') {
+            start++;
+        }
+        while (end > start && s.charAt(end - 1) == ' ') {
+            end--;
+        }
+        
+        if (start == end) {
+            return -1;
+        }
+        
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            final int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -2;
+            }
+            
+            if (result > (Long.MAX_VALUE - digit) / 10) {
+                return Long.MAX_VALUE;
+            }
+            result = result * 10 + digit;
+        }
+        
+        return result;
+    }
+    
+    /**
+     * The byte range, both positions are inclusive.
+     */
+    static final class Range {
+        final long start;
+        final long end;
+
+        Range(final long start, final long end) {
+            this.start = start;
+            this.end = end;
+        }
+        
+        long length() {
+            return end - start + 1;
+        }
+        
+        String toContentRange(final long length) {
+            return "bytes " + start + '-' + end + '/' + length;
+        }
+
+        @Override
+        public String toString() {
+            return start + "-" + end;
+        }
+    }
+}
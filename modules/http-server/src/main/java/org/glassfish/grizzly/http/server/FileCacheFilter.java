@@ -61,8 +61,11 @@ import org.glassfish.grizzly.http.server.filecache.FileCache.CacheType;
 import org.glassfish.grizzly.http.server.filecache.FileCacheEntry;
 import org.glassfish.grizzly.http.util.Header;
 import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.CompositeBuffer;
+import org.glassfish.grizzly.memory.MemoryManager;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import org.glassfish.grizzly.OutputSink;
 import org.glassfish.grizzly.WriteHandler;
 import org.glassfish.grizzly.http.HttpContext;
@@ -109,20 +112,32 @@ public class FileCacheFilter extends BaseFilter {
                     return flush(ctx);
                 }
 
+                final ByteRanges ranges = ByteRanges.parse(request,
+                        cacheEntry.getFileSize(false), cacheEntry.Etag,
+                        cacheEntry.lastModified);
+                if (ranges != null) {
+                    // The client asks for a part of the resource,
+                    // which is always served uncompressed
+                    prepareResponseWithPayload(cacheEntry, response, null);
+                    
+                    return sendRanges(ctx, request, response, cacheEntry,
+                            ranges);
+                }
+                
                 // check if we can send plain or compressed data back.
                 // depends on client request headers and file cache entry
-                final boolean isServeCompressed =
-                        cacheEntry.canServeCompressed(request);
+                final String contentEncoding =
+                        cacheEntry.selectContentEncoding(request);
                 
                 // The client doesn't have this resource cached, so
                 // we have to send entire payload
                 prepareResponseWithPayload(cacheEntry, response,
-                        isServeCompressed);
+                        contentEncoding);
 
                 if (cacheEntry.type != CacheType.FILE) {
                     // the payload is available in a ByteBuffer
                     final Buffer buffer = Buffers.wrap(ctx.getMemoryManager(),
-                            cacheEntry.getByteBuffer(isServeCompressed).duplicate());
+                            cacheEntry.getByteBuffer(contentEncoding).duplicate());
 
                     ctx.write(HttpContent.builder(response)
                             .content(buffer)
@@ -134,9 +149,9 @@ public class FileCacheFilter extends BaseFilter {
                 
                 return fileCache.isFileSendEnabled() && !request.isSecure()
                         ? sendFileZeroCopy(ctx, response, cacheEntry,
-                            isServeCompressed)
+                            contentEncoding)
                         : sendFileUsingBuffers(ctx, response, cacheEntry,
-                            isServeCompressed);
+                            contentEncoding);
             }
         }
 
@@ -165,25 +180,140 @@ public class FileCacheFilter extends BaseFilter {
      * Prepare response with payload headers.
      */
     private void prepareResponseWithPayload(final FileCacheEntry entry,
-            final HttpResponsePacket response, final boolean isServeCompressed)
+            final HttpResponsePacket response, final String contentEncoding)
             throws IOException {
         response.addHeader(Header.ETag, entry.Etag);
         response.addHeader(Header.LastModified, entry.lastModifiedHeader);
+        response.addHeader(Header.AcceptRanges, "bytes");
 
-        response.setContentLengthLong(entry.getFileSize(isServeCompressed));
+        response.setContentLengthLong(entry.getFileSize(contentEncoding));
+        
+        if (contentEncoding != null) {
+            response.addHeader(Header.ContentEncoding, contentEncoding);
+        }
+    }
+
+    /**
+     * Sends the requested byte ranges of the uncompressed resource
+     * (or 416, if none of them is satisfiable).
+     */
+    private NextAction sendRanges(final FilterChainContext ctx,
+            final HttpRequestPacket request, final HttpResponsePacket response,
+            final FileCacheEntry cacheEntry, final ByteRanges ranges) {
+        if (!ranges.isSatisfiable()) {
+            ranges.prepareNotSatisfiableResponse(response);
+            ctx.write(HttpContent.builder(response)
+                    .content(Buffers.EMPTY_BUFFER)
+                    .last(true)
+                    .build());
+
+            return flush(ctx);
+        }
+        
+        ranges.preparePartialResponse(response);
         
-        if (isServeCompressed) {
-            response.addHeader(Header.ContentEncoding, "gzip");
+        if (cacheEntry.type != CacheType.FILE) {
+            // slice the ranges out of the cached ByteBuffer
+            final MemoryManager mm = ctx.getMemoryManager();
+            final ByteBuffer bb = cacheEntry.getByteBuffer(false);
+            
+            final Buffer payload;
+            if (!ranges.isMultipart()) {
+                payload = slice(mm, bb, ranges.get(0));
+            } else {
+                final CompositeBuffer composite = CompositeBuffer.newBuffer(mm);
+                composite.allowInternalBuffersDispose(false);
+                for (int i = 0; i < ranges.size(); i++) {
+                    composite.append(Buffers.wrap(mm, ranges.getPartHeader(i)));
+                    composite.append(slice(mm, bb, ranges.get(i)));
+                }
+                composite.append(Buffers.wrap(mm, ranges.getTrailer()));
+                payload = composite;
+            }
+            
+            ctx.write(HttpContent.builder(response)
+                    .content(payload)
+                    .last(true)
+                    .build());
+
+            return flush(ctx);
         }
+        
+        return fileCache.isFileSendEnabled() && !request.isSecure()
+                ? sendRangesZeroCopy(ctx, response, cacheEntry, ranges)
+                : sendRangesUsingBuffers(ctx, response, cacheEntry, ranges);
     }
+    
+    private NextAction sendRangesUsingBuffers(final FilterChainContext ctx,
+            final HttpResponsePacket response, final FileCacheEntry cacheEntry,
+            final ByteRanges ranges) {
+        try {
+            final FileSendEntry sendEntry = FileSendEntry.create(ctx, response,
+                    cacheEntry.getFile(false), ranges);
+            
+            ctx.suspend();
+            sendEntry.send();
+            return ctx.getSuspendAction();
+        } catch (IOException e) {
+        }
+
+        // FAILURE
+        return ctx.getInvokeAction();
+    }
+    
+    private NextAction sendRangesZeroCopy(final FilterChainContext ctx,
+            final HttpResponsePacket response, final FileCacheEntry cacheEntry,
+            final ByteRanges ranges) {
+        
+        final MemoryManager mm = ctx.getMemoryManager();
+        final File file = cacheEntry.getFile(false);
+        final EmptyCompletionHandler<WriteResult> failureHandler =
+                new EmptyCompletionHandler<WriteResult>() {
+            @Override
+            public void failed(Throwable throwable) {
+                LOGGER.log(Level.FINE, "Error reported during file-send entry: " +
+                        cacheEntry, throwable);
+            }
+        };
+        
+        // flush response
+        ctx.write(response);
 
+        // send-file the ranges, multipart delimiters go as raw Buffers
+        for (int i = 0; i < ranges.size(); i++) {
+            if (ranges.isMultipart()) {
+                ctx.write(Buffers.wrap(mm, ranges.getPartHeader(i)));
+            }
+            
+            final ByteRanges.Range range = ranges.get(i);
+            ctx.write(new FileTransfer(file, range.start, range.length()),
+                    failureHandler);
+        }
+        
+        if (ranges.isMultipart()) {
+            ctx.write(Buffers.wrap(mm, ranges.getTrailer()));
+        }
+        
+        return flush(ctx);
+    }
+    
+    private static Buffer slice(final MemoryManager mm, final ByteBuffer bb,
+            final ByteRanges.Range range) {
+        final ByteBuffer slice = bb.duplicate();
+        final int offset = bb.position();
+        slice.limit(offset + (int) range.end + 1);
+        slice.position(offset + (int) range.start);
+        
+        return Buffers.wrap(mm, slice);
+    }
+    
     private NextAction sendFileUsingBuffers(final FilterChainContext ctx,
             final HttpResponsePacket response, final FileCacheEntry cacheEntry,
-            final boolean isServeCompressed) {
+            final String contentEncoding) {
         try {
             final FileSendEntry sendEntry = FileSendEntry.create(ctx, response,
-                    cacheEntry.getFile(isServeCompressed),
-                    cacheEntry.getFileSize(isServeCompressed));
+                    cacheEntry.getFile(contentEncoding),
+                    cacheEntry.getFileSize(contentEncoding));
             
             ctx.suspend();
             sendEntry.send();
@@ -197,15 +327,15 @@ public class FileCacheFilter extends BaseFilter {
     
     private NextAction sendFileZeroCopy(final FilterChainContext ctx,
             final HttpResponsePacket response, final FileCacheEntry cacheEntry,
-            final boolean isServeCompressed) {
+            final String contentEncoding) {
         
         // flush response
         ctx.write(response);
 
         // send-file
         final FileTransfer f = new FileTransfer(
-                cacheEntry.getFile(isServeCompressed),
-                0, cacheEntry.getFileSize(isServeCompressed));
+                cacheEntry.getFile(contentEncoding),
+                0, cacheEntry.getFileSize(contentEncoding));
         ctx.write(f, new EmptyCompletionHandler<WriteResult>() {
             @Override
             public void failed(Throwable throwable) {
@@ -258,8 +388,12 @@ public class FileCacheFilter extends BaseFilter {
         private final FileInputStream fis;
         private final HttpResponsePacket response;
         private final OutputSink output;
+        private final ByteRanges ranges;
         
+        // the remaining size of the file, or of the current range
         private long remaining;
+        // the index of the range being sent
+        private int rangeIdx = -1;
 
         public static FileSendEntry create(final FilterChainContext ctx,
                 final HttpResponsePacket response,
@@ -268,19 +402,30 @@ public class FileCacheFilter extends BaseFilter {
             final FileInputStream fis = new FileInputStream(file);
             final FileChannel fc = fis.getChannel();
             
-            return new FileSendEntry(ctx, response, fis, fc, size);
+            return new FileSendEntry(ctx, response, fis, fc, size, null);
+        }
+        
+        public static FileSendEntry create(final FilterChainContext ctx,
+                final HttpResponsePacket response,
+                final File file, final ByteRanges ranges) throws IOException {
+            
+            final FileInputStream fis = new FileInputStream(file);
+            final FileChannel fc = fis.getChannel();
+            
+            return new FileSendEntry(ctx, response, fis, fc, 0, ranges);
         }
         
-        public FileSendEntry(final FilterChainContext ctx,
+        private FileSendEntry(final FilterChainContext ctx,
                 final HttpResponsePacket response,
                 final FileInputStream fis, final FileChannel fc,
-                final long size) {
+                final long size, final ByteRanges ranges) {
 
             this.ctx = ctx;
             this.response = response;
             this.fis = fis;
             this.fc = fc;
             this.remaining = size;
+            this.ranges = ranges;
             
             final HttpContext httpContext = response.getProcessingState().getHttpContext();
             assert httpContext != null;
@@ -301,11 +446,29 @@ public class FileCacheFilter extends BaseFilter {
             try {
                 boolean isLast;
                 do {
+                    if (remaining <= 0 && ranges != null && !nextRange()) {
+                        // all the ranges have been sent
+                        ctx.write(HttpContent.builder(response)
+                                .content(ranges.isMultipart()
+                                        ? Buffers.wrap(ctx.getMemoryManager(),
+                                                ranges.getTrailer())
+                                        : Buffers.EMPTY_BUFFER)
+                                .last(true)
+                                .build());
+                        isLast = true;
+                        break;
+                    }
+                    
                     final Buffer buffer = ctx.getMemoryManager().allocate(chunkSize);
                     buffer.allowBufferDispose(true);
+                    if (ranges != null && remaining < chunkSize) {
+                        // don't read beyond the current range
+                        buffer.limit((int) remaining);
+                    }
                     
                     final long readNow = Buffers.readFromFileChannel(fc, buffer);
-                    isLast = readNow <= 0 || (remaining -= readNow) <= 0;
+                    isLast = readNow <= 0 || ((remaining -= readNow) <= 0
+                            && (ranges == null || !ranges.isMultipart()));
 
                     buffer.trim();
                     ctx.write(HttpContent.builder(response)
@@ -325,6 +488,31 @@ public class FileCacheFilter extends BaseFilter {
             }
         }
 
+        /**
+         * Moves to the next range, writing its multipart headers.
+         * 
+         * @return <tt>true</tt> if there is next range to be sent,
+         *         or <tt>false</tt> otherwise
+         */
+        private boolean nextRange() throws IOException {
+            if (++rangeIdx == ranges.size()) {
+                return false;
+            }
+            
+            final ByteRanges.Range range = ranges.get(rangeIdx);
+            fc.position(range.start);
+            remaining = range.length();
+            
+            if (ranges.isMultipart()) {
+                ctx.write(HttpContent.builder(response)
+                        .content(Buffers.wrap(ctx.getMemoryManager(),
+                                ranges.getPartHeader(rangeIdx)))
+                        .build());
+            }
+            
+            return true;
+        }
+        
         private void done() {
             close();
             ctx.resume(ctx.getStopAction());
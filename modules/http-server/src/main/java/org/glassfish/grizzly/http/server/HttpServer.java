@@ -90,6 +90,7 @@ import org.glassfish.grizzly.threadpool.ThreadPoolProbe;
 import org.glassfish.grizzly.utils.DelayedExecutor;
 import org.glassfish.grizzly.utils.Futures;
 import org.glassfish.grizzly.utils.IdleTimeoutFilter;
+import org.glassfish.grizzly.utils.TimingWheelDelayedExecutor;
 
 
 /**
@@ -260,7 +261,11 @@ public class HttpServer {
         
         configureAuxThreadPool();
 
-        delayedExecutor = new DelayedExecutor(auxExecutorService);
+        final long timingWheelTickMillis = serverConfig.getTimingWheelTickMillis();
+        delayedExecutor = timingWheelTickMillis > 0
+                ? new TimingWheelDelayedExecutor(auxExecutorService,
+                        timingWheelTickMillis, TimeUnit.MILLISECONDS)
+                : new DelayedExecutor(auxExecutorService);
         delayedExecutor.start();
 
         for (final NetworkListener listener : listeners.values()) {
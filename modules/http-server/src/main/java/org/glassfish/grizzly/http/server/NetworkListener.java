@@ -853,6 +853,7 @@ public class NetworkListener {
         try {
             serverConnection = null;
             transport.shutdownNow();
+            fileCache.destroy();
             if (LOGGER.isLoggable(Level.INFO)) {
                 LOGGER.log(Level.INFO,
                     "Stopped listener bound to [{0}]",
@@ -42,6 +42,7 @@ package org.glassfish.grizzly.http.server;
 
 import java.util.concurrent.Executor;
 import org.glassfish.grizzly.threadpool.Threads;
+import org.glassfish.grizzly.threadpool.VirtualThreadExecutor;
 
 /**
  * An implementation of this interface will be  responsible for executing
@@ -95,4 +96,37 @@ public interface RequestExecutorProvider {
             return request.getContext().getConnection().getTransport().getWorkerThreadPool();
         }
     }
+
+    /**
+     * The {@link RequestExecutorProvider} implementation, which executes
+     * the user code in a new virtual thread per {@link Request}, so blocking
+     * user code doesn't limit the concurrency by the worker thread pool size.
+     * If the current {@link Thread} is already a virtual thread -
+     * <tt>null</tt> will be returned to force the user code to be executed
+     * on the current {@link Thread}.
+     * If the JDK doesn't support virtual threads, the implementation works
+     * like {@link WorkerThreadProvider}.
+     * 
+     * @see VirtualThreadExecutor
+     */
+    public static class VirtualThreadProvider implements RequestExecutorProvider {
+        private final WorkerThreadProvider fallbackProvider =
+                new WorkerThreadProvider();
+        
+        @Override
+        public Executor getExecutor(final Request request) {
+            final VirtualThreadExecutor executor =
+                    VirtualThreadExecutor.getInstance();
+            
+            if (executor == null) {
+                return fallbackProvider.getExecutor(request);
+            }
+            
+            if (VirtualThreadExecutor.isVirtual(Thread.currentThread())) {
+                return null; // Execute in the current thread
+            }
+
+            return executor;
+        }
+    }
 }
@@ -53,6 +53,8 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.atomic.AtomicInteger;
+import org.glassfish.grizzly.utils.DelayedExecutor;
+import org.glassfish.grizzly.utils.TimingWheelDelayedExecutor;
 
 /**
  * Configuration options for a particular {@link HttpServer} instance.
@@ -96,6 +98,14 @@ public class ServerConfiguration extends ServerFilterConfiguration {
      */
     private long maxPayloadRemainderToSkip = -1;
     
+    /**
+     * The tick duration (in milliseconds) of the {@link TimingWheelDelayedExecutor},
+     * which serves the server's timeouts (keep-alive, suspended responses,
+     * file cache entries). <tt>-1</tt> means the {@link DelayedExecutor},
+     * which checks all the registered timeouts every second, will be used.
+     */
+    private long timingWheelTickMillis = -1;
+    
     final Object handlersSync = new Object();
     
     // ------------------------------------------------------------ Constructors
@@ -370,5 +380,33 @@ public class ServerConfiguration extends ServerFilterConfiguration {
      */
     public void setMaxPayloadRemainderToSkip(long maxPayloadRemainderToSkip) {
         this.maxPayloadRemainderToSkip = maxPayloadRemainderToSkip;
-    }    
+    }
+
+    /**
+     * @return the tick duration (in milliseconds) of the
+     * {@link TimingWheelDelayedExecutor}, which serves the server's timeouts
+     * (keep-alive, suspended responses, file cache entries). <tt>-1</tt> means
+     * the {@link DelayedExecutor}, which checks all the registered timeouts
+     * every second, will be used.
+     * 
+     * @since 3.0
+     */
+    public long getTimingWheelTickMillis() {
+        return timingWheelTickMillis;
+    }
+
+    /**
+     * Set the tick duration (in milliseconds) of the
+     * {@link TimingWheelDelayedExecutor}, which serves the server's timeouts
+     * (keep-alive, suspended responses, file cache entries). <tt>-1</tt> means
+     * the {@link DelayedExecutor}, which checks all the registered timeouts
+     * every second, will be used.
+     * The value has to be set before the server is started.
+     * 
+     * @param timingWheelTickMillis
+     * @since 3.0
+     */
+    public void setTimingWheelTickMillis(long timingWheelTickMillis) {
+        this.timingWheelTickMillis = timingWheelTickMillis;
+    }
 } // END ServerConfiguration
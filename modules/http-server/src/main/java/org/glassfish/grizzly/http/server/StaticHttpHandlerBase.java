@@ -153,22 +153,56 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
         final long length = file.length();
         response.setContentLengthLong(length);
         response.addDateHeader(Header.Date, System.currentTimeMillis());
-        if (!response.isSendFileEnabled() || response.getRequest().isSecure()) {
-            sendUsingBuffers(response, file, completionHandler);
+        response.setHeader(Header.AcceptRanges, "bytes");
+        
+        final ByteRanges ranges = parseRanges(response, file, length);
+        if (ranges != null) {
+            if (!ranges.isSatisfiable()) {
+                ranges.prepareNotSatisfiableResponse(response.getResponse());
+                if (completionHandler != null) {
+                    completionHandler.completed(file);
+                }
+                
+                if (response.isSuspended()) {
+                    response.resume();
+                }
+                return;
+            }
+            
+            ranges.preparePartialResponse(response.getResponse());
+        }
+        
+        // sendfile(...) can transfer only one file region per response,
+        // so multipart/byteranges payload is always sent using buffers
+        if (!response.isSendFileEnabled() || response.getRequest().isSecure()
+                || (ranges != null && ranges.isMultipart())) {
+            sendUsingBuffers(response, file, ranges, completionHandler);
         } else {
-            sendZeroCopy(response, file, completionHandler);
+            sendZeroCopy(response, file, ranges, completionHandler);
         }
     }
 
+    private static ByteRanges parseRanges(final Response response,
+            final File file, final long length) {
+        String etag = response.getHeader(Header.ETag.toString());
+        if (etag == null) {
+            etag = "\"" + length + '-' + file.lastModified() + '"';
+        }
+        
+        return ByteRanges.parse(response.getRequest().getRequest(), length,
+                etag, file.lastModified());
+    }
+    
     private static void sendUsingBuffers(final Response response,
-            final File file, final CompletionHandler<File> completionHandler) {
+            final File file, final ByteRanges ranges,
+            final CompletionHandler<File> completionHandler) {
         final int chunkSize = 8192;
         
         final NIOOutputStream outputStream = response.getOutputStream();
         
         final NonBlockingDownloadHandler nonBlockingDownloadHandler =
                 new NonBlockingDownloadHandler(response, outputStream,
-                    file, completionHandler, chunkSize);
+                    file, ranges, completionHandler, chunkSize);
 
         if (!response.isSuspended()) {
             response.suspend();
@@ -178,10 +212,16 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
     }
     
     private static void sendZeroCopy(final Response response, final File file,
+            final ByteRanges ranges,
             final CompletionHandler<File> completionHandler) {
         
+        final long offset = ranges != null ? ranges.get(0).start : 0;
+        final long length = ranges != null
+                ? ranges.get(0).length()
+                : file.length();
+        
         final OutputBuffer outputBuffer = response.getOutputBuffer();
-        outputBuffer.sendfile(file,
+        outputBuffer.sendfile(file, offset, length,
                 Futures.<File, WriteResult>toAdaptedCompletionHandler(
                 null, completionHandler, new GenericAdapter<WriteResult, File>() {
 
@@ -326,6 +366,7 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
     private static class NonBlockingDownloadHandler implements WriteHandler {
         // keep the remaining size
         private final File file;
+        private final ByteRanges ranges;
         private final CompletionHandler<File> completionHandler;
         private final Response response;
         private final NIOOutputStream outputStream;
@@ -333,10 +374,14 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
         private final MemoryManager mm;
         private final int chunkSize;
         
+        // the remaining size of the file, or of the current range
         private volatile long size;
+        // the index of the range being sent
+        private int rangeIdx = -1;
         
         NonBlockingDownloadHandler(final Response response,
                 final NIOOutputStream outputStream, final File file,
+                final ByteRanges ranges,
                 final CompletionHandler<File> completionHandler,
                 final int chunkSize) {
             
@@ -347,8 +392,9 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
             }
 
             this.file = file;
+            this.ranges = ranges;
             this.completionHandler = completionHandler;
-            size = file.length();
+            size = ranges == null ? file.length() : 0;
             
             this.response = response;
             this.outputStream = outputStream;
@@ -379,10 +425,19 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
          * Send next CHUNK_SIZE of file
          */
         private boolean sendChunk() throws IOException {
+            if (size <= 0 && ranges != null && !nextRange()) {
+                complete();
+                return false;
+            }
+            
             // allocate Buffer
             final Buffer buffer = mm.allocate(chunkSize);
             // mark it available for disposal after content is written
             buffer.allowBufferDispose(true);
+            if (ranges != null && size < chunkSize) {
+                // don't read beyond the current range
+                buffer.limit((int) size);
+            }
 
             // read file to the Buffer
             final int justReadBytes = (int) Buffers.readFromFileChannel(
@@ -401,7 +456,7 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
             size -= justReadBytes;
 
             // check the remaining size here to avoid extra onWritePossible() invocation
-            if (size <= 0) {
+            if (size <= 0 && (ranges == null || !ranges.isMultipart())) {
                 complete();
                 return false;
             }
@@ -409,6 +464,33 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
             return true;
         }
 
+        /**
+         * Moves to the next range (writing its multipart headers), or writes
+         * the multipart close delimiter if all the ranges have been sent.
+         * 
+         * @return <tt>true</tt> if there is next range to be sent,
+         *         or <tt>false</tt> otherwise
+         */
+        private boolean nextRange() throws IOException {
+            if (++rangeIdx == ranges.size()) {
+                if (ranges.isMultipart()) {
+                    outputStream.write(ranges.getTrailer());
+                }
+                
+                return false;
+            }
+            
+            final ByteRanges.Range range = ranges.get(rangeIdx);
+            fileChannel.position(range.start);
+            size = range.length();
+            
+            if (ranges.isMultipart()) {
+                outputStream.write(ranges.getPartHeader(rangeIdx));
+            }
+            
+            return true;
+        }
+
         /**
          * Complete the download
          */
@@ -52,10 +52,7 @@ import org.glassfish.grizzly.utils.DelayedExecutor;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
@@ -67,7 +64,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.GZIPOutputStream;
 import org.glassfish.grizzly.http.CompressionConfig;
 import org.glassfish.grizzly.http.Method;
 import org.glassfish.grizzly.http.util.ContentType;
@@ -76,6 +72,7 @@ import org.glassfish.grizzly.monitoring.DefaultMonitoringConfig;
 import org.glassfish.grizzly.monitoring.MonitoringAware;
 import org.glassfish.grizzly.monitoring.MonitoringConfig;
 import org.glassfish.grizzly.monitoring.MonitoringUtils;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
 
 /**
  * This class implements a file caching mechanism used to cache static resources.
@@ -86,8 +83,6 @@ import org.glassfish.grizzly.monitoring.MonitoringUtils;
 public class FileCache implements MonitoringAware<FileCacheProbe> {
     private static final File TMP_DIR =
             new File(System.getProperty("java.io.tmpdir"));
-    
-    final static String[] COMPRESSION_ALIASES = {"gzip"};
 
     public enum CacheType {
         HEAP, MAPPED, FILE, TIMESTAMP
@@ -155,6 +150,23 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
      */
     private AtomicLong heapSize = new AtomicLong();
 
+    /**
+     * The maximum memory, in bytes, the compressed file representations
+     * may occupy.
+     */
+    private volatile long maxCompressedCacheSize = Long.MAX_VALUE;
+
+    /**
+     * The current memory, in bytes, occupied by the compressed file
+     * representations.
+     */
+    private final AtomicLong compressedSize = new AtomicLong();
+
+    /**
+     * The eviction policy.
+     */
+    private final SegmentedLru lru = new SegmentedLru();
+
     /**
      * Is the file cache enabled.
      */
@@ -171,6 +183,27 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
      * has to be compressed or not
      */
     private final CompressionConfig compressionConfig = new CompressionConfig();
+    /**
+     * The content-codings, in the order of preference, the cached resources
+     * are compressed with
+     */
+    private volatile String[] compressionEncodings = {Precompressor.GZIP};
+    /**
+     * The configuration of the thread pool compressing the cached resources
+     */
+    private volatile ThreadPoolConfig compressionThreadPoolConfig =
+            ThreadPoolConfig.newConfig()
+            .setPoolName("Grizzly-FileCache-compression")
+            .setCorePoolSize(0)
+            .setMaxPoolSize(Math.max(1,
+                    Runtime.getRuntime().availableProcessors() / 2))
+            .setQueueLimit(256)
+            .setKeepAliveTime(30, TimeUnit.SECONDS)
+            .setDaemon(true);
+    /**
+     * Compresses the cached resources in background
+     */
+    private final Precompressor precompressor = new Precompressor();
     
     /**
      * <tt>true</tt>, if zero-copy file-send feature could be used, or
@@ -199,6 +232,14 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
                 new EntryResolver());
     }
 
+    /**
+     * Stops the background compression threads. The threads will be
+     * started again, if a compression is requested after this call.
+     */
+    public void destroy() {
+        precompressor.shutdown();
+    }
+
     /**
      * Add a resource to the cache.
      * Unlike the {@link #add(org.glassfish.grizzly.http.HttpRequestPacket, java.io.File)}
@@ -241,8 +282,8 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
         }
 
         final int size = cacheSize.incrementAndGet();
-        // cache is full.
-        if (size > getMaxCacheEntries()) {
+        // cache is full - try to evict the least valuable entry.
+        if (size > getMaxCacheEntries() && !evict(SegmentedLru.Resource.ENTRY)) {
             cacheSize.decrementAndGet();
             fileCacheMap.remove(key);
             key.recycle();
@@ -257,7 +298,9 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
         final FileCacheEntry entry;
         if (cacheFile != null) { // If we have a file - try to create File-aware cache resource
             entry = createEntry(cacheFile);
-            entry.setCanBeCompressed(canBeCompressed(cacheFile, contentType));
+            entry.setCompressionEncodings(canBeCompressed(cacheFile, contentType)
+                    ? compressionEncodings
+                    : null);
         } else {
             entry = new FileCacheEntry(this);
             entry.type = CacheType.TIMESTAMP;
@@ -276,6 +319,7 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
         entry.server = headers.getHeader(Header.Server);
 
         fileCacheMap.put(key, entry);
+        lru.add(entry);
         
         notifyProbesEntryAdded(this, entry);
         
@@ -316,6 +360,9 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
                         httpStatus :
                         HttpStatus.OK_200);
                 
+                if (!entry.referenced) {
+                    entry.referenced = true;
+                }
                 notifyProbesEntryHit(this, entry);
                 return entry;
             }
@@ -333,17 +380,91 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
     }
 
     protected void remove(final FileCacheEntry entry) {
-        if (fileCacheMap.remove(entry.key) != null) {
-            cacheSize.decrementAndGet();
+        removeEntry(entry);
+    }
+
+    /**
+     * Removes the entry and releases the resources it occupied.
+     * 
+     * @return <tt>true</tt> if the entry has been removed, or <tt>false</tt>
+     *         if it had been removed before
+     */
+    private boolean removeEntry(final FileCacheEntry entry) {
+        if (!fileCacheMap.remove(entry.key, entry)) {
+            return false;
         }
 
+        cacheSize.decrementAndGet();
+        lru.remove(entry);
+
         if (entry.type == FileCache.CacheType.MAPPED) {
             subMappedMemorySize(entry.bb.remaining());
         } else if (entry.type == FileCache.CacheType.HEAP) {
             subHeapSize(entry.bb.remaining());
         }
 
+        synchronized (entry) {
+            entry.isRemoved = true;
+            if (entry.variants != null) {
+                for (int i = 0; i < entry.variants.length(); i++) {
+                    final CompressedVariant variant = entry.variants.get(i);
+                    if (variant != null && variant.bb != null) {
+                        compressedSize.addAndGet(-variant.bb.capacity());
+                    }
+                }
+            }
+        }
+
         notifyProbesEntryRemoved(this, entry);
+        return true;
+    }
+
+    /**
+     * Evicts the least valuable entry, which holds the given resource.
+     *
+     * @return <tt>true</tt> if an entry has been evicted, or <tt>false</tt>
+     *         if there was no entry, which could be evicted
+     */
+    private boolean evict(final SegmentedLru.Resource resource) {
+        // keep 20% of the cache for the entries on probation
+        final FileCacheEntry victim = lru.evict(resource,
+                getMaxCacheEntries() / 5 * 4);
+        if (victim == null) {
+            return false;
+        }
+
+        if (delayQueue != null) {
+            delayQueue.remove(victim);
+        }
+
+        if (removeEntry(victim)) {
+            notifyProbesEntryEvicted(this, victim);
+        }
+
+        return true;
+    }
+
+    /**
+     * Reserves <tt>size</tt> bytes of the given resource, evicting other
+     * entries if needed.
+     *
+     * @return <tt>true</tt> if the space has been reserved, or <tt>false</tt>
+     *         otherwise
+     */
+    private boolean reserve(final SegmentedLru.Resource resource,
+            final AtomicLong counter, final long maxSize, final long size) {
+        if (size > maxSize) {
+            return false;
+        }
+
+        while (counter.addAndGet(size) > maxSize) {
+            counter.addAndGet(-size);
+            if (!evict(resource)) {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     protected Object createJmxManagementObject() {
@@ -385,17 +506,17 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
         FileInputStream stream = null;
         try {
             if (size > getMinEntrySize()) {
-                if (addMappedMemorySize(size) > getMaxLargeFileCacheSize()) {
+                if (!reserve(SegmentedLru.Resource.MAPPED, mappedMemorySize,
+                        getMaxLargeFileCacheSize(), size)) {
                     // Cache full
-                    subMappedMemorySize(size);
                     return null;
                 }
                 
                 type = CacheType.MAPPED;
             } else {
-                if (addHeapSize(size) > getMaxSmallFileCacheSize()) {
+                if (!reserve(SegmentedLru.Resource.HEAP, heapSize,
+                        getMaxSmallFileCacheSize(), size)) {
                     // Cache full
-                    subHeapSize(size);
                     return null;
                 }
 
@@ -571,6 +692,27 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
         this.maxSmallFileCacheSize = maxSmallFileCacheSize;
     }
 
+    /**
+     * @return the maximum size, in bytes, of the memory the compressed
+     *  file representations may occupy.
+     */
+    public long getMaxCompressedCacheSize() {
+        return maxCompressedCacheSize;
+    }
+
+    /**
+     * Sets the maximum size, in bytes, of the memory the compressed file
+     * representations may occupy. If there is no space for a compressed
+     * representation even after evicting other entries, the file will be
+     * served uncompressed.
+     *
+     * @param maxCompressedCacheSize the maximum size, in bytes, of the memory
+     *  the compressed file representations may occupy.
+     */
+    public void setMaxCompressedCacheSize(long maxCompressedCacheSize) {
+        this.maxCompressedCacheSize = maxCompressedCacheSize;
+    }
+
     /**
      * @return <code>true</code> if the {@link FileCache} is enabled,
      *  otherwise <code>false</code>
@@ -612,6 +754,62 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
                 TMP_DIR;
     }
 
+    /**
+     * Returns the content-codings, in the order of preference, the cached
+     * resources could be served compressed with.
+     */
+    public String[] getCompressionEncodings() {
+        return compressionEncodings.clone();
+    }
+
+    /**
+     * Sets the content-codings, in the order of preference, the cached
+     * resources could be served compressed with. The supported content-codings
+     * are "gzip" (the default) and "deflate".
+     * 
+     * The setting is applied to the resources cached after the change.
+     */
+    public void setCompressionEncodings(final String... compressionEncodings) {
+        if (compressionEncodings == null || compressionEncodings.length == 0) {
+            throw new IllegalArgumentException(
+                    "At least one encoding has to be specified");
+        }
+        
+        for (String encoding : compressionEncodings) {
+            if (!Precompressor.isSupported(encoding)) {
+                throw new IllegalArgumentException(
+                        "The encoding is not supported: " + encoding);
+            }
+        }
+        
+        this.compressionEncodings = compressionEncodings.clone();
+    }
+
+    /**
+     * Returns the configuration of the thread pool, which compresses
+     * the cached resources in background.
+     */
+    public ThreadPoolConfig getCompressionThreadPoolConfig() {
+        return compressionThreadPoolConfig;
+    }
+
+    /**
+     * Sets the configuration of the thread pool, which compresses
+     * the cached resources in background. If the thread pool queue is full,
+     * the compression is postponed until the resource is requested again.
+     * 
+     * The setting has no effect once the first resource has been compressed.
+     */
+    public void setCompressionThreadPoolConfig(
+            final ThreadPoolConfig compressionThreadPoolConfig) {
+        if (compressionThreadPoolConfig == null) {
+            throw new IllegalArgumentException(
+                    "compressionThreadPoolConfig can't be null");
+        }
+        
+        this.compressionThreadPoolConfig = compressionThreadPoolConfig;
+    }
+
     /**
      * <p>
      * Returns <code>true</code> if File resources may be be sent using
@@ -655,56 +853,81 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
     }
     
     /**
-     * Creates a temporary compressed representation of the given cache entry.
+     * Schedules the compression of the given cache entry with the
+     * <tt>idx</tt>-th encoding of the entry.
+     */
+    void scheduleCompression(final FileCacheEntry entry, final int idx) {
+        final boolean isScheduled = precompressor.submit(
+                compressionThreadPoolConfig, new Runnable() {
+            @Override
+            public void run() {
+                compressFile(entry, idx);
+            }
+        });
+        
+        if (!isScheduled) {
+            // the compression queue is full,
+            // let the next request reschedule the compression
+            entry.variants.set(idx, null);
+        }
+    }
+    
+    /**
+     * Creates temporary compressed representations of the given cache entry
+     * for all the entry's content-codings, which are not compressed or being
+     * compressed yet.
+     * 
+     * @deprecated the cache doesn't call this method anymore, the compression
+     * is scheduled per content-coding and performed by
+     * {@link #compressFile(org.glassfish.grizzly.http.server.filecache.FileCacheEntry, int)}
      */
+    @Deprecated
     protected void compressFile(final FileCacheEntry entry) {
+        for (int i = 0; i < entry.encodings.length; i++) {
+            if (entry.variants.compareAndSet(i, null, CompressedVariant.PENDING)) {
+                compressFile(entry, i);
+            }
+        }
+    }
+    
+    /**
+     * Creates a temporary compressed representation of the given cache entry
+     * with the <tt>idx</tt>-th content-coding of the entry.
+     * The method is called by the compression thread pool, an overriding
+     * method has to call the super method to make the compressed
+     * representation available.
+     */
+    protected void compressFile(final FileCacheEntry entry, final int idx) {
+        final String encoding = entry.encodings[idx];
+        CompressedVariant variant = CompressedVariant.UNAVAILABLE;
+        
         try {
             final File tmpCompressedFile = File.createTempFile(
                     String.valueOf(entry.plainFile.hashCode()),
-                    ".tmpzip", compressedFilesFolder);
+                    ".tmp" + encoding, compressedFilesFolder);
             tmpCompressedFile.deleteOnExit();
 
-            InputStream in = null;
-            OutputStream out = null;
-            try {
-                in = new FileInputStream(entry.plainFile);
-                out = new GZIPOutputStream(
-                        new FileOutputStream(tmpCompressedFile));
-                
-                final byte[] tmp = new byte[1024];
-                
-                do {
-                    final int readNow = in.read(tmp);
-                    if (readNow == -1) {
-                        break;
-                    }
-                    
-                    out.write(tmp, 0, readNow);
-                } while (true);
-            } finally {
-                if (in != null) {
-                    try {
-                        in.close();
-                    } catch (IOException ignored) {
-                    }
-                }
-                if (out != null) {
-                    try {
-                        out.close();
-                    } catch (IOException ignored) {
-                    }
-                }
-            }
+            precompressor.compress(entry.plainFile, tmpCompressedFile, encoding);
             
             final long size = tmpCompressedFile.length();
             
             switch (entry.type) {
                 case HEAP:
                 case MAPPED: {
-                    final FileInputStream cFis =
-                            new FileInputStream(tmpCompressedFile);
+                    if (!reserve(SegmentedLru.Resource.COMPRESSED,
+                            compressedSize, getMaxCompressedCacheSize(), size)) {
+                        // no space for the compressed representation,
+                        // the entry will be served uncompressed
+                        if (!tmpCompressedFile.delete()) {
+                            tmpCompressedFile.deleteOnExit();
+                        }
+                        return;
+                    }
                     
+                    boolean isMapped = false;
+                    FileInputStream cFis = null;
                     try {
+                        cFis = new FileInputStream(tmpCompressedFile);
                         final FileChannel cFileChannel = cFis.getChannel();
 
                         final MappedByteBuffer compressedBb = cFileChannel.map(
@@ -714,24 +937,40 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
                             compressedBb.load();
                         }
                         
-                        entry.compressedBb = compressedBb;
+                        synchronized (entry) {
+                            // the entry might have been removed meanwhile
+                            if (!entry.isRemoved) {
+                                variant = new CompressedVariant(
+                                        tmpCompressedFile, size, compressedBb);
+                                entry.variants.set(idx, variant);
+                                isMapped = true;
+                            }
+                        }
                     } finally {
-                        cFis.close();
+                        if (!isMapped) {
+                            compressedSize.addAndGet(-size);
+                            if (!tmpCompressedFile.delete()) {
+                                tmpCompressedFile.deleteOnExit();
+                            }
+                        }
+                        if (cFis != null) {
+                            cFis.close();
+                        }
                     }
                     
                     break;
                 }
                 case FILE: {
+                    variant = new CompressedVariant(tmpCompressedFile, size, null);
                     break;
                 }
 
                 default: throw new IllegalStateException("The type is not supported: " + entry.type);
             }
-            
-            entry.compressedFileSize = size;
-            entry.compressedFile = tmpCompressedFile;
         } catch (IOException e) {
             LOGGER.log(Level.FINE, "Can not compress file: " + entry.plainFile, e);
+        } finally {
+            entry.variants.set(idx, variant);
         }
     }
     
@@ -770,6 +1009,14 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
         return mappedMemorySize.get();
     }
 
+    /**
+     * Return the memory size used by the compressed file representations
+     * @return compressed representations size
+     */
+    public long getCompressedCacheSize() {
+        return compressedSize.get();
+    }
+
 
     /**
      * Check if the conditions specified in the optional If headers are
@@ -997,6 +1244,23 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
         }
     }
 
+    /**
+     * Notify registered {@link FileCacheProbe}s about the "entry evicted" event.
+     *
+     * @param fileCache the <tt>FileCache</tt> event occurred on.
+     * @param entry entry been evicted
+     */
+    protected static void notifyProbesEntryEvicted(final FileCache fileCache,
+            final FileCacheEntry entry) {
+        final FileCacheProbe[] probes =
+                fileCache.monitoringConfig.getProbesUnsafe();
+        if (probes != null) {
+            for (FileCacheProbe probe : probes) {
+                probe.onEntryEvictedEvent(fileCache, entry);
+            }
+        }
+    }
+
     /**
      * Notify registered {@link FileCacheProbe}s about the "entry hit event.
      *
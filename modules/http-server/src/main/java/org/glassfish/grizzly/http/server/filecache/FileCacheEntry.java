@@ -41,8 +41,9 @@
 package org.glassfish.grizzly.http.server.filecache;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import org.glassfish.grizzly.http.CompressionConfig;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -70,11 +71,11 @@ public final class FileCacheEntry implements Runnable {
     File plainFile;
     long plainFileSize = -1;
     
-    private boolean canBeCompressed;
-    private AtomicBoolean isCompressed;
-    volatile File compressedFile;
-    ByteBuffer compressedBb;
-    long compressedFileSize = -1;
+    // the content-codings the entry could be compressed with,
+    // null if the entry should be always served as it is
+    String[] encodings;
+    // the compressed representations, one per encoding
+    AtomicReferenceArray<CompressedVariant> variants;
     
     public String xPoweredBy;
     public FileCache.CacheType type;
@@ -85,6 +86,14 @@ public final class FileCacheEntry implements Runnable {
 
     public volatile long timeoutMillis;
 
+    // eviction policy state, see SegmentedLru
+    volatile boolean referenced;
+    SegmentedLru.Segment lruSegment;
+    FileCacheEntry lruPrev;
+    FileCacheEntry lruNext;
+    // guarded by "this"
+    boolean isRemoved;
+
     private final FileCache fileCache;
 
     public FileCacheEntry(FileCache fileCache) {
@@ -92,15 +101,16 @@ public final class FileCacheEntry implements Runnable {
     }
 
     /**
-     * <tt>true</tt> means this entry could be served compressed, if client
-     * supports compression, or <tt>false</tt> if this entry should be always
-     * served as it is.
+     * Sets the content-codings this entry could be served compressed with,
+     * if client supports them. <tt>null</tt> means this entry should be
+     * always served as it is.
      */
-    void setCanBeCompressed(final boolean canBeCompressed) {
-        this.canBeCompressed = canBeCompressed;
+    void setCompressionEncodings(final String[] encodings) {
+        this.encodings = encodings;
         
-        if (canBeCompressed) {
-            isCompressed = new AtomicBoolean();
+        if (encodings != null) {
+            variants = new AtomicReferenceArray<CompressedVariant>(
+                    encodings.length);
         }
     }
     
@@ -108,22 +118,55 @@ public final class FileCacheEntry implements Runnable {
      * Returns <tt>true</tt> if this entry could be served compressed as response
      * to this (passed) specific {@link HttpRequestPacket}. Or <tt>false</tt>
      * will be returned otherwise.
+     * 
+     * Only the first configured content-coding (gzip by default) is checked,
+     * use {@link #selectContentEncoding(HttpRequestPacket)} to take all
+     * of them into account.
      */
     public boolean canServeCompressed(final HttpRequestPacket request) {
-        if (!canBeCompressed ||
-                !CompressionConfig.isClientSupportCompression(
+        return encodings != null && canServe(0, request);
+    }
+    
+    /**
+     * Returns the content-coding this entry could be served with as response
+     * to this (passed) specific {@link HttpRequestPacket}, or <tt>null</tt>
+     * if the entry has to be served uncompressed.
+     * 
+     * If the compressed representation hasn't been prepared yet, its
+     * compression is scheduled in background and the uncompressed one
+     * is served meanwhile.
+     */
+    public String selectContentEncoding(final HttpRequestPacket request) {
+        if (encodings == null) {
+            return null;
+        }
+        
+        for (int i = 0; i < encodings.length; i++) {
+            if (canServe(i, request)) {
+                return encodings[i];
+            }
+        }
+        
+        return null;
+    }
+    
+    private boolean canServe(final int idx, final HttpRequestPacket request) {
+        if (!CompressionConfig.isClientSupportCompression(
                 fileCache.getCompressionConfig(), request,
-                FileCache.COMPRESSION_ALIASES)) {
+                Precompressor.aliases(encodings[idx]))) {
             return false;
         }
         
-        if (isCompressed.compareAndSet(false, true)) {
-            fileCache.compressFile(this);
+        final CompressedVariant variant = variants.get(idx);
+        if (variant == null
+                && variants.compareAndSet(idx, null, CompressedVariant.PENDING)) {
+            fileCache.scheduleCompression(this, idx);
+            return false;
         }
         
-        // compressedFile could be still "null" if the file compression was
+        // the variant could be still pending if the file compression was
         // initiated by other request and it is still not completed
-        return compressedFile != null;
+        return variant != null && variant.isReady();
     }
     
     /**
@@ -133,7 +176,17 @@ public final class FileCacheEntry implements Runnable {
      * @return the entry file size
      */
     public long getFileSize(final boolean isCompressed) {
-        return isCompressed ? compressedFileSize : plainFileSize;
+        return isCompressed ? getVariant(0).size : plainFileSize;
+    }
+    
+    /**
+     * Returns the entry file size.
+     * @param encoding the content-coding, or <tt>null</tt> for the
+     *        uncompressed representation
+     * @return the entry file size
+     */
+    public long getFileSize(final String encoding) {
+        return encoding == null ? plainFileSize : getVariant(encoding).size;
     }
     
     /**
@@ -144,7 +197,17 @@ public final class FileCacheEntry implements Runnable {
      * @return the entry's {@link File} reference
      */
     public File getFile(final boolean isCompressed) {
-        return isCompressed ? compressedFile : plainFile;
+        return isCompressed ? getVariant(0).file : plainFile;
+    }
+    
+    /**
+     * Returns the entry's {@link File} reference.
+     * @param encoding the content-coding, or <tt>null</tt> for the
+     *        uncompressed representation
+     * @return the entry's {@link File} reference
+     */
+    public File getFile(final String encoding) {
+        return encoding == null ? plainFile : getVariant(encoding).file;
     }
     
     /**
@@ -155,7 +218,53 @@ public final class FileCacheEntry implements Runnable {
      * @return the entry's {@link ByteBuffer} reference
      */
     public ByteBuffer getByteBuffer(final boolean isCompressed) {
-        return isCompressed ? compressedBb : bb;
+        return isCompressed ? getVariant(0).bb : bb;
+    }
+    
+    /**
+     * Returns the entry's {@link ByteBuffer} representation.
+     * @param encoding the content-coding, or <tt>null</tt> for the
+     *        uncompressed representation
+     * @return the entry's {@link ByteBuffer} reference
+     */
+    public ByteBuffer getByteBuffer(final String encoding) {
+        return encoding == null ? bb : getVariant(encoding).bb;
+    }
+    
+    /**
+     * @return <tt>true</tt> if any compressed representation of this entry
+     *         is kept in memory, or <tt>false</tt> otherwise
+     */
+    boolean hasCompressedBuffer() {
+        if (variants != null) {
+            for (int i = 0; i < variants.length(); i++) {
+                final CompressedVariant variant = variants.get(i);
+                if (variant != null && variant.bb != null) {
+                    return true;
+                }
+            }
+        }
+        
+        return false;
+    }
+    
+    private CompressedVariant getVariant(final String encoding) {
+        if (encodings != null) {
+            for (int i = 0; i < encodings.length; i++) {
+                if (encodings[i].equals(encoding)) {
+                    return getVariant(i);
+                }
+            }
+        }
+        
+        return CompressedVariant.UNAVAILABLE;
+    }
+    
+    private CompressedVariant getVariant(final int idx) {
+        final CompressedVariant variant = encodings != null
+                ? variants.get(idx)
+                : null;
+        return variant != null ? variant : CompressedVariant.UNAVAILABLE;
     }
     
     @Override
@@ -173,8 +282,15 @@ public final class FileCacheEntry implements Runnable {
         sb.append(", contentType='").append(contentType).append('\'');
         sb.append(", type=").append(type);
         sb.append(", plainFileSize=").append(plainFileSize);
-        sb.append(", canBeCompressed=").append(canBeCompressed);
-        sb.append(", compressedFileSize=").append(compressedFileSize);
+        if (encodings != null) {
+            sb.append(", compressedFileSizes={");
+            for (int i = 0; i < encodings.length; i++) {
+                final CompressedVariant variant = variants.get(i);
+                sb.append(i > 0 ? ", " : "").append(encodings[i]).append('=')
+                        .append(variant != null ? variant.size : -1);
+            }
+            sb.append('}');
+        }
         sb.append(", timeoutMillis=").append(timeoutMillis);
         sb.append(", fileCache=").append(fileCache);
         sb.append(", server=").append(server);
@@ -184,17 +300,26 @@ public final class FileCacheEntry implements Runnable {
 
     @Override
     protected void finalize() throws Throwable {
-        if (compressedFile != null) {
-            if (!compressedFile.delete()) {
-                if (LOGGER.isLoggable(Level.FINE)) {
-                    LOGGER.log(Level.FINE,
-                               "Unable to delete file {0}.  Will try to delete again upon VM exit.",
-                               compressedFile.getCanonicalPath());
+        if (variants != null) {
+            for (int i = 0; i < variants.length(); i++) {
+                final CompressedVariant variant = variants.get(i);
+                if (variant != null && variant.isReady()) {
+                    deleteFile(variant.file);
                 }
-                compressedFile.deleteOnExit();
             }
         }
         
         super.finalize();
     }
+
+    private static void deleteFile(final File file) throws IOException {
+        if (!file.delete()) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE,
+                           "Unable to delete file {0}.  Will try to delete again upon VM exit.",
+                           file.getCanonicalPath());
+            }
+            file.deleteOnExit();
+        }
+    }
 }
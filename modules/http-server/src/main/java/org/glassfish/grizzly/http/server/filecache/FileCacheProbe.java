@@ -64,6 +64,16 @@ public interface FileCacheProbe {
      */
     public void onEntryRemovedEvent(FileCache fileCache, FileCacheEntry entry);
 
+    /**
+     * Method will be called, when file cache entry gets evicted to free space
+     * for new entries. The evicted entry has already been reported via
+     * {@link #onEntryRemovedEvent(FileCache, FileCacheEntry)}.
+     *
+     * @param fileCache {@link FileCache}, the event belongs to.
+     * @param entry {@link FileCacheEntry} evicted.
+     */
+    public void onEntryEvictedEvent(FileCache fileCache, FileCacheEntry entry);
+
     /**
      * Method will be called, when file cache entry gets hit.
      *
@@ -116,6 +126,9 @@ public interface FileCacheProbe {
         @Override
         public void onEntryRemovedEvent(FileCache fileCache, FileCacheEntry entry) {}
 
+        @Override
+        public void onEntryEvictedEvent(FileCache fileCache, FileCacheEntry entry) {}
+
         /**
          * {@inheritDoc}
          */
@@ -0,0 +1,254 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.filecache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import org.glassfish.grizzly.threadpool.GrizzlyExecutorService;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+
+/**
+ * Produces compressed representations of the {@link FileCache} entries
+ * in the background, so the request threads are never blocked by compression.
+ * 
+ * The {@link Deflater}s are pooled per encoding and reused across files.
+ */
+final class Precompressor {
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+    
+    private static final String[] GZIP_ALIASES = {GZIP};
+    private static final String[] DEFLATE_ALIASES = {DEFLATE};
+    
+    private static final int BUFFER_SIZE = 32768;
+    
+    private static final byte[] GZIP_HEADER = {
+        0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+    };
+    
+    // raw deflate data wrapped by GZIP header and trailer
+    private final Queue<Deflater> gzipDeflaters =
+            new ConcurrentLinkedQueue<Deflater>();
+    // zlib format
+    private final Queue<Deflater> zlibDeflaters =
+            new ConcurrentLinkedQueue<Deflater>();
+    
+    private final Object executorSync = new Object();
+    private ExecutorService executor;
+    // true, if the precompressor has been shut down and not used since then
+    private volatile boolean isShutdown;
+    
+    /**
+     * @return <tt>true</tt> if the content-coding is supported,
+     *         or <tt>false</tt> otherwise
+     */
+    static boolean isSupported(final String encoding) {
+        return GZIP.equals(encoding) || DEFLATE.equals(encoding);
+    }
+    
+    /**
+     * @return the aliases to match against the <tt>Accept-Encoding</tt>
+     *         request header
+     */
+    static String[] aliases(final String encoding) {
+        return GZIP.equals(encoding) ? GZIP_ALIASES : DEFLATE_ALIASES;
+    }
+    
+    /**
+     * Schedules the compression task.
+     * 
+     * @return <tt>true</tt> if the task has been scheduled, or <tt>false</tt>
+     *         if the compression queue is full
+     */
+    boolean submit(final ThreadPoolConfig config, final Runnable task) {
+        try {
+            getExecutor(config).execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Stops the compression threads once the already scheduled tasks
+     * are completed, so no cache entry is left pending, and releases
+     * the pooled {@link Deflater}s.
+     */
+    void shutdown() {
+        final ExecutorService executorToStop;
+        synchronized (executorSync) {
+            executorToStop = executor;
+            executor = null;
+            isShutdown = true;
+        }
+        
+        if (executorToStop != null) {
+            executorToStop.shutdown();
+        }
+        
+        // the tasks, which are still running, end their Deflaters themselves
+        endDeflaters();
+    }
+    
+    /**
+     * Compresses the source file into the destination file.
+     */
+    void compress(final File src, final File dst, final String encoding)
+            throws IOException {
+        final boolean isGzip = GZIP.equals(encoding);
+        final Queue<Deflater> pool = isGzip ? gzipDeflaters : zlibDeflaters;
+        
+        Deflater deflater = pool.poll();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, isGzip);
+        }
+        
+        final InputStream in = new FileInputStream(src);
+        try {
+            final OutputStream out = new FileOutputStream(dst);
+            try {
+                deflate(in, out, deflater, isGzip);
+            } finally {
+                out.close();
+            }
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+            
+            if (isShutdown) {
+                deflater.end();
+            } else {
+                deflater.reset();
+                pool.offer(deflater);
+                
+                if (isShutdown) {
+                    // the shutdown might have missed the returned Deflater
+                    endDeflaters();
+                }
+            }
+        }
+    }
+    
+    /**
+     * @return the number of the pooled {@link Deflater}s
+     */
+    int getPooledDeflatersCount() {
+        return gzipDeflaters.size() + zlibDeflaters.size();
+    }
+    
+    /**
+     * Releases the native resources of the pooled {@link Deflater}s.
+     */
+    private void endDeflaters() {
+        Deflater deflater;
+        while ((deflater = gzipDeflaters.poll()) != null) {
+            deflater.end();
+        }
+        
+        while ((deflater = zlibDeflaters.poll()) != null) {
+            deflater.end();
+        }
+    }
+    
+    private static void deflate(final InputStream in, final OutputStream out,
+            final Deflater deflater, final boolean isGzip) throws IOException {
+        final byte[] inBuf = new byte[BUFFER_SIZE];
+        final byte[] outBuf = new byte[BUFFER_SIZE];
+        final CRC32 crc = isGzip ? new CRC32() : null;
+        
+        if (isGzip) {
+            out.write(GZIP_HEADER);
+        }
+        
+        int readNow;
+        while ((readNow = in.read(inBuf)) != -1) {
+            if (isGzip) {
+                crc.update(inBuf, 0, readNow);
+            }
+            
+            deflater.setInput(inBuf, 0, readNow);
+            while (!deflater.needsInput()) {
+                final int len = deflater.deflate(outBuf);
+                out.write(outBuf, 0, len);
+            }
+        }
+        
+        deflater.finish();
+        while (!deflater.finished()) {
+            final int len = deflater.deflate(outBuf);
+            out.write(outBuf, 0, len);
+        }
+        
+        if (isGzip) {
+            final int crcValue = (int) crc.getValue();
+            final int size = (int) deflater.getBytesRead();
+            out.write(new byte[] {
+                (byte) crcValue, (byte) (crcValue >>> 8),
+                (byte) (crcValue >>> 16), (byte) (crcValue >>> 24),
+                (byte) size, (byte) (size >>> 8),
+                (byte) (size >>> 16), (byte) (size >>> 24)
+            });
+        }
+    }
+    
+    private ExecutorService getExecutor(final ThreadPoolConfig config) {
+        synchronized (executorSync) {
+            if (executor == null) {
+                executor = GrizzlyExecutorService.createInstance(config);
+                isShutdown = false;
+            }
+            
+            return executor;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.filecache;
+
+/**
+ * Segmented LRU eviction policy for the {@link FileCache}.
+ *
+ * New entries are placed into the probation segment. An entry, which has been
+ * hit while it was on probation, gets promoted to the protected segment, so
+ * one-time requested files don't push the popular ones out of the cache.
+ * The hits are recorded lazily by setting {@link FileCacheEntry#referenced}
+ * flag, so the cache lookup path doesn't need to acquire any lock, the entries
+ * get reordered at the eviction time. The eviction promotes the referenced
+ * entries lazily, only until it finds a victim.
+ */
+final class SegmentedLru {
+    
+    /**
+     * The resource the eviction has to free.
+     */
+    enum Resource {
+        ENTRY, HEAP, MAPPED, COMPRESSED
+    }
+
+    private final Segment probation = new Segment();
+    private final Segment protectedSegment = new Segment();
+
+    synchronized void add(final FileCacheEntry entry) {
+        entry.referenced = false;
+        probation.addFirst(entry);
+    }
+
+    synchronized void remove(final FileCacheEntry entry) {
+        if (entry.lruSegment != null) {
+            entry.lruSegment.unlink(entry);
+        }
+    }
+
+    synchronized int size() {
+        return probation.size + protectedSegment.size;
+    }
+
+    /**
+     * Chooses and unlinks the least valuable entry, which holds the
+     * given {@link Resource}.
+     *
+     * @param resource the {@link Resource} to be freed
+     * @param protectedCapacity the max number of entries in the protected segment
+     * @return the evicted {@link FileCacheEntry}, or <tt>null</tt> if there
+     *         is no entry holding the resource
+     */
+    synchronized FileCacheEntry evict(final Resource resource,
+            final int protectedCapacity) {
+        // second chance: the referenced entries met on the way from
+        // the probation tail get promoted, the scan stops at the first
+        // not referenced entry holding the resource
+        FileCacheEntry victim = null;
+        for (FileCacheEntry e = probation.tail; e != null; ) {
+            final FileCacheEntry prev = e.lruPrev;
+            if (e.referenced) {
+                e.referenced = false;
+                probation.unlink(e);
+                protectedSegment.addFirst(e);
+            } else if (holds(e, resource)) {
+                victim = e;
+                break;
+            }
+            e = prev;
+        }
+
+        demoteOverflow(protectedCapacity);
+
+        if (victim == null) {
+            // the entries demoted to the probation head haven't been checked yet
+            victim = probation.lastHolding(resource);
+            if (victim == null) {
+                victim = protectedSegment.lastHolding(resource);
+            }
+        }
+
+        if (victim != null) {
+            victim.lruSegment.unlink(victim);
+        }
+
+        return victim;
+    }
+
+    private void demoteOverflow(final int protectedCapacity) {
+        // demote the overflow to the probation segment, giving
+        // the recently hit protected entries one more chance
+        int secondChances = protectedSegment.size;
+        while (protectedSegment.size > protectedCapacity) {
+            final FileCacheEntry e = protectedSegment.tail;
+            protectedSegment.unlink(e);
+            if (e.referenced && secondChances-- > 0) {
+                e.referenced = false;
+                protectedSegment.addFirst(e);
+            } else {
+                probation.addFirst(e);
+            }
+        }
+    }
+
+    private static boolean holds(final FileCacheEntry entry,
+            final Resource resource) {
+        switch (resource) {
+            case ENTRY: return true;
+            case HEAP: return entry.type == FileCache.CacheType.HEAP;
+            case MAPPED: return entry.type == FileCache.CacheType.MAPPED;
+            case COMPRESSED: return entry.hasCompressedBuffer();
+            default: throw new IllegalStateException("Unknown resource: " + resource);
+        }
+    }
+
+    /**
+     * Doubly-linked list of {@link FileCacheEntry}s, the most recent
+     * entry is the head.
+     */
+    static final class Segment {
+        private FileCacheEntry head;
+        private FileCacheEntry tail;
+        private int size;
+
+        private void addFirst(final FileCacheEntry entry) {
+            entry.lruSegment = this;
+            entry.lruPrev = null;
+            entry.lruNext = head;
+            if (head != null) {
+                head.lruPrev = entry;
+            } else {
+                tail = entry;
+            }
+            head = entry;
+            size++;
+        }
+
+        private void unlink(final FileCacheEntry entry) {
+            final FileCacheEntry prev = entry.lruPrev;
+            final FileCacheEntry next = entry.lruNext;
+            if (prev != null) {
+                prev.lruNext = next;
+            } else {
+                head = next;
+            }
+            if (next != null) {
+                next.lruPrev = prev;
+            } else {
+                tail = prev;
+            }
+            entry.lruSegment = null;
+            entry.lruPrev = null;
+            entry.lruNext = null;
+            size--;
+        }
+
+        private FileCacheEntry lastHolding(final Resource resource) {
+            for (FileCacheEntry e = tail; e != null; e = e.lruPrev) {
+                if (holds(e, resource)) {
+                    return e;
+                }
+            }
+
+            return null;
+        }
+    }
+}
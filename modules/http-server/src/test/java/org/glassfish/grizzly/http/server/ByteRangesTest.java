@@ -0,0 +1,302 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Random;
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.http.Method;
+import org.glassfish.grizzly.http.Protocol;
+import org.glassfish.grizzly.http.util.Header;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Range requests tests.
+ */
+public class ByteRangesTest {
+    private static final int PORT = 18905;
+    
+    private HttpServer httpServer;
+    
+    @After
+    public void after() throws Exception {
+        if (httpServer != null) {
+            httpServer.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testParse() {
+        ByteRanges ranges = ByteRanges.parse("bytes=0-99", 1000);
+        assertTrue(ranges.isSatisfiable());
+        assertFalse(ranges.isMultipart());
+        assertRange(ranges.get(0), 0, 99);
+        
+        ranges = ByteRanges.parse("bytes=900-", 1000);
+        assertRange(ranges.get(0), 900, 999);
+        
+        ranges = ByteRanges.parse("bytes=-100", 1000);
+        assertRange(ranges.get(0), 900, 999);
+        
+        ranges = ByteRanges.parse("bytes=-5000", 1000);
+        assertRange(ranges.get(0), 0, 999);
+
+        ranges = ByteRanges.parse("bytes=990-5000", 1000);
+        assertRange(ranges.get(0), 990, 999);
+        
+        ranges = ByteRanges.parse("Bytes = 0-0 , 10-19", 1000);
+        assertNull(ranges);
+        
+        ranges = ByteRanges.parse("bytes= 0-0 , 10-19", 1000);
+        assertEquals(2, ranges.size());
+        assertRange(ranges.get(0), 0, 0);
+        assertRange(ranges.get(1), 10, 19);
+    }
+
+    @Test
+    public void testMalformedIsIgnored() {
+        assertNull(ByteRanges.parse("items=0-10", 1000));
+        assertNull(ByteRanges.parse("bytes=", 1000));
+        assertNull(ByteRanges.parse("bytes=10", 1000));
+        assertNull(ByteRanges.parse("bytes=-", 1000));
+        assertNull(ByteRanges.parse("bytes=20-10", 1000));
+        assertNull(ByteRanges.parse("bytes=a-10", 1000));
+        
+        final StringBuilder tooMany = new StringBuilder("bytes=0-0");
+        for (int i = 1; i <= ByteRanges.MAX_RANGES; i++) {
+            tooMany.append(',').append(i * 2).append('-').append(i * 2);
+        }
+        assertNull(ByteRanges.parse(tooMany.toString(), 1000));
+    }
+    
+    @Test
+    public void testNotSatisfiable() {
+        assertFalse(ByteRanges.parse("bytes=1000-", 1000).isSatisfiable());
+        assertFalse(ByteRanges.parse("bytes=-0", 1000).isSatisfiable());
+        assertFalse(ByteRanges.parse("bytes=0-10", 0).isSatisfiable());
+        assertTrue(ByteRanges.parse("bytes=1000-,5-5", 1000).isSatisfiable());
+    }
+    
+    @Test
+    public void testCoalesce() {
+        final ByteRanges ranges = ByteRanges.parse(
+                "bytes=50-59,0-9,5-19,20-29,-10", 100);
+        assertEquals(3, ranges.size());
+        assertRange(ranges.get(0), 0, 29);
+        assertRange(ranges.get(1), 50, 59);
+        assertRange(ranges.get(2), 90, 99);
+        
+        final ByteRanges single = ByteRanges.parse("bytes=0-49,10-99", 100);
+        assertFalse(single.isMultipart());
+        assertRange(single.get(0), 0, 99);
+    }
+    
+    @Test
+    public void testIfRange() {
+        final String etag = "\"1000-1234567890000\"";
+        final long lastModified = 1234567890000L;
+        
+        assertTrue(ByteRanges.isIfRangeSatisfied(null, etag, lastModified));
+        assertTrue(ByteRanges.isIfRangeSatisfied(etag, etag, lastModified));
+        assertFalse(ByteRanges.isIfRangeSatisfied("\"other\"", etag, lastModified));
+        assertFalse(ByteRanges.isIfRangeSatisfied("W/" + etag, etag, lastModified));
+        assertTrue(ByteRanges.isIfRangeSatisfied(
+                "Fri, 13 Feb 2009 23:31:30 GMT", etag, lastModified));
+        assertFalse(ByteRanges.isIfRangeSatisfied(
+                "Fri, 13 Feb 2009 23:31:31 GMT", etag, lastModified));
+        
+        final HttpRequestPacket request = HttpRequestPacket.builder()
+                .method(Method.GET).protocol(Protocol.HTTP_1_1).uri("/")
+                .header(Header.Range, "bytes=0-9")
+                .header(Header.IfRange, "\"stale\"")
+                .build();
+        assertNull(ByteRanges.parse(request, 1000, etag, lastModified));
+    }
+    
+    @Test
+    public void testStaticHandler() throws Exception {
+        doTestRanges(false, false, Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testStaticHandlerSendFile() throws Exception {
+        doTestRanges(false, true, Long.MAX_VALUE);
+    }
+    
+    @Test
+    public void testFileCacheMapped() throws Exception {
+        doTestRanges(true, false, Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testFileCacheFile() throws Exception {
+        doTestRanges(true, false, 100);
+    }
+
+    @Test
+    public void testFileCacheFileSendFile() throws Exception {
+        doTestRanges(true, true, 100);
+    }
+    
+    private void doTestRanges(final boolean isFileCacheEnabled,
+            final boolean isSendFileEnabled, final long maxCacheEntrySize)
+            throws Exception {
+        final byte[] content = new byte[20000];
+        new Random(0).nextBytes(content);
+        final File file = File.createTempFile("grizzly-range", ".bin");
+        file.deleteOnExit();
+        final FileOutputStream fos = new FileOutputStream(file);
+        fos.write(content);
+        fos.close();
+        
+        httpServer = HttpServer.createSimpleServer(file.getParent(), PORT);
+        final NetworkListener listener = httpServer.getListener("grizzly");
+        listener.getFileCache().setEnabled(isFileCacheEnabled);
+        // bigger resources are cached as FILE entries
+        listener.getFileCache().setMaxEntrySize(maxCacheEntrySize);
+        listener.setSendFileEnabled(isSendFileEnabled);
+        httpServer.start();
+        
+        final String uri = "http://localhost:" + PORT + "/" + file.getName();
+
+        // populate the file cache
+        HttpURLConnection c = request(uri, null);
+        assertEquals(200, c.getResponseCode());
+        assertEquals("bytes", c.getHeaderField("Accept-Ranges"));
+        final String fileContentType = c.getContentType();
+        assertArrayEquals(content, readBody(c));
+        
+        // single range
+        c = request(uri, "bytes=100-199");
+        assertEquals(206, c.getResponseCode());
+        assertEquals("bytes 100-199/20000", c.getHeaderField("Content-Range"));
+        assertArrayEquals(slice(content, 100, 200), readBody(c));
+        
+        // suffix range
+        c = request(uri, "bytes=-50");
+        assertEquals(206, c.getResponseCode());
+        assertArrayEquals(slice(content, 19950, 20000), readBody(c));
+        
+        // not satisfiable
+        c = request(uri, "bytes=20000-");
+        assertEquals(416, c.getResponseCode());
+        assertEquals("bytes */20000", c.getHeaderField("Content-Range"));
+        
+        // multipart
+        c = request(uri, "bytes=0-9,10000-19999");
+        assertEquals(206, c.getResponseCode());
+        final String contentType = c.getContentType();
+        assertNotNull(contentType);
+        assertTrue(contentType, contentType.startsWith("multipart/byteranges; boundary="));
+        final String boundary = contentType.substring(contentType.indexOf('=') + 1);
+        
+        final byte[] body = readBody(c);
+        assertEquals(c.getContentLength(), body.length);
+        
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(part(boundary, fileContentType, "bytes 0-9/20000"));
+        expected.write(content, 0, 10);
+        expected.write(part(boundary, fileContentType, "bytes 10000-19999/20000"));
+        expected.write(content, 10000, 10000);
+        expected.write(("\r\n--" + boundary + "--\r\n").getBytes("ASCII"));
+        assertArrayEquals(expected.toByteArray(), body);
+    }
+
+    private static byte[] part(final String boundary,
+            final String contentType, final String contentRange)
+            throws Exception {
+        return ("\r\n--" + boundary
+                + (contentType != null ? "\r\nContent-Type: " + contentType : "")
+                + "\r\nContent-Range: " + contentRange
+                + "\r\n\r\n").getBytes("ASCII");
+    }
+    
+    private static HttpURLConnection request(final String uri,
+            final String range) throws Exception {
+        final HttpURLConnection c =
+                (HttpURLConnection) new URL(uri).openConnection();
+        if (range != null) {
+            c.setRequestProperty("Range", range);
+        }
+        return c;
+    }
+    
+    private static byte[] readBody(final HttpURLConnection c) throws Exception {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final InputStream is = c.getInputStream();
+        try {
+            final byte[] buf = new byte[4096];
+            int n;
+            while ((n = is.read(buf)) != -1) {
+                baos.write(buf, 0, n);
+            }
+        } finally {
+            is.close();
+        }
+        
+        return baos.toByteArray();
+    }
+    
+    private static byte[] slice(final byte[] a, final int from, final int to) {
+        final byte[] result = new byte[to - from];
+        System.arraycopy(a, from, result, 0, result.length);
+        return result;
+    }
+    
+    private static void assertRange(final ByteRanges.Range range,
+            final long start, final long end) {
+        assertEquals(start, range.start);
+        assertEquals(end, range.end);
+    }
+}
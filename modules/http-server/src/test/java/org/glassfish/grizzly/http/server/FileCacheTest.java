@@ -1119,6 +1119,74 @@ public class FileCacheTest {
     }
 
 
+    @Test
+    public void testEviction() throws Exception {
+        final File file1 = createTempFile();
+        final File file2 = createTempFile();
+
+        final StatsCacheProbe probe = new StatsCacheProbe();
+        httpServer.getServerConfiguration().getMonitoringConfig().getFileCacheConfig().addProbes(probe);
+        final FileCache fileCache = httpServer.getListener("grizzly").getFileCache();
+        fileCache.getCompressionConfig().setCompressionMode(CompressionMode.FORCE);
+        // keep the files on heap, where only one of them fits at a time
+        fileCache.setMinEntrySize(Long.MAX_VALUE);
+        fileCache.setMaxSmallFileCacheSize(file1.length() + file2.length() - 1);
+
+        startHttpServer(new StaticHttpHandler(file1.getParent()));
+
+        final HttpRequestPacket request2 = HttpRequestPacket.builder()
+                .method("GET")
+                .uri("/" + file2.getName())
+                .protocol("HTTP/1.1")
+                .header("Host", "localhost")
+                .build();
+
+        boolean isOk = false;
+        try {
+            final ReusableFuture<HttpContent> responseFuture =
+                    new ReusableFuture<HttpContent>();
+            final Connection c = getConnection("localhost", PORT, responseFuture);
+
+            // the cache hits schedule the compression of file1
+            final long deadline = System.currentTimeMillis() + 10000;
+            do {
+                final HttpRequestPacket request1 = HttpRequestPacket.builder()
+                        .method("GET")
+                        .uri("/" + file1.getName())
+                        .protocol("HTTP/1.1")
+                        .header("Host", "localhost")
+                        .header("Accept-Encoding", "gzip")
+                        .build();
+                responseFuture.reset();
+                c.write(request1);
+                responseFuture.get(10, TimeUnit.SECONDS);
+            } while (fileCache.getCompressedCacheSize() == 0
+                    && System.currentTimeMillis() < deadline);
+
+            assertEquals(probe.toString(), 1, probe.getEntryAddedCounter());
+            assertEquals(file1.length(), fileCache.getHeapCacheSize());
+            assertTrue(fileCache.getCompressedCacheSize() > 0);
+
+            // file2 doesn't fit next to file1, so file1 gets evicted
+            responseFuture.reset();
+            c.write(request2);
+            final HttpContent response2 = responseFuture.get(10, TimeUnit.SECONDS);
+            assertEquals(200, ((HttpResponsePacket) response2.getHttpHeader()).getStatus());
+
+            assertEquals(probe.toString(), 2, probe.getEntryAddedCounter());
+            assertEquals(probe.toString(), 1, probe.getEntryEvictedCounter());
+            assertEquals(probe.toString(), 1, probe.getEntryRemovedCounter());
+            assertEquals(file2.length(), fileCache.getHeapCacheSize());
+            assertEquals(0, fileCache.getCompressedCacheSize());
+
+            isOk = true;
+        } finally {
+            if (!isOk) {
+                System.err.println(probe);
+            }
+        }
+    }
+
     private void configureHttpServer() throws Exception {
         httpServer = new HttpServer();
         final NetworkListener listener =
@@ -1315,6 +1383,7 @@ public class FileCacheTest {
 
         final AtomicInteger entryAddedCounter = new AtomicInteger();
         final AtomicInteger entryRemovedCounter = new AtomicInteger();
+        final AtomicInteger entryEvictedCounter = new AtomicInteger();
         final AtomicInteger entryHitCounter = new AtomicInteger();
         final AtomicInteger entryMissedCounter = new AtomicInteger();
         final AtomicInteger entryErrorCounter = new AtomicInteger();
@@ -1329,6 +1398,11 @@ public class FileCacheTest {
             entryRemovedCounter.incrementAndGet();
         }
 
+        @Override
+        public void onEntryEvictedEvent(FileCache fileCache, FileCacheEntry entry) {
+            entryEvictedCounter.incrementAndGet();
+        }
+
         @Override
         public void onEntryHitEvent(FileCache fileCache, FileCacheEntry entry) {
             entryHitCounter.incrementAndGet();
@@ -1351,6 +1425,10 @@ public class FileCacheTest {
         public int getEntryRemovedCounter() {
             return entryRemovedCounter.get();
         }
+
+        public int getEntryEvictedCounter() {
+            return entryEvictedCounter.get();
+        }
         public int getEntryHitCounter() {
             return entryHitCounter.get();
         }
@@ -1366,6 +1444,7 @@ public class FileCacheTest {
             final StringBuilder sb = new StringBuilder("file-cache-stats[added=")
             .append(getEntryAddedCounter())
             .append(", removed=").append(getEntryRemovedCounter())
+            .append(", evicted=").append(getEntryEvictedCounter())
             .append(", hit=").append(getEntryHitCounter())
             .append(", missed=").append(getEntryMissedCounter())
             .append(", error=").append(getEntryErrorCounter())
@@ -0,0 +1,311 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.filecache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import org.glassfish.grizzly.http.CompressionConfig.CompressionMode;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PrecompressorTest {
+    private static final int PORT = 18906;
+    
+    private HttpServer httpServer;
+    
+    @After
+    public void after() throws Exception {
+        if (httpServer != null) {
+            httpServer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testGzip() throws Exception {
+        final Precompressor precompressor = new Precompressor();
+        
+        // the second round reuses the pooled Deflater
+        for (int i = 0; i < 2; i++) {
+            final byte[] content = content(100000 + i);
+            final File src = tempFile(content);
+            final File dst = tempFile(new byte[0]);
+            
+            precompressor.compress(src, dst, Precompressor.GZIP);
+            
+            assertArrayEquals(content,
+                    readAll(new GZIPInputStream(new FileInputStream(dst))));
+        }
+    }
+
+    @Test
+    public void testDeflate() throws Exception {
+        final Precompressor precompressor = new Precompressor();
+        
+        for (int i = 0; i < 2; i++) {
+            final byte[] content = content(100000 + i);
+            final File src = tempFile(content);
+            final File dst = tempFile(new byte[0]);
+            
+            precompressor.compress(src, dst, Precompressor.DEFLATE);
+            
+            assertArrayEquals(content,
+                    readAll(new InflaterInputStream(new FileInputStream(dst))));
+        }
+    }
+    
+    @Test
+    public void testEmptyFile() throws Exception {
+        final File src = tempFile(new byte[0]);
+        final File dst = tempFile(new byte[0]);
+        
+        new Precompressor().compress(src, dst, Precompressor.GZIP);
+        
+        assertEquals(0, readAll(new GZIPInputStream(new FileInputStream(dst))).length);
+    }
+    
+    @Test
+    public void testShutdown() throws Exception {
+        final Precompressor precompressor = new Precompressor();
+        final ThreadPoolConfig config = new FileCache().getCompressionThreadPoolConfig();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+        final CountDownLatch completed = new CountDownLatch(2);
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    proceed.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+                completed.countDown();
+            }
+        };
+        
+        assertTrue(precompressor.submit(config, task));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        
+        // the scheduled task is completed after the shutdown
+        precompressor.shutdown();
+        proceed.countDown();
+        
+        // the executor is re-created on demand
+        assertTrue(precompressor.submit(config, task));
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        precompressor.shutdown();
+    }
+    
+    @Test
+    public void testShutdownEndsDeflaters() throws Exception {
+        final Precompressor precompressor = new Precompressor();
+        final byte[] content = content(1000);
+        final File src = tempFile(content);
+        final File dst = tempFile(new byte[0]);
+        
+        precompressor.compress(src, dst, Precompressor.GZIP);
+        precompressor.compress(src, dst, Precompressor.DEFLATE);
+        assertEquals(2, precompressor.getPooledDeflatersCount());
+        
+        precompressor.shutdown();
+        assertEquals(0, precompressor.getPooledDeflatersCount());
+        
+        // the Deflaters used after the shutdown are not pooled
+        precompressor.compress(src, dst, Precompressor.GZIP);
+        assertEquals(0, precompressor.getPooledDeflatersCount());
+        assertArrayEquals(content,
+                readAll(new GZIPInputStream(new FileInputStream(dst))));
+    }
+    
+    @Test
+    public void testCompressFileOverride() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(2);
+        final FileCache fileCache = new FileCache() {
+            @Override
+            protected void compressFile(final FileCacheEntry entry,
+                    final int idx) {
+                latch.countDown();
+                super.compressFile(entry, idx);
+            }
+        };
+        
+        try {
+            final FileCacheEntry entry = new FileCacheEntry(fileCache);
+            entry.plainFile = tempFile(content(1000));
+            entry.type = FileCache.CacheType.FILE;
+            entry.setCompressionEncodings(new String[] {
+                Precompressor.GZIP, Precompressor.DEFLATE});
+            
+            // the scheduled compression goes through the overridable method
+            entry.variants.set(0, CompressedVariant.PENDING);
+            fileCache.scheduleCompression(entry, 0);
+            
+            // as well as the deprecated one
+            fileCache.compressFile(entry);
+            
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } finally {
+            fileCache.destroy();
+        }
+    }
+    
+    @Test
+    public void testUncompressedServedUntilCompressed() throws Exception {
+        doTestServeCompressed(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testUncompressedServedUntilCompressedFileEntry() throws Exception {
+        doTestServeCompressed(100);
+    }
+    
+    private void doTestServeCompressed(final long maxCacheEntrySize)
+            throws Exception {
+        final byte[] content = content(50000);
+        final File file = tempFile(content);
+        
+        httpServer = HttpServer.createSimpleServer(file.getParent(), PORT);
+        final NetworkListener listener = httpServer.getListener("grizzly");
+        final FileCache fileCache = listener.getFileCache();
+        fileCache.setEnabled(true);
+        fileCache.setMaxEntrySize(maxCacheEntrySize);
+        fileCache.setCompressionEncodings(Precompressor.DEFLATE,
+                Precompressor.GZIP);
+        fileCache.getCompressionConfig().setCompressionMode(CompressionMode.FORCE);
+        httpServer.start();
+        
+        final String uri = "http://localhost:" + PORT + "/" + file.getName();
+
+        // populate the file cache
+        HttpURLConnection c = request(uri, "gzip");
+        assertArrayEquals(content, readAll(c.getInputStream()));
+        
+        // the cache hit schedules the compression,
+        // but the response is not compressed yet
+        c = request(uri, "gzip");
+        assertNull(c.getHeaderField("Content-Encoding"));
+        assertArrayEquals(content, readAll(c.getInputStream()));
+
+        final long deadline = System.currentTimeMillis() + 10000;
+        do {
+            Thread.sleep(50);
+            c = request(uri, "gzip");
+        } while (c.getHeaderField("Content-Encoding") == null
+                && System.currentTimeMillis() < deadline);
+        
+        assertEquals("gzip", c.getHeaderField("Content-Encoding"));
+        assertArrayEquals(content,
+                readAll(new GZIPInputStream(c.getInputStream())));
+        
+        // the preferred encoding is compressed independently
+        do {
+            Thread.sleep(50);
+            c = request(uri, "gzip, deflate");
+        } while (!"deflate".equals(c.getHeaderField("Content-Encoding"))
+                && System.currentTimeMillis() < deadline);
+        
+        assertEquals("deflate", c.getHeaderField("Content-Encoding"));
+        assertArrayEquals(content,
+                readAll(new InflaterInputStream(c.getInputStream())));
+    }
+    
+    private static HttpURLConnection request(final String uri,
+            final String acceptEncoding) throws Exception {
+        final HttpURLConnection c =
+                (HttpURLConnection) new URL(uri).openConnection();
+        c.setRequestProperty("Accept-Encoding", acceptEncoding);
+        assertEquals(200, c.getResponseCode());
+        return c;
+    }
+    
+    private static byte[] content(final int size) {
+        // compressible, but not trivial content
+        final byte[] content = new byte[size];
+        final Random r = new Random(size);
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) ('a' + r.nextInt(8));
+        }
+        return content;
+    }
+    
+    private static File tempFile(final byte[] content) throws Exception {
+        final File file = File.createTempFile("grizzly-precompress", ".txt");
+        file.deleteOnExit();
+        final FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(content);
+        } finally {
+            fos.close();
+        }
+        return file;
+    }
+    
+    private static byte[] readAll(final InputStream is) throws Exception {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try {
+            final byte[] buf = new byte[4096];
+            int n;
+            while ((n = is.read(buf)) != -1) {
+                baos.write(buf, 0, n);
+            }
+        } finally {
+            is.close();
+        }
+        return baos.toByteArray();
+    }
+}
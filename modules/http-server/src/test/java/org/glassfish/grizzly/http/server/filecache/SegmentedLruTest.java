@@ -0,0 +1,169 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.filecache;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentedLruTest {
+
+    @Test
+    public void testLeastRecentlyAddedIsEvicted() {
+        final SegmentedLru lru = new SegmentedLru();
+        final FileCacheEntry e1 = entry(FileCache.CacheType.HEAP);
+        final FileCacheEntry e2 = entry(FileCache.CacheType.HEAP);
+        lru.add(e1);
+        lru.add(e2);
+
+        assertSame(e1, lru.evict(SegmentedLru.Resource.ENTRY, 10));
+        assertSame(e2, lru.evict(SegmentedLru.Resource.ENTRY, 10));
+        assertNull(lru.evict(SegmentedLru.Resource.ENTRY, 10));
+    }
+
+    @Test
+    public void testHitEntryIsProtected() {
+        final SegmentedLru lru = new SegmentedLru();
+        final FileCacheEntry hot = entry(FileCache.CacheType.HEAP);
+        lru.add(hot);
+        hot.referenced = true;
+
+        // a scan of one-time requested entries doesn't push the hot one out
+        for (int i = 0; i < 10; i++) {
+            lru.add(entry(FileCache.CacheType.HEAP));
+            final FileCacheEntry victim = lru.evict(SegmentedLru.Resource.ENTRY, 1);
+            assertNotSame(hot, victim);
+        }
+        assertEquals(1, lru.size());
+        assertSame(hot, lru.evict(SegmentedLru.Resource.ENTRY, 1));
+    }
+
+    @Test
+    public void testProtectedSegmentIsBounded() {
+        final SegmentedLru lru = new SegmentedLru();
+        final FileCacheEntry e1 = entry(FileCache.CacheType.HEAP);
+        final FileCacheEntry e2 = entry(FileCache.CacheType.HEAP);
+        final FileCacheEntry e3 = entry(FileCache.CacheType.HEAP);
+        lru.add(e1);
+        lru.add(e2);
+        lru.add(e3);
+        e1.referenced = true;
+        e2.referenced = true;
+
+        // only one entry fits the protected segment, e1 gets demoted
+        // to the probation head, but it's still older than e3
+        assertSame(e3, lru.evict(SegmentedLru.Resource.ENTRY, 1));
+        assertSame(e1, lru.evict(SegmentedLru.Resource.ENTRY, 1));
+        assertSame(e2, lru.evict(SegmentedLru.Resource.ENTRY, 1));
+    }
+
+    @Test
+    public void testReferencedEntriesArePromotedLazily() {
+        final SegmentedLru lru = new SegmentedLru();
+        final FileCacheEntry e1 = entry(FileCache.CacheType.HEAP);
+        final FileCacheEntry e2 = entry(FileCache.CacheType.HEAP);
+        lru.add(e1);
+        lru.add(e2);
+        e2.referenced = true;
+
+        // the scan stops at the least recently added entry
+        assertSame(e1, lru.evict(SegmentedLru.Resource.ENTRY, 10));
+        assertTrue(e2.referenced);
+
+        // the next scan promotes e2, which is then the only candidate
+        assertSame(e2, lru.evict(SegmentedLru.Resource.ENTRY, 10));
+        assertFalse(e2.referenced);
+        assertEquals(0, lru.size());
+    }
+
+    @Test
+    public void testEvictionByResource() {
+        final SegmentedLru lru = new SegmentedLru();
+        final FileCacheEntry heap = entry(FileCache.CacheType.HEAP);
+        final FileCacheEntry mapped = entry(FileCache.CacheType.MAPPED);
+        final FileCacheEntry compressed = entry(FileCache.CacheType.HEAP);
+        compressed.setCompressionEncodings(new String[] {Precompressor.GZIP});
+        compressed.variants.set(0, new CompressedVariant(new File("c"), 1,
+                ByteBuffer.allocate(1)));
+        lru.add(heap);
+        lru.add(mapped);
+        lru.add(compressed);
+
+        assertSame(mapped, lru.evict(SegmentedLru.Resource.MAPPED, 10));
+        assertNull(lru.evict(SegmentedLru.Resource.MAPPED, 10));
+        assertSame(compressed, lru.evict(SegmentedLru.Resource.COMPRESSED, 10));
+        assertSame(heap, lru.evict(SegmentedLru.Resource.HEAP, 10));
+        assertEquals(0, lru.size());
+    }
+
+    @Test
+    public void testRemove() {
+        final SegmentedLru lru = new SegmentedLru();
+        final FileCacheEntry e1 = entry(FileCache.CacheType.HEAP);
+        final FileCacheEntry e2 = entry(FileCache.CacheType.HEAP);
+        lru.add(e1);
+        lru.add(e2);
+
+        lru.remove(e1);
+        // removing twice is harmless
+        lru.remove(e1);
+        assertEquals(1, lru.size());
+        assertSame(e2, lru.evict(SegmentedLru.Resource.ENTRY, 10));
+    }
+
+
+    // -------------------------------------------------------- Private Methods
+
+
+    private static FileCacheEntry entry(final FileCache.CacheType type) {
+        final FileCacheEntry entry = new FileCacheEntry(null);
+        entry.type = type;
+        return entry;
+    }
+}
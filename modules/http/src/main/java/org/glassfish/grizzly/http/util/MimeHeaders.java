@@ -61,6 +61,7 @@ package org.glassfish.grizzly.http.util;
 import java.util.Arrays;
 import java.util.Iterator;
 import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.utils.Charsets;
 
 /* XXX XXX XXX Need a major rewrite  !!!!
  */
@@ -515,7 +516,7 @@ servlet needs direct access to headers).
      */
     public DataChunk addValue(final byte[] buffer, final int startN,
                               final int len) {
-        if (!isValidName(buffer)) {
+        if (!isValidName(buffer, startN, len)) {
             return NOOP_CHUNK;
         }
         MimeHeaderField mhf = createHeader();
@@ -529,7 +530,7 @@ servlet needs direct access to headers).
      */
     public DataChunk addValue(final Buffer buffer, final int startN,
                               final int len) {
-        if (!isValidName(buffer)) {
+        if (!isValidName(buffer, startN, len)) {
             return NOOP_CHUNK;
         }
         MimeHeaderField mhf = createHeader();
@@ -759,12 +760,14 @@ servlet needs direct access to headers).
         return (!marked || Arrays.binarySearch(INVALID_TRAILER_NAMES, name.getLowerCase()) < 0);
     }
 
-    private boolean isValidName(final byte[] name) {
-        return (!marked || Arrays.binarySearch(INVALID_TRAILER_NAMES, new String(name).toLowerCase()) < 0);
+    private boolean isValidName(final byte[] name, final int start, final int len) {
+        return (!marked || Arrays.binarySearch(INVALID_TRAILER_NAMES,
+                new String(name, start, len, Charsets.ASCII_CHARSET).toLowerCase()) < 0);
     }
 
-    private boolean isValidName(final Buffer name) {
-        return (!marked || Arrays.binarySearch(INVALID_TRAILER_NAMES, name.toStringContent().toLowerCase()) < 0);
+    private boolean isValidName(final Buffer name, final int start, final int len) {
+        return (!marked || Arrays.binarySearch(INVALID_TRAILER_NAMES,
+                name.toStringContent(Charsets.ASCII_CHARSET, start, start + len).toLowerCase()) < 0);
     }
 
 }
@@ -167,4 +167,13 @@ public class MimeHeadersTest {
         Assert.assertArrayEquals(expectedValuesSet2, list.toArray(new String[list.size()]));
     }
 
+    @Test
+    public void testTrailerNamesFromByteRange() throws Exception {
+        final byte[] names = "hostcustom-bytes".getBytes("ASCII");
+        // "host" isn't allowed in trailers
+        Assert.assertSame(MimeHeaders.NOOP_CHUNK, mimeHeaders.addValue(names, 0, 4));
+        mimeHeaders.addValue(names, 4, names.length - 4).setString("one");
+        Assert.assertEquals("one", mimeHeaders.getHeader("custom-bytes"));
+    }
+
 }
@@ -0,0 +1,320 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The open-addressing hash map with primitive <tt>int</tt> keys, which is
+ * used to register {@link Http2Stream}s by their IDs.
+ *
+ * The lookups are lock-free and don't box the key, the modifications are
+ * serialized by the map's monitor. Removed entries are marked with a
+ * tombstone, so the concurrent lookups and iterations never miss the
+ * entries, which were present before they started; the tombstones are
+ * dropped when the table is rehashed.
+ *
+ * The iteration order is not defined, use {@link #sortedKeys()} if the
+ * ordering by key is required.
+ *
+ * @param <V> the value type
+ */
+final class ConcurrentIntMap<V> {
+    private static final int MIN_CAPACITY = 16;
+
+    // the removed entry marker
+    private static final Object TOMBSTONE = new Object();
+
+    private volatile AtomicReferenceArray<Object> table;
+
+    // the number of live entries
+    private volatile int size;
+    // the number of live entries and tombstones, guarded by the map monitor
+    private int used;
+
+    ConcurrentIntMap() {
+        this(MIN_CAPACITY);
+    }
+
+    ConcurrentIntMap(final int initialCapacity) {
+        table = new AtomicReferenceArray<>(tableSizeFor(initialCapacity));
+    }
+
+    /**
+     * Returns the value associated with the key, or <tt>null</tt> if there is
+     * no such value.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final int key) {
+        final AtomicReferenceArray<Object> t = table;
+        final int mask = t.length() - 1;
+
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            final Object o = t.get(i);
+            if (o == null) {
+                return null;
+            }
+
+            if (o != TOMBSTONE && ((Entry<V>) o).key == key) {
+                return ((Entry<V>) o).value;
+            }
+        }
+    }
+
+    /**
+     * Associates the value with the key.
+     *
+     * @return the previous value associated with the key, or <tt>null</tt>
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V put(final int key, final V value) {
+        if (value == null) {
+            throw new NullPointerException("value can't be null");
+        }
+
+        if ((used + 1) * 2 > table.length()) {
+            rehash();
+        }
+
+        final AtomicReferenceArray<Object> t = table;
+        final int mask = t.length() - 1;
+
+        int freeSlot = -1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            final Object o = t.get(i);
+            if (o == null) {
+                if (freeSlot == -1) {
+                    freeSlot = i;
+                    used++;
+                }
+                break;
+            }
+
+            if (o == TOMBSTONE) {
+                if (freeSlot == -1) {
+                    freeSlot = i;
+                }
+            } else if (((Entry<V>) o).key == key) {
+                t.set(i, new Entry<>(key, value));
+                return ((Entry<V>) o).value;
+            }
+        }
+
+        t.set(freeSlot, new Entry<>(key, value));
+        size++;
+        return null;
+    }
+
+    /**
+     * Removes the value associated with the key.
+     *
+     * @return the removed value, or <tt>null</tt> if there was no value
+     *         associated with the key
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V remove(final int key) {
+        final AtomicReferenceArray<Object> t = table;
+        final int mask = t.length() - 1;
+
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            final Object o = t.get(i);
+            if (o == null) {
+                return null;
+            }
+
+            if (o != TOMBSTONE && ((Entry<V>) o).key == key) {
+                t.set(i, TOMBSTONE);
+                size--;
+                return ((Entry<V>) o).value;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the values view of the map. The view's iterator is weakly
+     * consistent and supports {@link Iterator#remove()}.
+     */
+    public Iterable<V> values() {
+        return new Iterable<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ValuesIterator();
+            }
+        };
+    }
+
+    /**
+     * Returns the snapshot of the keys sorted in ascending order.
+     */
+    @SuppressWarnings("unchecked")
+    public int[] sortedKeys() {
+        final AtomicReferenceArray<Object> t = table;
+        int[] keys = new int[size];
+        int count = 0;
+        for (int i = 0; i < t.length(); i++) {
+            final Object o = t.get(i);
+            if (o != null && o != TOMBSTONE) {
+                if (count == keys.length) {
+                    keys = Arrays.copyOf(keys, count + 8);
+                }
+                keys[count++] = ((Entry<V>) o).key;
+            }
+        }
+
+        if (count != keys.length) {
+            keys = Arrays.copyOf(keys, count);
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /**
+     * Copies the live entries to a new table, dropping the tombstones,
+     * and grows the table if it's more than a quarter full.
+     * Must be called under the map monitor.
+     */
+    @SuppressWarnings("unchecked")
+    private void rehash() {
+        final AtomicReferenceArray<Object> oldTable = table;
+        final int newCapacity = Math.max(oldTable.length(), tableSizeFor(size * 4));
+        final AtomicReferenceArray<Object> newTable =
+                new AtomicReferenceArray<>(newCapacity);
+        final int mask = newCapacity - 1;
+
+        for (int i = 0; i < oldTable.length(); i++) {
+            final Object o = oldTable.get(i);
+            if (o != null && o != TOMBSTONE) {
+                int j = hash(((Entry<V>) o).key) & mask;
+                while (newTable.get(j) != null) {
+                    j = (j + 1) & mask;
+                }
+                newTable.lazySet(j, o);
+            }
+        }
+
+        used = size;
+        table = newTable; // volatile write publishes the new table
+    }
+
+    private static int hash(final int key) {
+        // stream IDs are sequential and of the same parity, so spread them
+        final int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(final int capacity) {
+        int n = MIN_CAPACITY;
+        while (n < capacity) {
+            n <<= 1;
+        }
+        return n;
+    }
+
+    private static final class Entry<V> {
+        private final int key;
+        private final V value;
+
+        private Entry(final int key, final V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private final class ValuesIterator implements Iterator<V> {
+        private final AtomicReferenceArray<Object> t = table;
+        private int nextIdx;
+        private Entry<V> next;
+        private Entry<V> lastReturned;
+
+        private ValuesIterator() {
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public V next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+
+            lastReturned = next;
+            advance();
+            return lastReturned.value;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+
+            ConcurrentIntMap.this.remove(lastReturned.key);
+            lastReturned = null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (nextIdx < t.length()) {
+                final Object o = t.get(nextIdx++);
+                if (o != null && o != TOMBSTONE) {
+                    next = (Entry<V>) o;
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -37,14 +37,10 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-
 package org.glassfish.grizzly.http2;
 
 import java.io.IOException;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.glassfish.grizzly.Grizzly;
@@ -52,6 +48,8 @@ import org.glassfish.grizzly.http.HttpHeader;
 import org.glassfish.grizzly.http.HttpRequestPacket;
 import org.glassfish.grizzly.http.HttpResponsePacket;
 import org.glassfish.grizzly.http.Protocol;
+import org.glassfish.grizzly.http.util.Ascii;
+import org.glassfish.grizzly.http.util.ByteChunk;
 import org.glassfish.grizzly.http.util.DataChunk;
 import org.glassfish.grizzly.http.util.Header;
 import org.glassfish.grizzly.http.util.MimeHeaders;
@@ -62,7 +60,11 @@ import static org.glassfish.grizzly.http2.HeaderDecodingException.ErrorType;
 
 /**
  * Http2Frames -> HTTP Packet decoder utils.
- * 
+ *
+ * The decoded header values (and the names, which can't be resolved to a
+ * {@link Header}) are copied to the packet's {@link HeaderBytesStorage}
+ * and referred by {@link MimeHeaders} as byte {@link DataChunk}s, so no
+ * {@link String}s are created for them.
  *
  */
 class DecoderUtils extends EncoderDecoderUtilsBase {
@@ -71,40 +73,53 @@ class DecoderUtils extends EncoderDecoderUtilsBase {
     private static final String INVALID_CHARACTER_MESSAGE =
             "Invalid character 0x%02x at index '%s' found in header %s [%s: %s]";
 
+    // the mandatory request service headers
+    private static final int PATH_HEADER_BIT = 1;
+    private static final int METHOD_HEADER_BIT = 1 << 1;
+    private static final int SCHEMA_HEADER_BIT = 1 << 2;
+    private static final int MANDATORY_SERVICE_HEADERS =
+            PATH_HEADER_BIT | METHOD_HEADER_BIT | SCHEMA_HEADER_BIT;
+
+    // the known headers grouped by the name length
+    private static final Header[][] KNOWN_HEADERS;
+
+    static {
+        int maxLength = 0;
+        for (Header h : Header.values()) {
+            maxLength = Math.max(maxLength, h.getLength());
+        }
+        KNOWN_HEADERS = new Header[maxLength + 1][];
+        for (Header h : Header.values()) {
+            final Header[] headers = KNOWN_HEADERS[h.getLength()];
+            final Header[] newHeaders;
+            if (headers == null) {
+                newHeaders = new Header[1];
+            } else {
+                newHeaders = new Header[headers.length + 1];
+                System.arraycopy(headers, 0, newHeaders, 0, headers.length);
+            }
+            newHeaders[newHeaders.length - 1] = h;
+            KNOWN_HEADERS[h.getLength()] = newHeaders;
+        }
+    }
+
     static void decodeRequestHeaders(final Http2Session http2Session,
                                      final HttpRequestPacket request,
                                      final Map<String,String> capture)
             throws IOException, HeaderDecodingException {
+        decodeRequestHeaders(http2Session.getHeadersDecoder(), request, capture);
+    }
 
-        final Set<String> serviceHeaders = new HashSet<>();
-        final AtomicBoolean noMoreServiceHeaders = new AtomicBoolean();
-        try {
-            http2Session.getHeadersDecoder().decode(new DecodingCallback() {
-
-
-                @Override
-                public void onDecoded(CharSequence name, CharSequence value) {
-                    if (capture != null) {
-                        capture.put(name.toString(), value.toString());
-                    }
-                    for (int i = 0, len = name.length(); i < len; i++) {
-                        if (Character.isUpperCase(name.charAt(i))) {
-                            throw new HeaderDecodingException(ErrorCode.PROTOCOL_ERROR, ErrorType.STREAM);
-                        }
-                    }
-                    if (name.charAt(0) == ':') {
-                        if (noMoreServiceHeaders.get()) {
-                            throw new HeaderDecodingException(ErrorCode.PROTOCOL_ERROR, ErrorType.STREAM);
-                        }
-                        processServiceRequestHeader(request, serviceHeaders, name.toString(), value.toString());
-                    } else {
-                        noMoreServiceHeaders.compareAndSet(false, true);
-                        processNormalHeader(request, name.toString(), value.toString());
-                    }
-                }
+    static void decodeRequestHeaders(final HeadersDecoder headersDecoder,
+                                     final HttpRequestPacket request,
+                                     final Map<String,String> capture)
+            throws IOException, HeaderDecodingException {
 
-            });
-            if (serviceHeaders.size() != 3) {
+        final RequestHeadersCallback callback =
+                new RequestHeadersCallback(request, capture);
+        try {
+            headersDecoder.decode(callback);
+            if (callback.serviceHeaders != MANDATORY_SERVICE_HEADERS) {
                 throw new HeaderDecodingException(ErrorCode.PROTOCOL_ERROR, ErrorType.STREAM);
             }
         } catch (RuntimeException re) {
@@ -122,9 +137,17 @@ class DecoderUtils extends EncoderDecoderUtilsBase {
                                       final HttpResponsePacket response,
                                       final Map<String,String> capture)
             throws IOException {
+        decodeResponseHeaders(http2Session.getHeadersDecoder(), response, capture);
+    }
 
+    static void decodeResponseHeaders(final HeadersDecoder headersDecoder,
+                                      final HttpResponsePacket response,
+                                      final Map<String,String> capture)
+            throws IOException {
+
+        final HeaderBytesStorage storage = storageOf(response);
         try {
-            http2Session.getHeadersDecoder().decode(new DecodingCallback() {
+            headersDecoder.decode(new DecodingCallback() {
 
                 @Override
                 public void onDecoded(final CharSequence name, final CharSequence value) {
@@ -132,9 +155,9 @@ class DecoderUtils extends EncoderDecoderUtilsBase {
                         capture.put(name.toString(), value.toString());
                     }
                     if (name.charAt(0) == ':') {
-                        processServiceResponseHeader(response, name.toString(), value.toString());
+                        processServiceResponseHeader(response, name, value);
                     } else {
-                        processNormalHeader(response, name.toString(), value.toString());
+                        processNormalHeader(response, storage, name, value);
                     }
                 }
 
@@ -152,9 +175,17 @@ class DecoderUtils extends EncoderDecoderUtilsBase {
                                      final HttpHeader header,
                                      final Map<String,String> capture)
             throws IOException {
+        decodeTrailerHeaders(http2Session.getHeadersDecoder(), header, capture);
+    }
+
+    static void decodeTrailerHeaders(final HeadersDecoder headersDecoder,
+                                     final HttpHeader header,
+                                     final Map<String,String> capture)
+            throws IOException {
         try {
             final MimeHeaders headers = header.getHeaders();
-            http2Session.getHeadersDecoder().decode(new DecodingCallback() {
+            final HeaderBytesStorage storage = storageOf(header);
+            headersDecoder.decode(new DecodingCallback() {
 
                 @Override
                 public void onDecoded(final CharSequence name, final CharSequence value) {
@@ -162,7 +193,8 @@ class DecoderUtils extends EncoderDecoderUtilsBase {
                         capture.put(name.toString(), value.toString());
                     }
                     // TODO trailer validation
-                    headers.addValue(name.toString()).setString(value.toString());
+                    setValue(addValue(headers, storage, findHeader(name), name),
+                            storage, value);
                 }
 
             });
@@ -171,132 +203,221 @@ class DecoderUtils extends EncoderDecoderUtilsBase {
         }
     }
 
-    private static void processServiceRequestHeader(final HttpRequestPacket request,
-                                                    final Set<String> serviceHeaders,
-                                                    final String name,
-                                                    final String value) {
+    /**
+     * @return the bit of the mandatory service header, or <tt>0</tt>
+     */
+    private static int processServiceRequestHeader(final HttpRequestPacket request,
+                                                   final HeaderBytesStorage storage,
+                                                   final int serviceHeaders,
+                                                   final CharSequence name,
+                                                   final CharSequence value) {
 
         final int valueLen = value.length();
 
-        switch (name) {
-            case PATH_HEADER: {
-                if (!serviceHeaders.add(name)) {
-                    throw new HeaderDecodingException(ErrorCode.PROTOCOL_ERROR,
-                                                      ErrorType.STREAM,
-                                                      "Duplicate " + PATH_HEADER);
-                }
-                if (value.isEmpty()) {
-                    throw new HeaderDecodingException(ErrorCode.PROTOCOL_ERROR,
-                            ErrorType.STREAM,
-                            "Empty " + PATH_HEADER);
-                }
-                int questionIdx = value.indexOf('?');
-
-                if (questionIdx == -1) {
-                    request.getRequestURIRef().init(value);
-                } else {
-                    request.getRequestURIRef().init(value.substring(0, questionIdx));
-                    if (questionIdx < valueLen - 1) {
-                        request.getQueryStringDC().setString(value.substring(questionIdx + 1));
-                    }
-                }
-                
-                return;
+        if (PATH_HEADER.contentEquals(name)) {
+            if ((serviceHeaders & PATH_HEADER_BIT) != 0) {
+                throw new HeaderDecodingException(ErrorCode.PROTOCOL_ERROR,
+                                                  ErrorType.STREAM,
+                                                  "Duplicate " + PATH_HEADER);
             }
-            case METHOD_HEADER: {
-                if (!serviceHeaders.add(name)) {
-                    throw new HeaderDecodingException(ErrorCode.PROTOCOL_ERROR,
-                            ErrorType.STREAM,
-                            "Duplicate " + METHOD_HEADER);
+            if (valueLen == 0) {
+                throw new HeaderDecodingException(ErrorCode.PROTOCOL_ERROR,
+                        ErrorType.STREAM,
+                        "Empty " + PATH_HEADER);
+            }
+            final int start = storage.append(value);
+            final int end = storage.getPosition();
+            final byte[] bytes = storage.getBytes();
+
+            int questionIdx = -1;
+            for (int i = start; i < end; i++) {
+                if (bytes[i] == '?') {
+                    questionIdx = i;
+                    break;
                 }
-                request.getMethodDC().setString(value);
-                return;
             }
-            case SCHEMA_HEADER: {
-                if (!serviceHeaders.add(name)) {
-                    throw new HeaderDecodingException(ErrorCode.PROTOCOL_ERROR,
-                            ErrorType.STREAM,
-                            "Duplicate " + SCHEMA_HEADER);
+
+            if (questionIdx == -1) {
+                request.getRequestURIRef().init(bytes, start, end);
+            } else {
+                request.getRequestURIRef().init(bytes, start, questionIdx);
+                if (questionIdx < end - 1) {
+                    request.getQueryStringDC().setBytes(bytes, questionIdx + 1, end);
                 }
-                request.setSecure(valueLen == 5); // support http and https only
-                return;
             }
-            case AUTHORITY_HEADER: {
-                request.getHeaders().setValue(Header.Host)
-                        .setString(value);
-                return;
+
+            return PATH_HEADER_BIT;
+        }
+        if (METHOD_HEADER.contentEquals(name)) {
+            if ((serviceHeaders & METHOD_HEADER_BIT) != 0) {
+                throw new HeaderDecodingException(ErrorCode.PROTOCOL_ERROR,
+                        ErrorType.STREAM,
+                        "Duplicate " + METHOD_HEADER);
             }
+            setValue(request.getMethodDC(), storage, value);
+            return METHOD_HEADER_BIT;
+        }
+        if (SCHEMA_HEADER.contentEquals(name)) {
+            if ((serviceHeaders & SCHEMA_HEADER_BIT) != 0) {
+                throw new HeaderDecodingException(ErrorCode.PROTOCOL_ERROR,
+                        ErrorType.STREAM,
+                        "Duplicate " + SCHEMA_HEADER);
+            }
+            request.setSecure(valueLen == 5); // support http and https only
+            return SCHEMA_HEADER_BIT;
+        }
+        if (AUTHORITY_HEADER.contentEquals(name)) {
+            setValue(request.getHeaders().setValue(Header.Host), storage, value);
+            return 0;
         }
 
         throw new HeaderDecodingException(ErrorCode.PROTOCOL_ERROR,
                                           ErrorType.STREAM,
                                           "Unknown service header: " + name);
     }
-    
+
     private static void processServiceResponseHeader(
             final HttpResponsePacket response,
-            final String name, final String value) {
+            final CharSequence name, final CharSequence value) {
         validateHeaderCharacters(name, value);
         final int valueLen = value.length();
-        switch (name) {
-            case STATUS_HEADER: {
-                if ((valueLen) != 3) {
-                    throw new IllegalStateException("Unexpected status code: " + value);
-                }
-                
-                response.setStatus(Integer.parseInt(value));
+        if (STATUS_HEADER.contentEquals(name)) {
+            if ((valueLen) != 3) {
+                throw new IllegalStateException("Unexpected status code: " + value);
             }
+
+            response.setStatus(parseStatus(value));
+            return;
+        }
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Skipping unknown service header[{0}={1}",
+                    new Object[]{name, value});
         }
-        
-        LOGGER.log(Level.FINE, "Skipping unknown service header[{0}={1}",
-                new Object[]{name, value});
     }
-    
+
     private static void processNormalHeader(final HttpHeader httpHeader,
-            final String name, final String value) {
-        if (name.equals(Header.Host.getLowerCase())) {
+            final HeaderBytesStorage storage,
+            final CharSequence name, final CharSequence value) {
+        final Header header = findHeader(name);
+        if (header == Header.Host) {
             return;
         }
         final MimeHeaders mimeHeaders = httpHeader.getHeaders();
 
         final DataChunk valueChunk =
-                mimeHeaders.addValue(name);
+                addValue(mimeHeaders, storage, header, name);
 
         validateHeaderCharacters(name, value);
-        valueChunk.setString(value);
-        finalizeKnownHeader(httpHeader, name, value);
+        setValue(valueChunk, storage, value);
+        if (header != null) {
+            finalizeKnownHeader(httpHeader, header, valueChunk);
+        }
     }
 
     private static void finalizeKnownHeader(final HttpHeader httpHeader,
-            final String name, final String value) {
-        
-        switch (name) {
-            case "content-length": {
-                httpHeader.setContentLengthLong(Long.parseLong(value));
+            final Header header, final DataChunk value) {
+
+        switch (header) {
+            case ContentLength: {
+                httpHeader.setContentLengthLong(parseLong(value));
                 return;
             }
-            
-            case "upgrade": {
-                httpHeader.getUpgradeDC().setString(value);
+
+            case Upgrade: {
+                httpHeader.getUpgradeDC().set(value);
                 return;
             }
-            
-            case "expect": {
+
+            case Expect: {
                 ((Http2Request) httpHeader).requiresAcknowledgement(true);
             }
 
-            case "connection": {
+            case Connection: {
                 throw new HeaderDecodingException(ErrorCode.PROTOCOL_ERROR, ErrorType.STREAM, "Invalid use of connection header.");
             }
 
-            case "te": {
-                if (!"trailers".equals(value)) {
+            case TE: {
+                if (!value.equals("trailers")) {
                     throw new HeaderDecodingException(ErrorCode.PROTOCOL_ERROR, ErrorType.STREAM, "TE header only allowed a value of trailers.");
                 }
             }
         }
     }
 
+    /**
+     * Resolves the lower-case header name to the {@link Header}.
+     */
+    private static Header findHeader(final CharSequence name) {
+        final int len = name.length();
+        if (len >= KNOWN_HEADERS.length || KNOWN_HEADERS[len] == null) {
+            return null;
+        }
+
+        next:
+        for (Header h : KNOWN_HEADERS[len]) {
+            final String lowerCase = h.getLowerCase();
+            for (int i = 0; i < len; i++) {
+                if (lowerCase.charAt(i) != name.charAt(i)) {
+                    continue next;
+                }
+            }
+            return h;
+        }
+
+        return null;
+    }
+
+    private static DataChunk addValue(final MimeHeaders mimeHeaders,
+            final HeaderBytesStorage storage,
+            final Header header, final CharSequence name) {
+        if (header != null) {
+            final byte[] nameBytes = header.getLowerCaseBytes();
+            return mimeHeaders.addValue(nameBytes, 0, nameBytes.length);
+        }
+        if (name instanceof String) { // e.g. a name from the static table
+            return mimeHeaders.addValue((String) name);
+        }
+        final int start = storage.append(name);
+        return mimeHeaders.addValue(storage.getBytes(), start, name.length());
+    }
+
+    private static void setValue(final DataChunk dataChunk,
+            final HeaderBytesStorage storage, final CharSequence value) {
+        if (value instanceof String) { // e.g. a value from the static table
+            dataChunk.setString((String) value);
+            return;
+        }
+        final int start = storage.append(value);
+        dataChunk.setBytes(storage.getBytes(), start, storage.getPosition());
+    }
+
+    private static long parseLong(final DataChunk value) {
+        if (value.getType() == DataChunk.Type.Bytes) {
+            final ByteChunk bc = value.getByteChunk();
+            return Ascii.parseLong(bc.getBuffer(), bc.getStart(), bc.getLength());
+        }
+        return Long.parseLong(value.toString());
+    }
+
+    private static int parseStatus(final CharSequence value) {
+        int status = 0;
+        for (int i = 0, len = value.length(); i < len; i++) {
+            final char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("For input string: \"" + value + "\"");
+            }
+            status = status * 10 + (c - '0');
+        }
+        return status;
+    }
+
+    private static HeaderBytesStorage storageOf(final HttpHeader httpHeader) {
+        return httpHeader instanceof Http2Header
+                ? ((Http2Header) httpHeader).getHeaderBytesStorage()
+                : new HeaderBytesStorage();
+    }
+
     private static void validateHeaderCharacters(final CharSequence name, final CharSequence value) {
         assert (name != null);
         assert (value != null);
@@ -322,4 +443,43 @@ class DecoderUtils extends EncoderDecoderUtilsBase {
         return -1;
     }
 
+    private static final class RequestHeadersCallback extends DecodingCallback {
+        private final HttpRequestPacket request;
+        private final HeaderBytesStorage storage;
+        private final Map<String,String> capture;
+
+        // the mask of the received mandatory service headers
+        private int serviceHeaders;
+        private boolean noMoreServiceHeaders;
+
+        private RequestHeadersCallback(final HttpRequestPacket request,
+                                       final Map<String,String> capture) {
+            this.request = request;
+            this.storage = storageOf(request);
+            this.capture = capture;
+        }
+
+        @Override
+        public void onDecoded(CharSequence name, CharSequence value) {
+            if (capture != null) {
+                capture.put(name.toString(), value.toString());
+            }
+            for (int i = 0, len = name.length(); i < len; i++) {
+                if (Character.isUpperCase(name.charAt(i))) {
+                    throw new HeaderDecodingException(ErrorCode.PROTOCOL_ERROR, ErrorType.STREAM);
+                }
+            }
+            if (name.charAt(0) == ':') {
+                if (noMoreServiceHeaders) {
+                    throw new HeaderDecodingException(ErrorCode.PROTOCOL_ERROR, ErrorType.STREAM);
+                }
+                serviceHeaders |= processServiceRequestHeader(request, storage,
+                        serviceHeaders, name, value);
+            } else {
+                noMoreServiceHeaders = true;
+                processNormalHeader(request, storage, name, value);
+            }
+        }
+    }
+
 }
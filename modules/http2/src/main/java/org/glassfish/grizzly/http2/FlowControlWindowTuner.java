@@ -0,0 +1,202 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grows the local HTTP/2 flow-control windows to match the bandwidth-delay
+ * product (BDP) of the connection.
+ *
+ * When DATA starts arriving, the tuner sends a PING and counts the DATA bytes
+ * received until the PING is acknowledged, which gives the amount of data
+ * the peer is able to send within one round-trip time. If the sample gets
+ * close to the current window size - the window, not the network, is the
+ * limiting factor, so the window is grown to the twice the sample, but no
+ * more than the max window size. Sessions exchanging small messages
+ * never saturate the initial window and keep it small.
+ * The subclasses might sample other windows (for example stream windows)
+ * during the same round-trip, see {@link #onSampleCompleted()}.
+ *
+ * The tuner is driven by the frames read from the connection, so it's
+ * expected to be called by one thread at a time.
+ */
+abstract class FlowControlWindowTuner {
+    /**
+     * The opaque data of the BDP PING frames, to distinguish them from the
+     * PINGs sent by the application.
+     */
+    static final long BDP_PING_DATA = 0x4244502D50494E47L; // "BDP-PING"
+
+    private final int maxWindowSize;
+    private int windowSize;
+
+    private boolean isPingOutstanding;
+    private long pingSentNanos;
+    private int sampleBytes;
+
+    private volatile long smoothedRttNanos = -1;
+    private volatile int lastSampleBytes;
+
+    FlowControlWindowTuner(final int initialWindowSize,
+                           final int maxWindowSize) {
+        this.windowSize = initialWindowSize;
+        this.maxWindowSize = maxWindowSize;
+    }
+
+    /**
+     * Sends the BDP PING frame to the peer.
+     */
+    protected abstract void sendPing(long opaqueData);
+
+    /**
+     * Grows the local connection and stream windows to the new size.
+     */
+    protected abstract void growWindowSize(int newWindowSize);
+
+    /**
+     * @return <tt>true</tt> if there are windows, which could still grow,
+     *         so the received data has to be sampled
+     */
+    protected boolean needsSampling() {
+        return windowSize < maxWindowSize;
+    }
+
+    /**
+     * Is called when the round-trip sample is completed, after the window
+     * size has been checked.
+     */
+    protected void onSampleCompleted() {
+    }
+
+    /**
+     * @return <tt>true</tt> if the BDP PING is outstanding, so the received
+     *         data is being sampled
+     */
+    boolean isSampling() {
+        return isPingOutstanding;
+    }
+
+    /**
+     * Is called when a DATA frame is received.
+     *
+     * @param size the flow-controlled length of the DATA frame
+     */
+    void onDataReceived(final int size) {
+        if (!isPingOutstanding) {
+            if (!needsSampling()) {
+                return; // nothing to tune anymore
+            }
+
+            isPingOutstanding = true;
+            sampleBytes = 0;
+            pingSentNanos = System.nanoTime();
+            sendPing(BDP_PING_DATA);
+        }
+
+        sampleBytes += size;
+    }
+
+    /**
+     * Is called when a PING ACK frame is received.
+     *
+     * @param opaqueData the PING frame opaque data
+     * @return <tt>true</tt> if the PING has been sent by the tuner, or
+     *         <tt>false</tt> otherwise
+     */
+    boolean onPingAck(final long opaqueData) {
+        if (opaqueData != BDP_PING_DATA || !isPingOutstanding) {
+            return false;
+        }
+
+        isPingOutstanding = false;
+
+        final long rtt = System.nanoTime() - pingSentNanos;
+        final long srtt = smoothedRttNanos;
+        smoothedRttNanos = srtt < 0 ? rtt : (srtt * 7 + rtt) / 8;
+
+        final int sample = sampleBytes;
+        lastSampleBytes = sample;
+
+        if (sample >= windowSize / 3 * 2 && windowSize < maxWindowSize) {
+            final int newWindowSize =
+                    (int) Math.min((long) sample * 2, maxWindowSize);
+            if (newWindowSize > windowSize) {
+                windowSize = newWindowSize;
+                growWindowSize(newWindowSize);
+            }
+        }
+
+        onSampleCompleted();
+        return true;
+    }
+
+    /**
+     * @return the current window size
+     */
+    int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * @return the maximum size the window can grow to
+     */
+    int getMaxWindowSize() {
+        return maxWindowSize;
+    }
+
+    /**
+     * @return the smoothed round-trip time estimation in the given
+     *         {@link TimeUnit}, or <tt>-1</tt> if not measured yet
+     */
+    long getRoundTripTime(final TimeUnit timeUnit) {
+        final long srtt = smoothedRttNanos;
+        return srtt < 0 ? -1 : timeUnit.convert(srtt, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the number of bytes received during the last measured
+     *         round-trip
+     */
+    int getLastSampleBytes() {
+        return lastSampleBytes;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2;
+
+import org.glassfish.grizzly.http.util.DataChunk;
+import org.glassfish.grizzly.http.util.MimeHeaders;
+
+/**
+ * Growable byte storage, the decoded HTTP/2 header names and values are
+ * copied to, so {@link MimeHeaders} can refer to them as byte-backed
+ * {@link DataChunk}s, the same way HTTP/1.1 headers refer to the
+ * input buffer, instead of materializing {@link String}s.
+ *
+ * The storage belongs to a (cached) {@link Http2Header}, so the array is
+ * reused by the following requests. The data is only ever appended, if the
+ * array has to grow - the {@link DataChunk}s set before keep referring to the
+ * old one.
+ */
+final class HeaderBytesStorage {
+    private static final int INITIAL_SIZE = 512;
+    // don't keep huge arrays after an unusually large header block
+    private static final int MAX_RETAINED_SIZE = 16384;
+
+    private byte[] bytes;
+    private int position;
+
+    /**
+     * Copies the ISO-8859-1 chars to the storage.
+     *
+     * @return the start offset of the copied bytes in {@link #getBytes()}
+     */
+    int append(final CharSequence cs) {
+        final int len = cs.length();
+        ensureCapacity(len);
+
+        final byte[] b = bytes;
+        final int start = position;
+        for (int i = 0; i < len; i++) {
+            b[start + i] = (byte) cs.charAt(i);
+        }
+        position = start + len;
+
+        return start;
+    }
+
+    /**
+     * @return the current storage array, it changes if the storage grows
+     */
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the end offset of the data in {@link #getBytes()}
+     */
+    int getPosition() {
+        return position;
+    }
+
+    void reset() {
+        position = 0;
+        if (bytes != null && bytes.length > MAX_RETAINED_SIZE) {
+            bytes = null;
+        }
+    }
+
+    private void ensureCapacity(final int len) {
+        if (bytes == null) {
+            bytes = new byte[Math.max(INITIAL_SIZE, len)];
+        } else if (bytes.length - position < len) {
+            final byte[] newBytes =
+                    new byte[Math.max(bytes.length * 2, position + len)];
+            System.arraycopy(bytes, 0, newBytes, 0, position);
+            bytes = newBytes;
+        }
+    }
+}
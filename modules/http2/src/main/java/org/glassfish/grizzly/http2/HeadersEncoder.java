@@ -42,6 +42,7 @@ package org.glassfish.grizzly.http2;
 
 import org.glassfish.grizzly.Buffer;
 import org.glassfish.grizzly.http2.hpack.Encoder;
+import org.glassfish.grizzly.http2.hpack.HuffmanPolicy;
 import org.glassfish.grizzly.memory.CompositeBuffer;
 import org.glassfish.grizzly.memory.MemoryManager;
 
@@ -70,6 +71,15 @@ public class HeadersEncoder {
         this.memoryManager = memoryManager;
         hpackEncoder = new Encoder(maxHeaderTableSize);
     }
+
+    public HeadersEncoder(final MemoryManager memoryManager,
+                          final int maxHeaderTableSize,
+                          final HuffmanPolicy huffmanPolicy,
+                          final int encodedHeaderCacheSize) {
+        this.memoryManager = memoryManager;
+        hpackEncoder = new Encoder(maxHeaderTableSize, huffmanPolicy,
+                encodedHeaderCacheSize);
+    }
     
     public void encodeHeader(final String name, final String value, final Map<String,String> capture) {
         if (capture != null) {
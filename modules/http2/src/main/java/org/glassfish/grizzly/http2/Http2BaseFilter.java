@@ -432,7 +432,7 @@ public abstract class Http2BaseFilter extends HttpBaseFilter {
                 break;
             }
             case PriorityFrame.TYPE: {
-                processPriorityFrame(frame);
+                processPriorityFrame(http2Session, frame);
                 break;
             }
             case HeadersFrame.TYPE:
@@ -472,7 +472,8 @@ public abstract class Http2BaseFilter extends HttpBaseFilter {
 
     }
 
-    private void processPriorityFrame(final Http2Frame frame)
+    private void processPriorityFrame(final Http2Session http2Session,
+            final Http2Frame frame)
     throws Http2SessionException, Http2StreamException {
         final int streamId = frame.getStreamId();
         try {
@@ -482,9 +483,15 @@ public abstract class Http2BaseFilter extends HttpBaseFilter {
             if (frame.getLength() != 5) {
                 throw new Http2StreamException(streamId, ErrorCode.FRAME_SIZE_ERROR);
             }
-            if (streamId == ((PriorityFrame) frame).getStreamDependency()) {
+            final PriorityFrame priorityFrame = (PriorityFrame) frame;
+            if (streamId == priorityFrame.getStreamDependency()) {
                 throw new Http2SessionException(ErrorCode.PROTOCOL_ERROR, "PRIORITY frame dependent on itself.");
             }
+            
+            http2Session.updateStreamPriority(streamId,
+                    priorityFrame.getStreamDependency(),
+                    priorityFrame.isExclusive(),
+                    priorityFrame.getWeight() + 1);
         } finally {
             frame.recycle();
         }
@@ -612,6 +619,7 @@ public abstract class Http2BaseFilter extends HttpBaseFilter {
         PingFrame pingFrame = (PingFrame) frame;
 
         if (pingFrame.isAckSet()) {
+            http2Session.onPingAck(pingFrame.getOpaqueData());
             return;
         }
 
@@ -1025,6 +1033,7 @@ public abstract class Http2BaseFilter extends HttpBaseFilter {
 
         // Always ACK the data to maintain flow-control state
         http2Session.ackConsumedData(data.remaining());
+        http2Session.onDataReceived(streamId, data.remaining());
 
         // If we're going away, ignore any frames for streams greater than the last stream ID from the goaway frame.
         if (ignoreFrameForStreamId(http2Session, streamId)) {
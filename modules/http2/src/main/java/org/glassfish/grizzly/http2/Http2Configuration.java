@@ -41,6 +41,7 @@
 package org.glassfish.grizzly.http2;
 
 import org.glassfish.grizzly.filterchain.Filter;
+import org.glassfish.grizzly.http2.hpack.HuffmanPolicy;
 import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
 
 import java.util.concurrent.ExecutorService;
@@ -57,6 +58,9 @@ public class Http2Configuration {
     public static final float DEFAULT_STREAMS_HIGH_WATER_MARK = 0.5f;
     public static final float DEFAULT_STREAMS_CLEAN_PERCENTAGE = 0.5f;
     public static final int DEFAULT_CLEAN_FREQUENCY_CHECK = 50;
+    public static final HuffmanPolicy DEFAULT_HUFFMAN_POLICY = HuffmanPolicy.SHORTER;
+    public static final int DEFAULT_ENCODED_HEADER_CACHE_SIZE = 64;
+    public static final int DEFAULT_MAX_WINDOW_SIZE = 16 * 1024 * 1024;
 
     private volatile int maxConcurrentStreams;
     private volatile int initialWindowSize;
@@ -68,6 +72,10 @@ public class Http2Configuration {
     private volatile boolean disableCipherCheck;
     private volatile boolean priorKnowledge;
     private volatile boolean pushEnabled;
+    private volatile HuffmanPolicy huffmanPolicy;
+    private volatile int encodedHeaderCacheSize;
+    private volatile boolean windowAutoTuning;
+    private volatile int maxWindowSize;
     private final ExecutorService executorService;
     private final ThreadPoolConfig threadPoolConfig;
 
@@ -88,6 +96,10 @@ public class Http2Configuration {
         streamsHighWaterMark = builder.streamsHighWaterMark;
         cleanPercentage = builder.cleanPercentage;
         cleanFrequencyCheck = builder.cleanFrequencyCheck;
+        huffmanPolicy = builder.huffmanPolicy;
+        encodedHeaderCacheSize = builder.encodedHeaderCacheSize;
+        windowAutoTuning = builder.windowAutoTuning;
+        maxWindowSize = builder.maxWindowSize;
     }
 
 
@@ -261,6 +273,79 @@ public class Http2Configuration {
         this.cleanFrequencyCheck = cleanFrequencyCheck;
     }
 
+    /**
+     * @return the {@link HuffmanPolicy} applied to the header names and values sent
+     *  as string literals.  If not explicitly configured, this returns {@link HuffmanPolicy#SHORTER}.
+     */
+    public HuffmanPolicy getHuffmanPolicy() {
+        return huffmanPolicy;
+    }
+
+    /**
+     * Set the {@link HuffmanPolicy} applied to the header names and values sent as string literals
+     * by the sessions created after this call.
+     */
+    public void setHuffmanPolicy(final HuffmanPolicy huffmanPolicy) {
+        this.huffmanPolicy = huffmanPolicy;
+    }
+
+    /**
+     * @return the number of header fields per session, whose encoded representations are cached, so the
+     *  headers sent repeatedly (content-type, server, cache-control, etc.) are copied rather than encoded again.
+     *  If not explicitly configured, this returns {@value #DEFAULT_ENCODED_HEADER_CACHE_SIZE}.
+     */
+    public int getEncodedHeaderCacheSize() {
+        return encodedHeaderCacheSize;
+    }
+
+    /**
+     * Set the number of header fields per session, whose encoded representations are cached.
+     * <code>0</code> disables the cache.
+     */
+    public void setEncodedHeaderCacheSize(final int encodedHeaderCacheSize) {
+        this.encodedHeaderCacheSize = encodedHeaderCacheSize;
+    }
+
+    /**
+     * @return <code>true</code> if the local connection and stream flow-control windows grow automatically
+     *  to match the bandwidth-delay product of the connection, otherwise <code>false</code>.
+     *  If not explicitly configured, this returns <code>false</code>.
+     */
+    public boolean isWindowAutoTuning() {
+        return windowAutoTuning;
+    }
+
+    /**
+     * Enables automatic flow-control windows tuning for the sessions created after this call.
+     * The session estimates the amount of data the peer can send within a round-trip, using PING frames, and grows
+     * the connection and stream windows when they, rather than the network, limit the transfer rate.
+     * Only the windows of the streams, which are limited by their window, grow, and all the stream windows together
+     * never grow by more than {@link #getMaxWindowSize()}. The connection window never grows beyond
+     * {@link #getMaxWindowSize()} either.
+     */
+    public void setWindowAutoTuning(final boolean windowAutoTuning) {
+        this.windowAutoTuning = windowAutoTuning;
+    }
+
+    /**
+     * @return the per-session budget, in bytes, the auto-tuned flow-control windows can grow to.
+     *  If not explicitly configured, this returns {@value #DEFAULT_MAX_WINDOW_SIZE}.
+     */
+    public int getMaxWindowSize() {
+        return maxWindowSize;
+    }
+
+    /**
+     * Set the per-session budget, in bytes, the auto-tuned flow-control windows can grow to.
+     * The connection window can grow up to the whole budget. The stream windows grow individually, by WINDOW_UPDATEs,
+     * when the stream window limits the transfer rate, so a single stream can use (almost) the whole budget. The
+     * growth of all the stream windows is taken from the budget and returned when the stream is closed, so the
+     * unread data buffered by the streams of a session exceeds the initial stream windows by the budget at most.
+     */
+    public void setMaxWindowSize(final int maxWindowSize) {
+        this.maxWindowSize = maxWindowSize;
+    }
+
     /**
      * @return the thread pool configuration for servicing HTTP/2 streams, if any.
      */
@@ -289,6 +374,10 @@ public class Http2Configuration {
         private float streamsHighWaterMark = DEFAULT_STREAMS_HIGH_WATER_MARK;
         private float cleanPercentage = DEFAULT_STREAMS_CLEAN_PERCENTAGE;
         private int cleanFrequencyCheck = DEFAULT_CLEAN_FREQUENCY_CHECK;
+        private HuffmanPolicy huffmanPolicy = DEFAULT_HUFFMAN_POLICY;
+        private int encodedHeaderCacheSize = DEFAULT_ENCODED_HEADER_CACHE_SIZE;
+        private boolean windowAutoTuning;
+        private int maxWindowSize = DEFAULT_MAX_WINDOW_SIZE;
         private ThreadPoolConfig threadPoolConfig;
         private ExecutorService executorService;
 
@@ -394,6 +483,38 @@ public class Http2Configuration {
             return this;
         }
 
+        /**
+         * @see #setHuffmanPolicy(HuffmanPolicy)
+         */
+        public Http2ConfigurationBuilder huffmanPolicy(final HuffmanPolicy val) {
+            huffmanPolicy = val;
+            return this;
+        }
+
+        /**
+         * @see #setEncodedHeaderCacheSize(int)
+         */
+        public Http2ConfigurationBuilder encodedHeaderCacheSize(final int val) {
+            encodedHeaderCacheSize = val;
+            return this;
+        }
+
+        /**
+         * @see #setWindowAutoTuning(boolean)
+         */
+        public Http2ConfigurationBuilder windowAutoTuning(final boolean val) {
+            windowAutoTuning = val;
+            return this;
+        }
+
+        /**
+         * @see #setMaxWindowSize(int)
+         */
+        public Http2ConfigurationBuilder maxWindowSize(final int val) {
+            maxWindowSize = val;
+            return this;
+        }
+
         /**
          * @return a new {@link Http2Configuration} instances based on the values of this builder.
          */
@@ -46,4 +46,9 @@ package org.glassfish.grizzly.http2;
  */
 interface Http2Header extends Http2Packet {
     void setExpectContent(boolean isExpectContent);
+
+    /**
+     * @return the storage for the decoded header names and values
+     */
+    HeaderBytesStorage getHeaderBytesStorage();
 }
@@ -74,6 +74,9 @@ class Http2Request extends HttpRequestPacket implements Http2Header {
      */
     private boolean contentTypeParsed;
 
+    private final HeaderBytesStorage headerBytesStorage =
+            new HeaderBytesStorage();
+
     Http2Request() {
         this.response = new Http2Response();
     }
@@ -146,9 +149,15 @@ class Http2Request extends HttpRequestPacket implements Http2Header {
         return super.getAttribute(name);
     }
     
+    @Override
+    public HeaderBytesStorage getHeaderBytesStorage() {
+        return headerBytesStorage;
+    }
+
     @Override
     protected void reset() {
         contentTypeParsed = false;
+        headerBytesStorage.reset();
         
         processingState.recycle();
         
@@ -69,6 +69,9 @@ class Http2Response extends HttpResponsePacket implements Http2Header {
      */
     private boolean contentTypeParsed;
 
+    private final HeaderBytesStorage headerBytesStorage =
+            new HeaderBytesStorage();
+
     @Override
     public ProcessingState getProcessingState() {
         return getRequest().getProcessingState();
@@ -123,9 +126,15 @@ class Http2Response extends HttpResponsePacket implements Http2Header {
         super.setExpectContent(isExpectContent);
     }
     
+    @Override
+    public HeaderBytesStorage getHeaderBytesStorage() {
+        return headerBytesStorage;
+    }
+
     @Override
     protected void reset() {
         contentTypeParsed = false;
+        headerBytesStorage.reset();
         
         super.reset();
     }
@@ -42,14 +42,13 @@ package org.glassfish.grizzly.http2;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -137,7 +136,13 @@ public class Http2Session {
     @SuppressWarnings("unused")
     private volatile int concurrentStreamsCount;
 
-    private final TreeMap<Integer, Http2Stream> streamsMap = new TreeMap<>();
+    private final ConcurrentIntMap<Http2Stream> streamsMap = new ConcurrentIntMap<>();
+    
+    // the stream dependency tree, every session has its own tree and lock
+    private final ReentrantReadWriteLock priorityTreeLock =
+            new ReentrantReadWriteLock();
+    private final StreamPriorityNode priorityTree =
+            new StreamPriorityNode(priorityTreeLock);
     
     // (Optimization) We may read several DataFrames belonging to the same
     // Http2Stream, so in order to not process every DataFrame separately -
@@ -201,6 +206,9 @@ public class Http2Session {
     private volatile SSLBaseFilter sslFilter;
     
     private final AtomicInteger unackedReadBytes  = new AtomicInteger();
+
+    // grows the local flow-control windows, null if auto-tuning is disabled
+    private final SessionWindowTuner windowTuner;
         
     public Http2Session(final Connection<?> connection,
                         final boolean isServer,
@@ -234,6 +242,11 @@ public class Http2Session {
 
         maxHeaderListSize = handlerFilter.getConfiguration().getMaxHeaderListSize();
 
+        windowTuner = http2Configuration.isWindowAutoTuning()
+                ? new SessionWindowTuner(getDefaultConnectionWindowSize(),
+                        http2Configuration.getMaxWindowSize())
+                : null;
+
         if (isServer) {
             lastLocalStreamId = 0;
             lastPeerStreamId = -1;
@@ -602,6 +615,13 @@ public class Http2Session {
         return outputSink;
     }
 
+    /**
+     * @return the root of this session's stream dependency tree
+     */
+    StreamPriorityNode getPriorityTree() {
+        return priorityTree;
+    }
+
     /**
      * Terminate the session gracefully by sending a GOAWAY frame and then allowing
      * the streams to terminate properly.
@@ -705,15 +725,15 @@ public class Http2Session {
         // close streams that rank above the last stream ID specified by the GOAWAY frame.
         // Allow other streams to continue processing.  Once the concurrent stream count reaches zero,
         // the session will be closed.
-        Map<Integer, Http2Stream> invalidStreams =
-                streamsMap.subMap(goingAwayLastStreamId,
-                        false,
-                        Integer.MAX_VALUE,
-                        true);
-        if (!invalidStreams.isEmpty()) {
-            for (final Http2Stream stream : invalidStreams.values()) {
+        final int[] streamIds = streamsMap.sortedKeys();
+        for (final int streamId : streamIds) {
+            if (streamId <= goingAwayLastStreamId) {
+                continue;
+            }
+            final Http2Stream stream = streamsMap.get(streamId);
+            if (stream != null) {
                 stream.closedRemotely();
-                deregisterStream();
+                deregisterStream(stream);
             }
         }
     }
@@ -746,12 +766,51 @@ public class Http2Session {
     }
 
     protected void sendWindowUpdate(final int streamId, final int delta) {
+        outputSink.writeDownStream(createWindowUpdate(streamId, delta));
+    }
+
+    private WindowUpdateFrame createWindowUpdate(final int streamId, final int delta) {
         final WindowUpdateFrame f = WindowUpdateFrame.builder()
                 .streamId(streamId)
                 .windowSizeIncrement(delta)
                 .build();
         NetLogger.log(NetLogger.Context.TX, this, f);
-        outputSink.writeDownStream(f);
+        return f;
+    }
+
+    /**
+     * Is called when a DATA frame is received, to let the flow-control
+     * windows auto-tuning sample the received data.
+     *
+     * @param streamId the DATA frame stream id
+     * @param size the size of the received data
+     */
+    void onDataReceived(final int streamId, final int size) {
+        if (windowTuner != null && isPrefaceSent) {
+            windowTuner.onDataReceived(size);
+            if (windowTuner.isSampling()) {
+                windowTuner.onStreamDataReceived(streamId, size);
+            }
+        }
+    }
+
+    /**
+     * Is called when a PING ACK frame is received.
+     *
+     * @param opaqueData the PING opaque data
+     */
+    void onPingAck(final long opaqueData) {
+        if (windowTuner != null) {
+            windowTuner.onPingAck(opaqueData);
+        }
+    }
+
+    /**
+     * @return the {@link FlowControlWindowTuner} of this session, or
+     * <tt>null</tt> if the flow-control windows auto-tuning is disabled
+     */
+    FlowControlWindowTuner getWindowTuner() {
+        return windowTuner;
     }
     
     void sendPreface() {
@@ -834,7 +893,9 @@ public class Http2Session {
 
     HeadersEncoder getHeadersEncoder() {
         if (headersEncoder == null) {
-            headersEncoder = new HeadersEncoder(getMemoryManager(), 4096);
+            headersEncoder = new HeadersEncoder(getMemoryManager(), 4096,
+                    http2Configuration.getHuffmanPolicy(),
+                    http2Configuration.getEncodedHeaderCacheSize());
         }
         
         return headersEncoder;
@@ -1234,9 +1295,21 @@ public class Http2Session {
     /**
      * Called from {@link Http2Stream} once stream is completely closed.
      */
-    void deregisterStream() {
+    void deregisterStream(final Http2Stream stream) {
         decStreamCount();
         
+        if (windowTuner != null) {
+            windowTuner.releaseStreamWindow(stream);
+        }
+        
+        final StreamPriorityNode node = stream.priorityNode;
+        if (node != null) {
+            // forget the node, so the streams, which depend on the closed
+            // stream, get the default priority (RFC 7540, section 5.3.4)
+            stream.priorityNode = null;
+            node.remove();
+        }
+        
         final boolean isCloseSession;
         synchronized (sessionLock) {
             // If we're in GOAWAY state and there are no streams left - close this session
@@ -1246,10 +1319,12 @@ public class Http2Session {
                     checkCount = 0;
                     int maxCount = Float.valueOf(streamsHighWaterMark * http2Configuration.getCleanPercentage()).intValue();
                     int count = 0;
-                    for (final Iterator<Map.Entry<Integer,Http2Stream>> streamIds = streamsMap.entrySet().iterator(); (streamIds.hasNext() && count < maxCount);) {
-                        final Map.Entry<Integer,Http2Stream> entry = streamIds.next();
-                        if (entry.getValue().isClosed()) {
-                            streamIds.remove();
+                    // check the oldest streams first
+                    final int[] streamIds = streamsMap.sortedKeys();
+                    for (int i = 0; i < streamIds.length && count < maxCount; i++) {
+                        final Http2Stream oldStream = streamsMap.get(streamIds[i]);
+                        if (oldStream != null && oldStream.isClosed()) {
+                            streamsMap.remove(streamIds[i]);
                         }
                         count++;
                     }
@@ -1370,13 +1445,15 @@ public class Http2Session {
             // ACK HTTP2 connection flow control
             final int windowSize = getLocalConnectionWindowSize();
 
+            WindowUpdateFrame connectionUpdate = null;
             // if not forced - send update window message only in case currentUnackedBytes > windowSize / 2
             if (currentUnackedBytes > (windowSize / 3)
                     && unackedReadBytes.compareAndSet(currentUnackedBytes, 0)) {
 
-                sendWindowUpdate(0, currentUnackedBytes);
+                connectionUpdate = createWindowUpdate(0, currentUnackedBytes);
             }
             
+            WindowUpdateFrame streamUpdate = null;
             if (stream != null) {
                 // ACK HTTP2 stream flow control
                 final int streamUnackedBytes
@@ -1388,9 +1465,21 @@ public class Http2Session {
                         && (streamUnackedBytes > (streamWindowSize / 2))
                         && Http2Stream.unackedReadBytesUpdater.compareAndSet(stream, streamUnackedBytes, 0)) {
 
-                    sendWindowUpdate(stream.getId(), streamUnackedBytes);
+                    streamUpdate = createWindowUpdate(stream.getId(), streamUnackedBytes);
                 }
             }
+
+            // coalesce the connection and stream updates into one write
+            if (connectionUpdate != null && streamUpdate != null) {
+                final List<Http2Frame> updates = new ArrayList<>(2);
+                updates.add(connectionUpdate);
+                updates.add(streamUpdate);
+                outputSink.writeDownStream(updates);
+            } else if (connectionUpdate != null) {
+                outputSink.writeDownStream(connectionUpdate);
+            } else if (streamUpdate != null) {
+                outputSink.writeDownStream(streamUpdate);
+            }
         }
     }
 
@@ -1407,6 +1496,69 @@ public class Http2Session {
 
         streamsMap.put(streamId, stream);
         incStreamCount();
+        
+        final StreamPriorityNode node = new StreamPriorityNode(stream,
+                stream.getPriority(), priorityTreeLock);
+        
+        priorityTreeLock.writeLock().lock();
+        try {
+            stream.priorityNode = node;
+            getPriorityNode(stream.getParentStreamId()).addChild(node,
+                    stream.isExclusive());
+        } finally {
+            priorityTreeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Updates the stream's position in the stream dependency tree,
+     * as a result of a PRIORITY frame.
+     * 
+     * @param streamId the ID of the stream to be reprioritized
+     * @param parentStreamId the ID of the stream the stream depends on
+     * @param exclusive <tt>true</tt> if the dependency is exclusive
+     * @param weight the stream weight [1; 256]
+     */
+    void updateStreamPriority(final int streamId, final int parentStreamId,
+            final boolean exclusive, final int weight) {
+        final Http2Stream stream = streamsMap.get(streamId);
+        if (stream == null) {
+            // idle or already forgotten stream
+            return;
+        }
+        
+        // resolve the parent and move the node atomically, so neither of
+        // them can be removed from the tree in between
+        priorityTreeLock.writeLock().lock();
+        try {
+            final StreamPriorityNode node = stream.priorityNode;
+            if (node == null) {
+                // the stream has been closed
+                return;
+            }
+            
+            node.weight = weight;
+            node.reparent(getPriorityNode(parentStreamId), exclusive);
+        } finally {
+            priorityTreeLock.writeLock().unlock();
+        }
+    }
+
+    /*
+     * Returns the stream's node, or the tree root if the stream is unknown
+     * or closed. Must be called with the priority tree write lock held.
+     */
+    private StreamPriorityNode getPriorityNode(final int streamId) {
+        if (streamId > 0) {
+            final Http2Stream stream = streamsMap.get(streamId);
+            final StreamPriorityNode node =
+                    stream != null ? stream.priorityNode : null;
+            if (node != null && node.parent != null) {
+                return node;
+            }
+        }
+        
+        return priorityTree;
     }
 
     void incStreamCount() {
@@ -1441,6 +1593,139 @@ public class Http2Session {
 
     // ---------------------------------------------------------- Inner Classes
 
+    /**
+     * {@link FlowControlWindowTuner}, which grows the connection window and
+     * the windows of the saturated streams by WINDOW_UPDATEs.
+     * The connection window is acknowledged as soon as DATA is read, so it
+     * doesn't limit the amount of buffered data - the stream windows do.
+     * So the growth of all the stream windows is taken from the budget
+     * shared by the session, and it's returned when the stream is closed.
+     */
+    private final class SessionWindowTuner extends FlowControlWindowTuner {
+        // the streams, which received DATA during the current sample
+        private final List<Http2Stream> sampledStreams = new ArrayList<>();
+        // the stream window growth granted to the streams, guarded by this
+        private int grantedStreamWindowBytes;
+
+        SessionWindowTuner(final int initialWindowSize, final int maxWindowSize) {
+            super(initialWindowSize, maxWindowSize);
+        }
+
+        @Override
+        protected void sendPing(final long opaqueData) {
+            final PingFrame pingFrame = PingFrame.builder()
+                    .opaqueData(opaqueData)
+                    .build();
+            NetLogger.log(NetLogger.Context.TX, Http2Session.this, pingFrame);
+            outputSink.writeDownStream(pingFrame);
+        }
+
+        @Override
+        protected void growWindowSize(final int newWindowSize) {
+            final int connectionDelta = newWindowSize - localConnectionWindowSize;
+            if (connectionDelta > 0) {
+                localConnectionWindowSize = newWindowSize;
+                outputSink.writeDownStream(createWindowUpdate(0, connectionDelta));
+            }
+        }
+
+        @Override
+        protected boolean needsSampling() {
+            return super.needsSampling() || getStreamWindowBudget() > 0;
+        }
+
+        /**
+         * Is called when DATA is received on the stream, while the sample
+         * is being taken.
+         */
+        void onStreamDataReceived(final int streamId, final int size) {
+            if (size <= 0) {
+                return;
+            }
+            
+            final Http2Stream stream = getStream(streamId);
+            if (stream != null) {
+                if (stream.bdpSampleBytes == 0) {
+                    sampledStreams.add(stream);
+                }
+                
+                stream.bdpSampleBytes += size;
+            }
+        }
+
+        @Override
+        protected void onSampleCompleted() {
+            List<Http2Frame> frames = null;
+            
+            for (int i = 0; i < sampledStreams.size(); i++) {
+                final Http2Stream stream = sampledStreams.get(i);
+                final int sample = stream.bdpSampleBytes;
+                stream.bdpSampleBytes = 0;
+                
+                // like the connection window, the stream window is grown to
+                // the twice the sample, if the sample is close to the window
+                final int windowSize = stream.getLocalWindowSize();
+                if (sample >= windowSize / 3 * 2) {
+                    final int newWindowSize =
+                            (int) Math.min((long) sample * 2, getMaxWindowSize());
+                    final int delta = growStreamWindow(stream,
+                            newWindowSize - windowSize);
+                    if (delta > 0) {
+                        if (frames == null) {
+                            frames = new ArrayList<>(sampledStreams.size());
+                        }
+                        
+                        frames.add(createWindowUpdate(stream.getId(), delta));
+                    }
+                }
+            }
+            
+            sampledStreams.clear();
+            
+            if (frames != null) {
+                outputSink.writeDownStream(frames);
+            }
+        }
+
+        /**
+         * Grants the stream window growth from the session budget.
+         * 
+         * @return the granted growth, which might be less than requested
+         */
+        synchronized int growStreamWindow(final Http2Stream stream,
+                final int requestedDelta) {
+            if (requestedDelta <= 0 || stream.isLocalWindowReleased) {
+                return 0;
+            }
+            
+            final int delta = Math.min(requestedDelta, getStreamWindowBudget());
+            if (delta > 0) {
+                grantedStreamWindowBytes += delta;
+                stream.localWindowExtra += delta;
+            }
+            
+            return delta;
+        }
+
+        /**
+         * Returns the stream window growth to the session budget.
+         */
+        synchronized void releaseStreamWindow(final Http2Stream stream) {
+            if (!stream.isLocalWindowReleased) {
+                stream.isLocalWindowReleased = true;
+                grantedStreamWindowBytes -= stream.localWindowExtra;
+            }
+        }
+
+        /**
+         * @return the number of bytes the stream windows could still grow by
+         */
+        synchronized int getStreamWindowBudget() {
+            return Math.max(0, getMaxWindowSize() - getLocalStreamWindowSize()
+                    - grantedStreamWindowBytes);
+        }
+    }
+
     private final class ConnectionCloseListener implements CloseListener {
 
         @Override
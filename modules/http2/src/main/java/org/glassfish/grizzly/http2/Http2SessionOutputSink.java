@@ -40,6 +40,7 @@
 
 package org.glassfish.grizzly.http2;
 
+import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -66,6 +67,8 @@ import org.glassfish.grizzly.http2.utils.ChunkedCompletionHandler;
  * Class represents an output sink associated with specific {@link Http2Session}
  * and is responsible for session (connection) level flow control.
  * 
+ * The queued DATA frames of different streams are interleaved according to
+ * the streams' priorities, see {@link StreamScheduler}.
  *
  */
 public class Http2SessionOutputSink {
@@ -89,9 +92,14 @@ public class Http2SessionOutputSink {
     private final AtomicInteger availConnectionWindowSize;
     private final List<Http2Frame> tmpFramesList = new LinkedList<>();
     private final AtomicBoolean writerLock = new AtomicBoolean();
+    // the records, which have been taken from the output queue, but
+    // haven't been written yet. Accessed by the writer lock owner only.
+    private final StreamScheduler scheduler;
+    private volatile boolean isClosed;
 
     public Http2SessionOutputSink(Http2Session session) {
         this.http2Session = session;
+        scheduler = new StreamScheduler(session.getPriorityTree());
         availConnectionWindowSize = new AtomicInteger(
                 http2Session.getDefaultConnectionWindowSize());
     }
@@ -208,7 +216,7 @@ public class Http2SessionOutputSink {
         }
 
         final Http2SessionOutputSink.OutputQueueRecord record = new Http2SessionOutputSink.OutputQueueRecord(
-                stream.getId(), data,
+                stream.getId(), priorityNode(stream), data,
                 completionHandler, isLast);
 
         outputQueue.offer(record);
@@ -221,24 +229,26 @@ public class Http2SessionOutputSink {
         int backoffDelay = 0;
 
         int availWindowSize;
-        int queueSize;
 
         boolean needToNotify = false;
 
-        // for debug purposes only
-        int tmpcnt = 0;
-
         // try to flush entire output queue
 
         // relaxed check if we have free window space and output queue is not empty
         // if yes - lock the writer (only one thread can flush)
-        while (availConnectionWindowSize.get() > 0
+        while (!isClosed
+                && availConnectionWindowSize.get() > 0
                 && !outputQueue.isEmpty()
                 && writerLock.compareAndSet(false, true)) {
 
             // get the values after the writer is locked
             availWindowSize = availConnectionWindowSize.get();
-            queueSize = outputQueue.size();
+
+            // pass the newly queued records to the scheduler
+            Http2SessionOutputSink.OutputQueueRecord record;
+            while ((record = outputQueue.poll()) != null) {
+                scheduler.add(record);
+            }
 
             CompletionHandler<WriteResult> writeCompletionHandler = null;
             int writeCompletionHandlerBytes = 0;
@@ -248,21 +258,9 @@ public class Http2SessionOutputSink {
 
             AggrCompletionHandler completionHandlers = null;
 
-            // gather all available output data frames
+            // gather the output data frames in the order chosen by the scheduler
             while (availWindowSize > bytesToTransfer &&
-                    queueSize > queueSizeToFree) {
-
-                final Http2SessionOutputSink.OutputQueueRecord record = outputQueue.poll();
-
-                if (record == null) {
-                    // keep this warning for now
-                    // should be reported when null record is spotted
-                    LOGGER.log(Level.WARNING, "UNEXPECTED NULL RECORD. Queue-size: {0} "
-                                    + "tmpcnt={1} byteToTransfer={2} queueSizeToFree={3} queueSize={4}",
-                            new Object[]{outputQueue.size(), tmpcnt, bytesToTransfer, queueSizeToFree, queueSize});
-                }
-
-                assert record != null;
+                    (record = scheduler.next()) != null) {
 
                 final int serializedBytes = record.serializeTo(
                         tmpFramesList,
@@ -270,14 +268,12 @@ public class Http2SessionOutputSink {
                 bytesToTransfer += serializedBytes;
                 queueSizeToFree += serializedBytes;
 
-                if (record.isFinished()) {
-                    if (record.isZeroSizeData()) {
-                        queueSizeToFree++;
-                    }
-                } else {
-                    outputQueue.setCurrentElement(record);
+                if (record.isFinished() && record.isZeroSizeData()) {
+                    queueSizeToFree++;
                 }
 
+                scheduler.onSerialized(record, serializedBytes);
+
                 final CompletionHandler<WriteResult> recordCompletionHandler =
                         record.getCompletionHandler();
 
@@ -325,10 +321,14 @@ public class Http2SessionOutputSink {
             // release the writer lock, so other thread can start to write
             writerLock.set(false);
 
+            if (isClosed) {
+                // the sink might have been closed while we were writing
+                failScheduledRecords();
+            }
+
             // we don't want this thread to write all the time - so give more
             // time for another thread to start writing
             LockSupport.parkNanos(backoffDelay++);
-            tmpcnt++;
         }
 
         if (needToNotify) {
@@ -337,11 +337,37 @@ public class Http2SessionOutputSink {
     }
 
     public void close() {
+        isClosed = true;
         outputQueue.onClose();
+        failScheduledRecords();
+    }
+
+    /*
+     * Fails the records, which have been passed to the scheduler, but
+     * haven't been written. If the writer lock is busy - the lock owner
+     * is responsible for that.
+     */
+    private void failScheduledRecords() {
+        if (writerLock.compareAndSet(false, true)) {
+            try {
+                if (!scheduler.isEmpty()) {
+                    outputQueue.releaseSpace(scheduler.failAll(
+                            new IOException("Connection closed")));
+                }
+            } finally {
+                writerLock.set(false);
+            }
+        }
+    }
+
+    private StreamPriorityNode priorityNode(final Http2Stream stream) {
+        final StreamPriorityNode node = stream.priorityNode;
+        return node != null ? node : http2Session.getPriorityTree();
     }
 
-    private static class OutputQueueRecord extends AsyncQueueRecord<WriteResult> {
+    static class OutputQueueRecord extends AsyncQueueRecord<WriteResult> {
         private final int streamId;
+        final StreamPriorityNode node;
 
         private ChunkedCompletionHandler chunkedCompletionHandler;
         private final CompletionHandler<WriteResult> originalCompletionHandler;
@@ -351,12 +377,14 @@ public class Http2SessionOutputSink {
         private final boolean isZeroSizeData;
 
         public OutputQueueRecord(final int streamId,
+                                 final StreamPriorityNode node,
                                  final WritableMessage writableMessage,
                                  final CompletionHandler<WriteResult> completionHandler,
                                  final boolean isLast) {
             super(null, null, null);
 
             this.streamId = streamId;
+            this.node = node;
             this.writableMessage = writableMessage;
             this.isZeroSizeData = !writableMessage.hasRemaining();
             this.originalCompletionHandler = completionHandler;
@@ -386,15 +414,23 @@ public class Http2SessionOutputSink {
             return null;
         }
 
-        private boolean isZeroSizeData() {
+        boolean isZeroSizeData() {
             return isZeroSizeData;
         }
 
-        private boolean isFinished() {
+        boolean isFinished() {
             return writableMessage == null;
         }
 
-        private int serializeTo(final List<Http2Frame> frames,
+        /**
+         * @return the output queue space this record still occupies
+         */
+        int getQueueSpace() {
+            return isZeroSizeData ? 1 :
+                    writableMessage != null ? writableMessage.remaining() : 0;
+        }
+
+        int serializeTo(final List<Http2Frame> frames,
                                 final int maxDataSize) {
 
             final int recordSize = writableMessage.remaining();
@@ -120,6 +120,9 @@ public class Http2Stream implements AttributeStorage, OutputSink, Closeable {
 
     private final Http2Session http2Session;
     
+    // the stream's node in the session's stream dependency tree
+    volatile StreamPriorityNode priorityNode;
+    
     private final AttributeHolder attributes =
             AttributeBuilder.DEFAULT_ATTRIBUTE_BUILDER.createSafeAttributeHolder();
 
@@ -132,6 +135,16 @@ public class Http2Stream implements AttributeStorage, OutputSink, Closeable {
     @SuppressWarnings("unused")
     private volatile int unackedReadBytes;
     
+    // the local window growth granted by the window auto-tuning on top of
+    // the session's initial stream window
+    volatile int localWindowExtra;
+    // the DATA bytes received during the current BDP sample,
+    // accessed by the session window tuner only
+    int bdpSampleBytes;
+    // true, if the granted window growth has been returned to the session
+    // budget, guarded by the session window tuner
+    boolean isLocalWindowReleased;
+    
     // closeReasonRef, "null" value means the connection is open.
     private static final AtomicReferenceFieldUpdater<Http2Stream, CloseReason> closeReasonUpdater =
             AtomicReferenceFieldUpdater.newUpdater(Http2Stream.class, CloseReason.class, "closeReason");
@@ -238,7 +251,7 @@ public class Http2Stream implements AttributeStorage, OutputSink, Closeable {
     }
 
     public int getLocalWindowSize() {
-        return http2Session.getLocalStreamWindowSize();
+        return http2Session.getLocalStreamWindowSize() + localWindowExtra;
     }
     
     /**
@@ -275,6 +288,10 @@ public class Http2Stream implements AttributeStorage, OutputSink, Closeable {
         return priority;
     }
 
+    public boolean isExclusive() {
+        return exclusive;
+    }
+
     public boolean isPushStream() {
         return (streamId & 1) == 0;
     }
@@ -662,7 +679,7 @@ public class Http2Stream implements AttributeStorage, OutputSink, Closeable {
     private void closeStream() {
         // TODO ensure stream proper transitions to CLOSED state
         //Http2StreamState.close(this);
-        http2Session.deregisterStream();
+        http2Session.deregisterStream(this);
     }
     
     HttpHeader getInputHttpHeader() {
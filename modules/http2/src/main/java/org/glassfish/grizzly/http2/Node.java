@@ -45,12 +45,14 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * N-ary tree node implementation to support HTTP/2 stream hierarchies.
+ * All the nodes of the same tree are expected to share the same lock,
+ * so the trees, which belong to different {@link Http2Session}s, don't
+ * contend with each other.
  */
 public abstract class Node {
 
-    private static final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-    protected static final ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
-    protected static final ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
+    protected final ReentrantReadWriteLock.ReadLock readLock;
+    protected final ReentrantReadWriteLock.WriteLock writeLock;
 
     protected final int id;
     protected Node next;
@@ -63,8 +65,21 @@ public abstract class Node {
     // ----------------------------------------------------------- Constructors
 
 
+    /**
+     * Creates a {@link Node} with its own lock, normally the tree root.
+     */
     protected Node(final int id) {
+        this(id, new ReentrantReadWriteLock());
+    }
+
+    /**
+     * Creates a {@link Node}, which shares the passed lock with the
+     * other nodes of the same tree.
+     */
+    protected Node(final int id, final ReentrantReadWriteLock lock) {
         this.id = id;
+        this.readLock = lock.readLock();
+        this.writeLock = lock.writeLock();
     }
 
 
@@ -163,6 +178,47 @@ public abstract class Node {
         return remove(id, false);
     }
 
+    /**
+     * Remove this {@link Node} from the tree.  Any children will be moved up
+     * as a child of this {@link Node}'s parent.
+     */
+    protected void remove() {
+        writeLock.lock();
+        try {
+            unlink(this, false);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Move this {@link Node}, together with its children, to the new parent
+     * as described in RFC 7540, section 5.3.3.  If the new parent is a
+     * descendant of this {@link Node}, the new parent is moved to this
+     * {@link Node}'s former parent first.
+     */
+    protected void reparent(final Node newParent, final boolean exclusive) {
+        writeLock.lock();
+        try {
+            if (parent == null) {
+                // the node has been removed from the tree
+                return;
+            }
+            
+            if (newParent.isDescendantOf(this)) {
+                final Node formerParent = parent;
+                unlink(newParent, true);
+                newParent.exclusive = false;
+                formerParent.addChild(newParent);
+            }
+            unlink(this, true);
+            this.exclusive = false;
+            newParent.addChild(this, exclusive);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
     /**
      * Top down search from this {@link Node} and any children (recursively)
      * returning the node with a matching <code>id</code>.
@@ -208,62 +264,82 @@ public abstract class Node {
     }
 
     private Node remove(final int id, final boolean retainChildren) {
-        final Node n = find(id);
-        if (n != null) {
-            writeLock.lock();
-            try {
-                // remove this node from sibling pointer chains
-                if (n.hasSiblings()) {
-                    final Node left = n.prev;
-                    final Node right = n.next;
-                    if (n.isFirstSibling()) {
-                        right.parent.firstChild = right;
-                        right.prev = null;
-                    } else if (n.isLastSibling()) {
-                        left.next = null;
-                    } else {
-                        // Middle child!
-                        left.next = right;
-                        right.prev = left;
-                    }
-                }
+        writeLock.lock();
+        try {
+            final Node n = find(id);
+            if (n != null) {
+                unlink(n, retainChildren);
+            }
+            return n;
+        } finally {
+            writeLock.unlock();
+        }
+    }
 
-                // re-parent the children to this node's parent and
-                // push these children to the front of the child new parent child list
-                if (!retainChildren) {
-                    final Node np = n.parent;
-                    if (n.firstChild != null) {
-                        Node t = n.firstChild;
-                        Node last = null;
-                        do {
-                            t.parent = np;
-                            // quick look ahead to see if this node will be the last
-                            if (t.next == null) {
-                                last = t;
-                            }
-                        } while ((t = t.next) != null);
-
-                        // 'push' the current child to the 'end' of children of the removed node
-                        last.next = np.firstChild;
-                        np.firstChild.prev = last;
-
-                        // Set the new pointer to the new first child.
-                        np.firstChild = n.firstChild;
+    private boolean isDescendantOf(final Node node) {
+        for (Node p = parent; p != null; p = p.parent) {
+            if (p == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Must be called with the write lock held.
+     */
+    private static void unlink(final Node n, final boolean retainChildren) {
+        // remove this node from sibling pointer chains
+        if (n.hasSiblings()) {
+            final Node left = n.prev;
+            final Node right = n.next;
+            if (n.isFirstSibling()) {
+                right.parent.firstChild = right;
+                right.prev = null;
+            } else if (n.isLastSibling()) {
+                left.next = null;
+            } else {
+                // Middle child!
+                left.next = right;
+                right.prev = left;
+            }
+        } else if (n.parent != null && n.parent.firstChild == n) {
+            // the only child
+            n.parent.firstChild = null;
+        }
+
+        // re-parent the children to this node's parent and
+        // push these children to the front of the child new parent child list
+        if (!retainChildren) {
+            final Node np = n.parent;
+            if (n.firstChild != null) {
+                Node t = n.firstChild;
+                Node last = null;
+                do {
+                    t.parent = np;
+                    // quick look ahead to see if this node will be the last
+                    if (t.next == null) {
+                        last = t;
                     }
-                }
+                } while ((t = t.next) != null);
 
-                // clear pointers and return
-                n.parent = null;
-                n.next = null;
-                n.prev = null;
-                if (!retainChildren) {
-                    n.firstChild = null;
+                // 'push' the current child to the 'end' of children of the removed node
+                last.next = np.firstChild;
+                if (np.firstChild != null) {
+                    np.firstChild.prev = last;
                 }
-                return n;
-            } finally {
-                writeLock.unlock();
+
+                // Set the new pointer to the new first child.
+                np.firstChild = n.firstChild;
             }
         }
-        return null;
+
+        // clear pointers
+        n.parent = null;
+        n.next = null;
+        n.prev = null;
+        if (!retainChildren) {
+            n.firstChild = null;
+        }
     }
 }
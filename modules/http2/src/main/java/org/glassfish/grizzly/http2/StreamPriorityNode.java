@@ -0,0 +1,102 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * {@link Node} of the {@link Http2Session}'s stream dependency tree.
+ * See RFC 7540, section 5.3.
+ */
+final class StreamPriorityNode extends Node {
+    /**
+     * The default stream weight, see RFC 7540, section 5.3.5.
+     */
+    static final int DEFAULT_WEIGHT = 16;
+
+    // the stream, or null for the tree root
+    final Http2Stream stream;
+    
+    volatile int weight;
+
+    // the fields below are used by the StreamScheduler and are accessed
+    // by the session output sink writer thread only.
+
+    // the DATA records waiting to be written, lazily initialized
+    ArrayDeque<Http2SessionOutputSink.OutputQueueRecord> pendingRecords;
+    // the virtual time this node's subtree has consumed so far
+    long cycle;
+    // the cycle of the child, which has been scheduled last
+    long lastChildCycle;
+    // the scheduling round this node has been marked active for
+    int activeMark;
+
+    /**
+     * Creates the tree root, which owns the tree lock.
+     */
+    StreamPriorityNode(final ReentrantReadWriteLock lock) {
+        super(0, lock);
+        this.stream = null;
+        this.weight = DEFAULT_WEIGHT;
+    }
+
+    StreamPriorityNode(final Http2Stream stream, final int weight,
+            final ReentrantReadWriteLock lock) {
+        this(stream.getId(), stream, weight, lock);
+    }
+
+    StreamPriorityNode(final int streamId, final int weight,
+            final ReentrantReadWriteLock lock) {
+        this(streamId, null, weight, lock);
+    }
+
+    private StreamPriorityNode(final int streamId, final Http2Stream stream,
+            final int weight, final ReentrantReadWriteLock lock) {
+        super(streamId, lock);
+        this.stream = stream;
+        this.weight = weight > 0 ? weight : DEFAULT_WEIGHT;
+    }
+
+    boolean hasPendingRecords() {
+        return pendingRecords != null && !pendingRecords.isEmpty();
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Weighted fair scheduler, which decides which stream's DATA gets written
+ * next by the {@link Http2SessionOutputSink}, according to the session's
+ * stream dependency tree (RFC 7540, section 5.3).
+ *
+ * A stream, which has data to write, is served before its dependents.
+ * Sibling subtrees share the connection proportionally to their weights:
+ * every subtree has a virtual time ("cycle"), which advances by
+ * <tt>bytes * 256 / weight</tt> each time the subtree gets served, and the
+ * subtree with the smallest cycle is served next.
+ *
+ * The scheduler is not thread-safe, it is expected to be accessed by the
+ * thread, which holds the output sink writer lock.
+ */
+final class StreamScheduler {
+    private static final int MAX_WEIGHT = 256;
+
+    private final StreamPriorityNode root;
+    // the nodes, which have pending records
+    private final List<StreamPriorityNode> activeNodes = new ArrayList<>();
+    private int round;
+
+    StreamScheduler(final StreamPriorityNode root) {
+        this.root = root;
+    }
+
+    /**
+     * Adds the record to the tail of its stream's queue.
+     */
+    void add(final Http2SessionOutputSink.OutputQueueRecord record) {
+        final StreamPriorityNode node = record.node;
+        if (node.pendingRecords == null) {
+            node.pendingRecords = new ArrayDeque<>(2);
+        }
+        if (node.pendingRecords.isEmpty()) {
+            activeNodes.add(node);
+        }
+        node.pendingRecords.offer(record);
+    }
+
+    boolean isEmpty() {
+        return activeNodes.isEmpty();
+    }
+
+    /**
+     * Returns the record to be written next, or <tt>null</tt> if there are
+     * no pending records. The record stays in the queue until
+     * {@link #onSerialized(Http2SessionOutputSink.OutputQueueRecord, int)}
+     * reports it's finished.
+     */
+    Http2SessionOutputSink.OutputQueueRecord next() {
+        if (activeNodes.isEmpty()) {
+            return null;
+        }
+
+        root.readLock.lock();
+        try {
+            return select().pendingRecords.peek();
+        } finally {
+            root.readLock.unlock();
+        }
+    }
+
+    /**
+     * Charges the record's stream and its ancestors for the written bytes
+     * and dequeues the record if it's finished.
+     */
+    void onSerialized(final Http2SessionOutputSink.OutputQueueRecord record,
+            final int bytes) {
+        final StreamPriorityNode node = record.node;
+        final long cost = Math.max(bytes, 1);
+
+        root.readLock.lock();
+        try {
+            for (Node n = node; n != null && n != root; n = n.parent) {
+                final StreamPriorityNode spn = (StreamPriorityNode) n;
+                spn.cycle += cost * MAX_WEIGHT / spn.weight;
+            }
+        } finally {
+            root.readLock.unlock();
+        }
+
+        if (record.isFinished()) {
+            node.pendingRecords.poll();
+            if (node.pendingRecords.isEmpty()) {
+                activeNodes.remove(node);
+            }
+        }
+    }
+
+    /**
+     * Removes all the pending records, notifying them about the failure.
+     *
+     * @return the output queue space occupied by the removed records
+     */
+    int failAll(final Throwable error) {
+        int size = 0;
+        for (int i = 0; i < activeNodes.size(); i++) {
+            final StreamPriorityNode node = activeNodes.get(i);
+            Http2SessionOutputSink.OutputQueueRecord record;
+            while ((record = node.pendingRecords.poll()) != null) {
+                size += record.getQueueSpace();
+                record.notifyFailure(error);
+            }
+        }
+        activeNodes.clear();
+
+        return size;
+    }
+
+    /*
+     * Must be called with the tree read lock held.
+     */
+    private StreamPriorityNode select() {
+        final int mark = ++round;
+
+        // mark the active nodes and their ancestors.
+        // the nodes of closed streams might be already removed from the tree,
+        // but still have data to write, they compete as the root children.
+        StreamPriorityNode bestOrphan = null;
+        for (int i = 0; i < activeNodes.size(); i++) {
+            final StreamPriorityNode node = activeNodes.get(i);
+            if (node != root && node.parent == null) {
+                bestOrphan = pick(root, bestOrphan, node);
+                continue;
+            }
+
+            for (Node n = node; n != null; n = n.parent) {
+                final StreamPriorityNode spn = (StreamPriorityNode) n;
+                if (spn.activeMark == mark) {
+                    break;
+                }
+                spn.activeMark = mark;
+            }
+        }
+
+        // go down the tree, choosing the child with the smallest cycle
+        StreamPriorityNode current = root;
+        while (!current.hasPendingRecords()) {
+            StreamPriorityNode best = current == root ? bestOrphan : null;
+            for (Node n = current.firstChild; n != null; n = n.next) {
+                final StreamPriorityNode child = (StreamPriorityNode) n;
+                if (child.activeMark == mark) {
+                    best = pick(current, best, child);
+                }
+            }
+
+            if (best == null) {
+                // shouldn't happen
+                return activeNodes.get(0);
+            }
+
+            current.lastChildCycle = best.cycle;
+            if (best == bestOrphan) {
+                return best;
+            }
+
+            current = best;
+        }
+
+        return current;
+    }
+
+    private static StreamPriorityNode pick(final StreamPriorityNode parent,
+            final StreamPriorityNode best, final StreamPriorityNode candidate) {
+        // a subtree, which has been idle, is not allowed to claim
+        // the bandwidth it hasn't used
+        if (candidate.cycle < parent.lastChildCycle) {
+            candidate.cycle = parent.lastChildCycle;
+        }
+
+        return best == null || candidate.cycle < best.cycle
+                ? candidate
+                : best;
+    }
+}
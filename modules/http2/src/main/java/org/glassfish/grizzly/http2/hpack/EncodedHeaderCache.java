@@ -0,0 +1,104 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2.hpack;
+
+/**
+ * Bounded cache of the binary representations of header fields, which
+ * were encoded without referring to the dynamic table, so the
+ * {@link Encoder} can copy the bytes instead of encoding the same name
+ * and value over and over again.
+ *
+ * <p> The cache is direct-mapped: a header field may only be stored in the
+ * slot its hash code points to, replacing the previous one. So the lookup
+ * doesn't allocate and the cache never grows, at the cost of rare misses
+ * for colliding header fields.
+ *
+ * <p> Instances of this class are not thread-safe.
+ */
+final class EncodedHeaderCache {
+
+    private final Entry[] entries;
+    private final int mask;
+
+    EncodedHeaderCache(final int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size > 0: " + size);
+        }
+        int capacity = 1;
+        while (capacity < size) {
+            capacity <<= 1;
+        }
+        entries = new Entry[capacity];
+        mask = capacity - 1;
+    }
+
+    byte[] get(final String name, final String value) {
+        final Entry e = entries[index(name, value)];
+        return e != null && e.name.equals(name) && e.value.equals(value)
+                ? e.encoded
+                : null;
+    }
+
+    void put(final String name, final String value, final byte[] encoded) {
+        entries[index(name, value)] = new Entry(name, value, encoded);
+    }
+
+    int size() {
+        return entries.length;
+    }
+
+    private int index(final String name, final String value) {
+        final int h = name.hashCode() * 31 + value.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static final class Entry {
+        final String name;
+        final String value;
+        final byte[] encoded;
+
+        Entry(final String name, final String value, final byte[] encoded) {
+            this.name = name;
+            this.value = value;
+            this.encoded = encoded;
+        }
+    }
+}
@@ -65,6 +65,7 @@
 package org.glassfish.grizzly.http2.hpack;
 
 import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.memory.Buffers;
 
 import java.nio.ReadOnlyBufferException;
 import java.util.LinkedList;
@@ -130,12 +131,24 @@ import static java.util.Objects.requireNonNull;
  *
  * <p> The default implementation does not use dynamic table. It reports to a
  * coupled Decoder a size update with the value of {@code 0}, and never changes
- * it afterwards.
+ * it afterwards. String literals are Huffman encoded according to the
+ * {@link HuffmanPolicy}, and the binary representations of the header fields
+ * may be cached, so frequently sent fields are copied rather than encoded
+ * again.
  */
 public class Encoder {
 
-    // TODO: enum: no huffman/smart huffman/always huffman
-    private static final boolean DEFAULT_HUFFMAN = true;
+    // Header fields longer than this (name + value) aren't cached
+    private static final int MAX_CACHED_HEADER_LENGTH = 256;
+    // Enough for the longest cached header field: 2 integer prefixes and
+    // 2 string literals, Huffman code is up to 30 bits per char
+    private static final int MAX_CACHED_REPRESENTATION_LENGTH =
+            2 * 6 + MAX_CACHED_HEADER_LENGTH * 4;
+
+    private final HuffmanPolicy huffmanPolicy;
+    private final EncodedHeaderCache encodedHeaderCache;
+    private final BytesWriter bytesWriter = new BytesWriter();
+    private Buffer cacheScratch;
 
     private final IndexedWriter indexedWriter = new IndexedWriter();
     private final LiteralWriter literalWriter = new LiteralWriter();
@@ -175,9 +188,40 @@ public class Encoder {
      *         if maxCapacity is negative
      */
     public Encoder(int maxCapacity) {
+        this(maxCapacity, HuffmanPolicy.ALWAYS, 0);
+    }
+
+    /**
+     * Constructs an {@code Encoder} with the specified maximum capacity of the
+     * header table, the Huffman coding policy and the size of the encoded
+     * header fields cache.
+     *
+     * @param maxCapacity
+     *         a non-negative integer
+     * @param huffmanPolicy
+     *         the {@link HuffmanPolicy} for string literals
+     * @param encodedHeaderCacheSize
+     *         the number of the header fields, whose binary representations
+     *         may be cached; {@code 0} disables the cache
+     *
+     * @throws IllegalArgumentException
+     *         if maxCapacity or encodedHeaderCacheSize is negative
+     * @throws NullPointerException
+     *         if huffmanPolicy is {@code null}
+     */
+    public Encoder(int maxCapacity, HuffmanPolicy huffmanPolicy,
+                   int encodedHeaderCacheSize) {
         if (maxCapacity < 0) {
             throw new IllegalArgumentException("maxCapacity >= 0: " + maxCapacity);
         }
+        if (encodedHeaderCacheSize < 0) {
+            throw new IllegalArgumentException("encodedHeaderCacheSize >= 0: "
+                    + encodedHeaderCacheSize);
+        }
+        this.huffmanPolicy = requireNonNull(huffmanPolicy, "huffmanPolicy");
+        encodedHeaderCache = encodedHeaderCacheSize > 0
+                ? new EncodedHeaderCache(encodedHeaderCacheSize)
+                : null;
         // Initial maximum capacity update mechanics
         minCapacity = Long.MAX_VALUE;
         currCapacity = -1;
@@ -235,22 +279,84 @@ public class Encoder {
         requireNonNull(name, "name");
         requireNonNull(value, "value");
         HeaderTable t = getHeaderTable();
+
+        // The representation doesn't depend on the encoder state only if
+        // the dynamic table is empty. Sensitive values are never cached,
+        // mutable CharSequences can't be.
+        final boolean cacheable = encodedHeaderCache != null
+                && !sensitive
+                && t.size() == 0
+                && name instanceof String && value instanceof String
+                && name.length() + value.length() <= MAX_CACHED_HEADER_LENGTH;
+        if (cacheable) {
+            final byte[] encoded =
+                    encodedHeaderCache.get((String) name, (String) value);
+            if (encoded != null) {
+                cached(encoded);
+                return;
+            }
+        }
+
         int index = t.indexOf(name, value);
         if (index > 0) {
             indexed(index);
         } else if (index < 0) {
             if (sensitive) {
-                literalNeverIndexed(-index, value, DEFAULT_HUFFMAN);
+                literalNeverIndexed(-index, value, huffmanPolicy.useHuffman(value));
             } else {
-                literal(-index, value, DEFAULT_HUFFMAN);
+                literal(-index, value, huffmanPolicy.useHuffman(value));
             }
         } else {
             if (sensitive) {
-                literalNeverIndexed(name, DEFAULT_HUFFMAN, value, DEFAULT_HUFFMAN);
+                literalNeverIndexed(name, huffmanPolicy.useHuffman(name),
+                        value, huffmanPolicy.useHuffman(value));
             } else {
-                literal(name, DEFAULT_HUFFMAN, value, DEFAULT_HUFFMAN);
+                literal(name, huffmanPolicy.useHuffman(name),
+                        value, huffmanPolicy.useHuffman(value));
             }
         }
+
+        if (cacheable) {
+            final byte[] encoded = encodeRepresentation();
+            encodedHeaderCache.put((String) name, (String) value, encoded);
+            writer = bytesWriter.bytes(encoded);
+        }
+    }
+
+    /**
+     * @return the {@link HuffmanPolicy} used by the default
+     * {@link #header(CharSequence, CharSequence, boolean)} implementation.
+     */
+    public final HuffmanPolicy getHuffmanPolicy() {
+        return huffmanPolicy;
+    }
+
+    /**
+     * @return the number of the header fields, whose binary representations
+     * may be cached, or {@code 0} if the cache is disabled.
+     */
+    public final int getEncodedHeaderCacheSize() {
+        return encodedHeaderCache != null ? encodedHeaderCache.size() : 0;
+    }
+
+    // Runs the set up writer to completion and returns the binary
+    // representation it has produced.
+    private byte[] encodeRepresentation() {
+        if (cacheScratch == null) {
+            cacheScratch = Buffers.wrap(null,
+                    new byte[MAX_CACHED_REPRESENTATION_LENGTH]);
+        }
+        final Buffer scratch = cacheScratch;
+        scratch.clear();
+        if (!writer.write(headerTable, scratch)) {
+            throw new InternalError("Header representation exceeds "
+                    + MAX_CACHED_REPRESENTATION_LENGTH + " bytes");
+        }
+        writer.reset();
+        scratch.flip();
+        final byte[] encoded = new byte[scratch.remaining()];
+        scratch.get(encoded);
+        return encoded;
     }
 
     /**
@@ -373,6 +479,12 @@ public class Encoder {
         return true;
     }
 
+    private void cached(byte[] encoded) {
+        checkEncoding();
+        encoding = true;
+        writer = bytesWriter.bytes(encoded);
+    }
+
     protected final void indexed(int index) throws IndexOutOfBoundsException {
         checkEncoding();
         encoding = true;
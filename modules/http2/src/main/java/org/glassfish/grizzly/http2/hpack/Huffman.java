@@ -67,6 +67,9 @@ package org.glassfish.grizzly.http2.hpack;
 import org.glassfish.grizzly.Buffer;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 import static java.lang.String.format;
 
@@ -79,15 +82,17 @@ public final class Huffman {
 
     // TODO: check if reset is done in both reader and writer
 
+    /**
+     * Table-driven Huffman decoder.
+     *
+     * <p> Instead of walking the trie bit by bit, the reader consumes the
+     * input a nibble at a time, using the transition table precomputed by
+     * {@link Huffman} from the trie. A state is an internal trie node, so the
+     * whole decoding state between the {@link #read} calls is a single int.
+     */
     static final class Reader {
 
-        private Node curr; // position in the trie
-        private int len;   // length of the path from the root to 'curr'
-        private int p;     // byte probe
-
-        {
-            reset();
-        }
+        private int state; // the current decoding state, see Huffman#decodeTable
 
         public void read(Buffer source, Appendable destination,
                          boolean isLast) {
@@ -99,54 +104,46 @@ public final class Huffman {
         void read(Buffer source, Appendable destination, boolean reportEOS,
                   boolean isLast) {
 
-            Node c = curr;
-            int l = len;
+            final int[] table = INSTANCE.decodeTable;
+            // StringBuilder is what the Decoder uses, so save on
+            // Appendable's dispatch and checked exceptions
+            final StringBuilder sb = destination instanceof StringBuilder
+                    ? (StringBuilder) destination
+                    : null;
+
+            int s = state;
             /*
-               Since ByteBuffer is itself stateful, its position is
-               remembered here NOT as a part of Reader's state,
-               but to set it back in the case of a failure
+               Since Buffer is itself stateful, the position is updated only
+               after the whole chunk is decoded, or set to the first not fully
+               decoded byte in the case of a failure
              */
-            int pos = source.position();
+            final int limit = source.limit();
+            for (int pos = source.position(); pos < limit; pos++) {
+                final int d = source.get(pos);
 
-            while (source.hasRemaining()) {
-                int d = source.get();
-                for (; p != 0; p >>= 1) {
-                    c = c.getChild(p & d);
-                    l++;
-                    if (c.isLeaf()) {
-                        if (reportEOS && c.isEOSPath) {
-                            throw new IllegalArgumentException("Encountered EOS");
-                        }
-                        try {
-                            destination.append(c.getChar());
-                        } catch (RuntimeException | Error e) {
-                            source.position(pos);
-                            throw e;
-                        } catch (IOException e) {
-                            source.position(pos);
-                            throw new RuntimeException(e);
-                        }
-                        c = INSTANCE.root;
-                        l = 0;
-                    }
-                    curr = c;
-                    len = l;
+                int t = table[(s << 4) | ((d >> 4) & 0xF)];
+                if ((t & DECODE_FLAGS_MASK) != 0) {
+                    emit(t, source, pos, sb, destination, reportEOS);
+                }
+                t = table[((t & DECODE_STATE_MASK) << 4) | (d & 0xF)];
+                if ((t & DECODE_FLAGS_MASK) != 0) {
+                    emit(t, source, pos, sb, destination, reportEOS);
                 }
-                resetProbe();
-                pos++;
+
+                s = t & DECODE_STATE_MASK;
+                state = s;
             }
+            source.position(limit);
+
             if (!isLast) {
                 return; // it's too early to jump to any conclusions, let's wait
             }
-            if (c.isLeaf()) {
-                return; // it's perfectly ok, no extra padding bits
-            }
-            if (c.isEOSPath && len <= 7) {
-                return; // it's ok, some extra padding bits
+            if (INSTANCE.acceptStates[s]) {
+                return; // it's ok, no padding or up to 7 bits of EOS prefix
             }
-            if (c.isEOSPath) {
+            if (INSTANCE.eosPathStates[s]) {
                 throw new IllegalArgumentException(
-                        "Padding is too long (len=" + len + ") " +
+                        "Padding is too long (len=" + INSTANCE.stateDepths[s] + ") " +
                                 "or unexpected end of data");
             }
             throw new IllegalArgumentException(
@@ -154,13 +151,31 @@ public final class Huffman {
         }
 
         public void reset() {
-            curr = INSTANCE.root;
-            len = 0;
-            resetProbe();
+            state = 0;
         }
 
-        private void resetProbe() {
-            p = 0x80;
+        private static void emit(int transition, Buffer source, int pos,
+                                 StringBuilder sb, Appendable destination,
+                                 boolean reportEOS) {
+            final char c = (char) ((transition >>> DECODE_SYMBOL_SHIFT)
+                    & DECODE_SYMBOL_MASK);
+            if ((transition & DECODE_EOS) != 0 && reportEOS) {
+                source.position(pos);
+                throw new IllegalArgumentException("Encountered EOS");
+            }
+            if (sb != null) {
+                sb.append(c);
+                return;
+            }
+            try {
+                destination.append(c);
+            } catch (RuntimeException | Error e) {
+                source.position(pos);
+                throw e;
+            } catch (IOException e) {
+                source.position(pos);
+                throw new RuntimeException(e);
+            }
         }
     }
 
@@ -251,6 +266,29 @@ public final class Huffman {
         public String toString() { return "root"; }
     };
 
+    // Layout of a decodeTable transition:
+    //   bits 0..7   - the next state
+    //   bits 8..16  - the emitted symbol, if DECODE_EMIT is set
+    //   bit  17     - DECODE_EMIT, a symbol has been decoded
+    //   bit  18     - DECODE_EOS, the decoded symbol is EOS
+    private static final int DECODE_STATE_MASK = 0xFF;
+    private static final int DECODE_SYMBOL_SHIFT = 8;
+    private static final int DECODE_SYMBOL_MASK = 0x1FF;
+    private static final int DECODE_EMIT = 1 << 17;
+    private static final int DECODE_EOS = 1 << 18;
+    private static final int DECODE_FLAGS_MASK = DECODE_EMIT | DECODE_EOS;
+
+    // Nibble-at-a-time decoding state machine: the states are the internal
+    // trie nodes (the root is state 0), transition for the state s and the
+    // nibble n is decodeTable[s << 4 | n]
+    private final int[] decodeTable;
+    // the state is a valid place for the input to end
+    private final boolean[] acceptStates;
+    // the state is on the EOS path, i.e. all the bits consumed so far are 1s
+    private final boolean[] eosPathStates;
+    // the length of the path from the root to the state
+    private final int[] stateDepths;
+
     // TODO: consider builder and immutable trie
     private Huffman() {
         // @formatter:off
@@ -512,6 +550,74 @@ public final class Huffman {
         addChar(255, 0x3ffffee,  26);
         addEOS (256, EOS.code,   EOS.length);
         // @formatter:on
+
+        // The trie is complete, so the number of its internal nodes
+        // is the number of leaves minus one
+        final int statesCount = codes.length - 1;
+        decodeTable = new int[statesCount << 4];
+        acceptStates = new boolean[statesCount];
+        eosPathStates = new boolean[statesCount];
+        stateDepths = new int[statesCount];
+        buildDecodeTable(statesCount);
+    }
+
+    private void buildDecodeTable(int statesCount) {
+        // Number the internal nodes breadth-first, so the root gets 0
+        final Map<Node, Integer> ids = new IdentityHashMap<>();
+        final Node[] states = new Node[statesCount];
+        final ArrayDeque<Node> queue = new ArrayDeque<>();
+        queue.add(root);
+        int count = 0;
+        while (!queue.isEmpty()) {
+            final Node n = queue.poll();
+            if (n.isLeaf()) {
+                continue;
+            }
+            ids.put(n, count);
+            states[count++] = n;
+            queue.add(n.getChild(0));
+            queue.add(n.getChild(1));
+        }
+        // Depths of the children follow from the depths of their parents,
+        // which are numbered first
+        for (int s = 0; s < count; s++) {
+            final Node n = states[s];
+            for (int i = 0; i < 2; i++) {
+                final Integer child = ids.get(n.getChild(i));
+                if (child != null) {
+                    stateDepths[child] = stateDepths[s] + 1;
+                }
+            }
+        }
+        if (count != statesCount) {
+            throw new IllegalStateException("Unexpected number of states: "
+                    + count);
+        }
+
+        for (int s = 0; s < statesCount; s++) {
+            final Node n = states[s];
+            eosPathStates[s] = n.isEOSPath;
+            acceptStates[s] = n.isEOSPath && stateDepths[s] <= 7;
+
+            for (int nibble = 0; nibble < 16; nibble++) {
+                Node c = n;
+                int transition = 0;
+                for (int p = 0x8; p != 0; p >>= 1) {
+                    c = c.getChild(p & nibble);
+                    if (c.isLeaf()) {
+                        // The shortest code is 5 bits long, so no more than
+                        // one symbol per nibble
+                        transition = DECODE_EMIT
+                                | (c.getChar() << DECODE_SYMBOL_SHIFT);
+                        if (c.isEOSPath) {
+                            transition |= DECODE_EOS;
+                        }
+                        c = root;
+                    }
+                }
+                decodeTable[(s << 4) | nibble] = transition | ids.get(c);
+            }
+        }
     }
 
 
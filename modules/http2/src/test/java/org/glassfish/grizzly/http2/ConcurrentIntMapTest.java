@@ -0,0 +1,184 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link ConcurrentIntMap} tests.
+ */
+public class ConcurrentIntMapTest {
+
+    @Test
+    public void testPutGetRemove() {
+        final ConcurrentIntMap<String> map = new ConcurrentIntMap<>();
+        assertTrue(map.isEmpty());
+
+        assertNull(map.put(1, "one"));
+        assertNull(map.put(3, "three"));
+        assertEquals("one", map.put(1, "uno"));
+        assertEquals(2, map.size());
+
+        assertEquals("uno", map.get(1));
+        assertEquals("three", map.get(3));
+        assertNull(map.get(5));
+
+        assertEquals("uno", map.remove(1));
+        assertNull(map.remove(1));
+        assertNull(map.get(1));
+        assertEquals("three", map.get(3));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testGrowAndTombstones() {
+        final ConcurrentIntMap<Integer> map = new ConcurrentIntMap<>();
+
+        // simulate the stream IDs sequence, keeping up to 100 streams alive
+        for (int id = 1; id < 20000; id += 2) {
+            map.put(id, id);
+            if (id > 200) {
+                assertEquals(Integer.valueOf(id - 200), map.remove(id - 200));
+            }
+        }
+
+        assertEquals(100, map.size());
+        for (int id = 1; id < 20000; id += 2) {
+            if (id >= 20000 - 200) {
+                assertEquals(Integer.valueOf(id), map.get(id));
+            } else {
+                assertNull(map.get(id));
+            }
+        }
+    }
+
+    @Test
+    public void testSortedKeys() {
+        final ConcurrentIntMap<String> map = new ConcurrentIntMap<>();
+        map.put(7, "7");
+        map.put(1, "1");
+        map.put(5, "5");
+        map.put(3, "3");
+        map.remove(5);
+
+        assertArrayEquals(new int[] {1, 3, 7}, map.sortedKeys());
+    }
+
+    @Test
+    public void testValuesIteratorRemove() {
+        final ConcurrentIntMap<Integer> map = new ConcurrentIntMap<>();
+        for (int i = 1; i <= 100; i++) {
+            map.put(i, i);
+        }
+
+        for (final Iterator<Integer> it = map.values().iterator(); it.hasNext();) {
+            if (it.next() % 2 == 0) {
+                it.remove();
+            }
+        }
+
+        final Set<Integer> values = new HashSet<>();
+        for (Integer value : map.values()) {
+            values.add(value);
+        }
+
+        assertEquals(50, map.size());
+        assertEquals(50, values.size());
+        for (int i = 1; i <= 100; i += 2) {
+            assertTrue(values.contains(i));
+        }
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        final ConcurrentIntMap<Integer> map = new ConcurrentIntMap<>();
+        // the stable entries must be always visible to the readers
+        for (int id = 2; id <= 200; id += 2) {
+            map.put(id, id);
+        }
+
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        final Thread reader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (done.getCount() > 0) {
+                        for (int id = 2; id <= 200; id += 2) {
+                            if (map.get(id) == null) {
+                                throw new AssertionError("Stream " + id + " is missing");
+                            }
+                        }
+                    }
+                } catch (Throwable t) {
+                    error.set(t);
+                }
+            }
+        };
+        reader.start();
+
+        try {
+            for (int id = 1; id < 200000; id += 2) {
+                map.put(id, id);
+                if (id > 1000) {
+                    map.remove(id - 1000);
+                }
+            }
+        } finally {
+            done.countDown();
+            reader.join();
+        }
+
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2;
+
+import java.io.IOException;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.http.HttpResponsePacket;
+import org.glassfish.grizzly.http.Method;
+import org.glassfish.grizzly.http.util.DataChunk;
+import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.MimeHeaders;
+import org.glassfish.grizzly.http2.hpack.Encoder;
+import org.glassfish.grizzly.http2.hpack.HuffmanPolicy;
+import org.glassfish.grizzly.memory.HeapMemoryManager;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests decoding of the HPACK header blocks into {@link MimeHeaders}.
+ */
+public class DecoderUtilsTest {
+    private static final HeapMemoryManager MM = new HeapMemoryManager();
+
+    @Test
+    public void testRequestHeaders() throws Exception {
+        final Http2Request request = Http2Request.create();
+        decodeRequest(request, new Encoder(0, HuffmanPolicy.SHORTER, 0),
+                ":method", "GET",
+                ":scheme", "https",
+                ":path", "/some/path?a=b&c=d",
+                ":authority", "example.com:8443",
+                "content-length", "1234",
+                "accept-encoding", "gzip, deflate",
+                "x-custom-header", "custom value",
+                "x-custom-header", "other value");
+
+        assertEquals(Method.GET, request.getMethod());
+        assertTrue(request.isSecure());
+        assertEquals("/some/path", request.getRequestURI());
+        assertEquals("a=b&c=d", request.getQueryString());
+        assertEquals("example.com:8443", request.getHeader(Header.Host));
+        assertEquals(1234, request.getContentLength());
+        assertEquals("gzip, deflate", request.getHeader(Header.AcceptEncoding));
+
+        final MimeHeaders headers = request.getHeaders();
+        int custom = 0;
+        for (int i = 0; i < headers.size(); i++) {
+            final DataChunk name = headers.getName(i);
+            if (name.equals("x-custom-header")) {
+                assertEquals(DataChunk.Type.Bytes, name.getType());
+                assertEquals(DataChunk.Type.Bytes, headers.getValue(i).getType());
+                assertEquals(custom++ == 0 ? "custom value" : "other value",
+                        headers.getValue(i).toString());
+            } else if (name.equals("content-length")) {
+                assertEquals(DataChunk.Type.Bytes, name.getType());
+                // the known names keep the HTTP/2 lower case
+                assertSame(Header.ContentLength.getLowerCaseBytes(),
+                        name.getByteChunk().getBuffer());
+            }
+        }
+        assertEquals(2, custom);
+        request.recycle();
+    }
+
+    @Test
+    public void testStorageIsReused() throws Exception {
+        final Http2Request request = Http2Request.create();
+        final Encoder encoder = new Encoder(0, HuffmanPolicy.ALWAYS, 0);
+        decodeRequest(request, encoder, ":method", "POST", ":scheme", "http",
+                ":path", "/first", "x-value", "first");
+        final byte[] bytes = request.getHeaderBytesStorage().getBytes();
+        assertEquals("/first", request.getRequestURI());
+        assertEquals("first", request.getHeader("x-value"));
+
+        // the cached request reuses the storage array
+        request.recycle();
+        final Http2Request recycled = Http2Request.create();
+        assertSame(request, recycled);
+        decodeRequest(request, encoder, ":method", "POST", ":scheme", "http",
+                ":path", "/second", "x-value", "second");
+        assertSame(bytes, request.getHeaderBytesStorage().getBytes());
+        assertEquals("/second", request.getRequestURI());
+        assertEquals("second", request.getHeader("x-value"));
+        assertEquals(Method.POST, request.getMethod());
+        assertNull(request.getQueryString());
+        request.recycle();
+    }
+
+    @Test
+    public void testMissingServiceHeader() throws Exception {
+        try {
+            decodeRequest(Http2Request.create(), new Encoder(0),
+                    ":method", "GET", ":path", "/");
+            fail("HeaderDecodingException is expected");
+        } catch (HeaderDecodingException expected) {
+        }
+    }
+
+    @Test
+    public void testDuplicateServiceHeader() throws Exception {
+        try {
+            decodeRequest(Http2Request.create(), new Encoder(0),
+                    ":method", "GET", ":scheme", "http", ":path", "/",
+                    ":path", "/other");
+            fail("HeaderDecodingException is expected");
+        } catch (HeaderDecodingException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("Duplicate :path"));
+        }
+    }
+
+    @Test
+    public void testResponseAndTrailerHeaders() throws Exception {
+        final Http2Request request = Http2Request.create();
+        final HttpResponsePacket response = request.getResponse();
+        final Encoder encoder = new Encoder(0);
+        final HeadersDecoder decoder = new HeadersDecoder(MM, 8192, 4096);
+
+        decoder.append(encode(encoder, ":status", "203",
+                "content-type", "text/plain", "x-custom-header", "value"));
+        DecoderUtils.decodeResponseHeaders(decoder, response, null);
+        assertEquals(203, response.getStatus());
+        assertEquals("text/plain", response.getHeader(Header.ContentType));
+        assertEquals("value", response.getHeader("x-custom-header"));
+
+        decoder.append(encode(encoder, "x-checksum", "abcdef"));
+        DecoderUtils.decodeTrailerHeaders(decoder, response, null);
+        assertEquals("abcdef", response.getHeader("x-checksum"));
+        assertEquals("value", response.getHeader("x-custom-header"));
+        request.recycle();
+    }
+
+    private static void decodeRequest(final Http2Request request,
+            final Encoder encoder, final String... headers) throws IOException {
+        final HeadersDecoder decoder = new HeadersDecoder(MM, 8192, 4096);
+        decoder.append(encode(encoder, headers));
+        DecoderUtils.decodeRequestHeaders(decoder, request, null);
+    }
+
+    private static Buffer encode(final Encoder encoder, final String... headers) {
+        final Buffer buffer = MM.allocate(4096);
+        for (int i = 0; i < headers.length; i += 2) {
+            encoder.header(headers[i], headers[i + 1]);
+            assertTrue(encoder.encode(buffer));
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -563,6 +563,10 @@ public class FileCacheTest extends AbstractHttp2Test {
             entryRemovedCounter.incrementAndGet();
         }
 
+        @Override
+        public void onEntryEvictedEvent(FileCache fileCache, FileCacheEntry entry) {
+        }
+
         @Override
         public void onEntryHitEvent(FileCache fileCache, FileCacheEntry entry) {
             entryHitCounter.incrementAndGet();
@@ -585,6 +589,7 @@ public class FileCacheTest extends AbstractHttp2Test {
         public int getEntryRemovedCounter() {
             return entryRemovedCounter.get();
         }
+
         public int getEntryHitCounter() {
             return entryHitCounter.get();
         }
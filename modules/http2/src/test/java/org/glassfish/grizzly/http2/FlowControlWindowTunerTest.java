@@ -0,0 +1,232 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.http2.frames.Http2Frame;
+import org.glassfish.grizzly.nio.transport.TCPNIOConnection;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link FlowControlWindowTuner} tests.
+ */
+public class FlowControlWindowTunerTest {
+
+    private static final int INITIAL_WINDOW = 65535;
+    private static final int MAX_WINDOW = 1024 * 1024;
+
+    @Test
+    public void testPingIsSentOncePerRoundTrip() {
+        final TestTuner tuner = new TestTuner(INITIAL_WINDOW, MAX_WINDOW);
+
+        tuner.onDataReceived(1000);
+        tuner.onDataReceived(1000);
+        assertEquals(1, tuner.pings.size());
+        assertEquals(FlowControlWindowTuner.BDP_PING_DATA, (long) tuner.pings.get(0));
+
+        assertTrue(tuner.onPingAck(FlowControlWindowTuner.BDP_PING_DATA));
+        assertEquals(2000, tuner.getLastSampleBytes());
+        assertTrue(tuner.getRoundTripTime(TimeUnit.NANOSECONDS) >= 0);
+
+        tuner.onDataReceived(1000);
+        assertEquals(2, tuner.pings.size());
+    }
+
+    @Test
+    public void testSmallSampleDoesNotGrowWindow() {
+        final TestTuner tuner = new TestTuner(INITIAL_WINDOW, MAX_WINDOW);
+
+        tuner.onDataReceived(INITIAL_WINDOW / 2);
+        tuner.onPingAck(FlowControlWindowTuner.BDP_PING_DATA);
+
+        assertTrue(tuner.grows.isEmpty());
+        assertEquals(INITIAL_WINDOW, tuner.getWindowSize());
+    }
+
+    @Test
+    public void testSaturatedWindowGrows() {
+        final TestTuner tuner = new TestTuner(INITIAL_WINDOW, MAX_WINDOW);
+
+        tuner.onDataReceived(INITIAL_WINDOW);
+        tuner.onPingAck(FlowControlWindowTuner.BDP_PING_DATA);
+
+        assertEquals(1, tuner.grows.size());
+        assertEquals(INITIAL_WINDOW * 2, (int) tuner.grows.get(0));
+        assertEquals(INITIAL_WINDOW * 2, tuner.getWindowSize());
+    }
+
+    @Test
+    public void testWindowIsCappedByMaxSize() {
+        final TestTuner tuner = new TestTuner(INITIAL_WINDOW, MAX_WINDOW);
+
+        tuner.onDataReceived(MAX_WINDOW);
+        tuner.onPingAck(FlowControlWindowTuner.BDP_PING_DATA);
+        assertEquals(MAX_WINDOW, tuner.getWindowSize());
+        assertEquals(MAX_WINDOW, (int) tuner.grows.get(0));
+
+        // no more BDP PINGs once the max size is reached
+        tuner.onDataReceived(MAX_WINDOW);
+        assertEquals(1, tuner.pings.size());
+    }
+
+    @Test
+    public void testForeignPingAckIsIgnored() {
+        final TestTuner tuner = new TestTuner(INITIAL_WINDOW, MAX_WINDOW);
+
+        assertFalse(tuner.onPingAck(FlowControlWindowTuner.BDP_PING_DATA));
+
+        tuner.onDataReceived(INITIAL_WINDOW);
+        assertFalse(tuner.onPingAck(12345L));
+        assertTrue(tuner.grows.isEmpty());
+        assertEquals(-1, tuner.getRoundTripTime(TimeUnit.NANOSECONDS));
+
+        assertTrue(tuner.onPingAck(FlowControlWindowTuner.BDP_PING_DATA));
+    }
+
+    @Test
+    public void testSaturatedStreamWindowGrows() throws Exception {
+        final int maxWindow = 16 * 1024 * 1024;
+        final Http2Session session = createSession(maxWindow);
+        final int initialStreamWindow = session.getLocalStreamWindowSize();
+        final Http2Stream bulk = acceptStream(session, 1);
+        final Http2Stream small = acceptStream(session, 3);
+
+        // a single stream is sized from the BDP sample,
+        // even above the max concurrent streams' share of the budget
+        final int sample = 1024 * 1024;
+        assertTrue(sample > maxWindow / session.getLocalMaxConcurrentStreams());
+        session.onDataReceived(1, sample);
+        session.onDataReceived(3, 100);
+        session.onPingAck(FlowControlWindowTuner.BDP_PING_DATA);
+
+        assertEquals((sample + 100) * 2, session.getLocalConnectionWindowSize());
+        assertEquals(sample * 2, bulk.getLocalWindowSize());
+        // the stream, which is not limited by its window, doesn't grow,
+        // neither do the new streams
+        assertEquals(initialStreamWindow, small.getLocalWindowSize());
+        assertEquals(initialStreamWindow, session.getLocalStreamWindowSize());
+    }
+
+    @Test
+    public void testStreamWindowsShareSessionBudget() throws Exception {
+        final int maxWindow = 1024 * 1024;
+        final Http2Session session = createSession(maxWindow);
+        final int initialStreamWindow = session.getLocalStreamWindowSize();
+        final Http2Stream stream1 = acceptStream(session, 1);
+        final Http2Stream stream3 = acceptStream(session, 3);
+
+        session.onDataReceived(1, maxWindow);
+        session.onDataReceived(3, maxWindow);
+        session.onPingAck(FlowControlWindowTuner.BDP_PING_DATA);
+
+        // the first stream takes the whole budget
+        assertEquals(maxWindow, stream1.getLocalWindowSize());
+        assertEquals(initialStreamWindow, stream3.getLocalWindowSize());
+
+        // the closed stream returns its growth to the budget
+        session.deregisterStream(stream1);
+        session.onDataReceived(3, maxWindow);
+        session.onPingAck(FlowControlWindowTuner.BDP_PING_DATA);
+        assertEquals(maxWindow, stream3.getLocalWindowSize());
+    }
+
+    private static Http2Stream acceptStream(final Http2Session session,
+            final int streamId) throws Http2SessionException {
+        return session.acceptStream(Http2Request.create(), streamId, 0, false,
+                StreamPriorityNode.DEFAULT_WEIGHT);
+    }
+
+    private static Http2Session createSession(final int maxWindowSize) {
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance().build();
+        transport.setFilterChain(FilterChainBuilder.newInstance().build());
+        final Http2Configuration configuration = Http2Configuration.builder()
+                .windowAutoTuning(true)
+                .maxWindowSize(maxWindowSize)
+                .build();
+        final Http2Session session = new Http2Session(
+                new TCPNIOConnection(transport, null), true,
+                new Http2ServerFilter(configuration)) {
+            @Override
+            protected Http2SessionOutputSink newOutputSink() {
+                // the connection is not connected, drop the frames
+                return new Http2SessionOutputSink(this) {
+                    @Override
+                    protected void writeDownStream(final Http2Frame frame) {
+                    }
+
+                    @Override
+                    protected void writeDownStream(final List<Http2Frame> frames) {
+                    }
+                };
+            }
+        };
+        session.sendPreface();
+        return session;
+    }
+
+    private static final class TestTuner extends FlowControlWindowTuner {
+        private final List<Long> pings = new ArrayList<>();
+        private final List<Integer> grows = new ArrayList<>();
+
+        TestTuner(final int initialWindowSize, final int maxWindowSize) {
+            super(initialWindowSize, maxWindowSize);
+        }
+
+        @Override
+        protected void sendPing(final long opaqueData) {
+            pings.add(opaqueData);
+        }
+
+        @Override
+        protected void growWindowSize(final int newWindowSize) {
+            grows.add(newWindowSize);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2;
+
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.nio.transport.TCPNIOConnection;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the {@link Http2Session}'s stream dependency tree maintenance.
+ */
+public class Http2SessionPriorityTest {
+
+    private Http2Session session;
+
+    @Before
+    public void setUp() {
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance().build();
+        transport.setFilterChain(FilterChainBuilder.newInstance().build());
+        session = new Http2Session(new TCPNIOConnection(transport, null), true,
+                new Http2ServerFilter(Http2Configuration.builder().build()));
+    }
+
+    @Test
+    public void testDependencyOnClosedStream() throws Exception {
+        final Http2Stream closed = acceptStream(1, 0, false);
+        session.deregisterStream(closed);
+        assertNull(closed.priorityNode);
+
+        // the closed stream is still registered, but the dependent stream
+        // must get the default priority
+        final Http2Stream stream = acceptStream(3, 1, true);
+        assertSame(session.getPriorityTree(), stream.priorityNode.parent);
+    }
+
+    @Test
+    public void testReprioritizeOnClosedStream() throws Exception {
+        final Http2Stream parent = acceptStream(1, 0, false);
+        final Http2Stream stream = acceptStream(3, 0, false);
+        session.deregisterStream(parent);
+
+        session.updateStreamPriority(3, 1, true, 32);
+        assertSame(session.getPriorityTree(), stream.priorityNode.parent);
+        assertEquals(32, stream.priorityNode.weight);
+    }
+
+    @Test
+    public void testDependencyOnOpenStream() throws Exception {
+        final Http2Stream parent = acceptStream(1, 0, false);
+        final Http2Stream stream = acceptStream(3, 1, false);
+        assertSame(parent.priorityNode, stream.priorityNode.parent);
+    }
+
+    private Http2Stream acceptStream(final int streamId,
+            final int parentStreamId, final boolean exclusive)
+            throws Http2SessionException {
+        return session.acceptStream(Http2Request.create(), streamId,
+                parentStreamId, exclusive, StreamPriorityNode.DEFAULT_WEIGHT);
+    }
+}
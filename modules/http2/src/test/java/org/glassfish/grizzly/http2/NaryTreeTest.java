@@ -44,6 +44,7 @@ import org.junit.Test;
 
 import static junit.framework.Assert.assertNotNull;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -562,6 +563,99 @@ public class NaryTreeTest {
     }
 
 
+    @Test
+    public void removeOnlyChild() {
+        final Node root = new TestNode(0);
+        root.addChild(new TestNode(1));
+        root.find(1).addChild(new TestNode(2));
+        root.find(2).addChild(new TestNode(3));
+
+        root.find(2).remove();
+
+        Node n1 = root.find(1);
+        assertEquals(3, n1.firstChild.id);
+        assertNull(n1.firstChild.next);
+        assertNull(n1.firstChild.prev);
+        assertEquals(1, n1.firstChild.parent.id);
+        assertNull(root.find(2));
+
+        root.remove(3);
+        assertNull(n1.firstChild);
+        assertNull(root.find(3));
+    }
+
+    @Test
+    public void reparent() {
+        final Node root = createAndValidate();
+        root.find(10).reparent(root.find(2), false);
+
+        Node n2 = root.find(2);
+        assertEquals(10, n2.firstChild.id);
+        assertEquals(6, n2.firstChild.next.id);
+
+        Node n10 = root.find(10);
+        assertEquals(2, n10.parent.id);
+        assertNull(n10.prev);
+        assertFalse(n10.exclusive);
+
+        Node n4 = root.find(4);
+        assertEquals(9, n4.firstChild.id);
+        assertNull(n4.firstChild.next);
+        assertNull(n4.firstChild.prev);
+    }
+
+    @Test
+    public void reparentToDescendant() {
+        final Node root = new TestNode(0);
+        root.addChild(new TestNode(1));
+        root.find(1).addChild(new TestNode(2));
+        root.find(1).addChild(new TestNode(3));
+        root.find(3).addChild(new TestNode(4));
+        root.find(3).addChild(new TestNode(5));
+        root.find(4).addChild(new TestNode(6));
+
+        // RFC 7540, section 5.3.3 example
+        root.find(1).reparent(root.find(4), false);
+
+        Node n4 = root.find(4);
+        assertEquals(0, n4.parent.id);
+        assertEquals(1, n4.firstChild.id);
+        assertEquals(6, n4.firstChild.next.id);
+
+        Node n1 = root.find(1);
+        assertEquals(4, n1.parent.id);
+        assertEquals(3, n1.firstChild.id);
+        assertEquals(2, n1.firstChild.next.id);
+
+        Node n3 = root.find(3);
+        assertEquals(5, n3.firstChild.id);
+        assertNull(n3.firstChild.next);
+
+        // RFC 7540, section 5.3.3 exclusive example
+        final Node root2 = new TestNode(0);
+        root2.addChild(new TestNode(1));
+        root2.find(1).addChild(new TestNode(2));
+        root2.find(1).addChild(new TestNode(3));
+        root2.find(3).addChild(new TestNode(4));
+        root2.find(3).addChild(new TestNode(5));
+        root2.find(4).addChild(new TestNode(6));
+
+        root2.find(1).reparent(root2.find(4), true);
+
+        n4 = root2.find(4);
+        assertEquals(0, n4.parent.id);
+        assertEquals(1, n4.firstChild.id);
+        assertNull(n4.firstChild.next);
+        assertTrue(n4.firstChild.exclusive);
+
+        n1 = root2.find(1);
+        assertEquals(6, n1.firstChild.id);
+        assertEquals(3, n1.firstChild.next.id);
+        assertEquals(2, n1.firstChild.next.next.id);
+        assertEquals(1, root2.find(6).parent.id);
+    }
+
+
     // --------------------------------------------------- Test Support Methods
 
 
@@ -0,0 +1,192 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.glassfish.grizzly.CompletionHandler;
+import org.glassfish.grizzly.WriteResult;
+import org.glassfish.grizzly.http2.frames.Http2Frame;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.utils.Futures;
+import org.glassfish.grizzly.impl.FutureImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StreamSchedulerTest {
+    private static final int FRAME_SIZE = 16383;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private StreamPriorityNode root;
+    private StreamScheduler scheduler;
+
+
+    // ----------------------------------------------------------- Test Methods
+
+
+    @Before
+    public void setUp() {
+        root = new StreamPriorityNode(lock);
+        scheduler = new StreamScheduler(root);
+    }
+
+    @Test
+    public void smallStreamIsNotStarved() {
+        final StreamPriorityNode large = addNode(root, 1, 16);
+        final StreamPriorityNode small = addNode(root, 3, 16);
+
+        scheduler.add(record(large, 1024 * 1024));
+        writeFrames(4);
+        scheduler.add(record(small, 100));
+
+        // the small stream gets served after at most one more large frame
+        final List<Integer> order = writeFrames(2);
+        assertTrue(order.contains(3));
+        assertFalse(small.hasPendingRecords());
+    }
+
+    @Test
+    public void siblingsShareByWeight() {
+        final StreamPriorityNode heavy = addNode(root, 1, 48);
+        final StreamPriorityNode light = addNode(root, 3, 16);
+
+        scheduler.add(record(heavy, 100 * FRAME_SIZE));
+        scheduler.add(record(light, 100 * FRAME_SIZE));
+
+        final List<Integer> order = writeFrames(40);
+        int heavyFrames = 0;
+        for (Integer id : order) {
+            if (id == 1) {
+                heavyFrames++;
+            }
+        }
+        assertEquals(30, heavyFrames);
+    }
+
+    @Test
+    public void parentIsServedBeforeDependents() {
+        final StreamPriorityNode parent = addNode(root, 1, 16);
+        final StreamPriorityNode child = addNode(parent, 3, 256);
+
+        scheduler.add(record(child, 2 * FRAME_SIZE));
+        scheduler.add(record(parent, 2 * FRAME_SIZE));
+
+        final List<Integer> order = writeFrames(4);
+        assertEquals(1, (int) order.get(0));
+        assertEquals(1, (int) order.get(1));
+        assertEquals(3, (int) order.get(2));
+        assertEquals(3, (int) order.get(3));
+        assertTrue(scheduler.isEmpty());
+    }
+
+    @Test
+    public void removedStreamIsFlushed() {
+        final StreamPriorityNode closed = addNode(root, 1, 16);
+        final StreamPriorityNode open = addNode(root, 3, 16);
+
+        scheduler.add(record(closed, 2 * FRAME_SIZE));
+        scheduler.add(record(open, 2 * FRAME_SIZE));
+        closed.remove();
+
+        final List<Integer> order = writeFrames(4);
+        assertEquals(4, order.size());
+        assertTrue(order.contains(1));
+        assertTrue(scheduler.isEmpty());
+        assertNull(scheduler.next());
+    }
+
+    @Test
+    public void failAll() throws Exception {
+        final StreamPriorityNode node = addNode(root, 1, 16);
+        final FutureImpl<WriteResult> future = Futures.createSafeFuture();
+
+        scheduler.add(new Http2SessionOutputSink.OutputQueueRecord(1, node,
+                Buffers.wrap(MemoryManager.DEFAULT_MEMORY_MANAGER, new byte[3 * FRAME_SIZE]),
+                Futures.toCompletionHandler(future), true));
+        writeFrames(1);
+
+        final Exception error = new Exception();
+        assertEquals(2 * FRAME_SIZE, scheduler.failAll(error));
+        assertTrue(scheduler.isEmpty());
+        assertTrue(future.isDone());
+    }
+
+
+    // -------------------------------------------------------- Private Methods
+
+
+    private StreamPriorityNode addNode(final StreamPriorityNode parent,
+            final int id, final int weight) {
+        final StreamPriorityNode node = new StreamPriorityNode(id, weight, lock);
+        parent.addChild(node);
+        return node;
+    }
+
+    private static Http2SessionOutputSink.OutputQueueRecord record(
+            final StreamPriorityNode node, final int size) {
+        return new Http2SessionOutputSink.OutputQueueRecord(node.id, node,
+                Buffers.wrap(MemoryManager.DEFAULT_MEMORY_MANAGER, new byte[size]),
+                (CompletionHandler<WriteResult>) null, true);
+    }
+
+    private List<Integer> writeFrames(final int count) {
+        final List<Integer> order = new ArrayList<>();
+        final List<Http2Frame> frames = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final Http2SessionOutputSink.OutputQueueRecord record = scheduler.next();
+            if (record == null) {
+                break;
+            }
+            final int bytes = record.serializeTo(frames, FRAME_SIZE);
+            scheduler.onSerialized(record, bytes);
+            order.add(record.node.id);
+        }
+        return order;
+    }
+}
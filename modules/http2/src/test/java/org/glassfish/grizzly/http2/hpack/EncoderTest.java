@@ -0,0 +1,210 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2.hpack;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.memory.HeapMemoryManager;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link HuffmanPolicy} and the encoded header fields cache
+ * of the {@link Encoder}.
+ */
+public class EncoderTest {
+    private static final HeapMemoryManager MM = new HeapMemoryManager();
+
+    // neither the name nor the value is in the static table
+    private static final String NAME = "x-custom-header";
+    private static final String VALUE = "custom-value";
+
+    @Test
+    public void testHuffmanPolicyNever() {
+        final List<String> decoded = new ArrayList<>();
+        final Buffer encoded = encode(new Encoder(0, HuffmanPolicy.NEVER, 0),
+                NAME, VALUE);
+        final boolean[] huffman = decode(encoded, decoded);
+        assertFalse(huffman[0]);
+        assertFalse(huffman[1]);
+        assertEquals(NAME + ": " + VALUE, decoded.get(0));
+    }
+
+    @Test
+    public void testHuffmanPolicyAlways() {
+        final List<String> decoded = new ArrayList<>();
+        // Huffman code for '{' is 15 bits long
+        final Buffer encoded = encode(new Encoder(0, HuffmanPolicy.ALWAYS, 0),
+                NAME, "{{{{");
+        final boolean[] huffman = decode(encoded, decoded);
+        assertTrue(huffman[0]);
+        assertTrue(huffman[1]);
+        assertEquals(NAME + ": {{{{", decoded.get(0));
+    }
+
+    @Test
+    public void testHuffmanPolicyShorter() {
+        final List<String> decoded = new ArrayList<>();
+        final Buffer encoded = encode(new Encoder(0, HuffmanPolicy.SHORTER, 0),
+                NAME, "{{{{");
+        final boolean[] huffman = decode(encoded, decoded);
+        assertTrue(huffman[0]);
+        assertFalse(huffman[1]);
+        assertEquals(NAME + ": {{{{", decoded.get(0));
+    }
+
+    @Test
+    public void testDefaultEncoder() {
+        final Encoder encoder = new Encoder(0);
+        assertEquals(HuffmanPolicy.ALWAYS, encoder.getHuffmanPolicy());
+        assertEquals(0, encoder.getEncodedHeaderCacheSize());
+    }
+
+    @Test
+    public void testCachedRepresentation() {
+        final Encoder cached = new Encoder(0, HuffmanPolicy.SHORTER, 16);
+        assertEquals(16, cached.getEncodedHeaderCacheSize());
+
+        final byte[] expected = toBytes(encode(
+                new Encoder(0, HuffmanPolicy.SHORTER, 0), NAME, VALUE));
+        final byte[] first = toBytes(encode(cached, NAME, VALUE));
+        // the capacity update is sent only once
+        final byte[] second = toBytes(encode(cached, NAME, VALUE));
+        final byte[] third = toBytes(encode(cached, NAME, VALUE));
+
+        assertArrayEquals(expected, first);
+        assertArrayEquals(second, third);
+        assertEquals(expected.length - 1, second.length);
+
+        final List<String> decoded = new ArrayList<>();
+        decode(encode(cached, NAME, VALUE), decoded);
+        assertEquals(NAME + ": " + VALUE, decoded.get(0));
+    }
+
+    @Test
+    public void testCacheCollisions() {
+        final Encoder cached = new Encoder(0, HuffmanPolicy.SHORTER, 1);
+        final Encoder plain = new Encoder(0, HuffmanPolicy.SHORTER, 0);
+        final String[][] headers = {
+            {":status", "200"}, {"content-type", "text/html"},
+            {NAME, VALUE}, {"server", "grizzly"}, {NAME, VALUE},
+            {"content-type", "text/html"}, {":status", "200"}
+        };
+        for (String[] header : headers) {
+            assertArrayEquals(toBytes(encode(plain, header[0], header[1])),
+                    toBytes(encode(cached, header[0], header[1])));
+        }
+    }
+
+    @Test
+    public void testCachedRepresentationInSmallBuffers() {
+        final Encoder encoder = new Encoder(0, HuffmanPolicy.NEVER, 16);
+        // the first one carries the capacity update
+        encode(encoder, NAME, VALUE);
+        final byte[] expected = toBytes(encode(encoder, NAME, VALUE));
+
+        encoder.header(NAME, VALUE);
+        final Buffer result = MM.allocate(expected.length);
+        final Buffer chunk = MM.allocate(3);
+        boolean done;
+        do {
+            chunk.clear();
+            done = encoder.encode(chunk);
+            chunk.flip();
+            result.put(chunk);
+        } while (!done);
+        result.flip();
+        assertArrayEquals(expected, toBytes(result));
+    }
+
+    @Test
+    public void testSensitiveNotCached() {
+        final Encoder encoder = new Encoder(0, HuffmanPolicy.SHORTER, 16);
+        toBytes(encode(encoder, NAME, VALUE));
+
+        encoder.header(NAME, VALUE, true);
+        final Buffer buffer = MM.allocate(256);
+        assertTrue(encoder.encode(buffer));
+        buffer.flip();
+        // Literal Header Field Never Indexed, new name
+        assertEquals(0x10, buffer.get(0));
+    }
+
+    private static Buffer encode(final Encoder encoder,
+            final String name, final String value) {
+        encoder.header(name, value);
+        final Buffer buffer = MM.allocate(256);
+        assertTrue(encoder.encode(buffer));
+        buffer.flip();
+        return buffer;
+    }
+
+    private static byte[] toBytes(final Buffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static boolean[] decode(final Buffer buffer,
+            final List<String> decoded) {
+        final boolean[] huffman = new boolean[2];
+        new Decoder(4096).decode(buffer, true, new DecodingCallback() {
+            @Override
+            public void onDecoded(CharSequence name, CharSequence value) {
+                decoded.add(name + ": " + value);
+            }
+
+            @Override
+            public void onLiteral(CharSequence name, boolean nameHuffman,
+                    CharSequence value, boolean valueHuffman) {
+                huffman[0] = nameHuffman;
+                huffman[1] = valueHuffman;
+                super.onLiteral(name, nameHuffman, value, valueHuffman);
+            }
+        });
+        return huffman;
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2.hpack;
+
+import java.util.Random;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.HeapMemoryManager;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Round-trip tests for the table-driven {@link Huffman.Reader}.
+ */
+public class HuffmanTest {
+    private static final HeapMemoryManager MM = new HeapMemoryManager();
+
+    @Test
+    public void testAllSingleChars() {
+        for (int c = 0; c < 256; c++) {
+            assertRoundTrip(String.valueOf((char) c));
+        }
+    }
+
+    @Test
+    public void testAllCharPairs() {
+        final char[] pair = new char[2];
+        for (int c1 = 0; c1 < 256; c1++) {
+            pair[0] = (char) c1;
+            for (int c2 = 0; c2 < 256; c2++) {
+                pair[1] = (char) c2;
+                assertRoundTrip(new String(pair));
+            }
+        }
+    }
+
+    @Test
+    public void testHeaders() {
+        final String[] values = {
+            "", "www.example.com", "no-cache", "custom-key", "custom-value",
+            "private", "Mon, 21 Oct 2013 20:13:21 GMT",
+            "https://www.example.com", "gzip, deflate, br",
+            "foo=ASDJKHQKBZXOQWEOPIUAXQWEOIU; max-age=3600; version=1",
+            "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko)",
+            "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8"
+        };
+        for (String value : values) {
+            assertRoundTrip(value);
+        }
+    }
+
+    @Test
+    public void testRandomStrings() {
+        final Random r = new Random(4711);
+        for (int i = 0; i < 2000; i++) {
+            final char[] chars = new char[r.nextInt(64)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = (char) r.nextInt(256);
+            }
+            assertRoundTrip(new String(chars));
+        }
+    }
+
+    @Test
+    public void testChunkedInput() {
+        final String value = "Mozilla/5.0 (X11; Linux x86_64) \u00ff\u0000\u0080";
+        final Buffer encoded = encode(value);
+        final int length = encoded.remaining();
+
+        // every possible split into two chunks, including empty ones
+        for (int split = 0; split <= length; split++) {
+            final Huffman.Reader reader = new Huffman.Reader();
+            final StringBuilder sb = new StringBuilder();
+            final Buffer first = encoded.duplicate();
+            first.limit(split);
+            reader.read(first, sb, false);
+            assertEquals(split, first.position());
+            final Buffer second = encoded.duplicate();
+            second.position(split);
+            reader.read(second, sb, true);
+            assertEquals(value, sb.toString());
+        }
+
+        // byte by byte
+        final Huffman.Reader reader = new Huffman.Reader();
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            reader.read(Buffers.wrap(MM, new byte[] {encoded.get(i)}),
+                    sb, i == length - 1);
+        }
+        assertEquals(value, sb.toString());
+    }
+
+    @Test
+    public void testNonStringBuilderDestination() {
+        final String value = "custom-value";
+        final StringBuffer sb = new StringBuffer();
+        new Huffman.Reader().read(encode(value), sb, true);
+        assertEquals(value, sb.toString());
+    }
+
+    @Test
+    public void testReset() {
+        final Huffman.Reader reader = new Huffman.Reader();
+        final StringBuilder sb = new StringBuilder();
+        // leave the reader in the middle of a code
+        reader.read(Buffers.wrap(MM, new byte[] {(byte) 0xff}), sb, false);
+        reader.reset();
+        reader.read(encode("abc"), sb, true);
+        assertEquals("abc", sb.toString());
+    }
+
+    @Test
+    public void testEOS() {
+        // EOS (30 ones) followed by padding
+        assertInvalid(new byte[] {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff},
+                "Encountered EOS");
+    }
+
+    @Test
+    public void testPaddingTooLong() {
+        // '0' is 00000, then 11 bits of EOS prefix
+        assertInvalid(new byte[] {0x07, (byte) 0xff}, "Padding is too long");
+        // a whole byte of padding
+        assertInvalid(new byte[] {(byte) 0xff}, "Padding is too long");
+    }
+
+    @Test
+    public void testNotEOSPrefixPadding() {
+        // '0' is 00000, then 000 which is not a prefix of EOS
+        assertInvalid(new byte[] {0x00}, "Not a EOS prefix padding");
+    }
+
+    @Test
+    public void testRandomInputMatchesTrieWalk() {
+        final Random r = new Random(1234);
+        for (int i = 0; i < 20000; i++) {
+            final byte[] bytes = new byte[1 + r.nextInt(8)];
+            r.nextBytes(bytes);
+
+            final String expected = trieDecode(bytes);
+            String actual;
+            try {
+                final StringBuilder sb = new StringBuilder();
+                new Huffman.Reader().read(Buffers.wrap(MM, bytes), sb, true);
+                actual = sb.toString();
+            } catch (IllegalArgumentException e) {
+                actual = null;
+            }
+            assertEquals(expected, actual);
+        }
+    }
+
+    private static void assertRoundTrip(final String value) {
+        final Buffer encoded = encode(value);
+        assertEquals(Huffman.INSTANCE.lengthOf(value), encoded.remaining());
+        final StringBuilder sb = new StringBuilder();
+        new Huffman.Reader().read(encoded, sb, true);
+        assertEquals(value, sb.toString());
+        assertFalse(encoded.hasRemaining());
+    }
+
+    private static void assertInvalid(final byte[] bytes, final String message) {
+        try {
+            new Huffman.Reader().read(Buffers.wrap(MM, bytes),
+                    new StringBuilder(), true);
+            fail("IllegalArgumentException is expected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+        }
+    }
+
+    private static Buffer encode(final String value) {
+        final Buffer buffer = MM.allocate(value.length() * 4 + 1);
+        assertTrue(new Huffman.Writer().from(value, 0, value.length())
+                .write(buffer));
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Reference bit-at-a-time decoder, returns <tt>null</tt> if the input
+     * is invalid.
+     */
+    private static String trieDecode(final byte[] bytes) {
+        final StringBuilder sb = new StringBuilder();
+        final Huffman.Node root = Huffman.INSTANCE.getRoot();
+        Huffman.Node c = root;
+        int len = 0;
+        for (byte b : bytes) {
+            for (int p = 0x80; p != 0; p >>= 1) {
+                c = c.getChild(p & b);
+                len++;
+                if (c.isLeaf()) {
+                    if (c.isEOSPath) {
+                        return null;
+                    }
+                    sb.append(c.getChar());
+                    c = root;
+                    len = 0;
+                }
+            }
+        }
+        return c.isEOSPath && len <= 7 ? sb.toString() : null;
+    }
+}
@@ -41,8 +41,12 @@
 package org.glassfish.grizzly.memory.jmx;
 
 import org.glassfish.grizzly.monitoring.jmx.JmxObject;
+import org.glassfish.grizzly.memory.BufferLeakDetector;
 import org.glassfish.grizzly.memory.MemoryProbe;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import org.glassfish.gmbal.Description;
@@ -70,6 +74,13 @@ public class MemoryManager extends JmxObject {
     private final AtomicLong poolReleasedBytes = new AtomicLong();
     private final AtomicLong poolDepletedEventCount = new AtomicLong();
     private final AtomicLong poolRestoredToFullEventCount = new AtomicLong();
+    private final AtomicLong poolAllocatedCount = new AtomicLong();
+    private final AtomicLong threadCacheAllocatedBytes = new AtomicLong();
+    private final AtomicLong threadCacheAllocatedCount = new AtomicLong();
+    private final AtomicLong threadCacheReleasedBytes = new AtomicLong();
+    private final AtomicLong leakedBuffersCount = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong> leakSites =
+            new ConcurrentHashMap<String, AtomicLong>();
 
     public MemoryManager(org.glassfish.grizzly.memory.MemoryManager memoryManager) {
         this.memoryManager = memoryManager;
@@ -134,6 +145,46 @@ public class MemoryManager extends JmxObject {
         return poolRestoredToFullEventCount.get();
     }
 
+    @ManagedAttribute(id="thread-cache-allocated-bytes")
+    @Description("Total number of bytes allocated from thread local caches of released buffers")
+    public long getThreadCacheAllocatedBytes() {
+        return threadCacheAllocatedBytes.get();
+    }
+
+    @ManagedAttribute(id="thread-cache-released-bytes")
+    @Description("Total number of bytes released to thread local caches of released buffers")
+    public long getThreadCacheReleasedBytes() {
+        return threadCacheReleasedBytes.get();
+    }
+
+    @ManagedAttribute(id="thread-cache-hit-percentage")
+    @Description("The percentage of pooled allocations served by thread local caches of released buffers")
+    public int getThreadCacheHitPercentage() {
+        final long hits = threadCacheAllocatedCount.get();
+        final long total = hits + poolAllocatedCount.get();
+        return total != 0 ? (int) (hits * 100 / total) : 0;
+    }
+
+    @ManagedAttribute(id="leaked-buffers-count")
+    @Description("Total number of sampled buffers, which were garbage collected without being disposed")
+    public long getLeakedBuffersCount() {
+        return leakedBuffersCount.get();
+    }
+
+    @ManagedAttribute(id="leak-sites")
+    @Description("The allocation sites of the leaked buffers and the number of leaks per site")
+    public String getLeakSites() {
+        final StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, AtomicLong> entry : leakSites.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            sb.append(entry.getKey()).append(": ").append(entry.getValue().get());
+        }
+
+        return sb.toString();
+    }
+
     private class JmxMemoryProbe implements MemoryProbe {
 
         @Override
@@ -146,6 +197,7 @@ public class MemoryManager extends JmxObject {
         public void onBufferAllocateFromPoolEvent(int size) {
             totalAllocatedBytes.addAndGet(size);
             poolAllocatedBytes.addAndGet(size);
+            poolAllocatedCount.incrementAndGet();
         }
 
         @Override
@@ -163,5 +215,33 @@ public class MemoryManager extends JmxObject {
             poolRestoredToFullEventCount.incrementAndGet();
         }
 
+        @Override
+        public void onBufferAllocateFromThreadCacheEvent(int size) {
+            totalAllocatedBytes.addAndGet(size);
+            threadCacheAllocatedBytes.addAndGet(size);
+            threadCacheAllocatedCount.incrementAndGet();
+        }
+
+        @Override
+        public void onBufferReleaseToThreadCacheEvent(int size) {
+            threadCacheReleasedBytes.addAndGet(size);
+        }
+
+        @Override
+        public void onBufferLeakEvent(int size, Throwable allocationTrace) {
+            leakedBuffersCount.incrementAndGet();
+
+            final String site = BufferLeakDetector.getAllocationSite(allocationTrace);
+            AtomicLong counter = leakSites.get(site);
+            if (counter == null) {
+                final AtomicLong newCounter = new AtomicLong();
+                counter = leakSites.putIfAbsent(site, newCounter);
+                if (counter == null) {
+                    counter = newCounter;
+                }
+            }
+            counter.incrementAndGet();
+        }
+
     }
 }
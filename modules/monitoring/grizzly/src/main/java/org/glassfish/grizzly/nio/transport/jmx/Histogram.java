@@ -0,0 +1,155 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.nio.transport.jmx;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Low-overhead histogram with power-of-two buckets.
+ * 
+ * The histogram is updated by a single thread (the {@link org.glassfish.grizzly.nio.SelectorRunner}
+ * thread), so the updates are not atomic, and read by JMX.
+ */
+final class Histogram {
+    // bucket i contains values in [2^(i-1), 2^i - 1], bucket 0 contains 0
+    private static final int BUCKETS_COUNT = 64;
+    
+    // [buckets..., count, sum, max]
+    private static final int COUNT_IDX = BUCKETS_COUNT;
+    private static final int SUM_IDX = BUCKETS_COUNT + 1;
+    private static final int MAX_IDX = BUCKETS_COUNT + 2;
+    
+    private final AtomicLongArray values = new AtomicLongArray(BUCKETS_COUNT + 3);
+    
+    private final long unitDivisor;
+    private final String unitName;
+
+    /**
+     * @param unitDivisor the divisor to convert the recorded values to the
+     *          reported units
+     * @param unitName the reported units name
+     */
+    Histogram(final long unitDivisor, final String unitName) {
+        this.unitDivisor = unitDivisor;
+        this.unitName = unitName;
+    }
+
+    void add(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        
+        final int idx = Math.min(BUCKETS_COUNT - 1,
+                64 - Long.numberOfLeadingZeros(value));
+        
+        values.lazySet(idx, values.get(idx) + 1);
+        values.lazySet(COUNT_IDX, values.get(COUNT_IDX) + 1);
+        values.lazySet(SUM_IDX, values.get(SUM_IDX) + value);
+        if (value > values.get(MAX_IDX)) {
+            values.lazySet(MAX_IDX, value);
+        }
+    }
+
+    long getCount() {
+        return values.get(COUNT_IDX);
+    }
+    
+    /**
+     * @return the mean value in the reported units
+     */
+    long getMean() {
+        final long count = values.get(COUNT_IDX);
+        return count != 0 ? values.get(SUM_IDX) / count / unitDivisor : 0;
+    }
+    
+    /**
+     * @return the max value in the reported units
+     */
+    long getMax() {
+        return values.get(MAX_IDX) / unitDivisor;
+    }
+    
+    /**
+     * @param percentile the percentile [0..100]
+     * @return the upper bound of the bucket the percentile belongs to,
+     *          in the reported units
+     */
+    long getPercentile(final int percentile) {
+        final long count = values.get(COUNT_IDX);
+        if (count == 0) {
+            return 0;
+        }
+        
+        final long threshold = Math.max(1, (count * percentile + 99) / 100);
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            cumulative += values.get(i);
+            if (cumulative >= threshold) {
+                return Math.min(upperBound(i), values.get(MAX_IDX)) / unitDivisor;
+            }
+        }
+        
+        return getMax();
+    }
+    
+    void reset() {
+        for (int i = 0; i < values.length(); i++) {
+            values.set(i, 0);
+        }
+    }
+    
+    private static long upperBound(final int bucket) {
+        return bucket == 0 ? 0 : (bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(128);
+        sb.append("count=").append(getCount())
+                .append(", mean=").append(getMean())
+                .append(", p50=").append(getPercentile(50))
+                .append(", p99=").append(getPercentile(99))
+                .append(", max=").append(getMax())
+                .append(" (").append(unitName).append(')');
+        
+        return sb.toString();
+    }
+}
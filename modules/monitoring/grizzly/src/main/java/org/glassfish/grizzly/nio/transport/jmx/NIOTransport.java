@@ -60,6 +60,7 @@ import org.glassfish.grizzly.IOEvent;
 import org.glassfish.grizzly.Transport;
 import org.glassfish.grizzly.TransportProbe;
 import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.nio.SelectorRunnerProbe;
 import org.glassfish.grizzly.monitoring.jmx.JmxObject;
 import org.glassfish.grizzly.threadpool.GrizzlyExecutorService;
 import org.glassfish.grizzly.jmxbase.GrizzlyJmxManager;
@@ -75,6 +76,7 @@ public class NIOTransport extends JmxObject {
     protected final org.glassfish.grizzly.nio.NIOTransport transport;
     private final JmxTransportProbe probe;
     private final JmxConnectionProbe connectionProbe;
+    private final JmxSelectorRunnerProbe selectorRunnerProbe;
 
     private final AtomicLong bytesRead = new AtomicLong();
     private final AtomicLong bytesWritten = new AtomicLong();
@@ -97,6 +99,10 @@ public class NIOTransport extends JmxObject {
     private ExecutorService currentThreadPool;
     private Object threadPoolJmx;
 
+    private final ConcurrentMap<org.glassfish.grizzly.nio.SelectorRunner, SelectorRunner> selectorRunnersJmx =
+            new ConcurrentHashMap<>(4);
+    private int selectorRunnersCounter;
+
 
     private final Object subtreeLock = new Object();
 
@@ -104,6 +110,7 @@ public class NIOTransport extends JmxObject {
         this.transport = transport;
         probe = new JmxTransportProbe();
         connectionProbe = new JmxConnectionProbe();
+        selectorRunnerProbe = new JmxSelectorRunnerProbe();
     }
 
     @NameValue
@@ -123,6 +130,7 @@ public class NIOTransport extends JmxObject {
 
             transport.getMonitoringConfig().addProbes(probe);
             transport.getConnectionMonitoringConfig().addProbes(connectionProbe);
+            transport.getSelectorRunnerMonitoringConfig().addProbes(selectorRunnerProbe);
 
             rebuildSubTree();
         }
@@ -133,7 +141,9 @@ public class NIOTransport extends JmxObject {
         synchronized(subtreeLock) {
             transport.getMonitoringConfig().removeProbes(probe);
             transport.getConnectionMonitoringConfig().removeProbes(connectionProbe);
+            transport.getSelectorRunnerMonitoringConfig().removeProbes(selectorRunnerProbe);
 
+            deregisterSelectorRunners();
             this.mom = null;
         }
     }
@@ -273,6 +283,47 @@ public class NIOTransport extends JmxObject {
         }
     }
 
+    /**
+     * Returns the {@link SelectorRunner} JMX object associated with the
+     * passed {@link org.glassfish.grizzly.nio.SelectorRunner}, registering it
+     * first if needed.
+     */
+    private SelectorRunner getSelectorRunnerJmx(
+            final org.glassfish.grizzly.nio.SelectorRunner selectorRunner) {
+        final SelectorRunner runnerJmx = selectorRunnersJmx.get(selectorRunner);
+        if (runnerJmx != null) {
+            return runnerJmx;
+        }
+        
+        synchronized (subtreeLock) {
+            SelectorRunner newRunnerJmx = selectorRunnersJmx.get(selectorRunner);
+            if (newRunnerJmx == null) {
+                newRunnerJmx = new SelectorRunner(selectorRunner,
+                        "SelectorRunner-" + selectorRunnersCounter++);
+                if (mom != null) {
+                    mom.register(this, newRunnerJmx);
+                }
+                
+                selectorRunnersJmx.put(selectorRunner, newRunnerJmx);
+            }
+            
+            return newRunnerJmx;
+        }
+    }
+
+    private void deregisterSelectorRunners() {
+        synchronized (subtreeLock) {
+            if (mom != null) {
+                for (SelectorRunner runnerJmx : selectorRunnersJmx.values()) {
+                    mom.deregister(runnerJmx);
+                }
+            }
+            
+            selectorRunnersJmx.clear();
+            selectorRunnersCounter = 0;
+        }
+    }
+
     private static class EventDate {
         private final String event;
         private final Date date;
@@ -308,6 +359,7 @@ public class NIOTransport extends JmxObject {
         @Override
         public void onStopEvent(Transport transport) {
             stateEvent = new EventDate("STOPPED");
+            deregisterSelectorRunners();
         }
 
         @Override
@@ -403,4 +455,41 @@ public class NIOTransport extends JmxObject {
 //        public void onServiceEventDisableEvent(Connection connection, ServiceEvent serviceEvent) {
 //        }
     }
+
+    private class JmxSelectorRunnerProbe extends SelectorRunnerProbe.Adapter {
+
+        @Override
+        public void onSelectEvent(final org.glassfish.grizzly.nio.SelectorRunner selectorRunner,
+                final int selectedKeysCount, final long selectNanos) {
+            final SelectorRunner runnerJmx = getSelectorRunnerJmx(selectorRunner);
+            runnerJmx.selectTime.add(selectNanos);
+            runnerJmx.eventsPerWakeup.add(selectedKeysCount);
+        }
+
+        @Override
+        public void onKeysProcessedEvent(final org.glassfish.grizzly.nio.SelectorRunner selectorRunner,
+                final int keysCount, final long processingNanos) {
+            getSelectorRunnerJmx(selectorRunner).keysProcessingTime.add(processingNanos);
+        }
+
+        @Override
+        public void onTaskExecuteEvent(final org.glassfish.grizzly.nio.SelectorRunner selectorRunner,
+                final long executionNanos) {
+            getSelectorRunnerJmx(selectorRunner).taskExecutionTime.add(executionNanos);
+        }
+
+        @Override
+        public void onTaskQueuesEvent(final org.glassfish.grizzly.nio.SelectorRunner selectorRunner,
+                final int pendingTasksCount, final int postponedTasksCount) {
+            final SelectorRunner runnerJmx = getSelectorRunnerJmx(selectorRunner);
+            runnerJmx.pendingTasksQueueDepth.add(pendingTasksCount);
+            runnerJmx.postponedTasksQueueDepth.add(postponedTasksCount);
+        }
+
+        @Override
+        public void onLoopEvent(final org.glassfish.grizzly.nio.SelectorRunner selectorRunner,
+                final long loopNanos) {
+            getSelectorRunnerJmx(selectorRunner).loopTime.add(loopNanos);
+        }
+    }
 }
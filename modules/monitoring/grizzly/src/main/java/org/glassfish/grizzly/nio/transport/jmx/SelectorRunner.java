@@ -0,0 +1,160 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.nio.transport.jmx;
+
+import java.util.concurrent.TimeUnit;
+import org.glassfish.gmbal.Description;
+import org.glassfish.gmbal.GmbalMBean;
+import org.glassfish.gmbal.ManagedAttribute;
+import org.glassfish.gmbal.ManagedObject;
+import org.glassfish.grizzly.jmxbase.GrizzlyJmxManager;
+import org.glassfish.grizzly.monitoring.jmx.JmxObject;
+
+/**
+ * {@link org.glassfish.grizzly.nio.SelectorRunner} JMX object.
+ * 
+ * The histograms are updated by {@link NIOTransport}'s
+ * {@link org.glassfish.grizzly.nio.SelectorRunnerProbe} from the
+ * {@link org.glassfish.grizzly.nio.SelectorRunner} thread.
+ */
+@ManagedObject
+@Description("Grizzly NIO Transport SelectorRunner")
+public class SelectorRunner extends JmxObject {
+    private static final long NANOS_IN_MICROS = 1000;
+    
+    private final org.glassfish.grizzly.nio.SelectorRunner selectorRunner;
+    private final String name;
+    
+    final Histogram loopTime = new Histogram(NANOS_IN_MICROS, "micros");
+    final Histogram selectTime = new Histogram(NANOS_IN_MICROS, "micros");
+    final Histogram keysProcessingTime = new Histogram(NANOS_IN_MICROS, "micros");
+    final Histogram eventsPerWakeup = new Histogram(1, "events");
+    final Histogram taskExecutionTime = new Histogram(NANOS_IN_MICROS, "micros");
+    final Histogram pendingTasksQueueDepth = new Histogram(1, "tasks");
+    final Histogram postponedTasksQueueDepth = new Histogram(1, "tasks");
+    
+    public SelectorRunner(
+            final org.glassfish.grizzly.nio.SelectorRunner selectorRunner,
+            final String name) {
+        this.selectorRunner = selectorRunner;
+        this.name = name;
+    }
+
+    @Override
+    public String getJmxName() {
+        return name;
+    }
+
+    @Override
+    protected void onRegister(GrizzlyJmxManager mom, GmbalMBean bean) {
+    }
+
+    @Override
+    protected void onDeregister(GrizzlyJmxManager mom) {
+    }
+
+    @ManagedAttribute(id="selector-thread")
+    @Description("The name of the thread running the SelectorRunner.")
+    public String getSelectorThread() {
+        final Thread thread = selectorRunner.getRunnerThread();
+        return thread != null ? thread.getName() : "N/A";
+    }
+
+    @ManagedAttribute(id="registered-keys-count")
+    @Description("The number of channels registered on the SelectorRunner's Selector.")
+    public int getRegisteredKeysCount() {
+        return selectorRunner.getRegisteredKeysCount();
+    }
+
+    @ManagedAttribute(id="average-loop-time-micros")
+    @Description("The recent average time of the SelectorRunner loop iteration, excluding select(), in microseconds.")
+    public long getAverageLoopTime() {
+        return selectorRunner.getAverageLoopTime(TimeUnit.MICROSECONDS);
+    }
+
+    @ManagedAttribute(id="loop-time-p99-micros")
+    @Description("The 99th percentile of the SelectorRunner loop iteration time, excluding select(), in microseconds.")
+    public long getLoopTimeP99() {
+        return loopTime.getPercentile(99);
+    }
+
+    @ManagedAttribute(id="loop-time")
+    @Description("The SelectorRunner loop iteration time histogram, excluding select().")
+    public String getLoopTime() {
+        return loopTime.toString();
+    }
+
+    @ManagedAttribute(id="select-time")
+    @Description("The time spent in select() histogram.")
+    public String getSelectTime() {
+        return selectTime.toString();
+    }
+
+    @ManagedAttribute(id="keys-processing-time")
+    @Description("The selected keys processing time histogram.")
+    public String getKeysProcessingTime() {
+        return keysProcessingTime.toString();
+    }
+
+    @ManagedAttribute(id="events-per-wakeup")
+    @Description("The number of selected keys per select() histogram.")
+    public String getEventsPerWakeup() {
+        return eventsPerWakeup.toString();
+    }
+
+    @ManagedAttribute(id="task-execution-time")
+    @Description("The SelectorHandler task execution time histogram.")
+    public String getTaskExecutionTime() {
+        return taskExecutionTime.toString();
+    }
+
+    @ManagedAttribute(id="pending-tasks-queue-depth")
+    @Description("The pending tasks queue depth histogram.")
+    public String getPendingTasksQueueDepth() {
+        return pendingTasksQueueDepth.toString();
+    }
+
+    @ManagedAttribute(id="postponed-tasks-queue-depth")
+    @Description("The postponed tasks queue depth histogram.")
+    public String getPostponedTasksQueueDepth() {
+        return postponedTasksQueueDepth.toString();
+    }
+}
@@ -82,6 +82,11 @@ public class FileCache extends JmxObject {
      */
     private final AtomicLong cacheMissCount = new AtomicLong();
 
+    /**
+     * The number of evicted entries.
+     */
+    private final AtomicLong cacheEvictionCount = new AtomicLong();
+
     /**
      * The number of cache errors.
      */
@@ -218,6 +223,15 @@ public class FileCache extends JmxObject {
         return fileCache.getMaxSmallFileCacheSize();
     }
 
+    /**
+     * @see org.glassfish.grizzly.http.server.filecache.FileCache#getMaxCompressedCacheSize()
+     */
+    @ManagedAttribute(id="compressed-file-cache-size")
+    @Description("The maximum size, in bytes, of the memory occupied by the compressed file representations.")
+    public long getMaxCompressedCacheSize() {
+        return fileCache.getMaxCompressedCacheSize();
+    }
+
 
     /**
      * @return the total number of cached entries.
@@ -246,6 +260,26 @@ public class FileCache extends JmxObject {
         return cacheMissCount.get();
     }
 
+    /**
+     * @return the cache hit ratio.
+     */
+    @ManagedAttribute(id="cache-hit-ratio")
+    @Description("The ratio of cache hits to the total number of cache lookups.")
+    public double getCacheHitRatio() {
+        final long hits = cacheHitCount.get();
+        final long lookups = hits + cacheMissCount.get();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * @return the total number of evicted entries.
+     */
+    @ManagedAttribute(id="cache-eviction-count")
+    @Description("The total number of entries evicted to free space for the new ones.")
+    public long getCacheEvictionCount() {
+        return cacheEvictionCount.get();
+    }
+
     /**
      * @return the total number of cache errors.
      */
@@ -273,6 +307,15 @@ public class FileCache extends JmxObject {
         return fileCache.getMappedCacheSize();
     }
 
+    /**
+     * @return the total size, in bytes, of the compressed file representations.
+     */
+    @ManagedAttribute(id="compressed-cache-size-in-bytes")
+    @Description("The current size, in bytes, of the memory occupied by the compressed file representations.")
+    public long getCompressedMemoryInBytes() {
+        return fileCache.getCompressedCacheSize();
+    }
+
 
     // ---------------------------------------------------------- Nested Classes
 
@@ -298,6 +341,11 @@ public class FileCache extends JmxObject {
             }
         }
 
+        @Override
+        public void onEntryEvictedEvent(org.glassfish.grizzly.http.server.filecache.FileCache fileCache, FileCacheEntry entry) {
+            cacheEvictionCount.incrementAndGet();
+        }
+
         @Override
         public void onEntryHitEvent(org.glassfish.grizzly.http.server.filecache.FileCache fileCache, FileCacheEntry entry) {
             cacheHitCount.incrementAndGet();
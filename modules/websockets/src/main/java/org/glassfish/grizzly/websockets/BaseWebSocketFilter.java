@@ -237,8 +237,7 @@ public abstract class BaseWebSocketFilter extends BaseFilter {
         if (websocket != null && DataFrame.isDataFrame(msg)) {
             final DataFrame frame = (DataFrame) msg;
             final WebSocketHolder holder = WebSocketHolder.get(ctx.getConnection());
-            final Buffer wrap = Buffers.wrap(ctx.getMemoryManager(), holder.handler.frame(frame));
-            ctx.setMessage(wrap);
+            ctx.setMessage(holder.handler.frame(frame, ctx.getMemoryManager()));
         }
         // invoke next filter in the chain
         return ctx.getInvokeAction();
@@ -37,16 +37,33 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-
 package org.glassfish.grizzly.websockets;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.security.SecureRandom;
 
 import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.memory.ByteBufferArray;
 
 public class Masker {
+    /**
+     * Per-thread mask source, creating and seeding a {@link SecureRandom}
+     * is way more expensive than generating a mask.
+     */
+    private static final ThreadLocal<SecureRandom> RANDOM =
+            new ThreadLocal<SecureRandom>() {
+                @Override
+                protected SecureRandom initialValue() {
+                    return new SecureRandom();
+                }
+            };
+
     private Buffer buffer;
     private byte[] mask;
+    // the mask as a big-endian int
+    private int maskWord;
+    // the mask byte to be applied next, only the 2 lower bits matter
     private int index = 0;
 
     public Masker(Buffer buffer) {
@@ -69,35 +86,74 @@ public class Masker {
 
     public byte unmask() {
         final byte b = get();
-        return mask == null ? b : (byte) (b ^ mask[index++ % Constants.MASK_SIZE]);
+        return mask == null ? b : (byte) (b ^ mask[index++ & 3]);
     }
 
     public byte[] unmask(int count) {
-        byte[] bytes = get(count);
         if (mask != null) {
-            for (int i = 0; i < bytes.length; i++) {
-                bytes[i] ^= mask[index++ % Constants.MASK_SIZE];
-            }
+            unmask(buffer, buffer.position(), count);
         }
 
-        return bytes;
+        return get(count);
+    }
+
+    /**
+     * Unmasks <tt>length</tt> bytes of the {@link Buffer} in place, starting
+     * at the given position. The {@link Buffer}'s position and limit are
+     * not changed.
+     */
+    public void unmask(final Buffer target, final int position, final int length) {
+        mask(target, position, length);
     }
 
     public void generateMask() {
-        mask = new byte[Constants.MASK_SIZE];
-        new SecureRandom().nextBytes(mask);
+        setMask(RANDOM.get().nextInt());
     }
 
     public void mask(byte[] bytes, int location, byte b) {
-        bytes[location] = mask == null ? b : (byte) (b ^ mask[index++ % Constants.MASK_SIZE]);
+        bytes[location] = mask == null ? b : (byte) (b ^ mask[index++ & 3]);
     }
 
     public void mask(byte[] target, int location, byte[] bytes) {
         if(bytes != null && target != null) {
-            for (int i = 0; i < bytes.length; i++) {
-                target[location + i] = mask == null
-                        ? bytes[i]
-                        : (byte) (bytes[i] ^ mask[index++ % Constants.MASK_SIZE]);
+            System.arraycopy(bytes, 0, target, location, bytes.length);
+            if (mask != null) {
+                index += xor(ByteBuffer.wrap(target), location,
+                        location + bytes.length, index);
+            }
+        }
+    }
+
+    /**
+     * Masks <tt>length</tt> bytes of the {@link Buffer} in place, starting
+     * at the given position. The {@link Buffer}'s position and limit are
+     * not changed.
+     */
+    public void mask(final Buffer target, final int position, final int length) {
+        if (mask == null || length <= 0) {
+            return;
+        }
+
+        if (target.hasArray()) {
+            final int offset = target.arrayOffset() + position;
+            index += xor(ByteBuffer.wrap(target.array()), offset,
+                    offset + length, index);
+        } else if (!target.isComposite()) {
+            final ByteBuffer bb = target.toByteBuffer(position, position + length);
+            index += xor(bb, bb.position(), bb.limit(), index);
+        } else {
+            final ByteBufferArray array =
+                    target.toByteBufferArray(position, position + length);
+            try {
+                final ByteBuffer[] bbs = array.getArray();
+                final int size = array.size();
+                for (int i = 0; i < size; i++) {
+                    final ByteBuffer bb = bbs[i];
+                    index += xor(bb, bb.position(), bb.limit(), index);
+                }
+            } finally {
+                array.restore();
+                array.recycle();
             }
         }
     }
@@ -120,5 +176,41 @@ public class Masker {
 
     public void readMask() {
         mask = get(Constants.MASK_SIZE);
+        maskWord = (mask[0] & 0xFF) << 24 | (mask[1] & 0xFF) << 16
+                | (mask[2] & 0xFF) << 8 | (mask[3] & 0xFF);
+    }
+
+    private void setMask(final int word) {
+        maskWord = word;
+        mask = new byte[] {(byte) (word >>> 24), (byte) (word >>> 16),
+                (byte) (word >>> 8), (byte) word};
+    }
+
+    /**
+     * XORs the bytes in [start; end) with the mask, 8 bytes at a time,
+     * using absolute get/put, so the {@link ByteBuffer}'s state is not changed.
+     *
+     * @return the number of processed bytes
+     */
+    private int xor(final ByteBuffer bb, final int start, final int end,
+            final int phase) {
+        // the mask, rotated so it starts with the mask byte to be applied next
+        final int word = Integer.rotateLeft(maskWord, (phase & 3) << 3);
+        long wideMask = ((long) word << 32) | (word & 0xFFFFFFFFL);
+        if (bb.order() == ByteOrder.LITTLE_ENDIAN) {
+            wideMask = Long.reverseBytes(wideMask);
+        }
+
+        int i = start;
+        for (final int wideEnd = end - 7; i < wideEnd; i += 8) {
+            bb.putLong(i, bb.getLong(i) ^ wideMask);
+        }
+
+        // 8 is a multiple of the mask size, so the mask phase is still the same
+        for (; i < end; i++) {
+            bb.put(i, (byte) (bb.get(i) ^ mask[(phase + i - start) & 3]));
+        }
+
+        return end - start;
     }
 }
@@ -40,9 +40,17 @@
 
 package org.glassfish.grizzly.websockets;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.CompletionHandler;
+import org.glassfish.grizzly.WriteResult;
+
 /**
  * The default {@link Broadcaster} optimized to send the same text to a set of
  * clients.
+ * The frame is serialized once and its content is shared by all the
+ * recipients' write queues. The frame is disposed once all the writes
+ * are completed.
  * NOTE: works with {@link DefaultWebSocket}s and inherited classes.
  * 
  *
@@ -56,22 +64,23 @@ public class OptimizedBroadcaster implements Broadcaster {
     public void broadcast(final Iterable<? extends WebSocket> recipients,
             final String text) {
         
-        byte[] rawDataToSend = null;
+        SharedFrame frame = null;
         
         for (WebSocket websocket : recipients) {
             final DefaultWebSocket defaultWebSocket = (DefaultWebSocket) websocket;
             
             if (websocket.isConnected()) {
-                if (rawDataToSend == null) {
-                    rawDataToSend = defaultWebSocket.toRawData(text);
+                if (frame == null) {
+                    frame = new SharedFrame(defaultWebSocket.toRawBuffer(text, true));
                 }
                 
-                try {
-                    defaultWebSocket.sendRaw(rawDataToSend);
-                } catch (WebSocketException ignored) {
-                }
+                frame.sendTo(defaultWebSocket);
             }
         }
+        
+        if (frame != null) {
+            frame.release();
+        }
     }
     
     /**
@@ -81,62 +90,114 @@ public class OptimizedBroadcaster implements Broadcaster {
     public void broadcast(final Iterable<? extends WebSocket> recipients,
             final byte[] binary) {
         
-        byte[] rawDataToSend = null;
+        SharedFrame frame = null;
         
         for (WebSocket websocket : recipients) {
             final DefaultWebSocket defaultWebSocket = (DefaultWebSocket) websocket;
             
             if (websocket.isConnected()) {
-                if (rawDataToSend == null) {
-                    rawDataToSend = defaultWebSocket.toRawData(binary);
+                if (frame == null) {
+                    frame = new SharedFrame(defaultWebSocket.toRawBuffer(binary, true));
                 }
                 
-                try {
-                    defaultWebSocket.sendRaw(rawDataToSend);
-                } catch (WebSocketException ignored) {
-                }
+                frame.sendTo(defaultWebSocket);
             }
         }
+        
+        if (frame != null) {
+            frame.release();
+        }
     }
 
     @Override
     public void broadcastFragment(Iterable<? extends WebSocket> recipients,
             String text, boolean last) {
-        byte[] rawDataToSend = null;
+        SharedFrame frame = null;
         
         for (WebSocket websocket : recipients) {
             final DefaultWebSocket defaultWebSocket = (DefaultWebSocket) websocket;
             
             if (websocket.isConnected()) {
-                if (rawDataToSend == null) {
-                    rawDataToSend = defaultWebSocket.toRawData(text, last);
+                if (frame == null) {
+                    frame = new SharedFrame(defaultWebSocket.toRawBuffer(text, last));
                 }
                 
-                try {
-                    defaultWebSocket.sendRaw(rawDataToSend);
-                } catch (WebSocketException ignored) {
-                }
+                frame.sendTo(defaultWebSocket);
             }
         }
+        
+        if (frame != null) {
+            frame.release();
+        }
     }
 
     @Override
     public void broadcastFragment(Iterable<? extends WebSocket> recipients, byte[] binary, boolean last) {
-        byte[] rawDataToSend = null;
+        SharedFrame frame = null;
         
         for (WebSocket websocket : recipients) {
             final DefaultWebSocket defaultWebSocket = (DefaultWebSocket) websocket;
             
             if (websocket.isConnected()) {
-                if (rawDataToSend == null) {
-                    rawDataToSend = defaultWebSocket.toRawData(binary, last);
+                if (frame == null) {
+                    frame = new SharedFrame(defaultWebSocket.toRawBuffer(binary, last));
                 }
                 
-                try {
-                    defaultWebSocket.sendRaw(rawDataToSend);
-                } catch (WebSocketException ignored) {
-                }
+                frame.sendTo(defaultWebSocket);
             }
         }
+        
+        if (frame != null) {
+            frame.release();
+        }
+    }
+
+    /**
+     * The serialized frame shared by several writes. The frame {@link Buffer}
+     * is disposed, when the broadcaster and all the writes have released it.
+     */
+    static final class SharedFrame implements CompletionHandler<WriteResult> {
+        private final Buffer buffer;
+        // the broadcaster holds one reference until all the writes are queued
+        private final AtomicInteger refCount = new AtomicInteger(1);
+
+        SharedFrame(final Buffer buffer) {
+            this.buffer = buffer;
+        }
+
+        void sendTo(final SimpleWebSocket websocket) {
+            refCount.incrementAndGet();
+            try {
+                websocket.sendRaw(buffer, this);
+            } catch (WebSocketException ignored) {
+                // the write hasn't been queued
+                release();
+            }
+        }
+
+        void release() {
+            if (refCount.decrementAndGet() == 0) {
+                buffer.tryDispose();
+            }
+        }
+
+        @Override
+        public void cancelled() {
+            release();
+        }
+
+        @Override
+        public void failed(final Throwable throwable) {
+            release();
+        }
+
+        @Override
+        public void completed(final WriteResult result) {
+            release();
+        }
+
+        @Override
+        public void updated(final WriteResult result) {
+        }
     }
 }
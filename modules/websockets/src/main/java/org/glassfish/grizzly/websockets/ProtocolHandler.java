@@ -58,6 +58,8 @@ import org.glassfish.grizzly.http.HttpRequestPacket;
 import org.glassfish.grizzly.http.HttpResponsePacket;
 import org.glassfish.grizzly.impl.FutureImpl;
 import org.glassfish.grizzly.impl.SafeFutureImpl;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.MemoryManager;
 import org.glassfish.grizzly.utils.Charsets;
 import org.glassfish.grizzly.websockets.frametypes.BinaryFrameType;
 import org.glassfish.grizzly.websockets.frametypes.TextFrameType;
@@ -139,6 +141,21 @@ public abstract class ProtocolHandler {
     }
 
     public abstract byte[] frame(DataFrame frame);
+
+    /**
+     * Serializes the {@link DataFrame} into a {@link Buffer}.
+     * The default implementation wraps the result of {@link #frame(DataFrame)},
+     * implementations are encouraged to avoid copying the frame payload.
+     *
+     * @param frame the {@link DataFrame} to serialize
+     * @param memoryManager the {@link MemoryManager} to allocate the frame
+     *                      {@link Buffer}s with
+     *
+     * @return the serialized frame
+     */
+    public Buffer frame(DataFrame frame, MemoryManager memoryManager) {
+        return Buffers.wrap(memoryManager, frame(frame));
+    }
 /*
     public void readFrame() {
         while (connection.ready()) {
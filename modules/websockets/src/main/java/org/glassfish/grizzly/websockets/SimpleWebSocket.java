@@ -40,10 +40,13 @@
 package org.glassfish.grizzly.websockets;
 
 import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.CompletionHandler;
 import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.Grizzly;
 import org.glassfish.grizzly.GrizzlyFuture;
+import org.glassfish.grizzly.WriteResult;
 import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.CompositeBuffer;
 import org.glassfish.grizzly.memory.MemoryManager;
 import org.glassfish.grizzly.websockets.frametypes.PingFrameType;
 import org.glassfish.grizzly.websockets.frametypes.PongFrameType;
@@ -315,6 +318,28 @@ public class SimpleWebSocket implements WebSocket {
         return protocolHandler.frame(dataFrame);
     }
 
+    /**
+     * Serializes the text into a frame {@link Buffer}, which could be
+     * passed to {@link #sendRaw(Buffer)} of several {@link WebSocket}s.
+     */
+    protected Buffer toRawBuffer(String fragment, boolean last) {
+        final DataFrame dataFrame = protocolHandler.toDataFrame(fragment, last);
+        return protocolHandler.frame(dataFrame,
+                protocolHandler.getConnection().getMemoryManager());
+    }
+
+    /**
+     * Serializes the binary data into a frame {@link Buffer}, which could be
+     * passed to {@link #sendRaw(Buffer)} of several {@link WebSocket}s.
+     * The passed array is not copied, so it must not be changed until the
+     * frame is written.
+     */
+    protected Buffer toRawBuffer(byte[] binary, boolean last) {
+        final DataFrame dataFrame = protocolHandler.toDataFrame(binary, last);
+        return protocolHandler.frame(dataFrame,
+                protocolHandler.getConnection().getMemoryManager());
+    }
+
     @SuppressWarnings("unchecked")
     protected void sendRaw(byte[] rawData) {
         final Connection connection = protocolHandler.getConnection();
@@ -325,6 +350,33 @@ public class SimpleWebSocket implements WebSocket {
         connection.write(buffer);
     }
 
+    /**
+     * Writes the serialized frame. The frame content is shared, not copied,
+     * so the same {@link Buffer} could be sent to several {@link WebSocket}s
+     * and will never be disposed.
+     */
+    protected void sendRaw(Buffer rawData) {
+        sendRaw(rawData, null);
+    }
+
+    /**
+     * Writes the serialized frame, like {@link #sendRaw(Buffer)} does, and
+     * notifies the {@link CompletionHandler} once the write is completed, so
+     * the caller knows when the shared {@link Buffer} could be disposed.
+     */
+    @SuppressWarnings("unchecked")
+    protected void sendRaw(Buffer rawData,
+            CompletionHandler<WriteResult> completionHandler) {
+        final Connection connection = protocolHandler.getConnection();
+        final Buffer buffer = rawData.duplicate();
+        buffer.allowBufferDispose(false);
+        if (buffer.isComposite()) {
+            ((CompositeBuffer) buffer).allowInternalBuffersDispose(false);
+        }
+
+        connection.write(buffer, completionHandler);
+    }
+
     protected Broadcaster getBroadcaster() {
         return broadcaster;
     }
@@ -43,6 +43,9 @@ package org.glassfish.grizzly.websockets.rfc6455;
 import org.glassfish.grizzly.Buffer;
 import org.glassfish.grizzly.http.HttpContent;
 import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.CompositeBuffer;
+import org.glassfish.grizzly.memory.MemoryManager;
 import org.glassfish.grizzly.websockets.Constants;
 import org.glassfish.grizzly.websockets.DataFrame;
 import org.glassfish.grizzly.websockets.FrameType;
@@ -113,6 +116,67 @@ public class RFC6455Handler extends ProtocolHandler {
         return packet;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * The frame header is written into a separate small {@link Buffer}.
+     * Unmasked payload is not copied, the returned {@link CompositeBuffer}
+     * refers the frame's byte array directly.
+     */
+    @Override
+    public Buffer frame(final DataFrame frame, final MemoryManager memoryManager) {
+        final byte opcode = checkForLastFrame(frame, getOpcode(frame.getType()));
+        final byte[] bytes = frame.getType().getBytes(frame);
+        final int length = bytes.length;
+        final byte maskBit = (byte) (maskData ? 0x80 : 0);
+
+        final int lengthSize = length <= 125 ? 1 : length <= 0xFFFF ? 3 : 9;
+        final Buffer header = memoryManager.allocate(1 + lengthSize
+                + (maskData ? Constants.MASK_SIZE : 0));
+        header.put(opcode);
+        if (length <= 125) {
+            header.put((byte) (length | maskBit));
+        } else if (length <= 0xFFFF) {
+            header.put((byte) (126 | maskBit));
+            header.put((byte) (length >>> 8));
+            header.put((byte) length);
+        } else {
+            header.put((byte) (127 | maskBit));
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                header.put((byte) ((long) length >>> shift));
+            }
+        }
+
+        final Masker masker = maskData ? new Masker() : null;
+        if (masker != null) {
+            header.put(masker.getMask());
+        }
+        header.flip();
+        header.allowBufferDispose(true);
+
+        if (length == 0) {
+            return header;
+        }
+
+        final Buffer payload;
+        if (masker != null) {
+            // the payload has to be copied, we can't mask the passed byte[]
+            payload = memoryManager.allocate(length);
+            payload.put(bytes);
+            payload.flip();
+            payload.allowBufferDispose(true);
+            masker.mask(payload, payload.position(), length);
+        } else {
+            payload = Buffers.wrap(memoryManager, bytes);
+            payload.allowBufferDispose(false);
+        }
+
+        final CompositeBuffer result =
+                CompositeBuffer.newBuffer(memoryManager, header, payload);
+        result.allowBufferDispose(true);
+        return result;
+    }
+
     @Override
     public DataFrame parse(Buffer buffer) {
 
@@ -0,0 +1,114 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.websockets;
+
+import java.util.Random;
+
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.memory.HeapMemoryManager;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.websockets.rfc6455.RFC6455Handler;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrameEncodingTest {
+    private static final int[] LENGTHS = {0, 1, 125, 126, 0xFFFF, 0x10000};
+
+    private final MemoryManager mm = new HeapMemoryManager();
+    private final Random random = new Random(7);
+
+    @Test
+    public void testUnmaskedFrameMatchesByteArrayFrame() {
+        final RFC6455Handler handler = new RFC6455Handler(false);
+        for (int length : LENGTHS) {
+            final byte[] payload = randomBytes(length);
+
+            final byte[] expected = handler.frame(handler.toDataFrame(payload));
+            final Buffer buffer = handler.frame(handler.toDataFrame(payload), mm);
+
+            assertEquals(expected.length, buffer.remaining());
+            final byte[] actual = new byte[buffer.remaining()];
+            buffer.get(actual);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testUnmaskedPayloadIsNotCopied() {
+        final RFC6455Handler handler = new RFC6455Handler(false);
+        final byte[] payload = randomBytes(200);
+
+        final Buffer buffer = handler.frame(handler.toDataFrame(payload), mm);
+        assertTrue(buffer.isComposite());
+
+        // the payload change is visible through the frame buffer
+        payload[0]++;
+        assertEquals(payload[0], buffer.get(buffer.position() + 4));
+    }
+
+    @Test
+    public void testMaskedFrame() {
+        final RFC6455Handler client = new RFC6455Handler(true);
+        final RFC6455Handler server = new RFC6455Handler(false);
+        for (int length : LENGTHS) {
+            final byte[] payload = randomBytes(length);
+
+            final Buffer buffer = client.frame(client.toDataFrame(payload), mm);
+            final DataFrame frame = server.parse(buffer);
+
+            assertArrayEquals(payload, frame.getBytes());
+            assertEquals(0, buffer.remaining());
+        }
+    }
+
+
+    // -------------------------------------------------------- Private Methods
+
+
+    private byte[] randomBytes(final int length) {
+        final byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
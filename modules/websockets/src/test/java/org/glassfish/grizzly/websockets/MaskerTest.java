@@ -0,0 +1,188 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.websockets;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.memory.ByteBufferManager;
+import org.glassfish.grizzly.memory.CompositeBuffer;
+import org.glassfish.grizzly.memory.HeapMemoryManager;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class MaskerTest {
+    private static final int[] LENGTHS = {0, 1, 3, 4, 7, 8, 9, 15, 16, 17, 125, 1000};
+
+    private final Random random = new Random(5);
+
+    @Test
+    public void testMaskByteArray() {
+        for (int length : LENGTHS) {
+            final byte[] payload = randomBytes(length);
+            final Masker masker = new Masker();
+            final byte[] target = new byte[length + 3];
+            masker.mask(target, 3, payload);
+
+            assertArrayEquals(reference(masker.getMask(), 0, payload),
+                    Arrays.copyOfRange(target, 3, target.length));
+        }
+    }
+
+    @Test
+    public void testMaskHeapBuffer() {
+        testMaskBuffer(new HeapMemoryManager());
+    }
+
+    @Test
+    public void testMaskDirectBuffer() {
+        testMaskBuffer(new ByteBufferManager(true));
+    }
+
+    @Test
+    public void testMaskCompositeBuffer() {
+        final MemoryManager mm = new HeapMemoryManager();
+        for (int length : LENGTHS) {
+            final byte[] payload = randomBytes(length);
+            final CompositeBuffer buffer = CompositeBuffer.newBuffer(mm);
+            // odd-sized chunks, so 8-byte words cross the chunk boundaries
+            for (int i = 0; i < length; i += 5) {
+                final Buffer chunk = mm.allocate(Math.min(5, length - i));
+                chunk.put(payload, i, chunk.remaining());
+                chunk.flip();
+                buffer.append(chunk);
+            }
+
+            final Masker masker = new Masker();
+            masker.mask(buffer, 0, length);
+
+            assertArrayEquals(reference(masker.getMask(), 0, payload),
+                    toArray(buffer, 0, length));
+        }
+    }
+
+    @Test
+    public void testPhaseIsPreserved() {
+        final byte[] payload = randomBytes(100);
+        final Buffer buffer = new HeapMemoryManager().allocate(100);
+        buffer.put(payload);
+        buffer.flip();
+
+        // mask the buffer in pieces, which are not aligned to the mask size
+        final Masker masker = new Masker();
+        masker.mask(buffer, 0, 3);
+        masker.mask(buffer, 3, 10);
+        masker.mask(buffer, 13, 87);
+
+        assertArrayEquals(reference(masker.getMask(), 0, payload),
+                toArray(buffer, 0, 100));
+    }
+
+    @Test
+    public void testUnmask() {
+        for (int length : LENGTHS) {
+            final byte[] payload = randomBytes(length);
+            final Masker clientMasker = new Masker();
+            final byte[] masked = clientMasker.maskAndPrepend(payload);
+
+            final Buffer buffer = new ByteBufferManager(true).allocate(masked.length);
+            buffer.put(masked);
+            buffer.flip();
+
+            final Masker masker = new Masker(buffer);
+            masker.readMask();
+            assertArrayEquals(clientMasker.getMask(), masker.getMask());
+            assertArrayEquals(payload, masker.unmask(length));
+            assertEquals(0, buffer.remaining());
+        }
+    }
+
+
+    // -------------------------------------------------------- Private Methods
+
+
+    private void testMaskBuffer(final MemoryManager mm) {
+        for (int length : LENGTHS) {
+            for (int offset = 0; offset < 4; offset++) {
+                final byte[] payload = randomBytes(length);
+                final Buffer buffer = mm.allocate(offset + length);
+                buffer.position(offset);
+                buffer.put(payload);
+                buffer.position(offset);
+
+                final Masker masker = new Masker();
+                masker.mask(buffer, offset, length);
+
+                assertEquals(offset, buffer.position());
+                assertArrayEquals(reference(masker.getMask(), 0, payload),
+                        toArray(buffer, offset, length));
+            }
+        }
+    }
+
+    private static byte[] reference(final byte[] mask, int index,
+            final byte[] payload) {
+        final byte[] result = new byte[payload.length];
+        for (int i = 0; i < payload.length; i++) {
+            result[i] = (byte) (payload[i] ^ mask[index++ % Constants.MASK_SIZE]);
+        }
+        return result;
+    }
+
+    private static byte[] toArray(final Buffer buffer, final int position,
+            final int length) {
+        final byte[] result = new byte[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = buffer.get(position + i);
+        }
+        return result;
+    }
+
+    private byte[] randomBytes(final int length) {
+        final byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
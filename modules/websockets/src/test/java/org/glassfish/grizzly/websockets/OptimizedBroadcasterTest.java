@@ -0,0 +1,132 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.websockets;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.CompletionHandler;
+import org.glassfish.grizzly.WriteResult;
+import org.glassfish.grizzly.memory.HeapBuffer;
+import org.glassfish.grizzly.websockets.rfc6455.RFC6455Handler;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OptimizedBroadcasterTest {
+
+    @Test
+    public void testSharedFrameIsDisposedAfterAllWrites() {
+        final TrackingBuffer buffer = new TrackingBuffer();
+        final RecordingWebSocket websocket = new RecordingWebSocket();
+
+        final OptimizedBroadcaster.SharedFrame frame =
+                new OptimizedBroadcaster.SharedFrame(buffer);
+        frame.sendTo(websocket);
+        frame.sendTo(websocket);
+        frame.sendTo(websocket);
+        frame.release();
+        assertFalse(buffer.disposed);
+
+        assertEquals(3, websocket.handlers.size());
+        websocket.handlers.get(0).completed(null);
+        websocket.handlers.get(1).failed(new Exception());
+        assertFalse(buffer.disposed);
+
+        websocket.handlers.get(2).completed(null);
+        assertTrue(buffer.disposed);
+    }
+
+    @Test
+    public void testSharedFrameIsDisposedIfWritesCompleteEarly() {
+        final TrackingBuffer buffer = new TrackingBuffer();
+        final RecordingWebSocket websocket = new RecordingWebSocket();
+        websocket.completeImmediately = true;
+
+        final OptimizedBroadcaster.SharedFrame frame =
+                new OptimizedBroadcaster.SharedFrame(buffer);
+        frame.sendTo(websocket);
+        frame.sendTo(websocket);
+        assertFalse(buffer.disposed);
+
+        frame.release();
+        assertTrue(buffer.disposed);
+    }
+
+    private static final class TrackingBuffer extends HeapBuffer {
+        private boolean disposed;
+
+        private TrackingBuffer() {
+            super(new byte[16], 0, 16);
+            allowBufferDispose(true);
+        }
+
+        @Override
+        public void dispose() {
+            assertFalse("Disposed twice", disposed);
+            disposed = true;
+            super.dispose();
+        }
+    }
+
+    private static final class RecordingWebSocket extends SimpleWebSocket {
+        private final List<CompletionHandler<WriteResult>> handlers =
+                new ArrayList<CompletionHandler<WriteResult>>();
+        private boolean completeImmediately;
+
+        private RecordingWebSocket() {
+            super(new RFC6455Handler(false));
+        }
+
+        @Override
+        protected void sendRaw(final Buffer rawData,
+                final CompletionHandler<WriteResult> completionHandler) {
+            if (completeImmediately) {
+                completionHandler.completed(null);
+            } else {
+                handlers.add(completionHandler);
+            }
+        }
+    }
+}